@@ -16,6 +16,8 @@ public class Asteroids<World, Ship, Asteroid, Bullet> extends JFrame {
   private int width;
   private int height;
   private Sound sound;
+  private ScenarioGenerator<World, Ship, Asteroid, Bullet> scenario;
+  private int nbScenarioAsteroids;
 
   public Asteroids(IFacade<World, Ship, Asteroid, Bullet> facade, int width, int height, boolean undecorated, Sound sound) {
     super("Asteroids");
@@ -47,6 +49,15 @@ public class Asteroids<World, Ship, Asteroid, Bullet> extends JFrame {
     return facade;
   }
 
+  /**
+   * Let new games be populated with <code>nbAsteroids</code> asteroids from
+   * <code>scenario</code> instead of the default asteroids.
+   */
+  public void setScenario(ScenarioGenerator<World, Ship, Asteroid, Bullet> scenario, int nbAsteroids) {
+    this.scenario = scenario;
+    this.nbScenarioAsteroids = nbAsteroids;
+  }
+
   public void start() {
     menu.reset();
     sound.start();
@@ -58,10 +69,14 @@ public class Asteroids<World, Ship, Asteroid, Bullet> extends JFrame {
     World world = facade.createWorld(width, height);
     Ship player = facade.createShip(width / 2., height / 2., 0, 0, 40, 0, 5E15);
     facade.addShip(world, player);
-    Asteroid asteroid1 = facade.createAsteroid(100, 100, 25, 50, 60);
-    facade.addAsteroid(world, asteroid1);
-    Asteroid asteroid2 = facade.createAsteroid(600, 100, -30, -40, 80);
-    facade.addAsteroid(world, asteroid2);
+    if (scenario != null) {
+      scenario.populate(world, nbScenarioAsteroids);
+    } else {
+      Asteroid asteroid1 = facade.createAsteroid(100, 100, 25, 50, 60);
+      facade.addAsteroid(world, asteroid1);
+      Asteroid asteroid2 = facade.createAsteroid(600, 100, -30, -40, 80);
+      facade.addAsteroid(world, asteroid2);
+    }
     view = new WorldView<World, Ship, Asteroid, Bullet>(this, world, player, null);
     if (!isUndecorated())
       view.setPreferredSize(new Dimension(width, height));
@@ -79,14 +94,18 @@ public class Asteroids<World, Ship, Asteroid, Bullet> extends JFrame {
     facade.addShip(world, player1);
     Ship player2 = facade.createShip(width / 5, height / 2., 0, 0, 40, 0, 5E15);
     facade.addShip(world, player2);
-    Asteroid asteroid1 = facade.createAsteroid(width / 2, height / 2, 25, 50, 75);
-    facade.addAsteroid(world, asteroid1);
-    Asteroid asteroid2 = facade.createAsteroid(600, 100, -30, -40, 40);
-    facade.addAsteroid(world, asteroid2);
-    Asteroid asteroid3 = facade.createAsteroid(990, 550, -20, -3, 25);
-    facade.addAsteroid(world, asteroid3);
-    Asteroid asteroid4 = facade.createAsteroid(40, height - 100, 10, -8, 15);
-    facade.addAsteroid(world, asteroid4);
+    if (scenario != null) {
+      scenario.populate(world, nbScenarioAsteroids);
+    } else {
+      Asteroid asteroid1 = facade.createAsteroid(width / 2, height / 2, 25, 50, 75);
+      facade.addAsteroid(world, asteroid1);
+      Asteroid asteroid2 = facade.createAsteroid(600, 100, -30, -40, 40);
+      facade.addAsteroid(world, asteroid2);
+      Asteroid asteroid3 = facade.createAsteroid(990, 550, -20, -3, 25);
+      facade.addAsteroid(world, asteroid3);
+      Asteroid asteroid4 = facade.createAsteroid(40, height - 100, 10, -8, 15);
+      facade.addAsteroid(world, asteroid4);
+    }
     view = new WorldView<World, Ship, Asteroid, Bullet>(this, world, player1, player2);
     if (!isUndecorated())
       view.setPreferredSize(new Dimension(width, height));
@@ -115,11 +134,21 @@ public class Asteroids<World, Ship, Asteroid, Bullet> extends JFrame {
   public static void main(final String[] args) {
     boolean tryFullscreen = true;
     boolean enableSound = true;
-    for(String arg : args) {
+    boolean softwareMixer = false;
+    int nbAsteroids = -1;
+    long seed = 0;
+    for(int i = 0; i < args.length; i++) {
+      String arg = args[i];
       if(arg.equals("-window")) {
         tryFullscreen = false;
       } else if(arg.equals("-nosound")) {
         enableSound = false;
+      } else if(arg.equals("-mixer")) {
+        softwareMixer = true;
+      } else if(arg.equals("-asteroids") && i + 1 < args.length) {
+        nbAsteroids = Integer.parseInt(args[++i]);
+      } else if(arg.equals("-seed") && i + 1 < args.length) {
+        seed = Long.parseLong(args[++i]);
       } else {
         System.out.println("unknown option: " + arg);
         return;
@@ -132,19 +161,32 @@ public class Asteroids<World, Ship, Asteroid, Bullet> extends JFrame {
       System.out.println("no screen found");
       return;
     }
+    TickStatistics.getInstance().register();
     // <begin>
-    IFacade<asteroids.model.World, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> facade = new asteroids.model.Facade();
+    IFacade<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> facade = new asteroids.model.Facade();
     // <end>
     GraphicsEnvironment env = GraphicsEnvironment.getLocalGraphicsEnvironment();
     GraphicsDevice screen = env.getDefaultScreenDevice();
-    Asteroids<asteroids.model.World, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> asteroids;
-    Sound sound = enableSound ? new FileSoundManager("asteroids/resources/sounds.txt") : new NullSound();
+    Asteroids<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> asteroids;
+    Sound sound;
+    if (!enableSound) {
+      sound = new NullSound();
+    } else if (softwareMixer) {
+      sound = new MixingSoundManager("asteroids/resources/sounds.txt");
+    } else {
+      sound = new FileSoundManager("asteroids/resources/sounds.txt");
+    }
     if (tryFullscreen && screen.isFullScreenSupported()) {
       Rectangle dimensions = screen.getDefaultConfiguration().getBounds();
-      asteroids = new Asteroids<asteroids.model.World, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>(facade, dimensions.width, dimensions.height, true, sound);
+      asteroids = new Asteroids<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>(facade, dimensions.width, dimensions.height, true, sound);
       screen.setFullScreenWindow(asteroids);
     } else {
-      asteroids = new Asteroids<asteroids.model.World, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>(facade, 1024, 768, false, sound);
+      asteroids = new Asteroids<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>(facade, 1024, 768, false, sound);
+    }
+    if (nbAsteroids >= 0) {
+      ScenarioGenerator<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> scenario = new ScenarioGenerator<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>(facade, seed);
+      scenario.setRadii(5, 40, 1.5);
+      asteroids.setScenario(scenario, nbAsteroids);
     }
     asteroids.start();
   }
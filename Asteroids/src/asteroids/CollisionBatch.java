@@ -0,0 +1,117 @@
+package asteroids;
+
+import java.util.Arrays;
+
+/**
+ * The collisions of one tick, stored as parallel arrays.
+ *
+ * Entry <code>i</code> describes one collision: the entities involved and their
+ * type tags, the contact point and the time at which the collision occurred,
+ * measured from the start of the tick. For a collision with a boundary, the
+ * second entity is <code>null</code> and its type is {@link #BOUNDARY}. Entries
+ * appear in the order in which the collisions occurred.
+ *
+ * A batch is reused from tick to tick, so it only allocates while its arrays grow.
+ * Entities may have been terminated by later collisions of the same tick.
+ */
+public class CollisionBatch {
+
+  public static final byte BOUNDARY = 0;
+  public static final byte SHIP = 1;
+  public static final byte ASTEROID = 2;
+  public static final byte BULLET = 3;
+
+  private int size;
+  private Object[] first = new Object[16];
+  private Object[] second = new Object[16];
+  private byte[] firstType = new byte[16];
+  private byte[] secondType = new byte[16];
+  private double[] x = new double[16];
+  private double[] y = new double[16];
+  private double[] time = new double[16];
+
+  public int getSize() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public Object getFirst(int i) {
+    return first[i];
+  }
+
+  public Object getSecond(int i) {
+    return second[i];
+  }
+
+  public byte getFirstType(int i) {
+    return firstType[i];
+  }
+
+  public byte getSecondType(int i) {
+    return secondType[i];
+  }
+
+  public boolean isBoundaryCollision(int i) {
+    return secondType[i] == BOUNDARY;
+  }
+
+  public double getX(int i) {
+    return x[i];
+  }
+
+  public double getY(int i) {
+    return y[i];
+  }
+
+  public double getTime(int i) {
+    return time[i];
+  }
+
+  /**
+   * Check whether exactly one of the entities of collision <code>i</code> has
+   * the given type.
+   */
+  public boolean involvesOnce(int i, byte type) {
+    return (firstType[i] == type) != (secondType[i] == type);
+  }
+
+  public void addBoundaryCollision(Object entity, byte type, double x, double y, double time) {
+    addObjectCollision(entity, type, null, BOUNDARY, x, y, time);
+  }
+
+  public void addObjectCollision(Object entity1, byte type1, Object entity2, byte type2, double x, double y, double time) {
+    if (size == first.length)
+      grow();
+    first[size] = entity1;
+    second[size] = entity2;
+    firstType[size] = type1;
+    secondType[size] = type2;
+    this.x[size] = x;
+    this.y[size] = y;
+    this.time[size] = time;
+    size++;
+  }
+
+  /**
+   * Remove all collisions from this batch, keeping its arrays.
+   */
+  public void clear() {
+    Arrays.fill(first, 0, size, null);
+    Arrays.fill(second, 0, size, null);
+    size = 0;
+  }
+
+  private void grow() {
+    int capacity = 2 * first.length;
+    first = Arrays.copyOf(first, capacity);
+    second = Arrays.copyOf(second, capacity);
+    firstType = Arrays.copyOf(firstType, capacity);
+    secondType = Arrays.copyOf(secondType, capacity);
+    x = Arrays.copyOf(x, capacity);
+    y = Arrays.copyOf(y, capacity);
+    time = Arrays.copyOf(time, capacity);
+  }
+}
@@ -0,0 +1,18 @@
+package asteroids;
+
+/**
+ * A collision listener that receives all collisions of a tick at once.
+ *
+ * A world that supports batches fills one reusable {@link CollisionBatch} while
+ * it evolves and passes it to {@link #collisions(CollisionBatch)} at the end of
+ * the tick, instead of invoking <code>boundaryCollision</code> and
+ * <code>objectCollision</code> for each collision. Worlds that do not support
+ * batches keep invoking those methods.
+ */
+public interface CollisionBatchListener extends CollisionListener {
+  /**
+   * Invoked once at the end of each tick with the collisions of that tick. The
+   * batch is reused by the next tick and must not be retained.
+   */
+  public void collisions(CollisionBatch batch);
+}
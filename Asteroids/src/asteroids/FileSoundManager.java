@@ -1,96 +1,117 @@
 package asteroids;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Queue;
 
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
+import asteroids.jfr.AssetLoadEvent;
+import asteroids.jfr.SoundRequestEvent;
+
 /**
  * Sound manager that reads a text file to determine which sound files to load.
  */
-public class FileSoundManager implements Runnable, Sound {
-
-  public abstract class Request {
-    private final String sound;
-
-    public Request(String sound) {
-      this.sound = sound;
+public class FileSoundManager implements Runnable, Sound, SoundRequestQueue.Handler {
+
+  /**
+   * A fixed number of preopened clips (voices) that share the decoded data of
+   * one sound, so that overlapping plays of that sound do not cut each other
+   * off. When all voices are busy, the voice that was started longest ago is
+   * stolen, looping voices last; see {@link VoiceAllocator}.
+   *
+   * Which voices are busy is tracked here rather than asked from the clips:
+   * Clip.isRunning() often still returns false right after start(), so two
+   * plays in quick succession would otherwise take the same voice.
+   */
+  public class ClipPool {
+    private final Clip[] clips;
+    private final VoiceAllocator voices;
+
+    public ClipPool(AudioFormat format, byte[] data, int polyphony) throws LineUnavailableException {
+      clips = new Clip[polyphony];
+      for (int i = 0; i < polyphony; i++) {
+        clips[i] = AudioSystem.getClip();
+        clips[i].open(format, data, 0, data.length);
+      }
+      long frames = data.length / Math.max(1, format.getFrameSize());
+      long lengthNanos = format.getFrameRate() > 0 ? (long) (frames * 1E9 / format.getFrameRate()) : 0;
+      voices = new VoiceAllocator(polyphony, lengthNanos);
     }
 
-    public String getSound() {
-      return sound;
+    public int getPolyphony() {
+      return clips.length;
     }
 
-    public abstract void execute();
-  }
+    public void play() {
+      acquire(false).start();
+    }
 
-  public class Play extends Request {
-    public Play(String sound) {
-      super(sound);
+    public void loop() {
+      acquire(true).loop(Clip.LOOP_CONTINUOUSLY);
     }
 
-    public void execute() {
-      Clip clip = clips.get(getSound());
-      if (clip == null) {
-        System.err.println("clip " + getSound() + " not found");
-      } else {
-        if (clip.isRunning()) {
-          clip.stop();
+    public void stop() {
+      for (int i = 0; i < clips.length; i++) {
+        if (voices.isBusy(i)) {
+          clips[i].stop();
+          voices.release(i);
         }
-        clip.setFramePosition(0);
-        clip.start();
       }
     }
-  }
 
-  public class Stop extends Request {
-    public Stop(String sound) {
-      super(sound);
-    }
-
-    public void execute() {
-      Clip clip = clips.get(getSound());
-      if (clip == null) {
-        System.err.println("clip " + getSound() + " not found");
-      } else {
-        clip.stop();
+    /**
+     * Return a voice rewound to its first frame and mark it busy, as chosen by
+     * {@link VoiceAllocator#select}. Only a stolen voice is stopped first.
+     */
+    private Clip acquire(boolean loop) {
+      long now = System.nanoTime();
+      int chosen = voices.select(now);
+      Clip voice = clips[chosen];
+      if (voices.isBusy(chosen)) {
+        voice.stop();
       }
+      voices.start(chosen, now, loop);
+      voice.setFramePosition(0);
+      return voice;
     }
   }
 
-  public class Loop extends Request {
-    public Loop(String sound) {
-      super(sound);
-    }
+  /**
+   * Number of voices per sound when no polyphony is given explicitly.
+   */
+  public static final int DEFAULT_POLYPHONY = 4;
 
-    public void execute() {
-      Clip clip = clips.get(getSound());
-      if (clip == null) {
-        System.err.println("clip " + getSound() + " not found");
-      } else {
-        if (clip.isRunning()) {
-          clip.stop();
-        }
-        clip.setFramePosition(0);
-        clip.loop(Clip.LOOP_CONTINUOUSLY);
-      }
-    }
+  HashMap<String, ClipPool> clips = new HashMap<String, ClipPool>();
+  private final SoundRequestQueue requests;
+  private final int polyphony;
+
+  public FileSoundManager(String path) {
+    this(path, DEFAULT_POLYPHONY);
   }
 
-  HashMap<String, Clip> clips = new HashMap<String, Clip>();
-  Queue<Request> requests = new LinkedList<Request>();
+  public FileSoundManager(String path, int polyphony) {
+    this(path, polyphony, SoundRequestQueue.DEFAULT_CAPACITY, SoundRequestQueue.DEFAULT_COALESCE_WINDOW_NANOS);
+  }
 
-  public FileSoundManager(String path) {
+  /**
+   * Create a sound manager with <code>polyphony</code> voices per sound and a
+   * request ring of <code>queueCapacity</code> slots, in which identical
+   * requests issued within <code>coalesceWindowNanos</code> are merged.
+   */
+  public FileSoundManager(String path, int polyphony, int queueCapacity, long coalesceWindowNanos) {
+    if (polyphony < 1)
+      throw new IllegalArgumentException("polyphony must be at least 1");
+    this.polyphony = polyphony;
     try {
       loadSounds(path);
     } catch (IOException e) {
@@ -104,6 +125,7 @@ public class FileSoundManager implements Runnable, Sound {
     } catch (SecurityException e) {
       System.err.println("sound not available due to security restrictions");
     }
+    requests = new SoundRequestQueue(clips.keySet(), queueCapacity, coalesceWindowNanos);
   }
 
   private void loadSounds(String path) throws IOException, LineUnavailableException, UnsupportedAudioFileException {
@@ -113,55 +135,92 @@ public class FileSoundManager implements Runnable, Sound {
     InputStream stream = loader.getResourceAsStream(path);
     BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
     for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-      Clip clip = AudioSystem.getClip();
       URL url = loader.getResource("asteroids/resources/" + line);
       if (url == null) {
         System.err.println("sound " + line + " not found");
         continue;
       }
+      AssetLoadEvent event = new AssetLoadEvent();
+      event.begin();
       AudioInputStream audioStream = AudioSystem.getAudioInputStream(url);
-      clip.open(audioStream);
-      clips.put(line.substring(0, line.lastIndexOf('.')), clip);
+      byte[] data = readFully(audioStream);
+      clips.put(line.substring(0, line.lastIndexOf('.')), new ClipPool(audioStream.getFormat(), data, polyphony));
+      if (event.shouldCommit()) {
+        event.resource = line;
+        event.bytes = data.length;
+        event.commit();
+      }
     }
   }
 
+  static byte[] readFully(AudioInputStream audioStream) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    for (int read = audioStream.read(buffer); read != -1; read = audioStream.read(buffer)) {
+      out.write(buffer, 0, read);
+    }
+    audioStream.close();
+    return out.toByteArray();
+  }
+
+  public int getPolyphony() {
+    return polyphony;
+  }
+
+  public SoundRequestQueue getRequests() {
+    return requests;
+  }
+
   public void play(String name) {
-    addRequest(new Play(name));
+    requests.offer(SoundRequestQueue.PLAY, name);
   }
 
   public void loop(String name) {
-    addRequest(new Loop(name));
+    requests.offer(SoundRequestQueue.LOOP, name);
   }
 
   public void stop(String name) {
-    addRequest(new Stop(name));
+    requests.offer(SoundRequestQueue.STOP, name);
   }
 
-  public void addRequest(Request request) {
-    synchronized (this) {
-      requests.add(request);
-      notifyAll();
+  @Override
+  public void handle(int kind, String sound) {
+    ClipPool pool = clips.get(sound);
+    if (pool == null) {
+      System.err.println("clip " + sound + " not found");
+      return;
     }
+    TickStatistics statistics = TickStatistics.getInstance();
+    long start = statistics.begin();
+    SoundRequestEvent event = new SoundRequestEvent();
+    event.begin();
+    switch (kind) {
+    case SoundRequestQueue.PLAY:
+      pool.play();
+      break;
+    case SoundRequestQueue.LOOP:
+      pool.loop();
+      break;
+    case SoundRequestQueue.STOP:
+      pool.stop();
+      break;
+    }
+    if (event.shouldCommit()) {
+      event.request = kind == SoundRequestQueue.PLAY ? "play" : kind == SoundRequestQueue.LOOP ? "loop" : "stop";
+      event.sound = sound;
+      event.commit();
+    }
+    statistics.end(TickStatistics.Phase.SOUND_DISPATCH, start);
   }
 
   @Override
   public void run() {
     while (true) {
-      Request request = null;
-      synchronized (this) {
-        while (request == null) {
-          if (requests.isEmpty()) {
-            try {
-              wait();
-            } catch (InterruptedException e) {
-              return;
-            }
-          } else {
-            request = requests.remove();
-          }
-        }
+      try {
+        requests.take(this);
+      } catch (InterruptedException e) {
+        return;
       }
-      request.execute();
     }
   }
 
@@ -0,0 +1,112 @@
+package asteroids;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of durations in nanoseconds with logarithmic buckets.
+ *
+ * Every power of two is split in {@link #SUB_BUCKETS} linear sub-buckets, so a
+ * recorded value is known to within 1/16 (about 6%) of itself, from single
+ * nanoseconds up to <code>Long.MAX_VALUE</code>. The histogram takes a fixed
+ * amount of memory and recording a value does not allocate.
+ *
+ * The histogram is not thread-safe; it is meant to be filled and read on the
+ * event dispatch thread.
+ */
+public class FrameTimeHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+
+  public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private static final int NB_BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final long[] counts = new long[NB_BUCKETS];
+  private long totalCount;
+  private long max;
+  private long sum;
+
+  /**
+   * Record the given duration. Negative durations are recorded as 0.
+   */
+  public void record(long nanos) {
+    if (nanos < 0)
+      nanos = 0;
+    counts[indexOf(nanos)]++;
+    totalCount++;
+    sum += nanos;
+    if (nanos > max)
+      max = nanos;
+  }
+
+  /**
+   * Return the smallest value v such that at least the given percentage of the
+   * recorded values is at most v, up to the resolution of the histogram.
+   * Returns 0 if nothing was recorded.
+   */
+  public long getPercentile(double percentile) {
+    if (totalCount == 0)
+      return 0;
+    long target = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * totalCount);
+    if (target < 1)
+      target = 1;
+    long seen = 0;
+    for (int index = 0; index < NB_BUCKETS; index++) {
+      seen += counts[index];
+      if (seen >= target)
+        return Math.min(highestValueIn(index), max);
+    }
+    return max;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public long getMean() {
+    return totalCount == 0 ? 0 : sum / totalCount;
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  /**
+   * Add all values recorded in the given histogram to this histogram.
+   */
+  public void add(FrameTimeHistogram other) {
+    for (int index = 0; index < NB_BUCKETS; index++)
+      counts[index] += other.counts[index];
+    totalCount += other.totalCount;
+    sum += other.sum;
+    if (other.max > max)
+      max = other.max;
+  }
+
+  public void reset() {
+    Arrays.fill(counts, 0);
+    totalCount = 0;
+    max = 0;
+    sum = 0;
+  }
+
+  static int indexOf(long value) {
+    if (value < SUB_BUCKETS)
+      return (int) value;
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  static long lowestValueIn(int index) {
+    if (index < SUB_BUCKETS)
+      return index;
+    int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long sub = index % SUB_BUCKETS;
+    return (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+  }
+
+  static long highestValueIn(int index) {
+    return index == NB_BUCKETS - 1 ? Long.MAX_VALUE : lowestValueIn(index + 1) - 1;
+  }
+}
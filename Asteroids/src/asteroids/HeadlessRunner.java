@@ -0,0 +1,65 @@
+package asteroids;
+
+/**
+ * Runs a generated scenario without a user interface and reports how long the
+ * ticks take.
+ *
+ * <pre>
+ * java asteroids.HeadlessRunner [asteroids [ticks [seed [clusters]]]]
+ * </pre>
+ *
+ * Each tick advances the world by 1/30 of a second, as the game does.
+ */
+public class HeadlessRunner<World, Ship, Asteroid, Bullet> {
+
+  public static final double TICK = 1 / 30.;
+
+  private final IFacade<World, Ship, Asteroid, Bullet> facade;
+  private final World world;
+  private final FrameTimeHistogram tickTimes = new FrameTimeHistogram();
+
+  public HeadlessRunner(IFacade<World, Ship, Asteroid, Bullet> facade, World world) {
+    this.facade = facade;
+    this.world = world;
+  }
+
+  public FrameTimeHistogram getTickTimes() {
+    return tickTimes;
+  }
+
+  /**
+   * Advance the world by <code>nbTicks</code> ticks and record the duration of
+   * each tick.
+   */
+  public void run(int nbTicks) {
+    for (int tick = 0; tick < nbTicks; tick++) {
+      long start = System.nanoTime();
+      facade.evolve(world, TICK, null);
+      tickTimes.record(System.nanoTime() - start);
+    }
+  }
+
+  public static void main(String[] args) {
+    int nbAsteroids = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int nbTicks = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+    int nbClusters = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+    // <begin>
+    IFacade<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> facade = new asteroids.model.Facade();
+    // <end>
+    ScenarioGenerator<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> scenario = new ScenarioGenerator<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>(facade, seed);
+    scenario.setRadii(5, 40, 1.5);
+    scenario.setClusters(nbClusters, 0.1);
+    long start = System.nanoTime();
+    asteroids.model.GameWorld world = scenario.createWorld(nbAsteroids);
+    scenario.populate(world, nbAsteroids);
+    System.out.printf("generated %d asteroids in a world of %.0f x %.0f in %.1f ms%n", nbAsteroids,
+        facade.getWorldWidth(world), facade.getWorldHeight(world), (System.nanoTime() - start) / 1e6);
+    HeadlessRunner<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> runner = new HeadlessRunner<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>(facade, world);
+    runner.run(nbTicks);
+    FrameTimeHistogram times = runner.getTickTimes();
+    System.out.printf("%d ticks: mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d asteroids left%n", times.getTotalCount(),
+        times.getMean() / 1e6, times.getPercentile(50) / 1e6, times.getPercentile(99) / 1e6, times.getMax() / 1e6,
+        facade.getAsteroids(world).size());
+  }
+}
@@ -153,6 +153,18 @@ public interface IFacade<World, Ship, Asteroid, Bullet> {
    */
   public double getShipDirection(Ship ship);
 
+  /**
+   * Return the x-component of the unit vector in the direction of
+   * <code>ship</code>, that is the cosine of its direction.
+   */
+  public double getShipDirectionX(Ship ship);
+
+  /**
+   * Return the y-component of the unit vector in the direction of
+   * <code>ship</code>, that is the sine of its direction.
+   */
+  public double getShipDirectionY(Ship ship);
+
   /**
    * Return the mass of <code>ship</code>.
    */
@@ -0,0 +1,388 @@
+package asteroids;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs many independent matches without a user interface on the threads of an
+ * executor.
+ *
+ * <pre>
+ * java asteroids.MatchHost [matches [asteroids [ticks [workers]]]]
+ * </pre>
+ *
+ * Each match owns one world, which the host advances through
+ * {@link IFacade#evolve} only. Matches wait in a single run queue: a worker takes
+ * the match at the head, advances it by a slice of a few ticks and puts it back
+ * at the tail, so all running matches progress at the same rate. At most a fixed
+ * number of matches run at a time; <code>submit</code> blocks while that many are
+ * running, so a producer of matches cannot outrun the workers.
+ *
+ * The workers are started on the given executor, which may be a fixed thread
+ * pool or an executor that starts a thread per task, such as a virtual thread
+ * executor. A tick that takes longer than the tick deadline is counted as a
+ * missed deadline, per match and for the host as a whole.
+ */
+public class MatchHost<World, Ship, Asteroid, Bullet> {
+
+  /**
+   * Decides what happens in a match before each tick, for instance by steering
+   * the ships of bots. A hook is invoked on the worker that advances the match.
+   */
+  public interface TickHook<World> {
+    /**
+     * Invoked before tick number <code>tick</code> of the match in
+     * <code>world</code>. Return false to end the match before that tick.
+     */
+    public boolean beforeTick(World world, long tick);
+  }
+
+  /**
+   * A match submitted to a host.
+   */
+  public class Match {
+    private final World world;
+    private final long nbTicks;
+    private final TickHook<World> hook;
+    private final CollisionListener collisionListener;
+    private final FrameTimeHistogram tickTimes = new FrameTimeHistogram();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile long ticks;
+    private volatile long deadlineMisses;
+    private volatile boolean cancelled;
+    private volatile Throwable failure;
+
+    private Match(World world, long nbTicks, TickHook<World> hook, CollisionListener collisionListener) {
+      this.world = world;
+      this.nbTicks = nbTicks;
+      this.hook = hook;
+      this.collisionListener = collisionListener;
+    }
+
+    public World getWorld() {
+      return world;
+    }
+
+    /**
+     * Return the number of ticks this match has been advanced by.
+     */
+    public long getTicks() {
+      return ticks;
+    }
+
+    public long getDeadlineMisses() {
+      return deadlineMisses;
+    }
+
+    /**
+     * Return the durations of the ticks of this match. Only read the histogram
+     * once the match is done.
+     */
+    public FrameTimeHistogram getTickTimes() {
+      return tickTimes;
+    }
+
+    /**
+     * Return the exception or error thrown while advancing this match, or null.
+     */
+    public Throwable getFailure() {
+      return failure;
+    }
+
+    public boolean isDone() {
+      return done.getCount() == 0;
+    }
+
+    public void await() throws InterruptedException {
+      done.await();
+    }
+
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+      return done.await(timeout, unit);
+    }
+
+    /**
+     * End this match before its next tick.
+     */
+    public void cancel() {
+      cancelled = true;
+    }
+
+    /**
+     * Advance this match by at most the given number of ticks.
+     *
+     * @return true if the match is over.
+     */
+    private boolean runSlice(int nbTicksInSlice) {
+      double dt = tickDuration;
+      long deadline = tickDeadlineNanos;
+      long ticksInSlice = 0;
+      long missesInSlice = 0;
+      try {
+        for (int i = 0; i < nbTicksInSlice; i++) {
+          if (cancelled || ticks >= nbTicks || (hook != null && !hook.beforeTick(world, ticks)))
+            return true;
+          long start = System.nanoTime();
+          facade.evolve(world, dt, collisionListener);
+          long duration = System.nanoTime() - start;
+          tickTimes.record(duration);
+          ticksInSlice++;
+          ticks++;
+          if (duration > deadline) {
+            missesInSlice++;
+            deadlineMisses++;
+          }
+        }
+        return cancelled || ticks >= nbTicks;
+      } catch (Throwable e) {
+        // An error ends the match as well; otherwise it would kill the worker and
+        // the match would never complete.
+        failure = e;
+        return true;
+      } finally {
+        totalTicks.add(ticksInSlice);
+        totalDeadlineMisses.add(missesInSlice);
+      }
+    }
+  }
+
+  public static final double DEFAULT_TICK_DURATION = 1 / 30.;
+
+  private final IFacade<World, Ship, Asteroid, Bullet> facade;
+  private final int nbWorkers;
+  private final BlockingQueue<Match> runQueue = new LinkedBlockingQueue<Match>();
+  private final Match stop;
+  private final Semaphore admission;
+  private final CountDownLatch workersStopped;
+  private volatile double tickDuration = DEFAULT_TICK_DURATION;
+  private volatile long tickDeadlineNanos = (long) (DEFAULT_TICK_DURATION * 1e9);
+  private volatile int ticksPerSlice = 4;
+  private int nbActive;
+  private boolean shutdown;
+  private boolean stopping;
+  private final long startNanos = System.nanoTime();
+  private final LongAdder totalTicks = new LongAdder();
+  private final LongAdder totalDeadlineMisses = new LongAdder();
+  private final LongAdder completedMatches = new LongAdder();
+  private final FrameTimeHistogram completedTickTimes = new FrameTimeHistogram();
+
+  /**
+   * Create a host that advances matches through the given facade on
+   * <code>nbWorkers</code> workers started on the given executor, running at
+   * most <code>maxActiveMatches</code> matches at a time.
+   */
+  public MatchHost(IFacade<World, Ship, Asteroid, Bullet> facade, Executor executor, int nbWorkers, int maxActiveMatches) {
+    if (facade == null || executor == null)
+      throw new IllegalArgumentException("facade or executor null");
+    if (nbWorkers < 1 || maxActiveMatches < 1)
+      throw new IllegalArgumentException("a host needs at least one worker and one match");
+    this.facade = facade;
+    this.nbWorkers = nbWorkers;
+    this.stop = new Match(null, 0, null, null);
+    this.admission = new Semaphore(maxActiveMatches, true);
+    this.workersStopped = new CountDownLatch(nbWorkers);
+    for (int i = 0; i < nbWorkers; i++)
+      executor.execute(new Worker());
+  }
+
+  /**
+   * Set the time by which each tick advances a world, in seconds.
+   */
+  public void setTickDuration(double tickDuration) {
+    if (!(tickDuration >= 0))
+      throw new IllegalArgumentException("invalid tick duration");
+    this.tickDuration = tickDuration;
+  }
+
+  /**
+   * Set the wall-clock time a tick may take before it counts as a missed
+   * deadline, in nanoseconds.
+   */
+  public void setTickDeadline(long nanos) {
+    this.tickDeadlineNanos = nanos;
+  }
+
+  /**
+   * Set the number of ticks a worker advances a match by before moving on to the
+   * next match. Smaller slices are fairer, larger slices have less overhead.
+   */
+  public void setTicksPerSlice(int ticksPerSlice) {
+    if (ticksPerSlice < 1)
+      throw new IllegalArgumentException("a slice has at least one tick");
+    this.ticksPerSlice = ticksPerSlice;
+  }
+
+  /**
+   * Run a match in the given world for the given number of ticks, waiting while
+   * the maximum number of matches is running.
+   */
+  public Match submit(World world, long nbTicks, TickHook<World> hook) throws InterruptedException {
+    return submit(world, nbTicks, hook, null);
+  }
+
+  public Match submit(World world, long nbTicks, TickHook<World> hook, CollisionListener collisionListener) throws InterruptedException {
+    admission.acquire();
+    return admit(world, nbTicks, hook, collisionListener);
+  }
+
+  /**
+   * Run a match as {@link #submit} does, waiting at most the given time for
+   * room. Returns null if there was no room in time.
+   */
+  public Match trySubmit(World world, long nbTicks, TickHook<World> hook, CollisionListener collisionListener, long timeout,
+      TimeUnit unit) throws InterruptedException {
+    if (!admission.tryAcquire(timeout, unit))
+      return null;
+    return admit(world, nbTicks, hook, collisionListener);
+  }
+
+  private Match admit(World world, long nbTicks, TickHook<World> hook, CollisionListener collisionListener) {
+    Match match = new Match(world, nbTicks, hook, collisionListener);
+    synchronized (this) {
+      if (shutdown) {
+        admission.release();
+        throw new IllegalStateException("host is shut down");
+      }
+      nbActive++;
+    }
+    runQueue.add(match);
+    return match;
+  }
+
+  private void complete(Match match) {
+    synchronized (completedTickTimes) {
+      completedTickTimes.add(match.tickTimes);
+    }
+    completedMatches.increment();
+    synchronized (this) {
+      nbActive--;
+      if (shutdown && nbActive == 0)
+        stopWorkers();
+    }
+    admission.release();
+    match.done.countDown();
+  }
+
+  /**
+   * Stop accepting matches. The workers stop once the running matches are done.
+   */
+  public synchronized void shutdown() {
+    shutdown = true;
+    if (nbActive == 0)
+      stopWorkers();
+  }
+
+  private void stopWorkers() {
+    if (stopping)
+      return;
+    stopping = true;
+    for (int i = 0; i < nbWorkers; i++)
+      runQueue.add(stop);
+  }
+
+  /**
+   * Wait until all workers have stopped after a shutdown.
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return workersStopped.await(timeout, unit);
+  }
+
+  public synchronized int getNbActiveMatches() {
+    return nbActive;
+  }
+
+  public long getCompletedMatches() {
+    return completedMatches.sum();
+  }
+
+  public long getTotalTicks() {
+    return totalTicks.sum();
+  }
+
+  public long getTotalDeadlineMisses() {
+    return totalDeadlineMisses.sum();
+  }
+
+  /**
+   * Return the number of ticks per second over all matches since this host was
+   * created.
+   */
+  public double getThroughput() {
+    return getTotalTicks() / ((System.nanoTime() - startNanos) / 1e9);
+  }
+
+  /**
+   * Return a copy of the tick durations of all completed matches.
+   */
+  public FrameTimeHistogram getCompletedTickTimes() {
+    FrameTimeHistogram result = new FrameTimeHistogram();
+    synchronized (completedTickTimes) {
+      result.add(completedTickTimes);
+    }
+    return result;
+  }
+
+  private class Worker implements Runnable {
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          Match match = runQueue.take();
+          if (match == stop)
+            break;
+          if (match.runSlice(ticksPerSlice))
+            complete(match);
+          else
+            runQueue.add(match);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        workersStopped.countDown();
+      }
+    }
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int nbMatches = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    int nbAsteroids = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    int nbTicks = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+    int nbWorkers = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    // <begin>
+    IFacade<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> facade = new asteroids.model.Facade();
+    // <end>
+    ExecutorService executor = Executors.newFixedThreadPool(nbWorkers, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "match worker");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    MatchHost<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> host = new MatchHost<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>(
+        facade, executor, nbWorkers, 2 * nbWorkers);
+    for (int i = 0; i < nbMatches; i++) {
+      ScenarioGenerator<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> scenario = new ScenarioGenerator<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>(facade, i);
+      scenario.setRadii(5, 40, 1.5);
+      asteroids.model.GameWorld world = scenario.createWorld(nbAsteroids + 2);
+      scenario.setShips(2, 20, 5E15);
+      scenario.populate(world, nbAsteroids);
+      host.submit(world, nbTicks, null);
+    }
+    host.shutdown();
+    host.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+    executor.shutdown();
+    FrameTimeHistogram times = host.getCompletedTickTimes();
+    System.out.printf("%d matches, %d ticks on %d workers: %.0f ticks/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d deadlines missed%n",
+        host.getCompletedMatches(), host.getTotalTicks(), nbWorkers, host.getThroughput(), times.getPercentile(50) / 1e6,
+        times.getPercentile(99) / 1e6, times.getMax() / 1e6, host.getTotalDeadlineMisses());
+  }
+}
@@ -0,0 +1,475 @@
+package asteroids;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import asteroids.jfr.AssetLoadEvent;
+
+/**
+ * Sound manager that mixes all sounds in software into a single output line.
+ *
+ * Every sound is decoded once to 16-bit stereo PCM at {@link #SAMPLE_RATE}.
+ * A dedicated thread takes requests from a {@link SoundRequestQueue}, sums the
+ * active voices buffer by buffer and writes the result to a {@link Sink}. At
+ * most a fixed number of voices play at once; when a new sound starts while
+ * all voices are busy, the voice that was started first is stolen.
+ */
+public class MixingSoundManager implements Runnable, Sound, SoundRequestQueue.Handler {
+
+  public static final float SAMPLE_RATE = 44100;
+  public static final AudioFormat MIX_FORMAT = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+  public static final int DEFAULT_MAX_VOICES = 16;
+  public static final int DEFAULT_BUFFER_FRAMES = 512;
+
+  private static final int GAIN_SHIFT = 12;
+  private static final float GAIN_ONE = 1 << GAIN_SHIFT;
+
+  /**
+   * The highest gain, so that a full-scale sample times the gain in fixed
+   * point still fits in an int.
+   */
+  public static final float MAX_GAIN = 8;
+
+  /**
+   * Destination of the mixed PCM data, in {@link MixingSoundManager#MIX_FORMAT}.
+   */
+  public interface Sink {
+    public void open(AudioFormat format, int bufferBytes) throws LineUnavailableException;
+
+    public void write(byte[] data, int length);
+
+    public void close();
+  }
+
+  /**
+   * Sink that plays the mixed data through a low-latency source data line.
+   * Writing blocks while the line's buffer is full, which paces the mixer.
+   */
+  public static class LineSink implements Sink {
+    private SourceDataLine line;
+
+    @Override
+    public void open(AudioFormat format, int bufferBytes) throws LineUnavailableException {
+      line = AudioSystem.getSourceDataLine(format);
+      line.open(format, 2 * bufferBytes);
+      line.start();
+    }
+
+    @Override
+    public void write(byte[] data, int length) {
+      line.write(data, 0, length);
+    }
+
+    @Override
+    public void close() {
+      if (line != null) {
+        line.drain();
+        line.close();
+      }
+    }
+  }
+
+  /**
+   * Sink that collects the mixed data in memory, for use without audio
+   * hardware.
+   */
+  public static class ByteArraySink implements Sink {
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+    @Override
+    public void open(AudioFormat format, int bufferBytes) {
+    }
+
+    @Override
+    public void write(byte[] bytes, int length) {
+      data.write(bytes, 0, length);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public byte[] toByteArray() {
+      return data.toByteArray();
+    }
+
+    public int size() {
+      return data.size();
+    }
+
+    public void reset() {
+      data.reset();
+    }
+  }
+
+  private final Map<String, Integer> soundIds = new HashMap<String, Integer>();
+  private final short[][] sounds;
+  private final float[] soundGains;
+
+  private final int[] voiceSounds;
+  private final int[] voicePositions;
+  private final boolean[] voiceLooping;
+  private final float[] voiceGains;
+  private final long[] voiceStarts;
+  private long voicesStarted;
+
+  private final int[] accumulator;
+  private final byte[] output;
+  private final Sink sink;
+  private final SoundRequestQueue requests;
+  private volatile boolean running;
+
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  private final boolean cpuTimeSupported = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+  private volatile long buffersMixed;
+  private volatile long totalMixNanos;
+  private volatile long maxMixNanos;
+  private volatile long lastMixNanos;
+  private volatile int activeVoices;
+
+  public MixingSoundManager(String path) {
+    this(path, SoundRequestQueue.DEFAULT_CAPACITY, SoundRequestQueue.DEFAULT_COALESCE_WINDOW_NANOS);
+  }
+
+  public MixingSoundManager(String path, int queueCapacity, long coalesceWindowNanos) {
+    this(loadSounds(path), new LineSink(), DEFAULT_MAX_VOICES, DEFAULT_BUFFER_FRAMES, queueCapacity,
+        coalesceWindowNanos);
+  }
+
+  public MixingSoundManager(Map<String, short[]> decodedSounds, Sink sink, int maxVoices, int bufferFrames) {
+    this(decodedSounds, sink, maxVoices, bufferFrames, SoundRequestQueue.DEFAULT_CAPACITY,
+        SoundRequestQueue.DEFAULT_COALESCE_WINDOW_NANOS);
+  }
+
+  /**
+   * Create a mixer for the given sounds, each given as interleaved 16-bit
+   * stereo samples at {@link #SAMPLE_RATE}, with a request ring of
+   * <code>queueCapacity</code> slots, in which identical requests issued
+   * within <code>coalesceWindowNanos</code> are merged.
+   */
+  public MixingSoundManager(Map<String, short[]> decodedSounds, Sink sink, int maxVoices, int bufferFrames,
+      int queueCapacity, long coalesceWindowNanos) {
+    if (sink == null)
+      throw new IllegalArgumentException("sink null");
+    if (maxVoices < 1)
+      throw new IllegalArgumentException("at least one voice required");
+    if (bufferFrames < 1)
+      throw new IllegalArgumentException("buffer must hold at least one frame");
+    this.sink = sink;
+    this.sounds = new short[decodedSounds.size()][];
+    this.soundGains = new float[sounds.length];
+    for (Map.Entry<String, short[]> entry : decodedSounds.entrySet()) {
+      int id = soundIds.size();
+      soundIds.put(entry.getKey(), id);
+      sounds[id] = entry.getValue();
+      soundGains[id] = 1;
+    }
+    voiceSounds = new int[maxVoices];
+    Arrays.fill(voiceSounds, -1);
+    voicePositions = new int[maxVoices];
+    voiceLooping = new boolean[maxVoices];
+    voiceGains = new float[maxVoices];
+    voiceStarts = new long[maxVoices];
+    accumulator = new int[2 * bufferFrames];
+    output = new byte[4 * bufferFrames];
+    requests = new SoundRequestQueue(soundIds.keySet(), queueCapacity, coalesceWindowNanos);
+  }
+
+  private static Map<String, short[]> loadSounds(String path) {
+    Map<String, short[]> result = new LinkedHashMap<String, short[]>();
+    try {
+      ClassLoader loader = MixingSoundManager.class.getClassLoader();
+      InputStream stream = loader.getResourceAsStream(path);
+      BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        URL url = loader.getResource("asteroids/resources/" + line);
+        if (url == null) {
+          System.err.println("sound " + line + " not found");
+          continue;
+        }
+        AssetLoadEvent event = new AssetLoadEvent();
+        event.begin();
+        short[] samples = decode(AudioSystem.getAudioInputStream(url));
+        result.put(line.substring(0, line.lastIndexOf('.')), samples);
+        if (event.shouldCommit()) {
+          event.resource = line;
+          event.bytes = 2L * samples.length;
+          event.commit();
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("error loading sound description file");
+    } catch (UnsupportedAudioFileException e) {
+      System.err.println("audio format not supported");
+    } catch (IllegalArgumentException e) {
+      System.err.println("audio format cannot be converted to PCM");
+    } catch (SecurityException e) {
+      System.err.println("sound not available due to security restrictions");
+    }
+    return result;
+  }
+
+  /**
+   * Decode <code>stream</code> to interleaved 16-bit stereo samples at
+   * {@link #SAMPLE_RATE}. Mono input is copied to both channels and other
+   * sample rates are converted by linear interpolation.
+   */
+  public static short[] decode(AudioInputStream stream) throws IOException {
+    AudioFormat source = stream.getFormat();
+    int channels = source.getChannels();
+    float rate = source.getSampleRate() == AudioSystem.NOT_SPECIFIED ? SAMPLE_RATE : source.getSampleRate();
+    AudioFormat pcm = new AudioFormat(rate, 16, channels, true, false);
+    byte[] data = FileSoundManager.readFully(AudioSystem.getAudioInputStream(pcm, stream));
+    int sourceFrames = data.length / (2 * channels);
+    if (sourceFrames == 0)
+      return new short[0];
+    double step = rate / SAMPLE_RATE;
+    int frames = (int) ((sourceFrames - 1) / step) + 1;
+    short[] result = new short[2 * frames];
+    for (int frame = 0; frame < frames; frame++) {
+      double position = frame * step;
+      int first = (int) position;
+      int second = Math.min(first + 1, sourceFrames - 1);
+      double fraction = position - first;
+      for (int channel = 0; channel < 2; channel++) {
+        int sourceChannel = Math.min(channel, channels - 1);
+        int a = sample(data, first * channels + sourceChannel);
+        int b = sample(data, second * channels + sourceChannel);
+        result[2 * frame + channel] = (short) Math.round(a + (b - a) * fraction);
+      }
+    }
+    return result;
+  }
+
+  private static int sample(byte[] data, int index) {
+    return (data[2 * index] & 0xFF) | (data[2 * index + 1] << 8);
+  }
+
+  public int getMaxVoices() {
+    return voiceSounds.length;
+  }
+
+  public int getBufferFrames() {
+    return accumulator.length / 2;
+  }
+
+  /**
+   * Return the playback duration of one mixed buffer, in nanoseconds.
+   */
+  public long getBufferDurationNanos() {
+    return (long) (getBufferFrames() * 1E9 / SAMPLE_RATE);
+  }
+
+  public SoundRequestQueue getRequests() {
+    return requests;
+  }
+
+  /**
+   * Set the gain applied to voices of <code>name</code> that start after this
+   * call. A gain of 1 plays the sound at its recorded level. Gains above
+   * {@link #MAX_GAIN} are clamped to it.
+   */
+  public void setGain(String name, float gain) {
+    Integer id = soundIds.get(name);
+    if (id == null)
+      throw new IllegalArgumentException("unknown sound " + name);
+    if (Float.isNaN(gain) || gain < 0)
+      throw new IllegalArgumentException("invalid gain");
+    soundGains[id] = Math.min(gain, MAX_GAIN);
+  }
+
+  public void play(String name) {
+    requests.offer(SoundRequestQueue.PLAY, name);
+  }
+
+  public void loop(String name) {
+    requests.offer(SoundRequestQueue.LOOP, name);
+  }
+
+  public void stop(String name) {
+    requests.offer(SoundRequestQueue.STOP, name);
+  }
+
+  @Override
+  public void handle(int kind, String sound) {
+    Integer id = soundIds.get(sound);
+    if (id == null) {
+      System.err.println("clip " + sound + " not found");
+      return;
+    }
+    TickStatistics statistics = TickStatistics.getInstance();
+    long start = statistics.begin();
+    switch (kind) {
+    case SoundRequestQueue.PLAY:
+      startVoice(id, false);
+      break;
+    case SoundRequestQueue.LOOP:
+      startVoice(id, true);
+      break;
+    case SoundRequestQueue.STOP:
+      for (int voice = 0; voice < voiceSounds.length; voice++) {
+        if (voiceSounds[voice] == id)
+          voiceSounds[voice] = -1;
+      }
+      break;
+    }
+    statistics.end(TickStatistics.Phase.SOUND_DISPATCH, start);
+  }
+
+  private void startVoice(int sound, boolean looping) {
+    int voice = -1;
+    int oldest = 0;
+    for (int i = 0; i < voiceSounds.length; i++) {
+      if (voiceSounds[i] < 0) {
+        voice = i;
+        break;
+      }
+      if (voiceStarts[i] < voiceStarts[oldest])
+        oldest = i;
+    }
+    if (voice < 0)
+      voice = oldest;
+    voiceSounds[voice] = sound;
+    voicePositions[voice] = 0;
+    voiceLooping[voice] = looping;
+    voiceGains[voice] = soundGains[sound];
+    voiceStarts[voice] = ++voicesStarted;
+  }
+
+  /**
+   * Handle all pending requests, mix one buffer of the active voices and
+   * write it to the sink. This is what the mixer thread does in a loop; it
+   * may also be called directly when the mixer thread is not started.
+   */
+  public void mixBuffer() {
+    long start = now();
+    while (requests.poll(this))
+      ;
+    Arrays.fill(accumulator, 0);
+    int active = 0;
+    for (int voice = 0; voice < voiceSounds.length; voice++) {
+      if (voiceSounds[voice] >= 0) {
+        active++;
+        mixVoice(voice);
+      }
+    }
+    for (int i = 0; i < accumulator.length; i++) {
+      int value = accumulator[i];
+      if (value > Short.MAX_VALUE)
+        value = Short.MAX_VALUE;
+      else if (value < Short.MIN_VALUE)
+        value = Short.MIN_VALUE;
+      output[2 * i] = (byte) value;
+      output[2 * i + 1] = (byte) (value >> 8);
+    }
+    long elapsed = now() - start;
+    activeVoices = active;
+    lastMixNanos = elapsed;
+    totalMixNanos += elapsed;
+    if (elapsed > maxMixNanos)
+      maxMixNanos = elapsed;
+    buffersMixed++;
+    sink.write(output, output.length);
+  }
+
+  private void mixVoice(int voice) {
+    short[] data = sounds[voiceSounds[voice]];
+    int position = voicePositions[voice];
+    int gain = (int) (voiceGains[voice] * GAIN_ONE);
+    for (int i = 0; i < accumulator.length; i++) {
+      if (position >= data.length) {
+        if (!voiceLooping[voice] || data.length == 0) {
+          voiceSounds[voice] = -1;
+          return;
+        }
+        position = 0;
+      }
+      accumulator[i] += (data[position++] * gain) >> GAIN_SHIFT;
+    }
+    voicePositions[voice] = position;
+  }
+
+  private long now() {
+    return cpuTimeSupported ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+  }
+
+  /**
+   * Return the number of voices that were playing during the last buffer.
+   */
+  public int getActiveVoiceCount() {
+    return activeVoices;
+  }
+
+  public long getBuffersMixed() {
+    return buffersMixed;
+  }
+
+  /**
+   * Return the CPU time spent mixing the last buffer, in nanoseconds. Falls
+   * back to wall-clock time if the JVM cannot measure thread CPU time.
+   */
+  public long getLastMixNanos() {
+    return lastMixNanos;
+  }
+
+  public double getAverageMixNanos() {
+    long count = buffersMixed;
+    return count == 0 ? 0 : (double) totalMixNanos / count;
+  }
+
+  public long getMaxMixNanos() {
+    return maxMixNanos;
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      mixBuffer();
+    }
+    sink.close();
+  }
+
+  @Override
+  public void start() {
+    try {
+      sink.open(MIX_FORMAT, output.length);
+    } catch (LineUnavailableException e) {
+      System.err.println("no line available");
+      return;
+    } catch (IllegalArgumentException e) {
+      System.err.println("system does not support the mixer output format");
+      return;
+    } catch (SecurityException e) {
+      System.err.println("sound not available due to security restrictions");
+      return;
+    }
+    running = true;
+    Thread thread = new Thread(this, "mixer");
+    thread.setPriority(Thread.MAX_PRIORITY);
+    thread.start();
+  }
+
+  /**
+   * Stop the mixer thread after the buffer it is mixing.
+   */
+  public void shutdown() {
+    running = false;
+  }
+}
@@ -0,0 +1,200 @@
+package asteroids;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An overlay with frame rate, tick and paint times, entity counts, a rolling
+ * frame-time graph and garbage collection activity.
+ *
+ * Frame times are collected in a {@link FrameTimeHistogram}. The percentiles
+ * shown are those of the last completed window of {@link #WINDOW_NANOS}, so
+ * that they stay readable; the graph shows the last {@link #GRAPH_FRAMES}
+ * frames. The garbage collectors are polled once per second.
+ *
+ * Nothing is measured while the overlay is hidden. All methods are called on
+ * the event dispatch thread.
+ */
+public class PerformanceHud {
+
+  public static final int GRAPH_FRAMES = 120;
+
+  public static final long WINDOW_NANOS = 5000000000L;
+
+  private static final long SECOND_NANOS = 1000000000L;
+
+  /**
+   * Frame time at the top of the graph.
+   */
+  private static final long GRAPH_SCALE_NANOS = 50000000L;
+
+  private static final long TARGET_FRAME_NANOS = SECOND_NANOS / 30;
+
+  private static final Color BACKGROUND = new Color(0, 0, 0, 160);
+
+  private boolean visible;
+
+  private final long[] frameTimes = new long[GRAPH_FRAMES];
+  private int nextFrame;
+  private long lastFrameStart;
+
+  private FrameTimeHistogram window = new FrameTimeHistogram();
+  private FrameTimeHistogram lastWindow = new FrameTimeHistogram();
+  private long windowStart;
+
+  private long secondStart;
+  private int framesThisSecond;
+  private long tickNanosThisSecond, paintNanosThisSecond;
+  private int ticksThisSecond, paintsThisSecond;
+  private int fps;
+  private long meanTickNanos, meanPaintNanos;
+
+  private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+  private long gcCount, gcMillis;
+  private long gcCountLastSecond, gcMillisLastSecond;
+
+  public boolean isVisible() {
+    return visible;
+  }
+
+  /**
+   * Show or hide the overlay. Showing it starts a new measurement.
+   */
+  public void setVisible(boolean visible) {
+    if (visible && !this.visible)
+      reset();
+    this.visible = visible;
+  }
+
+  public void toggle() {
+    setVisible(!visible);
+  }
+
+  private void reset() {
+    long now = System.nanoTime();
+    Arrays.fill(frameTimes, 0);
+    nextFrame = 0;
+    lastFrameStart = 0;
+    window.reset();
+    lastWindow.reset();
+    windowStart = now;
+    secondStart = now;
+    framesThisSecond = ticksThisSecond = paintsThisSecond = 0;
+    tickNanosThisSecond = paintNanosThisSecond = 0;
+    fps = 0;
+    meanTickNanos = meanPaintNanos = 0;
+    pollCollectors();
+    gcCountLastSecond = gcMillisLastSecond = 0;
+  }
+
+  /**
+   * Register the start of a frame at the given time.
+   */
+  public void frameStarted(long now) {
+    if (!visible)
+      return;
+    if (lastFrameStart != 0) {
+      long frameTime = now - lastFrameStart;
+      frameTimes[nextFrame] = frameTime;
+      nextFrame = (nextFrame + 1) % GRAPH_FRAMES;
+      window.record(frameTime);
+    }
+    lastFrameStart = now;
+    framesThisSecond++;
+    if (now - windowStart >= WINDOW_NANOS) {
+      FrameTimeHistogram completed = window;
+      window = lastWindow;
+      window.reset();
+      lastWindow = completed;
+      windowStart = now;
+    }
+    if (now - secondStart >= SECOND_NANOS) {
+      double seconds = (now - secondStart) / (double) SECOND_NANOS;
+      fps = (int) Math.round(framesThisSecond / seconds);
+      meanTickNanos = ticksThisSecond == 0 ? 0 : tickNanosThisSecond / ticksThisSecond;
+      meanPaintNanos = paintsThisSecond == 0 ? 0 : paintNanosThisSecond / paintsThisSecond;
+      framesThisSecond = ticksThisSecond = paintsThisSecond = 0;
+      tickNanosThisSecond = paintNanosThisSecond = 0;
+      long previousCount = gcCount, previousMillis = gcMillis;
+      pollCollectors();
+      gcCountLastSecond = gcCount - previousCount;
+      gcMillisLastSecond = gcMillis - previousMillis;
+      secondStart = now;
+    }
+  }
+
+  /**
+   * Register the duration of a simulation tick.
+   */
+  public void tickFinished(long nanos) {
+    if (!visible)
+      return;
+    tickNanosThisSecond += nanos;
+    ticksThisSecond++;
+  }
+
+  /**
+   * Register the duration of a paint.
+   */
+  public void paintFinished(long nanos) {
+    if (!visible)
+      return;
+    paintNanosThisSecond += nanos;
+    paintsThisSecond++;
+  }
+
+  private void pollCollectors() {
+    long count = 0, millis = 0;
+    for (GarbageCollectorMXBean collector : collectors) {
+      // Both are -1 if the collector does not report them.
+      count += Math.max(0, collector.getCollectionCount());
+      millis += Math.max(0, collector.getCollectionTime());
+    }
+    gcCount = count;
+    gcMillis = millis;
+  }
+
+  /**
+   * Draw the overlay with its top left corner at the given position.
+   */
+  public void draw(Graphics2D g2d, int x, int y, int nbShips, int nbAsteroids, int nbBullets) {
+    if (!visible)
+      return;
+    FrameTimeHistogram shown = lastWindow.getTotalCount() > 0 ? lastWindow : window;
+    String[] lines = {
+        String.format("%d fps   tick %.2f ms   paint %.2f ms", fps, meanTickNanos / 1e6, meanPaintNanos / 1e6),
+        String.format("frame p50 %.1f  p99 %.1f  max %.1f ms", shown.getPercentile(50) / 1e6, shown.getPercentile(99) / 1e6, shown.getMax() / 1e6),
+        String.format("ships %d   asteroids %d   bullets %d", nbShips, nbAsteroids, nbBullets),
+        String.format("gc %d (+%d/s)   %d ms (+%d ms/s)", gcCount, gcCountLastSecond, gcMillis, gcMillisLastSecond) };
+    Font oldFont = g2d.getFont();
+    g2d.setFont(oldFont.deriveFont(Font.PLAIN, 12f));
+    int lineHeight = g2d.getFontMetrics().getHeight();
+    int graphHeight = 60;
+    int width = 2 * GRAPH_FRAMES + 20;
+    int height = lines.length * lineHeight + graphHeight + 20;
+    g2d.setColor(BACKGROUND);
+    g2d.fillRect(x, y, width, height);
+    g2d.setColor(Color.WHITE);
+    for (int i = 0; i < lines.length; i++)
+      g2d.drawString(lines[i], x + 10, y + 5 + (i + 1) * lineHeight - g2d.getFontMetrics().getDescent());
+    int graphTop = y + lines.length * lineHeight + 10;
+    int graphBottom = graphTop + graphHeight;
+    for (int i = 0; i < GRAPH_FRAMES; i++) {
+      long frameTime = frameTimes[(nextFrame + i) % GRAPH_FRAMES];
+      if (frameTime == 0)
+        continue;
+      int barHeight = (int) Math.min(graphHeight, frameTime * graphHeight / GRAPH_SCALE_NANOS);
+      g2d.setColor(frameTime > 2 * TARGET_FRAME_NANOS ? Color.RED : frameTime > TARGET_FRAME_NANOS * 5 / 4 ? Color.YELLOW : Color.GREEN);
+      g2d.fillRect(x + 10 + 2 * i, graphBottom - barHeight, 2, barHeight);
+    }
+    g2d.setColor(Color.GRAY);
+    int targetY = graphBottom - (int) (TARGET_FRAME_NANOS * graphHeight / GRAPH_SCALE_NANOS);
+    g2d.drawLine(x + 10, targetY, x + 10 + 2 * GRAPH_FRAMES, targetY);
+    g2d.setFont(oldFont);
+  }
+}
@@ -0,0 +1,171 @@
+package asteroids;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.VarHandle;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import asteroids.TickStatistics.Phase;
+
+/**
+ * A ring buffer of timed phases that can be exported as Chrome trace-event
+ * JSON, to be opened in Perfetto or <code>chrome://tracing</code>.
+ *
+ * All storage is allocated up front. Recording a span claims a slot with a
+ * single atomic increment and never blocks or allocates; when the ring is full
+ * the oldest spans are overwritten. Every slot carries a sequence number that
+ * is cleared while the slot is written, so a dump running concurrently with
+ * the game skips spans that are being overwritten instead of reporting torn
+ * ones.
+ */
+public class PhaseTracer {
+
+  /**
+   * Number of spans kept when no capacity is given. At 30 frames per second
+   * and a few dozen spans per frame this covers well over a minute.
+   */
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+
+  private final int mask;
+  private final AtomicLong cursor = new AtomicLong();
+  private final AtomicLongArray sequences;
+  private final long[] starts;
+  private final long[] durations;
+  private final long[] threadIds;
+  private final byte[] phases;
+
+  public PhaseTracer() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Create a tracer that keeps the last <code>capacity</code> spans, rounded
+   * up to a power of two.
+   */
+  public PhaseTracer(int capacity) {
+    if (capacity < 1 || capacity > 1 << 30)
+      throw new IllegalArgumentException("capacity out of range");
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity)
+      size <<= 1;
+    mask = size - 1;
+    sequences = new AtomicLongArray(size);
+    starts = new long[size];
+    durations = new long[size];
+    threadIds = new long[size];
+    phases = new byte[size];
+  }
+
+  public int getCapacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Return the number of spans recorded since this tracer was created,
+   * including those that have been overwritten.
+   */
+  public long getNbRecorded() {
+    return cursor.get();
+  }
+
+  /**
+   * Record that <code>phase</code> ran on the current thread from
+   * <code>start</code> to <code>end</code>, both as given by
+   * <code>System.nanoTime()</code>.
+   */
+  @SuppressWarnings("deprecation")
+  public void record(Phase phase, long start, long end) {
+    long index = cursor.getAndIncrement();
+    int slot = (int) index & mask;
+    sequences.set(slot, 0);
+    VarHandle.storeStoreFence();
+    starts[slot] = start;
+    durations[slot] = end - start;
+    threadIds[slot] = Thread.currentThread().getId();
+    phases[slot] = (byte) phase.ordinal();
+    sequences.set(slot, index + 1);
+  }
+
+  /**
+   * Write the spans that ended in the last <code>windowNanos</code> as a
+   * Chrome trace-event JSON object, and return the number of spans written.
+   */
+  @SuppressWarnings("deprecation")
+  public int writeChromeTrace(Writer out, long windowNanos) throws IOException {
+    long now = System.nanoTime();
+    long last = cursor.get();
+    long first = Math.max(0, last - getCapacity());
+    int count = (int) (last - first);
+    long[] spanStarts = new long[count];
+    long[] spanDurations = new long[count];
+    long[] spanThreads = new long[count];
+    byte[] spanPhases = new byte[count];
+    int nbSpans = 0;
+    for (long index = first; index < last; index++) {
+      int slot = (int) index & mask;
+      if (sequences.get(slot) != index + 1)
+        continue;
+      long start = starts[slot];
+      long duration = durations[slot];
+      long thread = threadIds[slot];
+      byte phase = phases[slot];
+      VarHandle.loadLoadFence();
+      if (sequences.get(slot) != index + 1 || now - (start + duration) > windowNanos)
+        continue;
+      spanStarts[nbSpans] = start;
+      spanDurations[nbSpans] = duration;
+      spanThreads[nbSpans] = thread;
+      spanPhases[nbSpans] = phase;
+      nbSpans++;
+    }
+
+    long origin = Long.MAX_VALUE;
+    TreeSet<Long> threads = new TreeSet<Long>();
+    for (int i = 0; i < nbSpans; i++) {
+      origin = Math.min(origin, spanStarts[i]);
+      threads.add(spanThreads[i]);
+    }
+    Map<Long, String> threadNames = new HashMap<Long, String>();
+    for (Thread thread : Thread.getAllStackTraces().keySet())
+      threadNames.put(thread.getId(), thread.getName());
+
+    Phase[] values = Phase.values();
+    out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+    boolean firstEvent = true;
+    for (Long thread : threads) {
+      String name = threadNames.containsKey(thread) ? threadNames.get(thread) : "thread " + thread;
+      if (!firstEvent)
+        out.write(",\n");
+      firstEvent = false;
+      out.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + thread + ",\"args\":{\"name\":\"" + escape(name) + "\"}}");
+    }
+    for (int i = 0; i < nbSpans; i++) {
+      if (!firstEvent)
+        out.write(",\n");
+      firstEvent = false;
+      out.write(String.format(Locale.ROOT, "{\"name\":\"%s\",\"cat\":\"asteroids\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%.3f,\"dur\":%.3f}",
+          values[spanPhases[i]].name(), spanThreads[i], (spanStarts[i] - origin) / 1000., spanDurations[i] / 1000.));
+    }
+    out.write("\n]}\n");
+    out.flush();
+    return nbSpans;
+  }
+
+  private static String escape(String text) {
+    StringBuilder result = new StringBuilder();
+    for (char c : text.toCharArray()) {
+      if (c == '"' || c == '\\')
+        result.append('\\').append(c);
+      else if (c < ' ')
+        result.append(String.format("\\u%04x", (int) c));
+      else
+        result.append(c);
+    }
+    return result.toString();
+  }
+}
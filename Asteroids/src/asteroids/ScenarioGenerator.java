@@ -0,0 +1,283 @@
+package asteroids;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Builds reproducible asteroid fields of any size through an {@link IFacade}.
+ *
+ * The world is divided in square cells that fit the largest entity, and every
+ * generated entity gets a cell of its own, so generated entities never
+ * overlap each other or the entities already in the world. Within its cell an
+ * entity is placed at a random offset.
+ *
+ * Entities are generated in chunks of {@link #CHUNK_SIZE}. Each chunk draws
+ * from its own random generator, seeded from the seed of the generator and the
+ * index of the chunk, so chunks are generated in parallel while the result
+ * only depends on the seed and the parameters. Only the assignment of cells and
+ * the insertion in the world are sequential.
+ *
+ * The parameters are
+ * <ul>
+ * <li>the <i>density</i>: the fraction of the cells that is occupied, used to
+ * size a world by {@link #createWorld(int)};</li>
+ * <li>the <i>radii</i>: asteroid radii lie between a minimum and a maximum and
+ * follow a power law with a given exponent, or are uniform if the exponent is
+ * 0;</li>
+ * <li>the <i>speed</i>: both velocity components are normal with mean 0 and a
+ * given standard deviation, and the speed is capped;</li>
+ * <li>the <i>clustering</i>: asteroids are spread uniformly, or normally around
+ * a number of cluster centres with a spread relative to the world size;</li>
+ * <li>the number and radius of the <i>ships</i>.</li>
+ * </ul>
+ */
+public class ScenarioGenerator<World, Ship, Asteroid, Bullet> {
+
+  public static final int CHUNK_SIZE = 4096;
+
+  private final IFacade<World, Ship, Asteroid, Bullet> facade;
+  private final long seed;
+
+  private double density = 0.2;
+  private double minRadius = 10, maxRadius = 40, radiusExponent = 0;
+  private double speedDeviation = 30, maxSpeed = 200;
+  private int nbClusters = 0;
+  private double clusterSpread = 0.1;
+  private int nbShips = 0;
+  private double shipRadius = 20, shipMass = 5E15;
+
+  public ScenarioGenerator(IFacade<World, Ship, Asteroid, Bullet> facade, long seed) {
+    if (facade == null)
+      throw new IllegalArgumentException("facade null");
+    this.facade = facade;
+    this.seed = seed;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public double getDensity() {
+    return density;
+  }
+
+  /**
+   * Set the fraction of cells occupied in worlds created by
+   * {@link #createWorld(int)}.
+   */
+  public void setDensity(double density) {
+    if (!(density > 0 && density <= 1))
+      throw new IllegalArgumentException("density must be in ]0, 1]");
+    this.density = density;
+  }
+
+  /**
+   * Let asteroid radii lie between <code>minRadius</code> and
+   * <code>maxRadius</code>, with a density proportional to
+   * <code>r^-(exponent + 1)</code>, or uniform if <code>exponent</code> is 0.
+   */
+  public void setRadii(double minRadius, double maxRadius, double exponent) {
+    if (!(minRadius > 0 && maxRadius >= minRadius && exponent >= 0))
+      throw new IllegalArgumentException("invalid radii");
+    this.minRadius = minRadius;
+    this.maxRadius = maxRadius;
+    this.radiusExponent = exponent;
+  }
+
+  /**
+   * Let the velocity components be normal with the given standard deviation,
+   * and cap the speed at <code>maxSpeed</code>.
+   */
+  public void setSpeed(double deviation, double maxSpeed) {
+    if (!(deviation >= 0 && maxSpeed >= 0))
+      throw new IllegalArgumentException("invalid speed");
+    this.speedDeviation = deviation;
+    this.maxSpeed = maxSpeed;
+  }
+
+  /**
+   * Spread asteroids normally around <code>nbClusters</code> centres, with a
+   * standard deviation of <code>spread</code> times the smallest dimension of
+   * the world. With no clusters, asteroids are spread uniformly.
+   */
+  public void setClusters(int nbClusters, double spread) {
+    if (nbClusters < 0 || !(spread > 0))
+      throw new IllegalArgumentException("invalid clustering");
+    this.nbClusters = nbClusters;
+    this.clusterSpread = spread;
+  }
+
+  /**
+   * Let {@link #populate} also create <code>nbShips</code> ships of the given
+   * radius and mass, standing still in random directions.
+   */
+  public void setShips(int nbShips, double radius, double mass) {
+    if (nbShips < 0 || !(radius > 0) || !(mass > 0))
+      throw new IllegalArgumentException("invalid ships");
+    this.nbShips = nbShips;
+    this.shipRadius = radius;
+    this.shipMass = mass;
+  }
+
+  /**
+   * Return the side of the square cells entities are placed in.
+   */
+  public double getCellSize() {
+    return 2 * Math.max(maxRadius, nbShips > 0 ? shipRadius : 0) * 1.25;
+  }
+
+  /**
+   * Create an empty square world that has room for <code>nbEntities</code>
+   * entities besides the ships at the density of this generator.
+   */
+  public World createWorld(int nbEntities) {
+    long nbCells = (long) Math.ceil((nbEntities + nbShips) / density);
+    double side = Math.ceil(Math.sqrt(nbCells)) * getCellSize();
+    return facade.createWorld(side, side);
+  }
+
+  /**
+   * Create the ships of this generator and <code>nbAsteroids</code> asteroids
+   * and add them to <code>world</code>, and return the new ships.
+   *
+   * @throws IllegalArgumentException
+   *           The world does not have enough free cells.
+   */
+  public List<Ship> populate(World world, int nbAsteroids) {
+    if (nbAsteroids < 0)
+      throw new IllegalArgumentException("negative number of asteroids");
+    double width = facade.getWorldWidth(world);
+    double height = facade.getWorldHeight(world);
+    double cellSize = getCellSize();
+    int columns = (int) (width / cellSize);
+    int rows = (int) (height / cellSize);
+    long nbCells = (long) columns * rows;
+    if (nbCells > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("world too large");
+    BitSet occupied = new BitSet((int) nbCells);
+    for (Ship ship : facade.getShips(world))
+      occupy(occupied, columns, rows, cellSize, facade.getShipX(ship), facade.getShipY(ship), facade.getShipRadius(ship));
+    for (Asteroid asteroid : facade.getAsteroids(world))
+      occupy(occupied, columns, rows, cellSize, facade.getAsteroidX(asteroid), facade.getAsteroidY(asteroid), facade.getAsteroidRadius(asteroid));
+    final int nbEntities = nbShips + nbAsteroids;
+    if (nbCells - occupied.cardinality() < nbEntities)
+      throw new IllegalArgumentException("not enough room for " + nbEntities + " entities");
+
+    Random random = new Random(seed);
+    double[] centreX = new double[nbClusters], centreY = new double[nbClusters];
+    for (int c = 0; c < nbClusters; c++) {
+      centreX[c] = random.nextDouble() * width;
+      centreY[c] = random.nextDouble() * height;
+    }
+
+    final double[] x = new double[nbEntities], y = new double[nbEntities];
+    final double[] jitterX = new double[nbEntities], jitterY = new double[nbEntities];
+    final double[] vx = new double[nbEntities], vy = new double[nbEntities];
+    final double[] radius = new double[nbEntities], direction = new double[nbEntities];
+    final long[] seeds = new long[nbEntities];
+    int nbChunks = (nbEntities + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    IntStream.range(0, nbChunks).parallel().forEach(new IntConsumer() {
+      @Override
+      public void accept(int chunk) {
+        Random chunkRandom = new Random(seed * 0x9E3779B97F4A7C15L + chunk);
+        for (int i = chunk * CHUNK_SIZE; i < Math.min(nbEntities, (chunk + 1) * CHUNK_SIZE); i++) {
+          jitterX[i] = 2 * chunkRandom.nextDouble() - 1;
+          jitterY[i] = 2 * chunkRandom.nextDouble() - 1;
+          seeds[i] = chunkRandom.nextLong();
+          if (i < nbShips) {
+            x[i] = chunkRandom.nextDouble() * width;
+            y[i] = chunkRandom.nextDouble() * height;
+            radius[i] = shipRadius;
+            direction[i] = chunkRandom.nextDouble() * 2 * Math.PI;
+            continue;
+          }
+          if (nbClusters == 0) {
+            x[i] = chunkRandom.nextDouble() * width;
+            y[i] = chunkRandom.nextDouble() * height;
+          } else {
+            int cluster = chunkRandom.nextInt(nbClusters);
+            double spread = clusterSpread * Math.min(width, height);
+            x[i] = centreX[cluster] + chunkRandom.nextGaussian() * spread;
+            y[i] = centreY[cluster] + chunkRandom.nextGaussian() * spread;
+          }
+          radius[i] = nextRadius(chunkRandom);
+          vx[i] = chunkRandom.nextGaussian() * speedDeviation;
+          vy[i] = chunkRandom.nextGaussian() * speedDeviation;
+          double speed = Math.hypot(vx[i], vy[i]);
+          if (speed > maxSpeed) {
+            vx[i] *= maxSpeed / speed;
+            vy[i] *= maxSpeed / speed;
+          }
+        }
+      }
+    });
+
+    // Assign cells in order, probing for the next free cell, then place each
+    // entity at its offset within the cell.
+    for (int i = 0; i < nbEntities; i++) {
+      int column = clamp((int) Math.floor(x[i] / cellSize), columns);
+      int row = clamp((int) Math.floor(y[i] / cellSize), rows);
+      int cell = occupied.nextClearBit(row * columns + column);
+      if (cell >= nbCells)
+        cell = occupied.nextClearBit(0);
+      occupied.set(cell);
+      double slack = cellSize / 2 - radius[i];
+      x[i] = (cell % columns + 0.5) * cellSize + jitterX[i] * slack;
+      y[i] = (cell / columns + 0.5) * cellSize + jitterY[i] * slack;
+    }
+
+    final Object[] entities = new Object[nbEntities];
+    IntStream.range(0, nbChunks).parallel().forEach(new IntConsumer() {
+      @Override
+      public void accept(int chunk) {
+        for (int i = chunk * CHUNK_SIZE; i < Math.min(nbEntities, (chunk + 1) * CHUNK_SIZE); i++) {
+          if (i < nbShips)
+            entities[i] = facade.createShip(x[i], y[i], 0, 0, radius[i], direction[i], shipMass);
+          else
+            entities[i] = facade.createAsteroid(x[i], y[i], vx[i], vy[i], radius[i], new StateRandom(seeds[i]));
+        }
+      }
+    });
+    List<Ship> ships = new ArrayList<Ship>(nbShips);
+    for (int i = 0; i < nbEntities; i++) {
+      if (i < nbShips) {
+        @SuppressWarnings("unchecked")
+        Ship ship = (Ship) entities[i];
+        facade.addShip(world, ship);
+        ships.add(ship);
+      } else {
+        @SuppressWarnings("unchecked")
+        Asteroid asteroid = (Asteroid) entities[i];
+        facade.addAsteroid(world, asteroid);
+      }
+    }
+    return ships;
+  }
+
+  private double nextRadius(Random random) {
+    double u = random.nextDouble();
+    if (radiusExponent == 0 || minRadius == maxRadius)
+      return minRadius + u * (maxRadius - minRadius);
+    // Inverse of the cumulative distribution of a power law truncated to
+    // [minRadius, maxRadius].
+    double tail = Math.pow(maxRadius / minRadius, -radiusExponent);
+    return Math.min(maxRadius, minRadius * Math.pow(1 - u * (1 - tail), -1 / radiusExponent));
+  }
+
+  private static int clamp(int index, int size) {
+    return Math.max(0, Math.min(size - 1, index));
+  }
+
+  private static void occupy(BitSet occupied, int columns, int rows, double cellSize, double x, double y, double radius) {
+    int minColumn = clamp((int) Math.floor((x - radius) / cellSize), columns);
+    int maxColumn = clamp((int) Math.floor((x + radius) / cellSize), columns);
+    int minRow = clamp((int) Math.floor((y - radius) / cellSize), rows);
+    int maxRow = clamp((int) Math.floor((y + radius) / cellSize), rows);
+    for (int row = minRow; row <= maxRow; row++)
+      occupied.set(row * columns + minColumn, row * columns + maxColumn + 1);
+  }
+}
@@ -0,0 +1,305 @@
+package asteroids;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer of sound requests.
+ *
+ * Requests are written into preallocated slots, so enqueuing neither locks nor
+ * allocates. A producer claims a position with a single increment of the tail
+ * and never retries or waits for the consumer. When the slot of that position
+ * still holds a request from the previous lap, the ring is full: the request is
+ * dropped and counted, and the position is recorded as a tombstone in the slot,
+ * which the consumer skips when it gets there. A tombstone never hides an
+ * accepted request: a producer that reaches a slot only after the consumer
+ * skipped its position drops its request as well.
+ *
+ * A request that is identical to the last request accepted for the same sound
+ * (same kind), and that comes less than the coalescing window after it, is
+ * discarded, so that e.g. ten explosions in one frame result in a single play.
+ * A request of another kind in between, such as a stop between two loops, ends
+ * the coalescing. Only accepted requests count: a request dropped because the
+ * ring is full does not suppress the ones after it. Requests for the same sound
+ * offered concurrently by several producers may both be accepted.
+ */
+public class SoundRequestQueue {
+
+  public static final int PLAY = 0;
+  public static final int LOOP = 1;
+  public static final int STOP = 2;
+  private static final int NB_KINDS = 3;
+
+  public static final int DEFAULT_CAPACITY = 256;
+  public static final long DEFAULT_COALESCE_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(1000 / 30);
+
+  /**
+   * Receives the requests taken from the queue on the consumer thread.
+   */
+  public interface Handler {
+    public void handle(int kind, String sound);
+  }
+
+  private final int mask;
+  /**
+   * The state of each slot with respect to the position p it serves next:
+   * 2p while free, 2p + 1 while a producer writes it, and 2p + 2 once the
+   * request is published.
+   */
+  private final AtomicLongArray sequences;
+  /**
+   * The highest position dropped in each slot, or NONE.
+   */
+  private final AtomicLongArray tombstones;
+  private final int[] kinds;
+  private final String[] sounds;
+  private final long[] enqueueTimes;
+  private final AtomicLong tail = new AtomicLong();
+  private long head;
+
+  private final Map<String, Integer> soundIndices = new HashMap<String, Integer>();
+  /**
+   * The last request accepted for each known sound, as the time it was offered
+   * relative to <code>origin</code>, shifted left by two bits, and its kind in
+   * the two low bits; or NONE.
+   */
+  private final AtomicLongArray lastAccepted;
+  private final long origin = System.nanoTime();
+  private static final long NONE = -1;
+  private final long coalesceWindowNanos;
+
+  private volatile Thread consumer;
+  private volatile boolean consumerWaiting;
+
+  private final AtomicLong enqueued = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private volatile long dispatched;
+  private volatile long totalLatencyNanos;
+  private volatile long maxLatencyNanos;
+
+  /**
+   * Create a queue for the given sounds. Only requests for these sounds are
+   * coalesced; requests for other names are passed on unchanged.
+   */
+  public SoundRequestQueue(Iterable<String> knownSounds, int capacity, long coalesceWindowNanos) {
+    if (capacity < 2 || Integer.bitCount(capacity) != 1)
+      throw new IllegalArgumentException("capacity must be a power of two");
+    if (coalesceWindowNanos < 0)
+      throw new IllegalArgumentException("negative coalescing window");
+    this.mask = capacity - 1;
+    this.sequences = new AtomicLongArray(capacity);
+    this.tombstones = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, 2L * i);
+      tombstones.set(i, NONE);
+    }
+    this.kinds = new int[capacity];
+    this.sounds = new String[capacity];
+    this.enqueueTimes = new long[capacity];
+    for (String sound : knownSounds) {
+      if (!soundIndices.containsKey(sound))
+        soundIndices.put(sound, soundIndices.size());
+    }
+    this.lastAccepted = new AtomicLongArray(soundIndices.size());
+    for (int i = 0; i < lastAccepted.length(); i++) {
+      lastAccepted.set(i, NONE);
+    }
+    this.coalesceWindowNanos = coalesceWindowNanos;
+  }
+
+  public SoundRequestQueue(Iterable<String> knownSounds) {
+    this(knownSounds, DEFAULT_CAPACITY, DEFAULT_COALESCE_WINDOW_NANOS);
+  }
+
+  public int getCapacity() {
+    return mask + 1;
+  }
+
+  public long getCoalesceWindowNanos() {
+    return coalesceWindowNanos;
+  }
+
+  /**
+   * Enqueue a request. Returns false if the request was coalesced with an
+   * earlier identical request or dropped because the ring is full.
+   */
+  public boolean offer(int kind, String sound) {
+    if (kind < 0 || kind >= NB_KINDS)
+      throw new IllegalArgumentException("unknown request kind " + kind);
+    long now = System.nanoTime();
+    Integer index = soundIndices.get(sound);
+    if (index != null && isCoalesced(index, kind, now)) {
+      coalesced.incrementAndGet();
+      return false;
+    }
+    long position = tail.getAndIncrement();
+    int slot = (int) position & mask;
+    if (!sequences.compareAndSet(slot, 2 * position, 2 * position + 1) && !drop(slot, position))
+      return false;
+    kinds[slot] = kind;
+    sounds[slot] = sound;
+    enqueueTimes[slot] = now;
+    sequences.set(slot, 2 * position + 2);
+    enqueued.incrementAndGet();
+    if (index != null && coalesceWindowNanos != 0)
+      recordAccepted(index, kind, now);
+    if (consumerWaiting)
+      LockSupport.unpark(consumer);
+    return true;
+  }
+
+  /**
+   * Record the given position, whose slot was not free when it was claimed, as
+   * a tombstone. Returns true if the slot has become free for the position in
+   * the meantime and the producer claimed it after all.
+   */
+  private boolean drop(int slot, long position) {
+    long last = tombstones.get(slot);
+    while (last < position && !tombstones.compareAndSet(slot, last, position)) {
+      last = tombstones.get(slot);
+    }
+    // The consumer may have freed the slot before seeing the tombstone.
+    if (sequences.compareAndSet(slot, 2 * position, 2 * position + 1))
+      return true;
+    dropped.incrementAndGet();
+    if (consumerWaiting)
+      LockSupport.unpark(consumer);
+    return false;
+  }
+
+  private boolean isCoalesced(int index, int kind, long now) {
+    if (coalesceWindowNanos == 0)
+      return false;
+    long last = lastAccepted.get(index);
+    return last != NONE && (int) (last & 3) == kind && now - (origin + (last >>> 2)) < coalesceWindowNanos;
+  }
+
+  /**
+   * Record the given request as the last one accepted for its sound, unless a
+   * producer already recorded a request offered later.
+   */
+  private void recordAccepted(int index, int kind, long now) {
+    long accepted = ((now - origin) << 2) | kind;
+    while (true) {
+      long last = lastAccepted.get(index);
+      if (last != NONE && (origin + (last >>> 2)) - now > 0)
+        return;
+      if (lastAccepted.compareAndSet(index, last, accepted))
+        return;
+    }
+  }
+
+  /**
+   * Hand the oldest request to <code>handler</code>, blocking while the queue
+   * is empty. Must only be called from one thread.
+   */
+  public void take(Handler handler) throws InterruptedException {
+    if (!skipToRequest()) {
+      consumer = Thread.currentThread();
+      consumerWaiting = true;
+      try {
+        while (!skipToRequest()) {
+          LockSupport.park(this);
+          if (Thread.interrupted())
+            throw new InterruptedException();
+        }
+      } finally {
+        consumerWaiting = false;
+      }
+    }
+    dispatch((int) head & mask, handler);
+  }
+
+  /**
+   * Hand the oldest request to <code>handler</code> if there is one. Returns
+   * false without blocking if the queue is empty. Must only be called from
+   * one thread.
+   */
+  public boolean poll(Handler handler) {
+    if (!skipToRequest())
+      return false;
+    dispatch((int) head & mask, handler);
+    return true;
+  }
+
+  /**
+   * Advance the head past tombstones. Returns true if the head then holds a
+   * published request.
+   */
+  private boolean skipToRequest() {
+    while (true) {
+      int slot = (int) head & mask;
+      long sequence = sequences.get(slot);
+      if (sequence == 2 * head + 2)
+        return true;
+      if (sequence != 2 * head || tombstones.get(slot) < head
+          || !sequences.compareAndSet(slot, 2 * head, 2 * (head + mask + 1)))
+        return false;
+      head++;
+    }
+  }
+
+  private void dispatch(int slot, Handler handler) {
+    int kind = kinds[slot];
+    String sound = sounds[slot];
+    long latency = System.nanoTime() - enqueueTimes[slot];
+    sounds[slot] = null;
+    sequences.set(slot, 2 * (head + mask + 1));
+    head++;
+    dispatched++;
+    totalLatencyNanos += latency;
+    if (latency > maxLatencyNanos)
+      maxLatencyNanos = latency;
+    handler.handle(kind, sound);
+  }
+
+  /**
+   * Return the number of requests accepted into the ring.
+   */
+  public long getEnqueuedCount() {
+    return enqueued.get();
+  }
+
+  /**
+   * Return the number of requests rejected because the ring was full.
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Return the number of requests discarded as duplicates within the
+   * coalescing window.
+   */
+  public long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  /**
+   * Return the number of requests handed to the consumer.
+   */
+  public long getDispatchedCount() {
+    return dispatched;
+  }
+
+  /**
+   * Return the mean time between enqueuing a request and handing it to the
+   * consumer, in nanoseconds.
+   */
+  public double getAverageLatencyNanos() {
+    long count = dispatched;
+    return count == 0 ? 0 : (double) totalLatencyNanos / count;
+  }
+
+  /**
+   * Return the longest time a request spent in the queue, in nanoseconds.
+   */
+  public long getMaxLatencyNanos() {
+    return maxLatencyNanos;
+  }
+}
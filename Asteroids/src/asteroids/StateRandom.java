@@ -0,0 +1,56 @@
+package asteroids;
+
+import java.util.Random;
+
+/**
+ * A random generator whose state can be read and restored, so that a world
+ * can be saved and replayed exactly.
+ *
+ * It produces the same numbers as a {@link Random} created with the same seed,
+ * since it uses the same linear congruential generator, but keeps the 48-bit
+ * state in a plain field. It is not safe for use by several threads at once,
+ * which the model never does.
+ */
+public class StateRandom extends Random {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final long MULTIPLIER = 0x5DEECE66DL;
+  private static final long ADDEND = 0xBL;
+  private static final long MASK = (1L << 48) - 1;
+
+  private long state;
+
+  public StateRandom() {
+    // Random() seeds itself from a unique seed; take its first number instead.
+    this(new Random().nextLong());
+  }
+
+  public StateRandom(long seed) {
+    super(seed);
+  }
+
+  @Override
+  public synchronized void setSeed(long seed) {
+    super.setSeed(seed);
+    state = (seed ^ MULTIPLIER) & MASK;
+  }
+
+  /**
+   * Return the state of this generator, from which {@link #setState} continues
+   * the same sequence of numbers.
+   */
+  public long getState() {
+    return state;
+  }
+
+  public void setState(long state) {
+    this.state = state & MASK;
+  }
+
+  @Override
+  protected int next(int bits) {
+    state = (state * MULTIPLIER + ADDEND) & MASK;
+    return (int) (state >>> (48 - bits));
+  }
+}
@@ -0,0 +1,267 @@
+package asteroids;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Timers and counters for the phases of a game tick.
+ *
+ * Timing a phase looks like
+ *
+ * <pre>
+ * long start = statistics.begin();
+ * ...
+ * statistics.end(Phase.RENDER, start);
+ * </pre>
+ *
+ * While the statistics are disabled, <code>begin</code> returns 0 without
+ * reading the clock, and <code>end</code> and <code>add</code> return
+ * immediately. The statistics can be switched on and off at runtime, e.g. from
+ * JConsole, or at startup with <code>-Dasteroids.stats=true</code>.
+ *
+ * Phases may nest: {@link Phase#EVOLVE} contains the model phases and
+ * {@link Phase#LISTENER_CALLBACKS} contains the sound requests issued by the
+ * listener.
+ *
+ * Independently of the statistics, every timed phase can be recorded in a
+ * {@link PhaseTracer} and dumped as a Chrome trace. Tracing is switched on
+ * with <code>-Dasteroids.trace=true</code> or through the MXBean.
+ */
+public class TickStatistics implements TickStatisticsMXBean {
+
+  public enum Phase {
+    INPUT, EVOLVE, INTEGRATION, BROAD_PHASE, NARROW_PHASE, COLLISION_RESPONSE, LISTENER_CALLBACKS, EXPLOSIONS, SOUND_ENQUEUE, SOUND_DISPATCH, REPAINT, RENDER
+  }
+
+  public enum Counter {
+    TICKS, ENTITIES, CANDIDATE_PAIRS, COLLISIONS, BOUNDARY_COLLISIONS, FRAGMENTS, SLEEPING, SUBSTEPS, FRAMES
+  }
+
+  public static final String OBJECT_NAME = "asteroids:type=TickStatistics";
+
+  private static final TickStatistics instance = new TickStatistics(Boolean.getBoolean("asteroids.stats"), Boolean.getBoolean("asteroids.trace"));
+
+  /**
+   * Return the statistics shared by the model and the user interface.
+   */
+  public static TickStatistics getInstance() {
+    return instance;
+  }
+
+  private volatile boolean enabled;
+  private volatile boolean tracing;
+  private volatile PhaseTracer tracer;
+
+  private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+  private final LongAdder[] phaseSamples = new LongAdder[Phase.values().length];
+  private final AtomicLongArray phaseMaxNanos = new AtomicLongArray(Phase.values().length);
+  private final AtomicLongArray phaseLastNanos = new AtomicLongArray(Phase.values().length);
+  private final LongAdder[] counterTotals = new LongAdder[Counter.values().length];
+  private final AtomicLongArray counterLast = new AtomicLongArray(Counter.values().length);
+
+  public TickStatistics(boolean enabled) {
+    this(enabled, false);
+  }
+
+  public TickStatistics(boolean enabled, boolean tracing) {
+    this.enabled = enabled;
+    setTracing(tracing);
+    for (int i = 0; i < phaseNanos.length; i++) {
+      phaseNanos[i] = new LongAdder();
+      phaseSamples[i] = new LongAdder();
+    }
+    for (int i = 0; i < counterTotals.length; i++) {
+      counterTotals[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Register these statistics with the platform MBean server.
+   */
+  public void register() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    } catch (JMException e) {
+      System.err.println("tick statistics not registered: " + e.getMessage());
+    }
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @Override
+  public boolean isTracing() {
+    return tracing;
+  }
+
+  /**
+   * Start or stop tracing. The trace buffer is allocated when tracing is
+   * started for the first time and kept afterwards.
+   */
+  @Override
+  public synchronized void setTracing(boolean tracing) {
+    if (tracing && tracer == null)
+      tracer = new PhaseTracer();
+    this.tracing = tracing;
+  }
+
+  /**
+   * Return the tracer, or null if tracing was never started.
+   */
+  public PhaseTracer getTracer() {
+    return tracer;
+  }
+
+  /**
+   * Write the last <code>windowNanos</code> of the trace to
+   * <code>out</code> and return the number of spans written.
+   */
+  public int writeTrace(Writer out, long windowNanos) throws IOException {
+    PhaseTracer tracer = this.tracer;
+    if (tracer == null)
+      tracer = new PhaseTracer(1);
+    return tracer.writeChromeTrace(out, windowNanos);
+  }
+
+  @Override
+  public int dumpTrace(String path, double seconds) throws IOException {
+    Writer out = new FileWriter(path);
+    try {
+      return writeTrace(out, (long) (seconds * 1e9));
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Return the start time of a phase, or 0 if both the statistics and
+   * tracing are disabled.
+   */
+  public long begin() {
+    return enabled || tracing ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Record the end of a phase that started at <code>start</code>, as returned
+   * by {@link #begin()}.
+   */
+  public void end(Phase phase, long start) {
+    if (start == 0)
+      return;
+    long now = System.nanoTime();
+    if (tracing)
+      tracer.record(phase, start, now);
+    if (!enabled)
+      return;
+    long elapsed = now - start;
+    int index = phase.ordinal();
+    phaseNanos[index].add(elapsed);
+    phaseSamples[index].increment();
+    phaseLastNanos.set(index, elapsed);
+    long max = phaseMaxNanos.get(index);
+    while (elapsed > max && !phaseMaxNanos.compareAndSet(index, max, elapsed)) {
+      max = phaseMaxNanos.get(index);
+    }
+  }
+
+  /**
+   * Add <code>amount</code> to <code>counter</code>.
+   */
+  public void add(Counter counter, long amount) {
+    if (!enabled)
+      return;
+    counterTotals[counter.ordinal()].add(amount);
+    counterLast.set(counter.ordinal(), amount);
+  }
+
+  public long getLastNanos(Phase phase) {
+    return phaseLastNanos.get(phase.ordinal());
+  }
+
+  public long getMaxNanos(Phase phase) {
+    return phaseMaxNanos.get(phase.ordinal());
+  }
+
+  public double getMeanNanos(Phase phase) {
+    long samples = phaseSamples[phase.ordinal()].sum();
+    return samples == 0 ? 0 : (double) phaseNanos[phase.ordinal()].sum() / samples;
+  }
+
+  public long getTotal(Counter counter) {
+    return counterTotals[counter.ordinal()].sum();
+  }
+
+  public long getLast(Counter counter) {
+    return counterLast.get(counter.ordinal());
+  }
+
+  @Override
+  public Map<String, Double> getMeanPhaseMicros() {
+    Map<String, Double> result = new LinkedHashMap<String, Double>();
+    for (Phase phase : Phase.values())
+      result.put(phase.name(), getMeanNanos(phase) / 1000);
+    return result;
+  }
+
+  @Override
+  public Map<String, Double> getMaxPhaseMicros() {
+    Map<String, Double> result = new LinkedHashMap<String, Double>();
+    for (Phase phase : Phase.values())
+      result.put(phase.name(), getMaxNanos(phase) / 1000.);
+    return result;
+  }
+
+  @Override
+  public Map<String, Double> getLastPhaseMicros() {
+    Map<String, Double> result = new LinkedHashMap<String, Double>();
+    for (Phase phase : Phase.values())
+      result.put(phase.name(), getLastNanos(phase) / 1000.);
+    return result;
+  }
+
+  @Override
+  public Map<String, Long> getCounterTotals() {
+    Map<String, Long> result = new LinkedHashMap<String, Long>();
+    for (Counter counter : Counter.values())
+      result.put(counter.name(), getTotal(counter));
+    return result;
+  }
+
+  @Override
+  public Map<String, Long> getLastCounters() {
+    Map<String, Long> result = new LinkedHashMap<String, Long>();
+    for (Counter counter : Counter.values())
+      result.put(counter.name(), getLast(counter));
+    return result;
+  }
+
+  @Override
+  public void reset() {
+    for (int i = 0; i < phaseNanos.length; i++) {
+      phaseNanos[i].reset();
+      phaseSamples[i].reset();
+      phaseMaxNanos.set(i, 0);
+      phaseLastNanos.set(i, 0);
+    }
+    for (int i = 0; i < counterTotals.length; i++) {
+      counterTotals[i].reset();
+      counterLast.set(i, 0);
+    }
+  }
+}
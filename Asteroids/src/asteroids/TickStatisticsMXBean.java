@@ -0,0 +1,52 @@
+package asteroids;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Management interface of {@link TickStatistics}, as shown in JConsole under
+ * <code>asteroids:type=TickStatistics</code>.
+ */
+public interface TickStatisticsMXBean {
+  public boolean isEnabled();
+
+  public void setEnabled(boolean enabled);
+
+  /**
+   * Return the mean duration of each phase, in microseconds.
+   */
+  public Map<String, Double> getMeanPhaseMicros();
+
+  /**
+   * Return the longest duration of each phase, in microseconds.
+   */
+  public Map<String, Double> getMaxPhaseMicros();
+
+  /**
+   * Return the most recent duration of each phase, in microseconds.
+   */
+  public Map<String, Double> getLastPhaseMicros();
+
+  /**
+   * Return the sum of each counter since the last reset.
+   */
+  public Map<String, Long> getCounterTotals();
+
+  /**
+   * Return the value most recently added to each counter.
+   */
+  public Map<String, Long> getLastCounters();
+
+  public void reset();
+
+  public boolean isTracing();
+
+  public void setTracing(boolean tracing);
+
+  /**
+   * Write the spans of the last <code>seconds</code> as Chrome trace-event
+   * JSON to the file at <code>path</code> and return the number of spans
+   * written.
+   */
+  public int dumpTrace(String path, double seconds) throws IOException;
+}
@@ -1,12 +1,26 @@
 package asteroids;
 
+/**
+ * Comparisons of doubles up to rounding errors.
+ *
+ * All comparisons work on primitives only and never allocate, so they can be
+ * used on every velocity change and in the loops of the simulation.
+ */
 public class Util {
   public static final double EPSILON = 0.0001;
 
   public static boolean fuzzyEquals(double x, double y) {
+    return fuzzyEquals(x, y, EPSILON);
+  }
+
+  /**
+   * Check whether x and y differ by at most epsilon. Equal infinities are
+   * equal; NaN is equal to nothing.
+   */
+  public static boolean fuzzyEquals(double x, double y, double epsilon) {
     if (Double.isNaN(x) || Double.isNaN(y))
       return false;
-    return Math.abs(x - y) <= EPSILON || Double.valueOf(x).equals(Double.valueOf(y));
+    return Math.abs(x - y) <= epsilon || x == y;
   }
 
   public static boolean fuzzyLessThanOrEqualTo(double x, double y) {
@@ -16,7 +30,63 @@ public class Util {
       return Double.compare(x, y) < 0;
     }
   }
-  
+
+  /**
+   * Check whether x and y have the same bit pattern, which is how
+   * Double.equals compares: NaN equals NaN, and 0.0 differs from -0.0.
+   */
+  public static boolean bitEquals(double x, double y) {
+    return Double.doubleToLongBits(x) == Double.doubleToLongBits(y);
+  }
+
+  /**
+   * Return the number of representable doubles between x and y, counting one
+   * of them. The distance between 0.0 and -0.0 is 0. Returns Long.MAX_VALUE
+   * if x or y is NaN or if the distance does not fit in a long.
+   */
+  public static long ulpDistance(double x, double y) {
+    if (Double.isNaN(x) || Double.isNaN(y))
+      return Long.MAX_VALUE;
+    long a = toOrderedBits(x);
+    long b = toOrderedBits(y);
+    long distance = a - b;
+    // The subtraction overflows only if a and b have opposite signs.
+    if (((a ^ b) & (a ^ distance)) < 0)
+      return Long.MAX_VALUE;
+    return Math.abs(distance);
+  }
+
+  /**
+   * Map the bits of a double to a long that increases with the double, so
+   * that adjacent doubles map to adjacent longs and both zeros map to 0.
+   */
+  private static long toOrderedBits(double x) {
+    long bits = Double.doubleToRawLongBits(x);
+    return bits < 0 ? Long.MIN_VALUE - bits : bits;
+  }
+
+  /**
+   * Check whether x and y are at most maxUlps representable doubles apart.
+   * Unlike an absolute epsilon, this tolerance scales with the magnitude of
+   * the values.
+   */
+  public static boolean ulpEquals(double x, double y, long maxUlps) {
+    return ulpDistance(x, y) <= maxUlps;
+  }
+
+  /**
+   * Check whether the norm of the vector (x, y) is fuzzy smaller than or equal
+   * to the given bound, that is
+   * <code>fuzzyLessThanOrEqualTo(Math.sqrt(x * x + y * y), bound)</code>, by
+   * comparing squared norms without taking a square root.
+   */
+  public static boolean fuzzyNormLessThanOrEqualTo(double x, double y, double bound) {
+    double limit = bound + EPSILON;
+    if (!(limit >= 0))
+      return false;
+    return x * x + y * y <= limit * limit;
+  }
+
   public static double absoluteError(double expected, double actual) {
     return Math.abs(expected - actual);
   }
@@ -24,4 +94,4 @@ public class Util {
   public static double relativeError(double expected, double actual) {
     return absoluteError(expected, actual) / Math.abs(expected);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,101 @@
+package asteroids;
+
+import java.util.Random;
+
+/**
+ * Compares the comparisons of {@link Util} with the ones they replaced: the
+ * fuzzy equality that fell back to boxed doubles, and the speed limit check on
+ * the square root of the squared norm.
+ *
+ * <pre>
+ * java asteroids.UtilBenchmark [values [rounds]]
+ * </pre>
+ *
+ * Every comparison runs over the same random values for a number of rounds,
+ * and the best round is reported in nanoseconds and bytes per comparison. Run
+ * with -XX:-DoEscapeAnalysis to see what the boxing costs when the compiler
+ * cannot remove it.
+ */
+public class UtilBenchmark {
+
+  private interface Comparison {
+    public int apply(double[] xs, double[] ys);
+  }
+
+  public static void main(String[] args) {
+    int nbValues = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 16;
+    int nbRounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    Random random = new Random(0);
+    double[] xs = new double[nbValues];
+    double[] ys = new double[nbValues];
+    for (int i = 0; i < nbValues; i++) {
+      xs[i] = 600 * random.nextDouble() - 300;
+      ys[i] = 600 * random.nextDouble() - 300;
+    }
+    report("fuzzyEquals, boxed", nbValues, nbRounds, xs, ys, new Comparison() {
+      public int apply(double[] xs, double[] ys) {
+        int count = 0;
+        for (int i = 0; i < xs.length; i++)
+          if (!Double.isNaN(xs[i]) && !Double.isNaN(ys[i])
+              && (Math.abs(xs[i] - ys[i]) <= Util.EPSILON || Double.valueOf(xs[i]).equals(Double.valueOf(ys[i]))))
+            count++;
+        return count;
+      }
+    });
+    report("fuzzyEquals", nbValues, nbRounds, xs, ys, new Comparison() {
+      public int apply(double[] xs, double[] ys) {
+        int count = 0;
+        for (int i = 0; i < xs.length; i++)
+          if (Util.fuzzyEquals(xs[i], ys[i]))
+            count++;
+        return count;
+      }
+    });
+    report("ulpEquals", nbValues, nbRounds, xs, ys, new Comparison() {
+      public int apply(double[] xs, double[] ys) {
+        int count = 0;
+        for (int i = 0; i < xs.length; i++)
+          if (Util.ulpEquals(xs[i], ys[i], 4))
+            count++;
+        return count;
+      }
+    });
+    report("speed limit, sqrt", nbValues, nbRounds, xs, ys, new Comparison() {
+      public int apply(double[] xs, double[] ys) {
+        int count = 0;
+        for (int i = 0; i < xs.length; i++)
+          if (Util.fuzzyLessThanOrEqualTo(Math.sqrt(xs[i] * xs[i] + ys[i] * ys[i]), 300))
+            count++;
+        return count;
+      }
+    });
+    report("speed limit, squared", nbValues, nbRounds, xs, ys, new Comparison() {
+      public int apply(double[] xs, double[] ys) {
+        int count = 0;
+        for (int i = 0; i < xs.length; i++)
+          if (Util.fuzzyNormLessThanOrEqualTo(xs[i], ys[i], 300))
+            count++;
+        return count;
+      }
+    });
+  }
+
+  private static void report(String name, int nbValues, int nbRounds, double[] xs, double[] ys,
+      Comparison comparison) {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory
+        .getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long best = Long.MAX_VALUE;
+    long bestAllocated = Long.MAX_VALUE;
+    long check = 0;
+    for (int round = 0; round < nbRounds; round++) {
+      long allocated = threads.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+      check += comparison.apply(xs, ys);
+      best = Math.min(best, System.nanoTime() - start);
+      bestAllocated = Math.min(bestAllocated, threads.getThreadAllocatedBytes(threadId) - allocated);
+    }
+    System.out.printf("%-22s %6.2f ns/comparison, %5.1f bytes/comparison (check %d)%n", name,
+        (double) best / nbValues, (double) bestAllocated / nbValues, check);
+  }
+}
@@ -0,0 +1,120 @@
+package asteroids;
+
+import java.util.Random;
+
+import asteroids.model.Vector2D;
+
+/**
+ * Compares the vector operations of {@link Vector2D} with the formulas they
+ * replaced: the norm through <code>Math.pow</code>, the direction through
+ * <code>atan2</code>, <code>cos</code> and <code>sin</code>, and the hash code
+ * through boxed doubles.
+ *
+ * <pre>
+ * java asteroids.VectorBenchmark [vectors [rounds]]
+ * </pre>
+ *
+ * Every operation runs over the same random vectors for a number of rounds,
+ * and the best round is reported in nanoseconds per vector.
+ */
+public class VectorBenchmark {
+
+  private interface Kernel {
+    public double apply(Vector2D[] vectors, double[] xs, double[] ys);
+  }
+
+  public static void main(String[] args) {
+    int nbVectors = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 16;
+    int nbRounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    Random random = new Random(0);
+    Vector2D[] vectors = new Vector2D[nbVectors];
+    double[] xs = new double[nbVectors];
+    double[] ys = new double[nbVectors];
+    for (int i = 0; i < nbVectors; i++) {
+      xs[i] = 600 * random.nextDouble() - 300;
+      ys[i] = 600 * random.nextDouble() - 300;
+      vectors[i] = new Vector2D(xs[i], ys[i]);
+    }
+    report("norm, Math.pow", nbVectors, nbRounds, vectors, xs, ys, new Kernel() {
+      public double apply(Vector2D[] vectors, double[] xs, double[] ys) {
+        double sum = 0;
+        for (Vector2D vector : vectors)
+          sum += Math.sqrt(Math.pow(vector.getXComponent(), 2) + Math.pow(vector.getYComponent(), 2));
+        return sum;
+      }
+    });
+    report("norm, getNorm", nbVectors, nbRounds, vectors, xs, ys, new Kernel() {
+      public double apply(Vector2D[] vectors, double[] xs, double[] ys) {
+        double sum = 0;
+        for (Vector2D vector : vectors)
+          sum += vector.getNorm();
+        return sum;
+      }
+    });
+    report("direction, atan2", nbVectors, nbRounds, vectors, xs, ys, new Kernel() {
+      public double apply(Vector2D[] vectors, double[] xs, double[] ys) {
+        double sum = 0;
+        for (Vector2D vector : vectors) {
+          double angle = Math.atan2(vector.getYComponent(), vector.getXComponent());
+          sum += new Vector2D(Math.cos(angle), Math.sin(angle)).getXComponent();
+        }
+        return sum;
+      }
+    });
+    report("direction, getDirection", nbVectors, nbRounds, vectors, xs, ys, new Kernel() {
+      public double apply(Vector2D[] vectors, double[] xs, double[] ys) {
+        double sum = 0;
+        for (Vector2D vector : vectors)
+          sum += vector.getDirection().getXComponent();
+        return sum;
+      }
+    });
+    report("direction, normalize", nbVectors, nbRounds, vectors, xs, ys, new Kernel() {
+      private final double[] out = new double[2];
+
+      public double apply(Vector2D[] vectors, double[] xs, double[] ys) {
+        double sum = 0;
+        for (int i = 0; i < xs.length; i++) {
+          Vector2D.normalize(xs[i], ys[i], out, 0);
+          sum += out[0];
+        }
+        return sum;
+      }
+    });
+    report("hash, boxed", nbVectors, nbRounds, vectors, xs, ys, new Kernel() {
+      public double apply(Vector2D[] vectors, double[] xs, double[] ys) {
+        double sum = 0;
+        for (Vector2D vector : vectors)
+          sum += Double.valueOf(vector.getXComponent()).hashCode() + Double.valueOf(vector.getYComponent()).hashCode();
+        return sum;
+      }
+    });
+    report("hash, hashCode", nbVectors, nbRounds, vectors, xs, ys, new Kernel() {
+      public double apply(Vector2D[] vectors, double[] xs, double[] ys) {
+        double sum = 0;
+        for (Vector2D vector : vectors)
+          sum += vector.hashCode();
+        return sum;
+      }
+    });
+  }
+
+  private static void report(String name, int nbVectors, int nbRounds, Vector2D[] vectors, double[] xs, double[] ys,
+      Kernel kernel) {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory
+        .getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long best = Long.MAX_VALUE;
+    long bestAllocated = Long.MAX_VALUE;
+    double check = 0;
+    for (int round = 0; round < nbRounds; round++) {
+      long allocated = threads.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+      check += kernel.apply(vectors, xs, ys);
+      best = Math.min(best, System.nanoTime() - start);
+      bestAllocated = Math.min(bestAllocated, threads.getThreadAllocatedBytes(threadId) - allocated);
+    }
+    System.out.printf("%-24s %6.2f ns/vector, %5.1f bytes/vector (check %.3g)%n", name, (double) best / nbVectors,
+        (double) bestAllocated / nbVectors, check);
+  }
+}
@@ -0,0 +1,92 @@
+package asteroids;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import asteroids.model.Facade;
+import asteroids.model.GameWorld;
+import asteroids.model.PersistentWorld;
+import asteroids.model.WorldVersion;
+
+/**
+ * Compares evolving a mutable world with evolving a world that publishes an
+ * immutable version of its state every tick.
+ *
+ * <pre>
+ * java asteroids.VersionBenchmark [asteroids [ticks [seed]]]
+ * </pre>
+ *
+ * Each backend runs on a field of moving asteroids and on a field of resting
+ * asteroids, which fall asleep. The persistent backend runs with versions that
+ * share unchanged chunks and with versions that copy the whole world, which is
+ * what readers on other threads would need without structural sharing. For each
+ * run the throughput, the bytes allocated per tick, the time spent in garbage
+ * collection and the fraction of shared chunks are reported.
+ */
+public class VersionBenchmark {
+
+  private enum Backend {
+    MUTABLE, PERSISTENT, COPYING
+  }
+
+  public static void main(String[] args) {
+    int nbAsteroids = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+    int nbTicks = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+    for (boolean resting : new boolean[] { false, true })
+      for (Backend backend : Backend.values()) {
+        // Warm up on a separate world, then measure.
+        run(backend, createWorld(nbAsteroids, seed, resting), nbTicks / 4, null);
+        run(backend, createWorld(nbAsteroids, seed, resting), nbTicks, resting ? "resting" : "moving");
+      }
+  }
+
+  private static GameWorld createWorld(int nbAsteroids, long seed, boolean resting) {
+    Facade facade = new Facade();
+    ScenarioGenerator<GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> scenario = new ScenarioGenerator<GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>(
+        facade, seed);
+    scenario.setRadii(5, 40, 1.5);
+    if (resting)
+      scenario.setSpeed(0, 0);
+    GameWorld world = scenario.createWorld(nbAsteroids);
+    scenario.populate(world, nbAsteroids);
+    return world;
+  }
+
+  private static void run(Backend backend, GameWorld world, int nbTicks, String field) {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    PersistentWorld persistent = new PersistentWorld(world);
+    long shared = 0;
+    long chunks = 0;
+    long gcTime = getGcTime();
+    long allocated = threads.getThreadAllocatedBytes(threadId);
+    long start = System.nanoTime();
+    for (int tick = 0; tick < nbTicks; tick++) {
+      if (backend == Backend.MUTABLE) {
+        world.evolve(HeadlessRunner.TICK, null);
+      } else if (backend == Backend.PERSISTENT) {
+        WorldVersion version = persistent.evolve(HeadlessRunner.TICK, null);
+        shared += version.getNbSharedChunks();
+        chunks += version.getNbChunks();
+      } else {
+        world.evolve(HeadlessRunner.TICK, null);
+        chunks += WorldVersion.of(world).getNbChunks();
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+    gcTime = getGcTime() - gcTime;
+    if (field != null)
+      System.out.printf("%-7s %-10s %6.0f ticks/s, %9.0f bytes/tick, gc %4d ms, %5.1f%% chunks shared%n", field,
+          backend.name().toLowerCase(), nbTicks / (elapsed / 1e9), (double) allocated / nbTicks, gcTime,
+          chunks == 0 ? 0 : 100.0 * shared / chunks);
+  }
+
+  private static long getGcTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+      time += Math.max(0, bean.getCollectionTime());
+    return time;
+  }
+}
@@ -0,0 +1,89 @@
+package asteroids;
+
+/**
+ * The bookkeeping of which voices of a {@link FileSoundManager.ClipPool} are
+ * busy, kept apart from the clips so it can be tested without an audio device.
+ *
+ * A voice that plays a sound once is busy for the length of the sound; a voice
+ * that loops is busy until it is released. A new sound takes an idle voice if
+ * there is one. Otherwise it steals the voice that was started longest ago,
+ * passing over looping voices unless every voice loops, so that a one-shot
+ * effect never silences an engine hum while another effect could make room.
+ */
+public class VoiceAllocator {
+  private final long[] startTimes;
+  private final long[] busyUntil;
+  private final boolean[] busy;
+  private final boolean[] looping;
+  private final long lengthNanos;
+
+  /**
+   * Create an allocator for <code>polyphony</code> voices of a sound that
+   * lasts <code>lengthNanos</code> nanoseconds.
+   */
+  public VoiceAllocator(int polyphony, long lengthNanos) {
+    startTimes = new long[polyphony];
+    busyUntil = new long[polyphony];
+    busy = new boolean[polyphony];
+    looping = new boolean[polyphony];
+    this.lengthNanos = lengthNanos;
+  }
+
+  public int getPolyphony() {
+    return busy.length;
+  }
+
+  public boolean isBusy(int voice) {
+    return busy[voice];
+  }
+
+  public boolean isLooping(int voice) {
+    return busy[voice] && looping[voice];
+  }
+
+  /**
+   * Return the voice a sound started at <code>now</code> should take: the
+   * first idle voice, or else the busy voice to steal. Voices whose sound
+   * ended by <code>now</code> become idle. The caller stops the voice if it is
+   * still busy, and then starts it.
+   */
+  public int select(long now) {
+    int oldest = -1;
+    int oldestLooping = -1;
+    for (int i = 0; i < busy.length; i++) {
+      if (busy[i] && !looping[i] && now - busyUntil[i] >= 0) {
+        busy[i] = false;
+      }
+      if (!busy[i]) {
+        return i;
+      }
+      if (!looping[i]) {
+        if (oldest < 0 || startTimes[i] - startTimes[oldest] < 0) {
+          oldest = i;
+        }
+      } else if (oldestLooping < 0 || startTimes[i] - startTimes[oldestLooping] < 0) {
+        oldestLooping = i;
+      }
+    }
+    return oldest >= 0 ? oldest : oldestLooping;
+  }
+
+  /**
+   * Mark <code>voice</code> busy with a sound started at <code>now</code>,
+   * for the length of the sound or, if <code>loop</code> is set, until it is
+   * released.
+   */
+  public void start(int voice, long now, boolean loop) {
+    startTimes[voice] = now;
+    busyUntil[voice] = now + lengthNanos;
+    busy[voice] = true;
+    looping[voice] = loop;
+  }
+
+  /**
+   * Mark <code>voice</code> idle.
+   */
+  public void release(int voice) {
+    busy[voice] = false;
+  }
+}
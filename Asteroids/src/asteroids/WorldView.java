@@ -1,7 +1,5 @@
 package asteroids;
 
-import static java.lang.Math.sin;
-
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
@@ -14,6 +12,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -23,8 +22,12 @@ import java.util.Set;
 import javax.swing.JPanel;
 import javax.swing.Timer;
 
+import asteroids.TickStatistics.Counter;
+import asteroids.TickStatistics.Phase;
+import asteroids.jfr.FramePaintEvent;
+
 @SuppressWarnings("serial")
-public class WorldView<World, Ship, Asteroid, Bullet> extends JPanel implements KeyListener, ActionListener, CollisionListener {
+public class WorldView<World, Ship, Asteroid, Bullet> extends JPanel implements KeyListener, ActionListener, CollisionBatchListener {
 
   private static final int LEFT_P1 = KeyEvent.VK_LEFT;
   private static final int RIGHT_P1 = KeyEvent.VK_RIGHT;
@@ -34,6 +37,9 @@ public class WorldView<World, Ship, Asteroid, Bullet> extends JPanel implements
   private static final int RIGHT_P2 = KeyEvent.VK_D;
   private static final int FIRE_P2 = KeyEvent.VK_CONTROL;
   private static final int THRUSTER_P2 = KeyEvent.VK_W; // change to Z on Azerty
+  private static final int TOGGLE_HUD = KeyEvent.VK_F3;
+  private static final int DUMP_TRACE = KeyEvent.VK_F4;
+  private static final double TRACE_SECONDS = 10;
 
   private static final int TIMER_DELAY = 1000 / 30;
 
@@ -49,6 +55,8 @@ public class WorldView<World, Ship, Asteroid, Bullet> extends JPanel implements
   private String msg = null;
   private Map<Object, Visualization<?>> visualizations = new HashMap<Object, Visualization<?>>();
   private Set<Explosion> explosions = new HashSet<Explosion>();
+  private final TickStatistics statistics = TickStatistics.getInstance();
+  private final PerformanceHud hud = new PerformanceHud();
 
   public WorldView(Asteroids<World, Ship, Asteroid, Bullet> game, World world, Ship player1, Ship player2) {
     this.game = game;
@@ -94,6 +102,11 @@ public class WorldView<World, Ship, Asteroid, Bullet> extends JPanel implements
 
   @Override
   protected void paintComponent(Graphics g) {
+    long start = statistics.begin();
+    long hudStart = hud.isVisible() ? System.nanoTime() : 0;
+    hud.frameStarted(hudStart);
+    FramePaintEvent event = new FramePaintEvent();
+    event.begin();
     super.paintComponent(g);
     Graphics2D g2d = (Graphics2D) g;
     g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -128,6 +141,19 @@ public class WorldView<World, Ship, Asteroid, Bullet> extends JPanel implements
       g2d.setFont(g2d.getFont().deriveFont(20f));
       drawCenteredString(g2d, "Press ESC to continue ...", getHeight() / 3 * 2);
     }
+    if (hud.isVisible()) {
+      hud.draw(g2d, 10, 10, facade.getShips(world).size(), facade.getAsteroids(world).size(), facade.getBullets(world).size());
+      hud.paintFinished(System.nanoTime() - hudStart);
+    }
+    if (event.shouldCommit()) {
+      event.ships = facade.getShips(world).size();
+      event.asteroids = facade.getAsteroids(world).size();
+      event.bullets = facade.getBullets(world).size();
+      event.explosions = explosions.size();
+      event.commit();
+    }
+    statistics.end(Phase.RENDER, start);
+    statistics.add(Counter.FRAMES, 1);
   }
 
   @Override
@@ -169,6 +195,13 @@ public class WorldView<World, Ship, Asteroid, Bullet> extends JPanel implements
       if (player2 != null)
         player2_fire = true;
       break;
+    case TOGGLE_HUD:
+      hud.toggle();
+      repaint();
+      break;
+    case DUMP_TRACE:
+      dumpTrace();
+      break;
     }
   }
 
@@ -204,6 +237,7 @@ public class WorldView<World, Ship, Asteroid, Bullet> extends JPanel implements
     long now = System.currentTimeMillis();
     long millisSinceLastEvolve = now - timeAfterLastEvolve;
     timeAfterLastEvolve = now;
+    long start = statistics.begin();
     if (player1_angle != 0) {
       facade.turn(player1, player1_angle);
     }
@@ -213,20 +247,28 @@ public class WorldView<World, Ship, Asteroid, Bullet> extends JPanel implements
     if (player1_fire && facade.getShips(world).contains(player1)) {
       player1_fire = false;
       facade.fireBullet(player1);
-      game.getSound().play("torpedo");
+      playSound("torpedo");
     }
     if (player2 != null && player2_fire && facade.getShips(world).contains(player2)) {
       player2_fire = false;
       facade.fireBullet(player2);
-      game.getSound().play("torpedo");
+      playSound("torpedo");
     }
+    statistics.end(Phase.INPUT, start);
+    start = statistics.begin();
+    long hudStart = hud.isVisible() ? System.nanoTime() : 0;
     facade.evolve(world, millisSinceLastEvolve / 1000., this);
+    if (hud.isVisible())
+      hud.tickFinished(System.nanoTime() - hudStart);
+    statistics.end(Phase.EVOLVE, start);
+    start = statistics.begin();
     Iterator<Explosion> iter = explosions.iterator();
     while (iter.hasNext()) {
       boolean done = iter.next().evolve(millisSinceLastEvolve / 1000.);
       if (done)
         iter.remove();
     }
+    statistics.end(Phase.EXPLOSIONS, start);
     boolean player1Alive = facade.getShips(world).contains(player1);
     if (player1Alive) {
       if (player2 != null && !facade.getShips(world).contains(player2)) {
@@ -244,7 +286,42 @@ public class WorldView<World, Ship, Asteroid, Bullet> extends JPanel implements
         msg = "Player 2 wins!";
       }
     }
+    start = statistics.begin();
     repaint();
+    statistics.end(Phase.REPAINT, start);
+  }
+
+  /**
+   * Write the last seconds of the phase trace to a new file in the working
+   * directory. Tracing is started if it was not running; the file is written
+   * on a separate thread so the game does not stall.
+   */
+  private void dumpTrace() {
+    if (!statistics.isTracing()) {
+      statistics.setTracing(true);
+      System.err.println("tracing started, press F4 again to dump");
+      return;
+    }
+    final String path = "asteroids-trace-" + System.currentTimeMillis() + ".json";
+    Thread writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          int nbSpans = statistics.dumpTrace(path, TRACE_SECONDS);
+          System.err.println("wrote " + nbSpans + " spans to " + path);
+        } catch (IOException e) {
+          System.err.println("trace not written: " + e.getMessage());
+        }
+      }
+    }, "trace writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  private void playSound(String name) {
+    long start = statistics.begin();
+    game.getSound().play(name);
+    statistics.end(Phase.SOUND_ENQUEUE, start);
   }
 
   public void startGame() {
@@ -261,10 +338,23 @@ public class WorldView<World, Ship, Asteroid, Bullet> extends JPanel implements
   @Override
   public void objectCollision(Object entity1, Object entity2, double x, double y) {
     if ((facade.isBullets(entity1) && !facade.isBullets(entity2)) || (facade.isBullets(entity2) && !facade.isBullets(entity1))) {
-      game.getSound().play("explosion");
-      explosions.add(new Explosion(x, facade.getWorldHeight(world) - y));
+      explode(x, y);
+    }
+  }
+
+  @Override
+  public void collisions(CollisionBatch batch) {
+    for (int i = 0; i < batch.getSize(); i++) {
+      if (batch.involvesOnce(i, CollisionBatch.BULLET) && !batch.isBoundaryCollision(i)) {
+        explode(batch.getX(i), batch.getY(i));
+      }
     }
   }
+
+  private void explode(double x, double y) {
+    playSound("explosion");
+    explosions.add(new Explosion(x, facade.getWorldHeight(world) - y));
+  }
   
   public abstract class Visualization<T> implements Drawable {
     private final Color color;
@@ -325,7 +415,9 @@ public class WorldView<World, Ship, Asteroid, Bullet> extends JPanel implements
         T.preConcatenate(AffineTransform.getTranslateInstance(x - radius, y - radius));
         g2d.drawImage(getImage(), T, null);
       }
-      g2d.drawLine((int) x, (int) y, (int) (x + Math.cos(angle) * radius), (int) (y + sin(angle) * radius));
+      // The view flips the y-axis, so the heading line goes up for a positive sine.
+      g2d.drawLine((int) x, (int) y, (int) (x + facade.getShipDirectionX(getObject()) * radius),
+          (int) (y - facade.getShipDirectionY(getObject()) * radius));
     }
   }
   
@@ -0,0 +1,22 @@
+package asteroids.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The loading and decoding of one resource.
+ */
+@Name("asteroids.AssetLoad")
+@Label("Asset Load")
+@Category({ "Asteroids", "Resources" })
+public class AssetLoadEvent extends jdk.jfr.Event {
+
+  @Label("Resource")
+  public String resource;
+
+  @Label("Decoded Size")
+  @DataAmount
+  public long bytes;
+}
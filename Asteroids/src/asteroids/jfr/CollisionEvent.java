@@ -0,0 +1,32 @@
+package asteroids.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A collision resolved by <code>GameWorld.evolve</code>, between two elements
+ * or between an element and a boundary of the world.
+ */
+@Name("asteroids.Collision")
+@Label("Collision")
+@Category({ "Asteroids", "Simulation" })
+@StackTrace(false)
+@Description("A collision between two elements or between an element and a boundary")
+public class CollisionEvent extends jdk.jfr.Event {
+
+  @Label("First Type")
+  public String firstType;
+
+  @Label("Second Type")
+  @Description("The type of the second element, or \"Boundary\"")
+  public String secondType;
+
+  @Label("Contact X")
+  public double x;
+
+  @Label("Contact Y")
+  public double y;
+}
@@ -0,0 +1,28 @@
+package asteroids.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One call of <code>WorldView.paintComponent</code>.
+ */
+@Name("asteroids.FramePaint")
+@Label("Frame Paint")
+@Category({ "Asteroids", "Rendering" })
+@StackTrace(false)
+public class FramePaintEvent extends jdk.jfr.Event {
+
+  @Label("Ships")
+  public int ships;
+
+  @Label("Asteroids")
+  public int asteroids;
+
+  @Label("Bullets")
+  public int bullets;
+
+  @Label("Explosions")
+  public int explosions;
+}
@@ -0,0 +1,20 @@
+package asteroids.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The execution of one sound request on the sound thread.
+ */
+@Name("asteroids.SoundRequest")
+@Label("Sound Request")
+@Category({ "Asteroids", "Sound" })
+public class SoundRequestEvent extends jdk.jfr.Event {
+
+  @Label("Request")
+  public String request;
+
+  @Label("Sound")
+  public String sound;
+}
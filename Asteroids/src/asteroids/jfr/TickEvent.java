@@ -0,0 +1,43 @@
+package asteroids.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One call of <code>GameWorld.evolve</code>.
+ */
+@Name("asteroids.Tick")
+@Label("Simulation Tick")
+@Category({ "Asteroids", "Simulation" })
+@StackTrace(false)
+public class TickEvent extends jdk.jfr.Event {
+
+  @Label("Time Step")
+  @Description("Simulated time the world was evolved over, in nanoseconds")
+  @Timespan(Timespan.NANOSECONDS)
+  public long dt;
+
+  @Label("Entities")
+  public int entities;
+
+  @Label("Candidate Pairs")
+  @Description("Pairs reported by the broad phase, summed over all events in the tick")
+  public long candidatePairs;
+
+  @Label("Collisions")
+  public long collisions;
+
+  @Label("Boundary Collisions")
+  public long boundaryCollisions;
+
+  @Label("Sleeping Entities")
+  @Description("Entities asleep at the end of the tick")
+  public int sleeping;
+
+  @Label("Substeps")
+  public int substeps;
+}
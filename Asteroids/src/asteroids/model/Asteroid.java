@@ -0,0 +1,116 @@
+package asteroids.model;
+
+import java.util.Random;
+
+import asteroids.StateRandom;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of asteroids for the game asteroids.
+ * 
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+
+public class Asteroid extends Element{
+	/**
+	 * Initialize this new asteroid with given position, radius, velocity and random generator.
+	 * 
+	 * @param 	position
+	 * 			The 2D vector containing the position coordinates for this new asteroid.
+	 * @param 	radius
+	 * 			The radius for this new asteroid.
+	 * @param 	velocity
+	 * 			The 2D vector containing the velocity components for this new asteroid.
+	 * @param	random
+	 * 			The random generator used to determine the direction of the children of this new asteroid.
+	 * @effect	This new asteroid is initialized as an element with the given position, radius and
+	 * 			velocity, the speed of light as maximum speed and a mass determined by its radius.
+	 * 			| super(position, radius, velocity, getMassFor(radius))
+	 * @post	If the given random generator is effective, it is the random generator of this new asteroid.
+	 * 			| if (random != null)
+	 * 			|	then (new this).getRandom() == random
+	 */
+	@Raw
+	public Asteroid(Vector2D position, double radius, Vector2D velocity, Random random)
+			throws IllegalArgumentException{
+		super(position, radius, velocity, getMassFor(radius));
+		this.random = (random == null) ? new StateRandom() : random;
+	}
+	
+	/**
+	 * Initialize this new asteroid with given position, radius and velocity.
+	 * 
+	 * @param 	position
+	 * 			The 2D vector containing the position coordinates for this new asteroid.
+	 * @param 	radius
+	 * 			The radius for this new asteroid.
+	 * @param 	velocity
+	 * 			The 2D vector containing the velocity components for this new asteroid.
+	 * @effect	This new asteroid is initialized with the given position, radius and velocity
+	 * 			and a new random generator.
+	 * 			| this(position, radius, velocity, new StateRandom())
+	 */
+	@Raw
+	public Asteroid(Vector2D position, double radius, Vector2D velocity)
+			throws IllegalArgumentException{
+		this(position, radius, velocity, new StateRandom());
+	}
+	
+	/**
+	 * Return the mass of an asteroid with the given radius.
+	 * 
+	 * @param	radius
+	 * 			The radius of the asteroid.
+	 * @return	The volume of a sphere with the given radius times the density of asteroids.
+	 * 			| result == 4.0 / 3.0 * Math.PI * radius * radius * radius * getDensity()
+	 */
+	public static double getMassFor(double radius){
+		return 4.0 / 3.0 * Math.PI * radius * radius * radius * density;
+	}
+	
+	/**
+	 * Return the density of asteroids.
+	 * The density is expressed in kg/km^3.
+	 */
+	@Immutable
+	public static double getDensity(){
+		return density;
+	}
+	
+	/**
+	 * Variable registering the density of all asteroids.
+	 */
+	private static final double density = 2.65E12;
+	
+	/**
+	 * Return the random generator of this asteroid.
+	 */
+	@Basic @Immutable @Raw
+	public Random getRandom(){
+		return this.random;
+	}
+	
+	/**
+	 * Variable registering the random generator used to determine
+	 * the direction of the children of this asteroid.
+	 */
+	private final Random random;
+
+	/**
+	 * Check whether this asteroid was created by a fragment pool, and may be
+	 * reused by that pool once it is terminated.
+	 */
+	@Basic @Raw
+	public boolean isPooled(){
+		return this.pooled;
+	}
+
+	@Raw
+	void setPooled(boolean pooled){
+		this.pooled = pooled;
+	}
+
+	private boolean pooled = false;
+}
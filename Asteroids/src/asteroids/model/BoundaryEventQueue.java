@@ -0,0 +1,194 @@
+package asteroids.model;
+
+import java.util.Arrays;
+
+/**
+ * A priority queue of the next boundary collision of each element of a world,
+ * ordered by the world time at which the collision occurs.
+ *
+ * The queue is an indexed binary min-heap: each element knows its position in
+ * the heap, so that its event can be rescheduled or removed in logarithmic time
+ * when its velocity changes or it leaves the world. The times and boundaries of
+ * the events are kept in arrays parallel to the heap.
+ *
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+class BoundaryEventQueue {
+
+	/**
+	 * Return the number of elements in this queue.
+	 */
+	int size(){
+		return size;
+	}
+
+	/**
+	 * Return the element with the earliest boundary collision, or null if this queue is empty.
+	 */
+	Element getFirst(){
+		return size == 0 ? null : heap[0];
+	}
+
+	/**
+	 * Return the time of the earliest boundary collision in this queue,
+	 * or Double.POSITIVE_INFINITY if this queue is empty.
+	 */
+	double getFirstTime(){
+		return size == 0 ? Double.POSITIVE_INFINITY : times[0];
+	}
+
+	/**
+	 * Check whether the earliest boundary collision in this queue is with a vertical boundary.
+	 */
+	boolean isFirstVertical(){
+		return size != 0 && vertical[0];
+	}
+
+	/**
+	 * Return the time of the boundary collision scheduled for the given element,
+	 * or Double.POSITIVE_INFINITY if none is scheduled.
+	 */
+	double getTime(Element element){
+		int index = element.getBoundaryEventIndex();
+		return index < 0 ? Double.POSITIVE_INFINITY : times[index];
+	}
+
+	/**
+	 * Check whether the boundary collision scheduled for the given element is with a
+	 * vertical boundary.
+	 */
+	boolean isVertical(Element element){
+		int index = element.getBoundaryEventIndex();
+		return index >= 0 && vertical[index];
+	}
+
+	/**
+	 * Schedule the boundary collision of the given element at the given time, replacing
+	 * the collision scheduled for it before, if any.
+	 */
+	void schedule(Element element, double time, boolean onVerticalBoundary){
+		int index = element.getBoundaryEventIndex();
+		if (index < 0){
+			if (size == heap.length)
+				grow();
+			index = size++;
+			heap[index] = element;
+			element.setBoundaryEventIndex(index);
+		} else if (time > times[index]){
+			times[index] = time;
+			vertical[index] = onVerticalBoundary;
+			siftDown(index);
+			return;
+		}
+		times[index] = time;
+		vertical[index] = onVerticalBoundary;
+		siftUp(index);
+	}
+
+	/**
+	 * Remove the boundary collision of the given element from this queue, if any.
+	 */
+	void remove(Element element){
+		int index = element.getBoundaryEventIndex();
+		if (index < 0)
+			return;
+		element.setBoundaryEventIndex(-1);
+		size--;
+		if (index != size){
+			move(size, index);
+			if (index > 0 && times[index] < times[(index - 1) >> 1])
+				siftUp(index);
+			else
+				siftDown(index);
+		}
+		heap[size] = null;
+	}
+
+	/**
+	 * Make this queue a copy of the given queue, with the same events in the same order.
+	 *
+	 * @param	updateIndices
+	 * 			Whether the elements in the given queue are to learn their position in this
+	 * 			queue. A copy that is only kept to be restored later leaves them alone.
+	 * @note	The elements of the events this queue held before, that are not in the
+	 * 			given queue, keep their position in this queue; the caller resets them.
+	 */
+	void copyFrom(BoundaryEventQueue queue, boolean updateIndices){
+		if (heap.length < queue.size){
+			heap = new Element[queue.heap.length];
+			times = new double[queue.heap.length];
+			vertical = new boolean[queue.heap.length];
+		}
+		System.arraycopy(queue.heap, 0, heap, 0, queue.size);
+		System.arraycopy(queue.times, 0, times, 0, queue.size);
+		System.arraycopy(queue.vertical, 0, vertical, 0, queue.size);
+		Arrays.fill(heap, queue.size, Math.max(queue.size, size), null);
+		size = queue.size;
+		if (updateIndices)
+			for (int i = 0; i < size; i++)
+				heap[i].setBoundaryEventIndex(i);
+	}
+
+	private void siftUp(int index){
+		Element element = heap[index];
+		double time = times[index];
+		boolean onVerticalBoundary = vertical[index];
+		while (index > 0){
+			int parent = (index - 1) >> 1;
+			if (times[parent] <= time)
+				break;
+			move(parent, index);
+			index = parent;
+		}
+		place(element, time, onVerticalBoundary, index);
+	}
+
+	private void siftDown(int index){
+		Element element = heap[index];
+		double time = times[index];
+		boolean onVerticalBoundary = vertical[index];
+		while (true){
+			int child = 2 * index + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && times[child + 1] < times[child])
+				child++;
+			if (times[child] >= time)
+				break;
+			move(child, index);
+			index = child;
+		}
+		place(element, time, onVerticalBoundary, index);
+	}
+
+	private void move(int from, int to){
+		place(heap[from], times[from], vertical[from], to);
+	}
+
+	private void place(Element element, double time, boolean onVerticalBoundary, int index){
+		heap[index] = element;
+		times[index] = time;
+		vertical[index] = onVerticalBoundary;
+		element.setBoundaryEventIndex(index);
+	}
+
+	private void grow(){
+		int capacity = Math.max(16, 2 * heap.length);
+		heap = Arrays.copyOf(heap, capacity);
+		times = Arrays.copyOf(times, capacity);
+		vertical = Arrays.copyOf(vertical, capacity);
+	}
+
+	private Element[] heap = new Element[0];
+
+	/**
+	 * Variables registering the world time and the boundary of the collision of the
+	 * element at the same position in the heap.
+	 */
+	private double[] times = new double[0];
+
+	private boolean[] vertical = new boolean[0];
+
+	private int size = 0;
+}
@@ -0,0 +1,196 @@
+package asteroids.model;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of bullets fired by ships in the game asteroids.
+ * 
+ * @invar	The number of bounces of each bullet does not exceed the maximum number of bounces.
+ * 			| getNbBounces() <= getMaxBounces()
+ * 
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+
+public class Bullet extends Element{
+	/**
+	 * Initialize this new bullet with given position, velocity and source.
+	 * 
+	 * @param 	position
+	 * 			The 2D vector containing the position coordinates for this new bullet.
+	 * @param 	velocity
+	 * 			The 2D vector containing the velocity components for this new bullet.
+	 * @param	source
+	 * 			The ship that fired this new bullet.
+	 * @effect	This new bullet is initialized as an element with the given position and velocity,
+	 * 			the default bullet radius, the speed of light as maximum speed and
+	 * 			a mass determined by its radius.
+	 * 			| super(position, getDefaultRadius(), velocity, getMassFor(getDefaultRadius()))
+	 * @post	The source of this new bullet is the given ship.
+	 * 			| (new this).getSource() == source
+	 * @post	This new bullet has not bounced yet.
+	 * 			| (new this).getNbBounces() == 0
+	 * @throws	IllegalArgumentException
+	 * 			The given source is not effective.
+	 * 			| source == null
+	 */
+	@Raw
+	public Bullet(Vector2D position, Vector2D velocity, Ship source)
+			throws IllegalArgumentException{
+		super(position, defaultRadius, velocity, getMassFor(defaultRadius));
+		if (source == null)
+			throw new IllegalArgumentException("A bullet must have a source.");
+		this.source = source;
+	}
+	
+	/**
+	 * Return the ship that fired this bullet.
+	 */
+	@Basic @Immutable @Raw
+	public Ship getSource(){
+		return this.source;
+	}
+	
+	/**
+	 * Variable registering the ship that fired this bullet.
+	 */
+	private final Ship source;
+	
+	/**
+	 * Return the mass of a bullet with the given radius.
+	 * 
+	 * @param	radius
+	 * 			The radius of the bullet.
+	 * @return	The volume of a sphere with the given radius times the density of bullets.
+	 * 			| result == 4.0 / 3.0 * Math.PI * radius * radius * radius * getDensity()
+	 */
+	public static double getMassFor(double radius){
+		return 4.0 / 3.0 * Math.PI * radius * radius * radius * density;
+	}
+	
+	/**
+	 * Return the density of bullets.
+	 * The density is expressed in kg/km^3.
+	 */
+	@Immutable
+	public static double getDensity(){
+		return density;
+	}
+	
+	/**
+	 * Variable registering the density of all bullets.
+	 */
+	private static final double density = 7.8E12;
+	
+	/**
+	 * Return the radius of newly fired bullets.
+	 * The radius is expressed in km.
+	 */
+	@Immutable
+	public static double getDefaultRadius(){
+		return defaultRadius;
+	}
+	
+	/**
+	 * Variable registering the radius of newly fired bullets.
+	 */
+	private static final double defaultRadius = 3;
+	
+	/**
+	 * Return the speed at which bullets are fired.
+	 * The speed is expressed in km/s.
+	 */
+	@Immutable
+	public static double getInitialSpeed(){
+		return initialSpeed;
+	}
+	
+	/**
+	 * Variable registering the speed at which bullets are fired.
+	 */
+	private static final double initialSpeed = 250;
+	
+	/**
+	 * Return the number of times this bullet has bounced off a boundary of its world.
+	 */
+	@Basic @Raw
+	public int getNbBounces(){
+		return this.nbBounces;
+	}
+	
+	/**
+	 * Return the maximum number of times a bullet can bounce off a boundary.
+	 */
+	@Immutable
+	public static int getMaxBounces(){
+		return maxBounces;
+	}
+	
+	/**
+	 * Check whether this bullet can bounce off a boundary once more.
+	 * 
+	 * @return	True if and only if the number of bounces of this bullet is smaller
+	 * 			than the maximum number of bounces.
+	 * 			| result == (getNbBounces() < getMaxBounces())
+	 */
+	public boolean canBounce(){
+		return getNbBounces() < getMaxBounces();
+	}
+	
+	/**
+	 * Register a bounce of this bullet off a boundary.
+	 * 
+	 * @pre		This bullet can bounce once more.
+	 * 			| canBounce()
+	 * @post	The number of bounces of this bullet is incremented by one.
+	 * 			| (new this).getNbBounces() == getNbBounces() + 1
+	 */
+	void bounce(){
+		assert canBounce();
+		this.nbBounces++;
+	}
+	
+	/**
+	 * Reset the number of bounces of this bullet, when it is fired anew.
+	 *
+	 * @post	This bullet has not bounced.
+	 * 			| (new this).getNbBounces() == 0
+	 */
+	void resetBounces(){
+		this.nbBounces = 0;
+	}
+
+	/**
+	 * Set the number of bounces of this bullet, when its world is restored from a snapshot.
+	 *
+	 * @post	The number of bounces of this bullet is equal to the given number.
+	 * 			| (new this).getNbBounces() == nbBounces
+	 */
+	void restoreBounces(int nbBounces){
+		this.nbBounces = nbBounces;
+	}
+
+	/**
+	 * Variable registering the number of bounces of this bullet.
+	 */
+	private int nbBounces = 0;
+	
+	/**
+	 * Variable registering the maximum number of bounces of a bullet.
+	 */
+	private static final int maxBounces = 1;
+
+	/**
+	 * Return the time after which a bullet fired by a ship expires.
+	 * The lifetime is expressed in seconds.
+	 */
+	@Immutable
+	public static double getMaxLifetime(){
+		return maxLifetime;
+	}
+
+	/**
+	 * Variable registering the time after which a bullet fired by a ship expires.
+	 */
+	private static final double maxLifetime = 3;
+}
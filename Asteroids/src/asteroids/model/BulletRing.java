@@ -0,0 +1,212 @@
+package asteroids.model;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A fixed ring of preallocated bullets owned by one ship.
+ *
+ * Bullets are fired from the tail of the ring and expire from its head. Since
+ * all bullets live equally long, the bullets that have outlived their lifetime
+ * always form a prefix of the ring, so expiry only advances the head. Bullets
+ * that were destroyed before they expired stay in their slot, terminated, until
+ * the head passes them. When every slot holds a live bullet, firing reclaims
+ * the oldest one.
+ *
+ * Firing a bullet reinitializes the bullet in its slot, so a reference to a
+ * bullet of a ring is only meaningful while the bullet is not terminated.
+ *
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+class BulletRing {
+
+	/**
+	 * Initialize this new ring with the given number of bullets fired by the given ship.
+	 */
+	@Raw
+	BulletRing(Ship ship, int capacity){
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		mask = size - 1;
+		slots = new Bullet[size];
+		fireTimes = new double[size];
+		Vector2D origin = new Vector2D(0, 0);
+		for (int i = 0; i < size; i++){
+			slots[i] = new Bullet(origin, origin, ship);
+			slots[i].terminate();
+		}
+	}
+
+	/**
+	 * Return the number of slots of this ring.
+	 */
+	@Basic @Immutable
+	int getCapacity(){
+		return mask + 1;
+	}
+
+	/**
+	 * Return the bullet in the next slot, reinitialized with the given coordinates and velocity
+	 * and fired at the given time. The bullet is not located in a world.
+	 */
+	Bullet fire(double x, double y, double xVelocity, double yVelocity, double time){
+		skipTerminated();
+		if (tail - head == slots.length){
+			slots[(int) head & mask].terminate();
+			head++;
+		}
+		int slot = (int) tail & mask;
+		Bullet bullet = slots[slot];
+		bullet.reinitialize(x, y, Bullet.getDefaultRadius(), xVelocity, yVelocity, Bullet.getMassFor(Bullet.getDefaultRadius()));
+		bullet.resetBounces();
+		fireTimes[slot] = time;
+		tail++;
+		return bullet;
+	}
+
+	/**
+	 * Terminate the bullets of this ring fired at or before the given time.
+	 *
+	 * @return	The number of bullets terminated.
+	 */
+	int expire(double time){
+		int nbExpired = 0;
+		while (head != tail && fireTimes[(int) head & mask] <= time){
+			Bullet bullet = slots[(int) head & mask];
+			if (!bullet.isTerminated()){
+				bullet.terminate();
+				nbExpired++;
+			}
+			head++;
+		}
+		skipTerminated();
+		return nbExpired;
+	}
+
+	/**
+	 * Check whether all bullets of this ring are terminated.
+	 */
+	boolean isEmpty(){
+		skipTerminated();
+		return head == tail;
+	}
+
+	/**
+	 * Return the number of the oldest bullet of this ring that has not left it.
+	 * Bullets are numbered in the order in which they were fired.
+	 */
+	long getHead(){
+		skipTerminated();
+		return head;
+	}
+
+	/**
+	 * Return the number of the next bullet this ring will fire.
+	 */
+	long getTail(){
+		return tail;
+	}
+
+	/**
+	 * Return the bullet with the given number.
+	 *
+	 * @pre		The bullet has not left this ring.
+	 * 			| getHead() <= number && number < getTail()
+	 */
+	Bullet getBullet(long number){
+		return slots[(int) number & mask];
+	}
+
+	/**
+	 * Return the time at which the bullet with the given number was fired.
+	 *
+	 * @pre		The bullet has not left this ring.
+	 * 			| getHead() <= number && number < getTail()
+	 */
+	double getFireTime(long number){
+		return fireTimes[(int) number & mask];
+	}
+
+	/**
+	 * Check whether the given bullet is one of the bullets of this ring.
+	 */
+	boolean contains(Bullet bullet){
+		for (Bullet slot : slots)
+			if (slot == bullet)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Copy the fire times of the slots of this ring to the given array, from the given offset on.
+	 */
+	void copyFireTimes(double[] destination, int offset){
+		System.arraycopy(fireTimes, 0, destination, offset, fireTimes.length);
+	}
+
+	/**
+	 * Bring this ring back to the given head, tail and fire times, read from the given
+	 * array from the given offset on, when its world is restored from a snapshot.
+	 *
+	 * @effect	The bullets of this ring that are not located in a world are terminated.
+	 * 			| terminateDetached()
+	 */
+	void restore(long head, long tail, double[] fireTimes, int offset){
+		this.head = head;
+		this.tail = tail;
+		System.arraycopy(fireTimes, offset, this.fireTimes, 0, this.fireTimes.length);
+		terminateDetached();
+	}
+
+	/**
+	 * Terminate the bullets of this ring that are not located in a world, after their
+	 * world was restored from a snapshot in which they were not in flight.
+	 */
+	void terminateDetached(){
+		for (Bullet slot : slots)
+			if (slot.getWorld() == null)
+				slot.terminate();
+	}
+
+	private void skipTerminated(){
+		while (head != tail && slots[(int) head & mask].isTerminated())
+			head++;
+	}
+
+	/**
+	 * Return the world in which this ring is registered, or null.
+	 */
+	GameWorld getWorld(){
+		return world;
+	}
+
+	void setWorld(GameWorld world){
+		this.world = world;
+	}
+
+	int getWorldIndex(){
+		return worldIndex;
+	}
+
+	void setWorldIndex(int worldIndex){
+		this.worldIndex = worldIndex;
+	}
+
+	private final Bullet[] slots;
+
+	/**
+	 * Variable registering the world time at which the bullet in each slot was fired.
+	 */
+	private final double[] fireTimes;
+
+	private final int mask;
+
+	/**
+	 * Variables registering the number of bullets that left the ring and the number
+	 * of bullets fired. The slot of a bullet is its number modulo the capacity.
+	 */
+	private long head, tail;
+
+	private GameWorld world;
+
+	private int worldIndex = -1;
+}
@@ -1,185 +1,223 @@
 package asteroids.model;
 
-import static asteroids.Util.fuzzyLessThanOrEqualTo;
+import static asteroids.Util.fuzzyNormLessThanOrEqualTo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
 import be.kuleuven.cs.som.annotate.Basic;
 import be.kuleuven.cs.som.annotate.Immutable;
 import be.kuleuven.cs.som.annotate.Raw;
 
 /**
  * A class of elements for the game world of the game Asteroids.
- * 
- * @version	1.0
+ *
+ * @version	1.1
  * @author 	Frederik Van Eeghem, Pieter Lietaert
  */
 
-public class Element{
+public abstract class Element{
 	/**
-	 * Initialize this new ship with given position, angle, radius, velocity and maximum speed.
-	 * 
+	 * Initialize this new element with given position, radius, velocity, maximum speed and mass.
+	 *
 	 * @param 	position
-	 * 			The 2D vector containing the position coordinates for this new ship.
-	 * @param 	angle
-	 * 			The angle for this new ship.
+	 * 			The 2D vector containing the position coordinates for this new element.
 	 * @param 	radius
-	 * 			The radius for this new ship.
+	 * 			The radius for this new element.
 	 * @param 	velocity
-	 * 			The 2D vector containing the velocity components for this new ship.
+	 * 			The 2D vector containing the velocity components for this new element.
 	 * @param 	maxSpeed
-	 * 			The maximum allowed speed for this new ship.
-	 * @post	The radius of this new ship is equal to the given radius.
+	 * 			The maximum allowed speed for this new element.
+	 * @param	mass
+	 * 			The mass for this new element.
+	 * @post	The radius of this new element is equal to the given radius.
 	 * 			| (new this).getRadius() == radius
+	 * @post	The mass of this new element is equal to the given mass.
+	 * 			| (new this).getMass() == mass
 	 * @post	If the maximum speed is a number that is positive and smaller than or equal to the speed of light,
-	 * 			the maximum speed of this new ship is equal to the given maximum speed.
+	 * 			the maximum speed of this new element is equal to the given maximum speed.
 	 * 			|if ((!Double.isNaN(maxSpeed)) &&  (maxSpeed  >=0) && (maxSpeed <= 300000))
 	 * 			|	then (new this).getMaxSpeed() == maxSpeed
 	 * @post	If the maximum speed is NaN, a negative number or larger than the speed of light,
-	 * 			the maximum speed of this new ship is equal to the speed of light.
+	 * 			the maximum speed of this new element is equal to the speed of light.
 	 * 			|if (Double.isNaN(maxSpeed) || (maxSpeed  < 0) || (maxSpeed > 300000))
 	 * 			|	then (new this).getMaxSpeed() == 300000;
-	 * @effect	The given position is set as the position of this new ship.
+	 * @post	This new element is not located in a world.
+	 * 			| (new this).getWorld() == null
+	 * @effect	The given position is set as the position of this new element.
 	 *       	| this.setPostion(position)
-	 * @effect 	The given angle is set as the angle of this new ship.
-	 * 			| this.setAngle(angle)
-	 * @effect	The given velocity is set as the velocity of this new ship.
+	 * @effect	The given velocity is set as the velocity of this new element.
 	 * 			| this.setVelocity(velocity)
 	 * @throws	IllegalArgumentException
-	 * 			Check if the given radius is valid.
+	 * 			The given radius is not a valid radius.
 	 * 			| ! this.isValidRadius(radius)
+	 * @throws	IllegalArgumentException
+	 * 			The given mass is not a valid mass.
+	 * 			| ! isValidMass(mass)
 	 */
 	@Raw
 	public Element(Vector2D position, double radius, Vector2D velocity, double maxSpeed, double mass)
-			throws IllegalArgumentException, NullPointerException{
+			throws IllegalArgumentException{
 		if (!isValidRadius(radius)){
 			throw new IllegalArgumentException("Given radius was invalid while constructing new element.");
 		}
 		if (!isValidMass(mass)){
-			throw new IllegalArgumentException("Given mass was invalis while constructing new element");
+			throw new IllegalArgumentException("Given mass was invalid while constructing new element.");
 		}
 		setPosition(position);
 		this.radius = radius;
-		
+
 		if ((!Double.isNaN(maxSpeed)) && (maxSpeed  >=0) && (maxSpeed <= 300000)){
 			this.maxSpeed = maxSpeed;
 		}
 		else{
 			this.maxSpeed = 300000;
 		}
-		setVelocity(velocity);	
+		setVelocity(velocity);
 		this.mass = mass;
 	}
-		
-	
+
+
 	/**
-	 * Initialize this new ship with given position, angle, radius, velocity and maximum speed set as the speed of light.
-	 * 
+	 * Initialize this new element with given position, radius, velocity and mass,
+	 * and maximum speed set as the speed of light.
+	 *
 	 * @param 	position
-	 * 			The 2D vector containing the position coordinates for this new ship.
-	 * @param 	angle
-	 * 			The angle for this new ship.
+	 * 			The 2D vector containing the position coordinates for this new element.
 	 * @param 	radius
-	 * 			The radius for this new ship.
+	 * 			The radius for this new element.
 	 * @param 	velocity
-	 * 			The 2D vector containing the velocity components for this new ship.
-	 * @param 	maxSpeed
-	 * 			The maximum allowed speed for this new ship.
-	 * @effect	The new ship is initialized with position equal to the given position, 
-	 * 			angle equal to the given angle, radius equal to the given 
-	 * 			radius, velocity equal to given velocity and maximum speed 
-	 * 			equal to the speed of light.
-	 * 			| this(position, angle, radius, velocity, 300000)
+	 * 			The 2D vector containing the velocity components for this new element.
+	 * @param	mass
+	 * 			The mass for this new element.
+	 * @effect	The new element is initialized with position equal to the given position,
+	 * 			radius equal to the given radius, velocity equal to given velocity,
+	 * 			maximum speed equal to the speed of light and mass equal to the given mass.
+	 * 			| this(position, radius, velocity, 300000, mass)
 	 */
 	@Raw
 	public Element(Vector2D position, double radius, Vector2D velocity, double mass)
-			throws IllegalArgumentException, NullPointerException{
+			throws IllegalArgumentException{
 		this(position, radius, velocity, 300000, mass);
 	}
-	
-	/**
-	 * Initialize this new ship.
-	 * 
-	 * @effect	The new ship is initialized with the components of position equal to 0, 
-	 * 			the angle equal to 0, the radius equal to the minimum radius,
-	 * 			the velocity components equal to 0 and the maximum speed 
-	 * 			equal to the speed of light.
-	 * 			| this(new Vector(0,0), 0, getMinRadius(), new Vector(0,0))
-	 */
-	@Raw
-	public Element() 
-			throws IllegalArgumentException, NullPointerException{
-		this(new Vector2D(0,0), minRadius, new Vector2D(0,0), 100);
-	}
-		
-	
+
+
 	/**
 	 * Return the position of this element.
 	 * The position is a 2D vector that contains the coordinates of this element.
 	 */
 	@Basic @Raw
 	public Vector2D getPosition() {
+		if (this.position == null)
+			this.position = new Vector2D(this.x, this.y);
 		return this.position;
 	}
-	
+
+	/**
+	 * Return the x-coordinate of the position of this element.
+	 */
+	@Basic @Raw
+	public double getX() {
+		return this.x;
+	}
+
+	/**
+	 * Return the y-coordinate of the position of this element.
+	 */
+	@Basic @Raw
+	public double getY() {
+		return this.y;
+	}
+
 	/**
 	 * Check whether the given position is a valid position for an element.
-	 * 
+	 *
 	 * @param	position
 	 * 			The position to check.
 	 * @return	True if and only if the given 2D position vector is effective and does not contain NaN.
 	 *			| result == (position != null && !position.containsNaN())
 	 * @note	This checker checks for effectiveness and NaN at the same time. This means
-	 * 			that this function is not useful when different exceptions are 
-	 * 			desired for the different cases (e.g. NullPointerException 
+	 * 			that this function is not useful when different exceptions are
+	 * 			desired for the different cases (e.g. NullPointerException
 	 * 			and IllegalArgumentException), it is however simpler towards the user.
 	 */
 	public boolean isValidPosition(Vector2D position) {
 		return (position != null && !position.containsNaN());
 	}
-	
+
 	/**
-	 * Set the position of this ship as a 2D vector containing the coordinates of this ship.
-	 * 
+	 * Set the position of this element as a 2D vector containing the coordinates of this element.
+	 *
 	 * @param	position
-	 * 			The new position for this ship.
-	 * @post	The position of this ship is equal to the given position.
+	 * 			The new position for this element.
+	 * @post	The position of this element is equal to the given position.
 	 * 			| (new this).getPosition == position
 	 * @throws	IllegalArgumentException
-	 * 			The given position is not a valid position for a ship.
+	 * 			The given position is not a valid position for an element.
 	 * 			| ! isValidPosition(position)
 	 */
 	private void setPosition(Vector2D position) throws IllegalArgumentException {
 		if (!isValidPosition(position))
 			throw new IllegalArgumentException("Invalid position.");
-		 this.position = position;
+		this.x = position.getXComponent();
+		this.y = position.getYComponent();
+		this.position = position;
 	}
-	
+
 	/**
-	 * Variable registering the position of this ship.
+	 * Set the position of this element to the given coordinates.
+	 *
+	 * @post	The coordinates of this element are equal to the given coordinates.
+	 * 			| (new this).getX() == x && (new this).getY() == y
+	 * @throws	IllegalArgumentException
+	 * 			One of the given coordinates is NaN.
+	 * 			| Double.isNaN(x) || Double.isNaN(y)
+	 */
+	private void setPosition(double x, double y) throws IllegalArgumentException {
+		if (Double.isNaN(x) || Double.isNaN(y))
+			throw new IllegalArgumentException("Invalid position.");
+		this.x = x;
+		this.y = y;
+		this.position = null;
+	}
+
+	/**
+	 * Variables registering the coordinates of this element.
 	 * The coordinates are measured in km.
 	 */
+	private double x, y;
+
+	/**
+	 * Variable registering the position of this element as a vector, built from its
+	 * coordinates when asked for, or null if the coordinates changed since.
+	 */
 	private Vector2D position;
-		
+
 	/**
 	 * Check whether the given time period is a valid time period.
-	 * 
+	 *
 	 * @param 	deltaT
 	 * 			The time period to check.
 	 * @return	True if and only if the given time period is a number that is positive.
 	 * 			| result == (!Double.isNaN(deltaT)) && (deltaT >= 0)
-	 * @note	Checking for NaN is actually redundant since the boolean (deltaT >= 0) returns false in case 
+	 * @note	Checking for NaN is actually redundant since the boolean (deltaT >= 0) returns false in case
 	 * 			deltaT is NaN. It is however excluded explicitly for clarity towards the user.
 	 */
 	public static boolean isValidTime(double deltaT){
 		return (!Double.isNaN(deltaT)) && (deltaT >= 0);
 	}
-	
+
 	/**
-	 * Calculate new position of this ship after a time period of deltaT based on current position and velocity.
-	 * 
+	 * Calculate new position of this element after a time period of deltaT based on current position and velocity.
+	 *
 	 * @param 	deltaT
-	 * 			Time period over which this ship moves.
-	 * @effect	The resulting position of this ship is the sum of on the one hand the position of this ship,
-	 * 			and on the other hand the product of the given time with the velocity of this ship.
-	 * 			| (new this).getPosition == this.getPosition().add(this.getVelocity().multiply(deltaT))) 
+	 * 			Time period over which this element moves.
+	 * @effect	The resulting position of this element is the sum of on the one hand the position of this element,
+	 * 			and on the other hand the product of the given time with the velocity of this element.
+	 * 			| (new this).getPosition == this.getPosition().add(this.getVelocity().multiply(deltaT)))
+	 * @effect	If this element is located in a world, it is woken up and its next boundary
+	 * 			collision is rescheduled.
+	 * 			| if (getWorld() != null)
+	 * 			|	then getWorld().wake(this) && getWorld().scheduleBoundaryCollision(this)
 	 * @throws	IllegalArgumentException
 	 * 			The given time period is not a valid time period.
 	 * 			| !isValidTime(deltaT)
@@ -188,133 +226,321 @@ public class Element{
 	// which are both cases that can be handled within setPosition (either without problems or by throwing an exception).
 	public void move(double deltaT) throws IllegalArgumentException {
 		if (!isValidTime(deltaT))
-			throw new IllegalArgumentException("Invalid time step while attempting to move the ship.");
-		this.setPosition(this.getPosition().add(this.getVelocity().multiply(deltaT)));
+			throw new IllegalArgumentException("Invalid time step while attempting to move the element.");
+		drift(deltaT);
+		if (getWorld() != null){
+			getWorld().wake(this);
+			getWorld().scheduleBoundaryCollision(this);
+		}
 	}
-	
-	
+
+	/**
+	 * Move this element along its velocity over the given valid time period, as its world does
+	 * while evolving. Since the world time advances by the same period, the boundary collision
+	 * scheduled for this element remains valid. In a toroidal world, the new position is
+	 * wrapped around the boundaries of that world.
+	 */
+	void drift(double deltaT){
+		double x = getX() + getXVelocity() * deltaT;
+		double y = getY() + getYVelocity() * deltaT;
+		if (getWorld() != null && getWorld().isToroidal()){
+			x = getWorld().wrapX(x);
+			y = getWorld().wrapY(y);
+		}
+		this.setPosition(x, y);
+	}
+
 	/**
-	 * Return the velocity of this ship. 
+	 * Move this element along its velocity over the given valid time period as drift does,
+	 * wrapping the new position around the boundaries of the world of this element if the
+	 * given flag is set, but without checking the new position.
+	 *
+	 * A valid time period and a velocity without NaN entries, which setVelocity guarantees,
+	 * give a position without NaN entries. The world checks the time period once for all its
+	 * elements and may verify the result; see GameWorld.verifyInvariants().
+	 */
+	void driftUnchecked(double deltaT, boolean wrap){
+		double x = getX() + getXVelocity() * deltaT;
+		double y = getY() + getYVelocity() * deltaT;
+		if (wrap){
+			x = getWorld().wrapX(x);
+			y = getWorld().wrapY(y);
+		}
+		this.x = x;
+		this.y = y;
+		this.position = null;
+	}
+
+	/**
+	 * Wrap the position of this element around the boundaries of the given toroidal world.
+	 */
+	void wrapInto(GameWorld world){
+		double x = getX();
+		double y = getY();
+		double wrappedX = world.wrapX(x);
+		double wrappedY = world.wrapY(y);
+		if (wrappedX != x || wrappedY != y)
+			this.setPosition(wrappedX, wrappedY);
+	}
+
+	/**
+	 * Move this element back within the boundaries of the given bounded world, if its disc
+	 * crosses one, and turn its velocity away from each boundary it crossed.
+	 */
+	void confineTo(GameWorld world){
+		double x = getX();
+		double y = getY();
+		double confinedX = Math.max(getRadius(), Math.min(world.getWidth() - getRadius(), x));
+		double confinedY = Math.max(getRadius(), Math.min(world.getHeigth() - getRadius(), y));
+		double vx = getXVelocity();
+		double vy = getYVelocity();
+		if (confinedX != x)
+			vx = (x < confinedX) ? Math.abs(vx) : -Math.abs(vx);
+		if (confinedY != y)
+			vy = (y < confinedY) ? Math.abs(vy) : -Math.abs(vy);
+		this.setPosition(confinedX, confinedY);
+		this.setVelocity(vx, vy);
+	}
+
+
+	/**
+	 * Return the velocity of this element.
 	 * The velocity is a 2D vector that contains the velocity in the x-direction and the y-direction.
 	 */
 	@Basic @Raw
 	public Vector2D getVelocity(){
+		if (this.velocity == null)
+			this.velocity = new Vector2D(this.xVelocity, this.yVelocity);
 		return this.velocity;
 	}
-	
+
 	/**
-	 * Set the velocity of this ship as a 2D vector containing the velocity in the x-direction and the y-direction.
-	 * 
+	 * Return the velocity of this element in the x-direction.
+	 */
+	@Basic @Raw
+	public double getXVelocity(){
+		return this.xVelocity;
+	}
+
+	/**
+	 * Return the velocity of this element in the y-direction.
+	 */
+	@Basic @Raw
+	public double getYVelocity(){
+		return this.yVelocity;
+	}
+
+	/**
+	 * Set the velocity of this element as a 2D vector containing the velocity in the x-direction and the y-direction.
+	 *
 	 * @param	velocity
-	 * 			The new velocity for this ship.
-	 * @post	If the given velocity is effective, does not contain any NaN entries and 
+	 * 			The new velocity for this element.
+	 * @post	If the given velocity is effective, does not contain any NaN entries and
 	 * 			if the norm of the given velocity is smaller than or equal to the maximum allowed speed,
-	 * 			the velocity of this ship is equal to the given velocity.
+	 * 			the velocity of this element is equal to the given velocity.
 	 * 			| if ((velocity != null) && (!velocity.containsNaN()) && (fuzzyLessThanOrEqualTo(velocity.getNorm(),this.getMaxSpeed())))
 	 * 			|		then (new this).getVelocity().equals(velocity)
-	 * @post	If the given velocity is effective, does not contain any NaN entries and 
-	 * 			if the norm of the given velocity exceeds the maximum allowed speed, the velocity 
-	 * 			of this ship has the same direction as the given velocity and a norm equal 
+	 * @post	If the given velocity is effective, does not contain any NaN entries and
+	 * 			if the norm of the given velocity exceeds the maximum allowed speed, the velocity
+	 * 			of this element has the same direction as the given velocity and a norm equal
 	 * 			to the maximum allowed speed.
 	 * 			| if ((velocity != null) &&  (!velocity.containsNaN()) && (!fuzzyLessThanOrEqualTo(velocity.getNorm(),this.getMaxSpeed())))
 	 * 			|	then (new this).getVelocity.getNorm() == this.getMaxSpeed()
 	 * 			|		 (new this).getVelocity.getDirection().equals(velocity.getDirection())
-	 * @post 	If the given velocity is non-effective or contains a NaN entry, 
-	 * 			the velocity of this ship is set to zero.
+	 * @post 	If the given velocity is non-effective or contains a NaN entry,
+	 * 			the velocity of this element is set to zero.
 	 * 			|if ((velocity == null) || (velocity.containsNaN())
 	 * 			|	then (new this).getVelocity == new Vector2D(0,0)
+	 * @effect	If this element is located in a world, it is woken up and its next boundary
+	 * 			collision is rescheduled.
+	 * 			| if (getWorld() != null)
+	 * 			|	then getWorld().wake(this) && getWorld().scheduleBoundaryCollision(this)
 	 */
-	private void setVelocity(Vector2D velocity){
-		if (velocity == null || velocity.containsNaN()){
-			this.velocity = new Vector2D(0,0);
-		} else {
-			// Use of fuzzyLessThanOrEqualTo to save on calculation time when
-			// the given velocity is only slightly higher than the maximum speed.
-			// The effect will be the same as when the speed is reset to the maximum speed.
-			if (fuzzyLessThanOrEqualTo(velocity.getNorm(),this.getMaxSpeed())){
+	@Raw
+	protected void setVelocity(Vector2D velocity){
+		if (velocity == null)
+			setVelocity(0, 0);
+		else {
+			setVelocity(velocity.getXComponent(), velocity.getYComponent());
+			if (this.xVelocity == velocity.getXComponent() && this.yVelocity == velocity.getYComponent())
 				this.velocity = velocity;
-			} else {
-				this.velocity = velocity.getDirection().multiply(this.getMaxSpeed());
-				}
 		}
 	}
-	
+
 	/**
-	 * Variable registering the velocity of this ship.
-	 * The velocity is a 2D vector, containing the velocity in x-direction and y-direction, expressed in km/s.
+	 * Set the velocity of this element to the given components.
+	 *
+	 * @effect	The velocity of this element is set as if by setVelocity(Vector2D) with a vector
+	 * 			holding the given components.
+	 * 			| setVelocity(new Vector2D(xVelocity, yVelocity))
+	 */
+	@Raw
+	protected void setVelocity(double xVelocity, double yVelocity){
+		if (Double.isNaN(xVelocity) || Double.isNaN(yVelocity)){
+			xVelocity = 0;
+			yVelocity = 0;
+		// Use of a fuzzy comparison to save on calculation time when
+		// the given velocity is only slightly higher than the maximum speed.
+		// The effect will be the same as when the speed is reset to the maximum speed.
+		// The squared norm is compared, so no square root is taken.
+		} else if (!fuzzyNormLessThanOrEqualTo(xVelocity, yVelocity, this.getMaxSpeed())){
+			Vector2D clamped = new Vector2D(xVelocity, yVelocity).getDirection().multiply(this.getMaxSpeed());
+			xVelocity = clamped.getXComponent();
+			yVelocity = clamped.getYComponent();
+		}
+		this.xVelocity = xVelocity;
+		this.yVelocity = yVelocity;
+		this.velocity = null;
+		velocityVersion++;
+		if (getWorld() != null){
+			getWorld().wake(this);
+			getWorld().scheduleBoundaryCollision(this);
+		}
+	}
+
+	/**
+	 * Variables registering the velocity of this element in x-direction and y-direction,
+	 * expressed in km/s.
+	 */
+	private double xVelocity, yVelocity;
+
+	/**
+	 * Variable registering the velocity of this element as a vector, built from its
+	 * components when asked for, or null if the components changed since.
 	 */
 	private Vector2D velocity;
-	
+
+	/**
+	 * Return the number of times the velocity of this element has been set. A collision
+	 * its world predicted for this element no longer holds once this number changes.
+	 */
+	@Raw
+	int getVelocityVersion(){
+		return this.velocityVersion;
+	}
+
+	private int velocityVersion = 0;
+
+	/**
+	 * Return the time of its world up to which this element has been moved. While its
+	 * world evolves, elements that are not involved in a collision lag behind and are
+	 * only moved when they are needed.
+	 */
+	@Raw
+	double getPositionTime(){
+		return this.positionTime;
+	}
+
+	/**
+	 * Register the given time of its world as the time up to which this element has been moved.
+	 */
+	@Raw
+	void setPositionTime(double time){
+		this.positionTime = time;
+	}
+
+	private double positionTime = 0;
+
 	/**
-	 * Return the maximum speed of this ship.
+	 * Return the maximum speed of this element.
 	 */
 	@Basic @Immutable @Raw
 	public double getMaxSpeed(){
 		return this.maxSpeed;
 	}
-	
+
 	/**
-	 * Variable registering the maximum allowed total speed of this ship.
+	 * Variable registering the maximum allowed total speed of this element.
 	 * This variable is expressed in km/s.
 	 */
 	private final double maxSpeed;
-	
-	/**
-	 * Calculate the distance between this ship and the given ship.
-	 * 
-	 * @param 	otherShip
-	 * 			The ship to which the distance is calculated.
-	 * @return	The distance between this ship and the given ship if the given ship is effective, 
-	 * 			zero if this ship and the given ship are the same.
-	 * 			| if(this != otherShip)
-	 * 			|		result == this.getPosition().subtract(otherShip.getPosition()).getNorm() - 
-	 * 			|            (this.getRadius()+otherShip.getRadius())
-	 * @return	Zero if this ship and the given ship are the same.
-	 * 			| if(this == otherShip)
+
+	/**
+	 * Calculate the distance between this element and the given element.
+	 *
+	 * @param 	otherElement
+	 * 			The element to which the distance is calculated.
+	 * @return	The distance between this element and the given element if the given element is effective
+	 * 			and different from this element. If both elements are located in the same toroidal world,
+	 * 			the distance is measured to the nearest image of the given element.
+	 * 			| if(this != otherElement)
+	 * 			|		result == Math.hypot(getXOffsetTo(otherElement), getYOffsetTo(otherElement)) -
+	 * 			|            (this.getRadius()+otherElement.getRadius())
+	 * @return	Zero if this element and the given element are the same.
+	 * 			| if(this == otherElement)
 	 * 			|		result == 0
 	 * @throws	NullPointerException
-	 * 			The otherShip is non existent.
-	 * 			| otherShip == null
+	 * 			The other element is non existent.
+	 * 			| otherElement == null
 	 */
 	public double getDistanceBetween(Element otherElement) throws NullPointerException{
 		if(otherElement == null)
 			throw new NullPointerException("The other element is non existent.");
 		if(this == otherElement)
 			return 0;
-		else 
-			return this.getPosition().subtract(otherElement.getPosition()).getNorm() - 
+		else
+			return Math.sqrt(Vector2D.lengthSq(getXOffsetTo(otherElement), getYOffsetTo(otherElement))) -
 					(this.getRadius()+otherElement.getRadius());
 	}
-	
+
+	/**
+	 * Return the difference between the x-coordinate of the given element and that of this element.
+	 * If both elements are located in the same toroidal world, the difference is taken to the
+	 * nearest image of the given element.
+	 */
+	double getXOffsetTo(Element otherElement){
+		double dx = otherElement.getX() - this.getX();
+		if (shareToroidalWorld(otherElement))
+			dx = getWorld().getNearestXOffset(dx);
+		return dx;
+	}
+
+	/**
+	 * Return the difference between the y-coordinate of the given element and that of this element.
+	 * If both elements are located in the same toroidal world, the difference is taken to the
+	 * nearest image of the given element.
+	 */
+	double getYOffsetTo(Element otherElement){
+		double dy = otherElement.getY() - this.getY();
+		if (shareToroidalWorld(otherElement))
+			dy = getWorld().getNearestYOffset(dy);
+		return dy;
+	}
+
+	private boolean shareToroidalWorld(Element otherElement){
+		return getWorld() != null && getWorld().isToroidal() && otherElement.getWorld() == getWorld();
+	}
+
 	/**
 	 * Check whether this element and the given element overlap.
-	 * 
-	 * @param 	otherShip
-	 * 			The ship for which the overlap with this ship is checked.
-	 * @return	True if this ship and the given ship are the same or
-	 * 			if this ship and the given ship overlap.
-	 *			| result == ((this == otherShip) || (this.getDistanceBetween(otherShip) < 0))
+	 *
+	 * @param 	otherElement
+	 * 			The element for which the overlap with this element is checked.
+	 * @return	True if this element and the given element are the same or
+	 * 			if this element and the given element overlap.
+	 *			| result == ((this == otherElement) || (this.getDistanceBetween(otherElement) < 0))
 	 */
 	public boolean overlap(Element otherElement) throws NullPointerException{
 		return ((this == otherElement) || (this.getDistanceBetween(otherElement) < 0));
 	}
-	
+
 	/**
-	 * The time to collision between this ship and the given ship.
-	 * 
-	 * @param 	otherShip
-	 * 			The ship for which the time to collision is calculated.
-	 * @return	Double.POSITIVE_INFINITY if this ship and the given ship are the same.
-	 * 			| if (this == otherShip)
+	 * The time to collision between this element and the given element.
+	 *
+	 * @param 	otherElement
+	 * 			The element for which the time to collision is calculated.
+	 * @return	Double.POSITIVE_INFINITY if this element and the given element are the same.
+	 * 			| if (this == otherElement)
 	 * 			|	result == Double.POSITIVE_INFINITY
 	 * @return	The time until collision according to current position and velocity
-	 * 			if this ship and the given ship (different from this ship), 
-	 * 			both moving in their current direction,	will ever collide, 
-	 * 			else Double.POSITIVE_INFINITY.
-	 * 			| if (this != otherShip)
+	 * 			if this element and the given element (different from this element),
+	 * 			both moving in their current direction,	will ever collide,
+	 * 			else Double.POSITIVE_INFINITY. If both elements are located in the same toroidal
+	 * 			world, the nearest image of the given element is considered.
+	 * 			| if (this != otherElement)
 	 * 			|	let
-	 * 			| 		allOverlapTimes = {collisionTime in Double | (when (this.move(collisionTime)  
-	 * 			|								&& otherShip.move(collisionTime)) then this.overlap(otherShip))
+	 * 			| 		allOverlapTimes = {collisionTime in Double | (when (this.move(collisionTime)
+	 * 			|								&& otherElement.move(collisionTime)) then this.overlap(otherElement))
 	 * 			|								&& (collisionTime != Double.POSITIVE_INFINITY)}
 	 * 			|	 in
 	 * 			|	 if (!isEmpty(allOverlapTimes))
@@ -322,140 +548,409 @@ public class Element{
 	 * 			|	 else
 	 * 			|		result == Double.POSITIVE_INFINITY
 	 * @throws	NullPointerException
-	 * 			The otherShip is non existent
-	 * 			| otherShip == null
+	 * 			The other element is non existent
+	 * 			| otherElement == null
 	 */
-
 	public double getTimeToCollision(Element otherElement)throws NullPointerException{
 		if (otherElement == null)
-			throw new NullPointerException("The other ship is non existent.");
+			throw new NullPointerException("The other element is non existent.");
 		if (this != otherElement) {
-			Vector2D dr = this.getPosition().subtract(otherElement.getPosition());
-			Vector2D dv = this.getVelocity().subtract(otherElement.getVelocity());
-			double drdr = dr.getDotProduct(dr);
-			double dvdv = dv.getDotProduct(dv);
-			double dvdr = dr.getDotProduct(dv);
-			double d = dvdr * dvdr - dvdv * (drdr - 
-					Math.pow((this.getRadius() + otherElement.getRadius()), 2));
+			double drx = getXOffsetTo(otherElement);
+			double dry = getYOffsetTo(otherElement);
+			double dvx = otherElement.getXVelocity() - this.getXVelocity();
+			double dvy = otherElement.getYVelocity() - this.getYVelocity();
+			double drdr = Vector2D.lengthSq(drx, dry);
+			double dvdv = Vector2D.lengthSq(dvx, dvy);
+			double dvdr = Vector2D.dot(drx, dry, dvx, dvy);
+			double sigma = this.getRadius() + otherElement.getRadius();
+			double d = dvdr * dvdr - dvdv * (drdr - sigma * sigma);
 			if (dvdr >= 0 || d <= 0)
 				return Double.POSITIVE_INFINITY;
 			else
 				return -1 * (dvdr + Math.sqrt(d)) / dvdv;
-		} 
+		}
 		else {
 			return Double.POSITIVE_INFINITY;
 		}
 	}
-	
+
 	/**
-	 * The collision point of this ship and the other ship.
-	 * 
-	 * @param 	otherShip
-	 * 			The ship on which the collision point of this ship is calculated.
-	 * @return	If this ship and the other ship will collide, the collision position is returned
-	 * 			as the middle of the connecting line on the time of collision.
-	 *  		| let collisionTime = this.getTimeToCollision(otherShip)
+	 * The collision point of this element and the other element.
+	 *
+	 * @param 	otherElement
+	 * 			The element on which the collision point of this element is calculated.
+	 * @return	If this element and the other element will collide, the collision position is returned
+	 * 			as the point on the connecting line at the time of collision where both elements touch.
+	 * 			In a toroidal world, that point is wrapped around the boundaries of the world.
+	 *  		| let collisionTime = this.getTimeToCollision(otherElement)
 	 *  		| in
 	 *  		|	if(collisionTime != Double.POSITIVE_INFINITY)
-	 *  		|		when(otherShip.move(collisionTime) && this.move(collisionTime))
+	 *  		|		when(otherElement.move(collisionTime) && this.move(collisionTime))
 	 *  		|		then
-	 *  		|			(otherShip.getPosition().subtract(result)).getNorm() <= otherShip.getRadius()
+	 *  		|			(otherElement.getPosition().subtract(result)).getNorm() <= otherElement.getRadius()
 	 *  		|			(this.getPosition().subtract(result)).getNorm() <= this.getRadius()
-	 * @return	If this ship and the other ship never collide, null is returned.
-	 * 			| if(this.getTimeToCollision(otherShip) == Double.POSITIVE_INFINITY)
+	 * @return	If this element and the other element never collide, null is returned.
+	 * 			| if(this.getTimeToCollision(otherElement) == Double.POSITIVE_INFINITY)
 	 * 			|	then result == null
 	 * @throws	NullPointerException
-	 * 			The otherShip is non existent
-	 * 			| otherShip == null
+	 * 			The other element is non existent
+	 * 			| otherElement == null
 	 */
 	public Vector2D getCollisionPosition(Element otherElement) throws NullPointerException{
 		double timeToCollision = this.getTimeToCollision(otherElement);
 		if(timeToCollision != Double.POSITIVE_INFINITY){
-			Ship thisClone = new Ship(this.getPosition(), this.getAngle(), this.getRadius(), this.getVelocity(), this.getMaxSpeed());
-			Ship otherShipClone = new Ship(otherShip.getPosition(), otherShip.getAngle(), otherShip.getRadius(), otherShip.getVelocity(), otherShip.getMaxSpeed());
-
-			thisClone.move(timeToCollision);
-			otherShipClone.move(timeToCollision);
-			Vector2D newPositionThis = thisClone.getPosition();
-			Vector2D newPositionOtherShip = otherShipClone.getPosition();
-			
-			Vector2D collisionPosition = newPositionThis.add(newPositionOtherShip.subtract(newPositionThis).getDirection().multiply(this.getRadius()));
-			return collisionPosition;
-
+			Vector2D positionOther = otherElement.getPosition();
+			if (shareToroidalWorld(otherElement))
+				positionOther = this.getPosition().add(new Vector2D(getXOffsetTo(otherElement), getYOffsetTo(otherElement)));
+			Vector2D newPositionThis = this.getPosition().add(this.getVelocity().multiply(timeToCollision));
+			Vector2D newPositionOther = positionOther.add(otherElement.getVelocity().multiply(timeToCollision));
+			Vector2D result = newPositionThis.add(newPositionOther.subtract(newPositionThis).getDirection().multiply(this.getRadius()));
+			if (shareToroidalWorld(otherElement))
+				result = new Vector2D(getWorld().wrapX(result.getXComponent()), getWorld().wrapY(result.getYComponent()));
+			return result;
 		} else{
 			return null;
 		}
 	}
-	
-	
-	
+
+
 	/**
-	 * Return the radius of this ship.
+	 * Return the radius of this element.
 	 */
-	@Basic @Immutable @Raw
+	@Basic @Raw
 	public double getRadius(){
 		return this.radius;
 	}
-	
+
 	/**
-	 * Check whether the given radius is a valid radius for a ship.
-	 * 
+	 * Check whether the given radius is a valid radius for an element.
+	 *
 	 * @param	radius
 	 * 			Radius to check.
-	 * @return	True if and only if the given radius is a number 
+	 * @return	True if and only if the given radius is a number
 	 * 			larger than the minimum radius and smaller than or equal to the maximum double value.
-	 * 			| result == (!Double.isNaN(radius)) && ((radius >= this.getMinRadius()) && (radius <= Double.MAX_VALUE))
+	 * 			| result == (!Double.isNaN(radius)) && ((radius > this.getMinRadius()) && (radius <= Double.MAX_VALUE))
 	 */
 	public boolean isValidRadius(double radius){
-		return ((!Double.isNaN(radius)) && (this.getMinRadius() < radius) 
+		return ((!Double.isNaN(radius)) && (this.getMinRadius() < radius)
 				&& (radius <= Double.MAX_VALUE));
 	}
-	
+
 	/**
-	 * Return the minimum radius of this ship.
+	 * Return the minimum radius of this element.
 	 */
 	@Basic @Immutable @Raw
 	public double getMinRadius(){
 		return minRadius;
 	}
-	
+
 	/**
-	 * Variable registering radius of this ship.
-	 * The radius is expressed in km.
+	 * Variable registering radius of this element.
+	 * The radius is expressed in km. It only changes when a terminated
+	 * element is reinitialized.
 	 */
-	private final double radius;
-	
+	private double radius;
+
 	/**
-	 * Variable registering the minimum allowed radius of this ship.
+	 * Variable registering the minimum allowed radius of an element.
 	 * The minimum radius is expressed in km.
 	 */
 	private static final double minRadius = 0;
-	
-	
+
+
 	/**
 	 * Check whether the given mass is a valid mass for an element.
-	 * 
+	 *
 	 * @param	mass
 	 * 			Mass to check.
-	 * @return	True if and only if the given mass is a number 
-	 * 			larger than 0.
-	 * 			| result == mass>0
+	 * @return	True if and only if the given mass is a number
+	 * 			larger than 0 and smaller than or equal to the maximum double value.
+	 * 			| result == (mass > 0) && (mass <= Double.MAX_VALUE)
 	 */
-	private boolean isValidMass(double mass) {
-		return mass>0;
+	public static boolean isValidMass(double mass) {
+		return (mass > 0) && (mass <= Double.MAX_VALUE);
 	}
-	
+
+	/**
+	 * Return the mass of this element.
+	 */
+	@Basic @Raw
 	public double getMass() {
 		return mass;
 	}
 
 	/**
-	 * Variable registering the mass of this ship.
-	 * The mass is expressed in kg.
+	 * Variable registering the mass of this element.
+	 * The mass is expressed in kg. It only changes when a terminated
+	 * element is reinitialized.
+	 */
+	private double mass;
+
+
+	/**
+	 * Return the game world in which this element is located,
+	 * or null if this element is not located in a world.
+	 */
+	@Basic @Raw
+	public GameWorld getWorld(){
+		return this.world;
+	}
+
+	/**
+	 * Register the given world as the world of this element.
+	 *
+	 * @param	world
+	 * 			The world in which this element is located, or null.
+	 * @post	The world of this element is equal to the given world.
+	 * 			| (new this).getWorld() == world
+	 * @note	This method only maintains this side of the association;
+	 * 			it is invoked by the world when this element is added or removed.
+	 */
+	@Raw
+	void setWorld(GameWorld world){
+		this.world = world;
+	}
+
+	/**
+	 * Variable registering the world in which this element is located.
+	 */
+	private GameWorld world;
+
+	/**
+	 * Return the index of this element in the element list of its world.
+	 */
+	@Raw
+	int getWorldIndex(){
+		return this.worldIndex;
+	}
+
+	/**
+	 * Set the index of this element in the element list of its world.
+	 */
+	@Raw
+	void setWorldIndex(int worldIndex){
+		this.worldIndex = worldIndex;
+	}
+
+	/**
+	 * Variable registering the index of this element in the element list of its world,
+	 * so that it can be removed from that list in constant time.
+	 */
+	private int worldIndex = -1;
+
+	/**
+	 * Return the index of this element in the set of elements of its kind in its world.
+	 */
+	@Raw
+	int getKindIndex(){
+		return this.kindIndex;
+	}
+
+	/**
+	 * Set the index of this element in the set of elements of its kind in its world.
+	 */
+	@Raw
+	void setKindIndex(int kindIndex){
+		this.kindIndex = kindIndex;
+	}
+
+	/**
+	 * Variable registering the index of this element in the set of ships, asteroids
+	 * or bullets of its world.
+	 */
+	private int kindIndex = -1;
+
+	/**
+	 * Return the identifier of this element. Identifiers are unique among all elements
+	 * ever created, and an element that is reinitialized gets a new identifier, so that
+	 * an identifier never denotes two different bullets or fragments.
+	 */
+	@Basic @Raw
+	public long getIdentifier(){
+		return this.identifier;
+	}
+
+	/**
+	 * Variable registering the identifier of this element.
+	 */
+	private long identifier = nextIdentifier.getAndIncrement();
+
+	/**
+	 * Variable registering the identifier of the next element to be created or reinitialized.
+	 * Worlds may evolve on different threads, hence the atomic counter.
 	 */
-	private final double mass;
-	
-	public boolean isShip(Element element){
-		return element.getClass() == Ship;
+	private static final AtomicLong nextIdentifier = new AtomicLong();
+
+	/**
+	 * Return the position of the next boundary collision of this element in the
+	 * boundary event queue of its world.
+	 */
+	@Raw
+	int getBoundaryEventIndex(){
+		return this.boundaryEventIndex;
+	}
+
+	/**
+	 * Set the position of the next boundary collision of this element in the
+	 * boundary event queue of its world.
+	 */
+	@Raw
+	void setBoundaryEventIndex(int boundaryEventIndex){
+		this.boundaryEventIndex = boundaryEventIndex;
+	}
+
+	/**
+	 * Variable registering the position of the next boundary collision of this element
+	 * in the boundary event queue of its world, or -1 if none is scheduled.
+	 */
+	private int boundaryEventIndex = -1;
+
+	/**
+	 * Check whether this element is asleep.
+	 *
+	 * An element falls asleep in its world after a tick in which it was at rest and no
+	 * moving element came near it. The world does not move sleeping elements and does
+	 * not pair them with each other in its collision search.
+	 */
+	@Basic @Raw
+	public boolean isAsleep(){
+		return this.asleep;
+	}
+
+	/**
+	 * Set whether this element is asleep.
+	 */
+	@Raw
+	void setAsleep(boolean asleep){
+		this.asleep = asleep;
+	}
+
+	private boolean asleep = false;
+
+	/**
+	 * Return the number of the last tick of its world in which this element was near
+	 * a moving element, or -1 if there is none.
+	 */
+	@Raw
+	long getLastDisturbance(){
+		return this.lastDisturbance;
+	}
+
+	/**
+	 * Register the given tick as the last tick in which this element was near a moving element.
+	 */
+	@Raw
+	void setLastDisturbance(long tick){
+		this.lastDisturbance = tick;
+	}
+
+	private long lastDisturbance = -1;
+
+
+	/**
+	 * Check whether this element is terminated.
+	 */
+	@Basic @Raw
+	public boolean isTerminated(){
+		return this.isTerminated;
+	}
+
+	/**
+	 * Terminate this element.
+	 *
+	 * @post	This element is terminated.
+	 * 			| (new this).isTerminated()
+	 * @effect	If this element was located in a world, it is removed from that world.
+	 * 			| if (this.getWorld() != null)
+	 * 			|	then this.getWorld().removeElement(this)
+	 */
+	public void terminate(){
+		if (getWorld() != null)
+			getWorld().removeElement(this);
+		this.isTerminated = true;
+	}
+
+	/**
+	 * Variable registering whether this element is terminated.
+	 */
+	private boolean isTerminated = false;
+
+	/**
+	 * Bring this terminated element back to life with the given position, radius,
+	 * velocity and mass, as if it were newly constructed. No objects are allocated,
+	 * unless the given velocity exceeds the maximum speed of this element.
+	 *
+	 * @param	x
+	 * 			The new x-coordinate of this element.
+	 * @param	y
+	 * 			The new y-coordinate of this element.
+	 * @param	radius
+	 * 			The new radius of this element.
+	 * @param	xVelocity
+	 * 			The new velocity of this element in the x-direction.
+	 * @param	yVelocity
+	 * 			The new velocity of this element in the y-direction.
+	 * @param	mass
+	 * 			The new mass of this element.
+	 * @post	This element is not terminated and not located in a world.
+	 * 			| !(new this).isTerminated() && (new this).getWorld() == null
+	 * @post	The radius and mass of this element are equal to the given radius and mass.
+	 * 			| (new this).getRadius() == radius && (new this).getMass() == mass
+	 * @post	This element has a new identifier.
+	 * 			| (new this).getIdentifier() != getIdentifier()
+	 * @effect	The given coordinates and velocity are set as the position and velocity of this element.
+	 * 			| setPosition(x, y) && setVelocity(xVelocity, yVelocity)
+	 * @throws	IllegalStateException
+	 * 			This element is not terminated.
+	 * 			| !isTerminated()
+	 * @throws	IllegalArgumentException
+	 * 			The given radius or mass is not valid.
+	 * 			| !isValidRadius(radius) || !isValidMass(mass)
+	 * @note	Only pools that own their elements may reinitialize them; see FragmentPool.
+	 */
+	void reinitialize(double x, double y, double radius, double xVelocity, double yVelocity, double mass)
+			throws IllegalStateException, IllegalArgumentException{
+		if (!isTerminated())
+			throw new IllegalStateException("Only terminated elements can be reinitialized.");
+		if (!isValidRadius(radius) || !isValidMass(mass))
+			throw new IllegalArgumentException("Invalid radius or mass while reinitializing an element.");
+		setPosition(x, y);
+		setVelocity(xVelocity, yVelocity);
+		this.radius = radius;
+		this.mass = mass;
+		this.world = null;
+		this.worldIndex = -1;
+		this.kindIndex = -1;
+		this.boundaryEventIndex = -1;
+		this.asleep = false;
+		this.lastDisturbance = -1;
+		this.identifier = nextIdentifier.getAndIncrement();
+		this.isTerminated = false;
+	}
+
+	/**
+	 * Bring this element back to the given state, when its world is restored from a snapshot.
+	 * The state is set as is, without any checks and without involving the world of this
+	 * element, which restores the membership of this element itself.
+	 *
+	 * @post	This element is not terminated and has the given position, velocity, radius,
+	 * 			mass, sleep state and tick of its last disturbance.
+	 * 			| !(new this).isTerminated() && (new this).getPosition() == position
+	 * 			|	&& (new this).getVelocity() == velocity && (new this).getRadius() == radius
+	 * 			|	&& (new this).getMass() == mass && (new this).isAsleep() == asleep
+	 * 			|	&& (new this).getLastDisturbance() == lastDisturbance
+	 */
+	void restore(Vector2D position, Vector2D velocity, double radius, double mass, boolean asleep, long lastDisturbance){
+		this.x = position.getXComponent();
+		this.y = position.getYComponent();
+		this.position = position;
+		this.xVelocity = velocity.getXComponent();
+		this.yVelocity = velocity.getYComponent();
+		this.velocity = velocity;
+		this.radius = radius;
+		this.mass = mass;
+		this.asleep = asleep;
+		this.lastDisturbance = lastDisturbance;
+		this.isTerminated = false;
 	}
 }
@@ -0,0 +1,91 @@
+package asteroids.model;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of elements of one kind in a world, backed by an array list in which
+ * each element knows its own index.
+ *
+ * Adding, removing and testing membership take constant time and, once the
+ * list has grown to its working size, do not allocate. Removal moves the last
+ * element into the freed position, so the iteration order is not the order of
+ * insertion. An element can be a member of one such set at a time.
+ *
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+class ElementSet<E extends Element> extends AbstractSet<E> {
+
+	@Override
+	public boolean add(E element){
+		if (contains(element))
+			return false;
+		element.setKindIndex(list.size());
+		list.add(element);
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object object){
+		if (!contains(object))
+			return false;
+		Element element = (Element) object;
+		int index = element.getKindIndex();
+		E last = list.remove(list.size() - 1);
+		if (last != element){
+			list.set(index, last);
+			last.setKindIndex(index);
+		}
+		element.setKindIndex(-1);
+		return true;
+	}
+
+	@Override
+	public void clear(){
+		for (int i = 0; i < list.size(); i++)
+			list.get(i).setKindIndex(-1);
+		list.clear();
+	}
+
+	@Override
+	public boolean contains(Object object){
+		if (!(object instanceof Element))
+			return false;
+		int index = ((Element) object).getKindIndex();
+		return index >= 0 && index < list.size() && list.get(index) == object;
+	}
+
+	@Override
+	public int size(){
+		return list.size();
+	}
+
+	/**
+	 * Return the element at the given position in this set.
+	 */
+	E get(int index){
+		return list.get(index);
+	}
+
+	@Override
+	public Iterator<E> iterator(){
+		return new Iterator<E>(){
+			public boolean hasNext(){
+				return next < list.size();
+			}
+
+			public E next(){
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return list.get(next++);
+			}
+
+			private int next = 0;
+		};
+	}
+
+	private final ArrayList<E> list = new ArrayList<E>();
+}
@@ -1,182 +1,262 @@
 package asteroids.model;
+import java.util.Random;
+import java.util.Set;
+
 import asteroids.*;
 
 
 /**
- * This class implements the interface IFacade to use the 
- * class Ship to control ships in the GUI of Asteroids.
- * 
- * @version	1.1
+ * This class implements the interface IFacade to use the
+ * classes GameWorld, Ship, Asteroid and Bullet in the GUI of Asteroids.
+ *
+ * @version	2.0
  * @author 	Frederik Van Eeghem, Pieter Lietaert
  */
 
-public class Facade implements asteroids.IFacade{
-	public IShip createShip(){
+public class Facade implements IFacade<GameWorld, Ship, Asteroid, Bullet>{
+
+	public GameWorld createWorld(double width, double height){
 		try{
-			Ship newShip = new Ship(new Vector2D(0,0), 0, 10, new Vector2D(0,0));
-			IShip newShipCast = (IShip)newShip;
-			return newShipCast;
+			return new GameWorld(width, height);
 		} catch (Exception exc){
 			throw new ModelException(exc);
 		}
 	}
-	
-	public IShip createShip(double x, double y, double xVelocity, double yVelocity, double radius, double angle){
+
+	public double getWorldWidth(GameWorld world){
+		return world.getWidth();
+	}
+
+	public double getWorldHeight(GameWorld world){
+		return world.getHeigth();
+	}
+
+	public Set<Ship> getShips(GameWorld world){
+		return world.getShips();
+	}
+
+	public Set<Asteroid> getAsteroids(GameWorld world){
+		return world.getAsteroids();
+	}
+
+	public Set<Bullet> getBullets(GameWorld world){
+		return world.getBullets();
+	}
+
+	public void addShip(GameWorld world, Ship ship){
 		try{
-			return new Ship(new Vector2D(x,y), angle, radius, new Vector2D(xVelocity,yVelocity));
+			world.addShip(ship);
 		} catch (Exception exc){
 			throw new ModelException(exc);
 		}
 	}
-	
-	public double getX(IShip ship){
-		Ship realShip = (Ship)ship;
-		return realShip.getPosition().getXComponent();
-	}
-	
-	/**
-	 * Return the y-coordinate of <code>ship</code>.
-	 */
-	public double getY(IShip ship){
-		Ship realShip = (Ship)ship;
-		return realShip.getPosition().getYComponent();
-	}
 
-	/**
-	 * Return the velocity of <code>ship</code> along the X-axis.
-	 */
-	public double getXVelocity(IShip ship){
-		Ship realShip = (Ship)ship;
-		return realShip.getVelocity().getXComponent();
+	public void addAsteroid(GameWorld world, Asteroid asteroid){
+		try{
+			world.addAsteroid(asteroid);
+		} catch (Exception exc){
+			throw new ModelException(exc);
+		}
 	}
 
-	/**
-	 * Return the velocity of <code>ship</code> along the Y-axis.
-	 */
-	public double getYVelocity(IShip ship){
-		Ship realShip = (Ship)ship;
-		return realShip.getVelocity().getYComponent();
+	public void removeShip(GameWorld world, Ship ship){
+		try{
+			world.removeShip(ship);
+		} catch (Exception exc){
+			throw new ModelException(exc);
+		}
 	}
-	
-	/**
-	 * Return the radius of <code>ship</code>.
-	 */
-	public double getRadius(IShip ship){
-		Ship realShip = (Ship)ship;
-		return realShip.getRadius();
+
+	public void removeAsteroid(GameWorld world, Asteroid asteroid){
+		try{
+			world.removeAsteroid(asteroid);
+		} catch (Exception exc){
+			throw new ModelException(exc);
+		}
 	}
 
-	/**
-	 * Return the direction of <code>ship</code> (in radians).
-	 */
-	public double getDirection(IShip ship){
-		Ship realShip = (Ship)ship;
-		return realShip.getAngle();
+	public void evolve(GameWorld world, double dt, CollisionListener collisionListener){
+		try{
+			world.evolve(dt, collisionListener);
+		} catch (Exception exc){
+			throw new ModelException(exc);
+		}
 	}
 
-	/**
-	 * Update <code>ship</code>'s position, assuming it moves <code>dt</code>
-	 * seconds at its current velocity.
-	 */
-	public void move(IShip ship, double dt){
+	public Ship createShip(double x, double y, double xVelocity, double yVelocity, double radius, double direction, double mass){
 		try{
-			Ship realShip = (Ship)ship;
-			realShip.move(dt);
+			Ship newShip = new Ship(new Vector2D(x,y), 0, radius, new Vector2D(xVelocity,yVelocity), 300000, mass);
+			if (!newShip.isValidAngle(direction))
+				throw new IllegalArgumentException("Invalid direction for a ship.");
+			newShip.turn(direction);
+			return newShip;
 		} catch (Exception exc){
 			throw new ModelException(exc);
 		}
 	}
-	
 
-	/**
-	 * Update <code>ship</code>'s velocity based on its current velocity, its
-	 * direction and the given <code>amount</code>.
-	 */
-	public void thrust(IShip ship, double amount){
-		Ship realShip = (Ship)ship;
-		realShip.thrust(amount);
+	public boolean isShip(Object o){
+		return o instanceof Ship;
+	}
+
+	public double getShipX(Ship ship){
+		return ship.getX();
+	}
+
+	public double getShipY(Ship ship){
+		return ship.getY();
+	}
+
+	public double getShipXVelocity(Ship ship){
+		return ship.getXVelocity();
+	}
+
+	public double getShipYVelocity(Ship ship){
+		return ship.getYVelocity();
+	}
+
+	public double getShipRadius(Ship ship){
+		return ship.getRadius();
+	}
+
+	public double getShipDirection(Ship ship){
+		return ship.getAngle();
+	}
+
+	public double getShipDirectionX(Ship ship){
+		return ship.getHeadingX();
+	}
+
+	public double getShipDirectionY(Ship ship){
+		return ship.getHeadingY();
+	}
+
+	public double getShipMass(Ship ship){
+		return ship.getMass();
+	}
+
+	public GameWorld getShipWorld(Ship ship){
+		return ship.getWorld();
+	}
+
+	public boolean isShipThrusterActive(Ship ship){
+		return ship.isThrusterActive();
+	}
+
+	public void setThrusterActive(Ship ship, boolean active){
+		ship.setThrusterActive(active);
 	}
 
 	/**
 	 * Update the direction of <code>ship</code> by adding <code>angle</code>
 	 * (in radians) to its current direction. <code>angle</code> may be
 	 * negative.
+	 *
+	 * The sum is brought back to the range [0, 2 pi[ before it is passed
+	 * to the ship, since Ship.turn is specified nominally.
 	 */
-	public void turn(IShip ship, double angle){
-		Ship realShip = (Ship)ship;
-		realShip.turn(angle);
-	}
-
-	/**
-	 * Return the distance between <code>ship1</code> and <code>ship2</code>.
-	 * 
-	 * The absolute value of the result of this method is the minimum distance
-	 * either ship should move such that both ships are adjacent. Note that the
-	 * result must be negative if the ships overlap. The distance between a ship
-	 * and itself is 0.
-	 */
-	public double getDistanceBetween(IShip ship1, IShip ship2){
+	public void turn(Ship ship, double angle){
 		try{
-			Ship realShip1 = (Ship)ship1;
-			Ship realShip2 = (Ship)ship2;
-			return realShip1.getDistanceBetween(realShip2);
+			double newAngle = (ship.getAngle() + angle) % (2 * Math.PI);
+			if (newAngle < 0)
+				newAngle += 2 * Math.PI;
+			if (!ship.isValidAngle(newAngle))
+				newAngle = 0;
+			ship.turn(newAngle - ship.getAngle());
 		} catch (Exception exc){
 			throw new ModelException(exc);
 		}
 	}
 
-	/**
-	 * Check whether <code>ship1</code> and <code>ship2</code> overlap. A ship
-	 * always overlaps with itself.
-	 */
-	public boolean overlap(IShip ship1, IShip ship2){
+	public void fireBullet(Ship ship){
 		try{
-			Ship realShip1 = (Ship)ship1;
-			Ship realShip2 = (Ship)ship2;
-			return realShip1.overlap(realShip2);
+			ship.fireBullet();
 		} catch (Exception exc){
 			throw new ModelException(exc);
 		}
 	}
 
-	/**
-	 * Return the number of seconds until the first collision between
-	 * <code>ship1</code> and <code>ship2</code>, or Double.POSITIVE_INFINITY if
-	 * they never collide. A ship never collides with itself.
-	 */
-	public double getTimeToCollision(IShip ship1, IShip ship2){
+	public Asteroid createAsteroid(double x, double y, double xVelocity, double yVelocity, double radius){
 		try{
-			Ship realShip1 = (Ship)ship1;
-			Ship realShip2 = (Ship)ship2;
-			return realShip1.getTimeToCollision(realShip2);
+			return new Asteroid(new Vector2D(x,y), radius, new Vector2D(xVelocity,yVelocity));
 		} catch (Exception exc){
 			throw new ModelException(exc);
 		}
 	}
 
-	/**
-	 * Return the first position where <code>ship1</code> and <code>ship2</code>
-	 * collide, or <code>null</code> if they never collide. A ship never
-	 * collides with itself.
-	 * 
-	 * The result of this method is either null or an array of length 2, where
-	 * the element at index 0 represents the x-coordinate and the element at
-	 * index 1 represents the y-coordinate.
-	 */
-	public double[] getCollisionPosition(IShip ship1, IShip ship2){
+	public Asteroid createAsteroid(double x, double y, double xVelocity, double yVelocity, double radius, Random random){
 		try{
-			Ship realShip1 = (Ship)ship1;
-			Ship realShip2 = (Ship)ship2;
-			Vector2D collPos = realShip1.getCollisionPosition(realShip2);
-			if (collPos == null){
-				return null;
-			}
-			else{
-				double[] collCoor = {collPos.getXComponent(),collPos.getYComponent()};
-				return collCoor;
-			}
+			return new Asteroid(new Vector2D(x,y), radius, new Vector2D(xVelocity,yVelocity), random);
 		} catch (Exception exc){
 			throw new ModelException(exc);
 		}
 	}
+
+	public boolean isAsteroid(Object o){
+		return o instanceof Asteroid;
+	}
+
+	public double getAsteroidX(Asteroid asteroid){
+		return asteroid.getX();
+	}
+
+	public double getAsteroidY(Asteroid asteroid){
+		return asteroid.getY();
+	}
+
+	public double getAsteroidXVelocity(Asteroid asteroid){
+		return asteroid.getXVelocity();
+	}
+
+	public double getAsteroidYVelocity(Asteroid asteroid){
+		return asteroid.getYVelocity();
+	}
+
+	public double getAsteroidRadius(Asteroid asteroid){
+		return asteroid.getRadius();
+	}
+
+	public double getAsteroidMass(Asteroid asteroid){
+		return asteroid.getMass();
+	}
+
+	public GameWorld getAsteroidWorld(Asteroid asteroid){
+		return asteroid.getWorld();
+	}
+
+	public boolean isBullets(Object o){
+		return o instanceof Bullet;
+	}
+
+	public double getBulletX(Bullet bullet){
+		return bullet.getX();
+	}
+
+	public double getBulletY(Bullet bullet){
+		return bullet.getY();
+	}
+
+	public double getBulletXVelocity(Bullet bullet){
+		return bullet.getXVelocity();
+	}
+
+	public double getBulletYVelocity(Bullet bullet){
+		return bullet.getYVelocity();
+	}
+
+	public double getBulletRadius(Bullet bullet){
+		return bullet.getRadius();
+	}
+
+	public double getBulletMass(Bullet bullet){
+		return bullet.getMass();
+	}
+
+	public GameWorld getBulletWorld(Bullet bullet){
+		return bullet.getWorld();
+	}
+
+	public Ship getBulletSource(Bullet bullet){
+		return bullet.getSource();
+	}
 }
@@ -0,0 +1,136 @@
+package asteroids.model;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import asteroids.StateRandom;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A free list of asteroids that serve as fragments of split asteroids.
+ *
+ * A fragment that is destroyed is returned to the pool of its world and may
+ * later be reinitialized as a new fragment, so chain reactions do not allocate
+ * new asteroids once the pool is warm. Only asteroids created by the pool are
+ * ever recycled: asteroids created by a user of the model are never reused,
+ * whereas a reference to a fragment is only meaningful while the fragment is
+ * not terminated.
+ *
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+public class FragmentPool {
+
+	/**
+	 * Return a fragment with the given position, radius and velocity, that is not
+	 * located in a world. A free fragment is reused if there is one, without allocating;
+	 * otherwise a new fragment is created. Either way, the random generator of the
+	 * fragment is seeded by the given random generator.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			The given radius is not a valid radius for an asteroid.
+	 */
+	Asteroid acquire(double x, double y, double radius, double xVelocity, double yVelocity, Random random)
+			throws IllegalArgumentException{
+		if (free.isEmpty()){
+			Asteroid fragment = new Asteroid(new Vector2D(x, y), radius, new Vector2D(xVelocity, yVelocity),
+					new StateRandom(random.nextLong()));
+			fragment.setPooled(true);
+			nbCreated++;
+			return fragment;
+		}
+		Asteroid fragment = free.remove(free.size() - 1);
+		fragment.reinitialize(x, y, radius, xVelocity, yVelocity, Asteroid.getMassFor(radius));
+		// Reseed the random generator as for a new fragment, so the fragments of a split
+		// do not depend on which fragments happened to be free.
+		fragment.getRandom().setSeed(random.nextLong());
+		nbRecycled++;
+		return fragment;
+	}
+
+	/**
+	 * Create fragments until at least the given number of fragments wait to be reused,
+	 * so that the chain reactions that follow do not allocate.
+	 *
+	 * @post	At least the given number of fragments wait to be reused.
+	 * 			| (new this).getNbFree() >= nbFragments
+	 */
+	public void reserve(int nbFragments){
+		free.ensureCapacity(nbFragments);
+		Vector2D origin = new Vector2D(0, 0);
+		while (free.size() < nbFragments){
+			Asteroid fragment = new Asteroid(origin, GameWorld.getMinSplitRadius(), origin, new StateRandom(0));
+			fragment.setPooled(true);
+			fragment.terminate();
+			free.add(fragment);
+			nbCreated++;
+		}
+	}
+
+	/**
+	 * Return the given terminated asteroid to this pool, if it was created by a pool.
+	 *
+	 * @return	True if and only if the given asteroid was taken up in this pool.
+	 * 			| result == asteroid.isPooled() && asteroid.isTerminated()
+	 */
+	boolean release(Asteroid asteroid){
+		if (!asteroid.isPooled() || !asteroid.isTerminated())
+			return false;
+		free.add(asteroid);
+		return true;
+	}
+
+	/**
+	 * Copy the fragments waiting to be reused to the given array.
+	 */
+	void copyFree(Asteroid[] destination){
+		for (int i = 0; i < free.size(); i++)
+			destination[i] = free.get(i);
+	}
+
+	/**
+	 * Make the given number of fragments of the given array the fragments waiting to be
+	 * reused, when the world of this pool is restored from a snapshot.
+	 *
+	 * @pre		The given fragments are not located in a world.
+	 * @post	The given fragments are terminated.
+	 */
+	void restoreFree(Asteroid[] fragments, int nbFragments){
+		free.clear();
+		for (int i = 0; i < nbFragments; i++){
+			fragments[i].terminate();
+			free.add(fragments[i]);
+		}
+	}
+
+	/**
+	 * Return the number of fragments waiting to be reused.
+	 */
+	@Basic
+	public int getNbFree(){
+		return free.size();
+	}
+
+	/**
+	 * Return the number of fragments this pool has created.
+	 */
+	@Basic
+	public long getNbCreated(){
+		return nbCreated;
+	}
+
+	/**
+	 * Return the number of times this pool has reused a fragment.
+	 */
+	@Basic
+	public long getNbRecycled(){
+		return nbRecycled;
+	}
+
+	private final ArrayList<Asteroid> free = new ArrayList<Asteroid>();
+
+	private long nbCreated;
+
+	private long nbRecycled;
+}
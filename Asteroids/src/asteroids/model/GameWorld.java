@@ -1,58 +1,1589 @@
 package asteroids.model;
 
+import static asteroids.Util.fuzzyLessThanOrEqualTo;
+
 import java.util.*;
 
+import asteroids.CollisionBatch;
+import asteroids.CollisionBatchListener;
+import asteroids.CollisionListener;
+import asteroids.StateRandom;
+import asteroids.TickStatistics;
+import asteroids.Util;
+import asteroids.TickStatistics.Counter;
+import asteroids.TickStatistics.Phase;
+import asteroids.jfr.CollisionEvent;
+import asteroids.jfr.TickEvent;
+import be.kuleuven.cs.som.annotate.*;
+
 /**
- * This class implements the interface IFacade to use the 
- * class Ship to control ships in the GUI of Asteroids.
- * 
- * @version	1.0
+ * A class of rectangular game worlds containing ships, asteroids and bullets.
+ *
+ * Elements bounce off the boundaries of a bounded world. A toroidal world has
+ * no boundaries to bounce off: an element leaving the world on one side enters
+ * it again on the opposite side, and distances and collisions between elements
+ * are determined between their nearest images.
+ *
+ * @invar	The width and height of each game world are valid dimensions.
+ * 			| isValidDimension(getWidth(), getMaxwidth()) && isValidDimension(getHeigth(), getMaxheigth())
+ * @invar	Each element of a game world is located in that world.
+ * 			| for each element in getElements(): element.getWorld() == this
+ *
+ * @version	2.0
  * @author 	Frederik Van Eeghem, Pieter Lietaert
  */
 
 public class GameWorld {
-	
-	//public GameWorld(){
-		
-	//}
-	
-	
+
+	/**
+	 * Initialize this new game world with given width and height.
+	 *
+	 * @param	width
+	 * 			The width for this new game world.
+	 * @param	heigth
+	 * 			The height for this new game world.
+	 * @post	The width of this new game world is equal to the given width.
+	 * 			| (new this).getWidth() == width
+	 * @post	The height of this new game world is equal to the given height.
+	 * 			| (new this).getHeigth() == heigth
+	 * @post	This new game world does not contain any elements.
+	 * 			| (new this).getElements().isEmpty()
+	 * @effect	This new game world is initialized as a bounded world with the given width and height.
+	 * 			| this(width, heigth, false)
+	 */
+	public GameWorld(double width, double heigth) throws IllegalArgumentException{
+		this(width, heigth, false);
+	}
+
+	/**
+	 * Initialize this new game world with given width and height, that is toroidal
+	 * if and only if the given flag is true.
+	 *
+	 * @param	width
+	 * 			The width for this new game world.
+	 * @param	heigth
+	 * 			The height for this new game world.
+	 * @param	toroidal
+	 * 			Whether this new game world wraps around its boundaries.
+	 * @post	The width of this new game world is equal to the given width.
+	 * 			| (new this).getWidth() == width
+	 * @post	The height of this new game world is equal to the given height.
+	 * 			| (new this).getHeigth() == heigth
+	 * @post	This new game world is toroidal if and only if the given flag is true.
+	 * 			| (new this).isToroidal() == toroidal
+	 * @post	This new game world does not contain any elements.
+	 * 			| (new this).getElements().isEmpty()
+	 * @throws	IllegalArgumentException
+	 * 			The given width or height is not a valid dimension, or this world is
+	 * 			toroidal and the given width or height is zero.
+	 * 			| !isValidDimension(width, getMaxwidth()) || !isValidDimension(heigth, getMaxheigth())
+	 * 			|	|| (toroidal && (width == 0 || heigth == 0))
+	 */
+	public GameWorld(double width, double heigth, boolean toroidal) throws IllegalArgumentException{
+		if (!isValidDimension(width, getMaxwidth()) || !isValidDimension(heigth, getMaxheigth()))
+			throw new IllegalArgumentException("Invalid dimensions for a game world.");
+		if (toroidal && (width == 0 || heigth == 0))
+			throw new IllegalArgumentException("A toroidal game world cannot be empty.");
+		this.width = width;
+		this.heigth = heigth;
+		this.toroidal = toroidal;
+		this.grid = toroidal ? new UniformGrid(width, heigth) : new UniformGrid();
+	}
+
+	/**
+	 * Check whether the given dimension is a valid dimension for a game world.
+	 *
+	 * @param	dimension
+	 * 			The dimension to check.
+	 * @param	maxDimension
+	 * 			The maximum value for the dimension.
+	 * @return	True if and only if the given dimension is a number between zero and the given maximum.
+	 * 			| result == (!Double.isNaN(dimension)) && (dimension >= 0) && (dimension <= maxDimension)
+	 */
+	public static boolean isValidDimension(double dimension, double maxDimension){
+		return (!Double.isNaN(dimension)) && (dimension >= 0) && (dimension <= maxDimension);
+	}
+
+	/**
+	 * Return the width of this game world.
+	 */
+	@Basic @Immutable
 	public double getWidth(){
 		return width;
 	}
-	
+
+	/**
+	 * Return the height of this game world.
+	 */
+	@Basic @Immutable
 	public double getHeigth() {
 		return heigth;
 	}
-	
+
 	private final double width;
-	
+
 	private final double heigth;
 
-	
+	/**
+	 * Check whether this game world wraps around its boundaries.
+	 */
+	@Basic @Immutable
+	public boolean isToroidal(){
+		return toroidal;
+	}
+
+	private final boolean toroidal;
+
+	/**
+	 * Return the given x-coordinate wrapped around the vertical boundaries of this world
+	 * if this world is toroidal, or the given x-coordinate otherwise.
+	 */
+	double wrapX(double x){
+		return toroidal ? wrap(x, width) : x;
+	}
+
+	/**
+	 * Return the given y-coordinate wrapped around the horizontal boundaries of this world
+	 * if this world is toroidal, or the given y-coordinate otherwise.
+	 */
+	double wrapY(double y){
+		return toroidal ? wrap(y, heigth) : y;
+	}
+
+	private static double wrap(double coordinate, double size){
+		if (coordinate >= 0 && coordinate < size)
+			return coordinate;
+		double result = coordinate - size * Math.floor(coordinate / size);
+		// Rounding may map tiny negative coordinates onto the size itself.
+		return result < size ? result : 0;
+	}
+
+	/**
+	 * Return the given difference between x-coordinates reduced to the difference with the
+	 * nearest image if this world is toroidal, or the given difference otherwise.
+	 */
+	double getNearestXOffset(double dx){
+		return toroidal ? dx - width * Math.rint(dx / width) : dx;
+	}
+
+	/**
+	 * Return the given difference between y-coordinates reduced to the difference with the
+	 * nearest image if this world is toroidal, or the given difference otherwise.
+	 */
+	double getNearestYOffset(double dy){
+		return toroidal ? dy - heigth * Math.rint(dy / heigth) : dy;
+	}
+
+	/**
+	 * Get the maximum value for the height of this game world.
+	 */
 	public static double getMaxheigth() {
 		return maxHeigth;
 	}
-	
+
 	/**
 	 * Get the maximum value for the width of this game world.
 	 */
 	public static double getMaxwidth() {
 		return maxWidth;
 	}
-	
+
+	// Moet dit wel final zijn? Kan in principe veranderen nadat de gameworld is aangemaakt.
+	private final static double maxHeigth = Double.MAX_VALUE;
+
+	private final static double maxWidth = Double.MAX_VALUE;
+
+
+	/**
+	 * Return all elements located in this game world.
+	 */
+	@Basic
+	public List<Element> getElements(){
+		return elementsView;
+	}
+
+	/**
+	 * Return all ships located in this game world.
+	 */
+	@Basic
+	public Set<Ship> getShips(){
+		return shipsView;
+	}
+
+	/**
+	 * Return all asteroids located in this game world.
+	 */
+	@Basic
+	public Set<Asteroid> getAsteroids(){
+		return asteroidsView;
+	}
+
+	/**
+	 * Return all bullets located in this game world.
+	 *
+	 * The same read-only view is returned on every call; it reflects later
+	 * changes to this world.
+	 */
+	@Basic
+	public Set<Bullet> getBullets(){
+		return bulletsView;
+	}
+
 	public boolean hasAsShip(Ship ship){
 		return ships.contains(ship);
 	}
-	
-	public boolean canHaveAsShip(){
-		return false;
+
+	/**
+	 * Check whether this game world can have the given element as one of its elements.
+	 *
+	 * @param	element
+	 * 			The element to check.
+	 * @return	If this world is toroidal, true if and only if the given element is effective,
+	 * 			not terminated, not located in a world yet, has finite coordinates and a diameter
+	 * 			no larger than the width and height of this world.
+	 * 			| if (isToroidal())
+	 * 			|	then result == (element != null) && !element.isTerminated() && (element.getWorld() == null)
+	 * 			|		&& !Double.isInfinite(element.getX())
+	 * 			|		&& !Double.isInfinite(element.getY())
+	 * 			|		&& 2 * element.getRadius() <= Math.min(getWidth(), getHeigth())
+	 * @return	Otherwise, true if and only if the given element is effective, not terminated,
+	 * 			not located in a world yet and lies entirely within the boundaries of this world.
+	 * 			| if (!isToroidal())
+	 * 			|	then result == (element != null) && !element.isTerminated() && (element.getWorld() == null)
+	 * 			|	&& fuzzyLessThanOrEqualTo(element.getRadius(), element.getX())
+	 * 			|	&& fuzzyLessThanOrEqualTo(element.getX() + element.getRadius(), getWidth())
+	 * 			|	&& fuzzyLessThanOrEqualTo(element.getRadius(), element.getY())
+	 * 			|	&& fuzzyLessThanOrEqualTo(element.getY() + element.getRadius(), getHeigth())
+	 */
+	public boolean canHaveAsElement(Element element){
+		if (element == null || element.isTerminated() || element.getWorld() != null)
+			return false;
+		double x = element.getX();
+		double y = element.getY();
+		double radius = element.getRadius();
+		if (toroidal)
+			return !Double.isInfinite(x) && !Double.isInfinite(y) && 2 * radius <= Math.min(getWidth(), getHeigth());
+		return fuzzyLessThanOrEqualTo(radius, x) && fuzzyLessThanOrEqualTo(x + radius, getWidth())
+				&& fuzzyLessThanOrEqualTo(radius, y) && fuzzyLessThanOrEqualTo(y + radius, getHeigth());
 	}
-	
-	// Moet dit wel final zijn? Kan in principe veranderen nadat de gameworld is aangemaakt.
-	private final static double maxHeigth = Double.MAX_VALUE;
-	
-	private final static double maxWidth = Double.MAX_VALUE;
-	
-	private final Set<Ship> ships = new HashSet<Ship>();
+
+	/**
+	 * Add the given ship to this game world.
+	 *
+	 * @param	ship
+	 * 			The ship to add.
+	 * @effect	The given ship is added as an element of this world.
+	 * 			| addElement(ship)
+	 * @post	This world has the given ship as one of its ships.
+	 * 			| (new this).hasAsShip(ship)
+	 */
+	public void addShip(Ship ship) throws IllegalArgumentException{
+		addElement(ship);
+		ships.add(ship);
+	}
+
+	/**
+	 * Add the given asteroid to this game world.
+	 *
+	 * @param	asteroid
+	 * 			The asteroid to add.
+	 * @effect	The given asteroid is added as an element of this world.
+	 * 			| addElement(asteroid)
+	 * @post	This world has the given asteroid as one of its asteroids.
+	 * 			| (new this).getAsteroids().contains(asteroid)
+	 */
+	public void addAsteroid(Asteroid asteroid) throws IllegalArgumentException{
+		addElement(asteroid);
+		asteroids.add(asteroid);
+	}
+
+	/**
+	 * Add the given bullet to this game world.
+	 *
+	 * @param	bullet
+	 * 			The bullet to add.
+	 * @effect	The given bullet is added as an element of this world.
+	 * 			| addElement(bullet)
+	 * @post	This world has the given bullet as one of its bullets.
+	 * 			| (new this).getBullets().contains(bullet)
+	 */
+	public void addBullet(Bullet bullet) throws IllegalArgumentException{
+		addElement(bullet);
+		bullets.add(bullet);
+	}
+
+	/**
+	 * Add the given element to the elements of this world.
+	 *
+	 * @param	element
+	 * 			The element to add.
+	 * @post	The given element is located in this world.
+	 * 			| (new element).getWorld() == this
+	 * @post	If this world is toroidal, the position of the given element is wrapped around
+	 * 			the boundaries of this world.
+	 * 			| if (isToroidal())
+	 * 			|	then (new element).getX() == wrapX(element.getX())
+	 * 			|		&& (new element).getY() == wrapY(element.getY())
+	 * @throws	IllegalArgumentException
+	 * 			This world cannot have the given element as one of its elements.
+	 * 			| !canHaveAsElement(element)
+	 */
+	private void addElement(Element element) throws IllegalArgumentException{
+		if (!canHaveAsElement(element))
+			throw new IllegalArgumentException("This world cannot have the given element.");
+		if (toroidal)
+			element.wrapInto(this);
+		element.setWorld(this);
+		element.setWorldIndex(elements.size());
+		element.setPositionTime(time);
+		elements.add(element);
+		scheduleBoundaryCollision(element);
+	}
+
+	/**
+	 * Remove the given ship from this game world.
+	 *
+	 * @param	ship
+	 * 			The ship to remove.
+	 * @effect	The given ship is removed from the elements of this world.
+	 * 			| removeElement(ship)
+	 */
+	public void removeShip(Ship ship) throws IllegalArgumentException{
+		removeElement(ship);
+	}
+
+	/**
+	 * Remove the given asteroid from this game world.
+	 *
+	 * @param	asteroid
+	 * 			The asteroid to remove.
+	 * @effect	The given asteroid is removed from the elements of this world.
+	 * 			| removeElement(asteroid)
+	 */
+	public void removeAsteroid(Asteroid asteroid) throws IllegalArgumentException{
+		removeElement(asteroid);
+	}
+
+	/**
+	 * Remove the given bullet from this game world.
+	 *
+	 * @param	bullet
+	 * 			The bullet to remove.
+	 * @effect	The given bullet is removed from the elements of this world.
+	 * 			| removeElement(bullet)
+	 */
+	public void removeBullet(Bullet bullet) throws IllegalArgumentException{
+		removeElement(bullet);
+	}
+
+	/**
+	 * Remove the given element from this game world.
+	 *
+	 * @param	element
+	 * 			The element to remove.
+	 * @post	The given element is no longer located in a world.
+	 * 			| (new element).getWorld() == null
+	 * @throws	IllegalArgumentException
+	 * 			The given element is not located in this world.
+	 * 			| element == null || element.getWorld() != this
+	 */
+	void removeElement(Element element) throws IllegalArgumentException{
+		if (element == null || element.getWorld() != this)
+			throw new IllegalArgumentException("The given element is not located in this world.");
+		int index = element.getWorldIndex();
+		Element last = elements.remove(elements.size() - 1);
+		if (last != element){
+			elements.set(index, last);
+			last.setWorldIndex(index);
+		}
+		ships.remove(element);
+		asteroids.remove(element);
+		bullets.remove(element);
+		boundaryEvents.remove(element);
+		wake(element);
+		element.setWorld(null);
+		element.setWorldIndex(-1);
+	}
+
+	/**
+	 * List registering all elements of this world, in which each element
+	 * is stored at its world index.
+	 */
+	private final ArrayList<Element> elements = new ArrayList<Element>();
+
+	private final ElementSet<Ship> ships = new ElementSet<Ship>();
+
+	private final ElementSet<Asteroid> asteroids = new ElementSet<Asteroid>();
+
+	private final ElementSet<Bullet> bullets = new ElementSet<Bullet>();
+
+	private final List<Element> elementsView = Collections.unmodifiableList(elements);
+
+	private final Set<Ship> shipsView = Collections.unmodifiableSet(ships);
+
+	private final Set<Asteroid> asteroidsView = Collections.unmodifiableSet(asteroids);
+
+	private final Set<Bullet> bulletsView = Collections.unmodifiableSet(bullets);
+
+
+	/**
+	 * Advance this world by the given time period.
+	 *
+	 * All elements move along their current velocity. Whenever two elements collide or an element
+	 * reaches a boundary of this world during the time period, the collision is resolved at that
+	 * moment and the remaining time is simulated in the same way.
+	 * Afterwards the thrusters of all ships are applied over the whole time period.
+	 * The time period is divided in substeps, so that the collision search of each substep only
+	 * considers the short distance elements can travel in it; see getNbSubsteps(). The collisions
+	 * of each substep are predicted once, and after a collision only those of the elements
+	 * involved in it are predicted anew. Only the elements involved in a collision are moved up
+	 * to its moment, unless a listener is notified of each collision.
+	 * <ul>
+	 * <li>Elements at rest that no moving element came near during the time period fall
+	 * asleep afterwards and are stopped completely; see Element.isAsleep().</li>
+	 * <li>Ships and asteroids bounce off boundaries. A bullet bounces off a boundary once
+	 * and is terminated when it reaches a boundary a second time. In a toroidal world,
+	 * elements pass through the boundaries instead. A bullet fired by a ship
+	 * is also terminated once it has been in flight for the maximum lifetime of bullets.</li>
+	 * <li>Two ships or two asteroids bounce off each other elastically.</li>
+	 * <li>A ship colliding with an asteroid is terminated.</li>
+	 * <li>A bullet colliding with another element is terminated together with that element,
+	 * except that bullets pass through the ship that fired them. An asteroid that can split
+	 * leaves two fragments behind.</li>
+	 * </ul>
+	 *
+	 * @param	deltaT
+	 * 			The time period over which to advance this world.
+	 * @param	collisionListener
+	 * 			The listener to notify of each collision, or null. A batch listener is
+	 * 			notified once, after the time period has been simulated, with a batch
+	 * 			holding all collisions in the order in which they occurred.
+	 * @throws	IllegalArgumentException
+	 * 			The given time period is not a valid time period.
+	 * 			| !Element.isValidTime(deltaT)
+	 * @throws	IllegalStateException
+	 * 			This world is verifying and its invariants do not hold after the time period.
+	 * 			| isVerifying() && verifyInvariants() throws IllegalStateException
+	 */
+	public void evolve(double deltaT, CollisionListener collisionListener) throws IllegalArgumentException{
+		if (!Element.isValidTime(deltaT))
+			throw new IllegalArgumentException("Invalid time step while evolving the world.");
+		TickStatistics statistics = TickStatistics.getInstance();
+		TickEvent event = new TickEvent();
+		event.begin();
+		int nbEntities = elements.size();
+		long nbCandidatePairs = 0;
+		long nbCollisions = 0;
+		long nbBoundaryCollisions = 0;
+		long nbFragments = 0;
+		double remaining = deltaT;
+		double endTime = time + deltaT;
+		CollisionBatchListener batchListener = null;
+		if (collisionListener instanceof CollisionBatchListener){
+			batchListener = (CollisionBatchListener) collisionListener;
+			collisionListener = null;
+		}
+		CollisionBatch batch = (batchListener == null) ? null : collisionBatch;
+		int eventsLeft = maxEventsPerElement * (nbEntities + 1);
+		int boundaryEventsLeft = eventsLeft;
+		nbSubsteps = computeNbSubsteps(deltaT);
+		for (int substep = nbSubsteps; substep > 0; substep--){
+			// The last substep takes whatever is left, so that rounding does not lose time.
+			double substepLeft = (substep == 1) ? remaining : deltaT / nbSubsteps;
+			nbCandidatePairs += schedulePairCollisions(substepLeft);
+			while (true){
+				long start = statistics.begin();
+				double timeToEvent = findNextEvent(eventsLeft > 0, boundaryEventsLeft > 0);
+				statistics.end(Phase.NARROW_PHASE, start);
+
+				if (timeToEvent > substepLeft){
+					advance(substepLeft);
+					if (boundaryEventsLeft <= 0)
+						confineElements();
+					remaining -= substepLeft;
+					break;
+				}
+				time += timeToEvent;
+				remaining -= timeToEvent;
+				substepLeft -= timeToEvent;
+				// A listener notified of each collision may look at any element.
+				if (collisionListener != null)
+					advance(0);
+				if (nextSecond == null){
+					boundaryEventsLeft--;
+					catchUp(nextFirst);
+					resolveBoundaryCollision(nextFirst, nextOnVerticalBoundary, collisionListener, batch, deltaT - remaining);
+					nbBoundaryCollisions++;
+					nbCandidatePairs += reschedulePairCollisions(nextFirst, substepLeft);
+				} else{
+					eventsLeft--;
+					pairEvents.removeFirst();
+					catchUp(nextFirst);
+					catchUp(nextSecond);
+					resolveObjectCollision(nextFirst, nextSecond, collisionListener, batch, deltaT - remaining);
+					nbCollisions++;
+					int firstFragment = elements.size();
+					if (!pendingFragments.isEmpty())
+						nbFragments += insertPendingFragments();
+					nbCandidatePairs += reschedulePairCollisions(nextFirst, substepLeft);
+					nbCandidatePairs += reschedulePairCollisions(nextSecond, substepLeft);
+					for (int i = firstFragment; i < elements.size(); i++)
+						nbCandidatePairs += reschedulePairCollisions(elements.get(i), substepLeft);
+				}
+				if (changed.size() > maxChangedPerSubstep + elements.size() / 8){
+					advance(0);
+					nbCandidatePairs += schedulePairCollisions(substepLeft);
+				}
+			}
+		}
+		// Summing the advances of all events and substeps may lose a few units in the last place.
+		time = endTime;
+		long start = statistics.begin();
+		for (int i = 0; i < ships.size(); i++)
+			ships.get(i).applyThruster(deltaT);
+		statistics.end(Phase.INTEGRATION, start);
+		expireBullets();
+		putRestingElementsToSleep();
+		tick++;
+		if (verifying)
+			verifyInvariants();
+		if (batchListener != null){
+			start = statistics.begin();
+			batchListener.collisions(batch);
+			statistics.end(Phase.LISTENER_CALLBACKS, start);
+			batch.clear();
+		}
+
+		statistics.add(Counter.TICKS, 1);
+		statistics.add(Counter.ENTITIES, nbEntities);
+		statistics.add(Counter.CANDIDATE_PAIRS, nbCandidatePairs);
+		statistics.add(Counter.COLLISIONS, nbCollisions);
+		statistics.add(Counter.BOUNDARY_COLLISIONS, nbBoundaryCollisions);
+		statistics.add(Counter.FRAGMENTS, nbFragments);
+		statistics.add(Counter.SLEEPING, nbSleeping);
+		statistics.add(Counter.SUBSTEPS, nbSubsteps);
+		if (event.shouldCommit()){
+			// JFR only supports timespans in long fields.
+			event.dt = (long) (deltaT * 1E9);
+			event.entities = nbEntities;
+			event.candidatePairs = nbCandidatePairs;
+			event.collisions = nbCollisions;
+			event.boundaryCollisions = nbBoundaryCollisions;
+			event.sleeping = nbSleeping;
+			event.substeps = nbSubsteps;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Return the number of substeps in which the last time period this world was evolved
+	 * over was divided.
+	 *
+	 * The number of substeps is chosen so that within one substep no two elements can
+	 * approach each other over more than a fixed number of times the smallest radius of
+	 * the elements of this world. Slow worlds take a single substep per time period. The
+	 * number of substeps is bounded, so that a single very fast element cannot make a
+	 * time period arbitrarily expensive.
+	 */
+	@Basic
+	public int getNbSubsteps(){
+		return nbSubsteps;
+	}
+
+	private int nbSubsteps = 1;
+
+	/**
+	 * Return the number of substeps for evolving this world over the given time period,
+	 * based on the highest speed of the elements that are awake and the smallest radius
+	 * of all elements.
+	 */
+	private int computeNbSubsteps(double deltaT){
+		double maxSpeed = 0;
+		double minRadius = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < elements.size(); i++){
+			Element element = elements.get(i);
+			minRadius = Math.min(minRadius, element.getRadius());
+			if (!element.isAsleep()){
+				double vx = element.getXVelocity();
+				double vy = element.getYVelocity();
+				maxSpeed = Math.max(maxSpeed, vx * vx + vy * vy);
+			}
+		}
+		// Two elements approach each other at most at twice the highest speed.
+		double approach = 2 * Math.sqrt(maxSpeed) * deltaT;
+		if (!(approach > substepRadii * minRadius))
+			return 1;
+		return (int) Math.min(maxSubsteps, Math.ceil(approach / (substepRadii * minRadius)));
+	}
+
+	/**
+	 * Variable registering the number of times the smallest radius that two elements
+	 * may approach each other within one substep.
+	 */
+	private static final double substepRadii = 4;
+
+	/**
+	 * Variable registering the maximum number of substeps per time period.
+	 */
+	private static final int maxSubsteps = 64;
+
+	/**
+	 * Check whether this world verifies its invariants after every tick.
+	 *
+	 * Evolving a world checks the time period once and then moves, collides and
+	 * accelerates its elements without checking them one by one. Verifying worlds
+	 * check afterwards that this kept every element valid. New worlds verify if the
+	 * system property asteroids.verify is set or if assertions are enabled.
+	 */
+	@Basic
+	public boolean isVerifying(){
+		return verifying;
+	}
+
+	/**
+	 * Set whether this world verifies its invariants after every tick.
+	 *
+	 * @post	This world verifies its invariants if and only if the given flag is true.
+	 * 			| (new this).isVerifying() == verifying
+	 */
+	public void setVerifying(boolean verifying){
+		this.verifying = verifying;
+	}
+
+	private boolean verifying = defaultVerifying;
+
+	private static final boolean defaultVerifying;
+
+	static{
+		boolean assertions = false;
+		assert assertions = true;
+		defaultVerifying = assertions || Boolean.getBoolean("asteroids.verify");
+	}
+
+	/**
+	 * Check the invariants of this world and its elements.
+	 *
+	 * @throws	IllegalStateException
+	 * 			An element of this world is not located in this world at its index, is
+	 * 			terminated, has a position or velocity with NaN entries, moves faster than
+	 * 			its maximum speed, has its centre outside this world, is asleep while moving
+	 * 			or is a ship with an invalid angle, or the number of sleeping elements is wrong.
+	 */
+	public void verifyInvariants() throws IllegalStateException{
+		int nbAsleep = 0;
+		for (int i = 0; i < elements.size(); i++){
+			Element element = elements.get(i);
+			Vector2D position = element.getPosition();
+			Vector2D velocity = element.getVelocity();
+			String problem = null;
+			if (element.getWorld() != this || element.getWorldIndex() != i)
+				problem = "is not located in this world at index " + i;
+			else if (element.isTerminated())
+				problem = "is terminated";
+			else if (position.containsNaN() || velocity.containsNaN())
+				problem = "has a NaN position or velocity";
+			else if (!Util.fuzzyNormLessThanOrEqualTo(velocity.getXComponent(), velocity.getYComponent(),
+					element.getMaxSpeed()))
+				problem = "moves faster than its maximum speed";
+			else if (!isInside(position.getXComponent(), width) || !isInside(position.getYComponent(), heigth))
+				problem = "has its centre outside this world";
+			else if (element.isAsleep() && (velocity.getXComponent() != 0 || velocity.getYComponent() != 0))
+				problem = "is asleep while moving";
+			else if (element instanceof Ship && !((Ship) element).isValidAngle(((Ship) element).getAngle()))
+				problem = "has an invalid angle";
+			if (problem != null)
+				throw new IllegalStateException("Element " + i + " at " + position + " " + problem + " after tick " + tick + ".");
+			if (element.isAsleep())
+				nbAsleep++;
+		}
+		if (nbAsleep != nbSleeping)
+			throw new IllegalStateException(nbAsleep + " elements are asleep, but " + nbSleeping + " are counted.");
+	}
+
+	/**
+	 * Check whether the given coordinate lies within the given size of this world. In a
+	 * toroidal world, the size itself wraps around to zero.
+	 */
+	private boolean isInside(double coordinate, double size){
+		return coordinate >= 0 && (toroidal ? coordinate < size : coordinate <= size);
+	}
+
+	/**
+	 * Return the time this world has been evolved over.
+	 * The time is expressed in seconds.
+	 */
+	@Basic
+	public double getTime(){
+		return time;
+	}
+
+	/**
+	 * Set the time of this world to the given time, when this world is restored from a file.
+	 *
+	 * @pre		This world has no elements.
+	 * 			| getElements().isEmpty()
+	 * @post	The time of this world is equal to the given time.
+	 * 			| (new this).getTime() == time
+	 */
+	void restoreTime(double time){
+		assert elements.isEmpty();
+		this.time = time;
+	}
+
+	/**
+	 * Variable registering the time this world has been evolved over.
+	 */
+	private double time = 0;
+
+	/**
+	 * Return the number of times this world has been evolved.
+	 */
+	@Basic
+	public long getTick(){
+		return tick;
+	}
+
+	/**
+	 * Variable registering the number of times this world has been evolved.
+	 */
+	private long tick = 0;
+
+	/**
+	 * Save the full state of this world in the given snapshot, replacing the state it held.
+	 *
+	 * The snapshot refers to the elements of this world and records their state in
+	 * preallocated arrays, so saving a world whose size the snapshot has seen before
+	 * does not allocate. The state of the random generator of an asteroid is only
+	 * saved if it is a StateRandom.
+	 *
+	 * @param	snapshot
+	 * 			The snapshot to save the state of this world in.
+	 * @post	The given snapshot was taken of this world, at the current tick.
+	 * 			| (new snapshot).getWorld() == this && (new snapshot).getTick() == getTick()
+	 */
+	public void saveSnapshot(WorldSnapshot snapshot){
+		int nbFireTimes = 0;
+		for (int i = 0; i < bulletRings.size(); i++)
+			nbFireTimes += bulletRings.get(i).getCapacity();
+		int nbFree = fragmentPool.getNbFree();
+		snapshot.ensureCapacity(elements.size(), ships.size(), asteroids.size(), bullets.size(), bulletRings.size(),
+				nbFireTimes, nbFree);
+		snapshot.clearTail(elements.size(), ships.size(), asteroids.size(), bullets.size(), bulletRings.size(), nbFree);
+		snapshot.world = this;
+		snapshot.tick = tick;
+		snapshot.time = time;
+		snapshot.nbSleeping = nbSleeping;
+		snapshot.nbSubsteps = nbSubsteps;
+		snapshot.nbElements = elements.size();
+		for (int i = 0; i < elements.size(); i++){
+			Element element = elements.get(i);
+			snapshot.elements[i] = element;
+			snapshot.positions[i] = element.getPosition();
+			snapshot.velocities[i] = element.getVelocity();
+			snapshot.radii[i] = element.getRadius();
+			snapshot.masses[i] = element.getMass();
+			snapshot.lastDisturbances[i] = element.getLastDisturbance();
+			snapshot.flags[i] = element.isAsleep() ? WorldSnapshot.ASLEEP : 0;
+		}
+		snapshot.nbShips = ships.size();
+		for (int i = 0; i < ships.size(); i++){
+			Ship ship = ships.get(i);
+			snapshot.ships[i] = ship;
+			snapshot.angles[i] = ship.getAngle();
+			if (ship.isThrusterActive())
+				snapshot.flags[ship.getWorldIndex()] |= WorldSnapshot.THRUSTER_ACTIVE;
+		}
+		snapshot.nbAsteroids = asteroids.size();
+		for (int i = 0; i < asteroids.size(); i++){
+			Asteroid asteroid = asteroids.get(i);
+			snapshot.asteroids[i] = asteroid;
+			if (asteroid.getRandom() instanceof StateRandom){
+				snapshot.randomStates[i] = ((StateRandom) asteroid.getRandom()).getState();
+				snapshot.flags[asteroid.getWorldIndex()] |= WorldSnapshot.RANDOM_STATE;
+			}
+		}
+		snapshot.nbBullets = bullets.size();
+		for (int i = 0; i < bullets.size(); i++){
+			snapshot.bullets[i] = bullets.get(i);
+			snapshot.bounces[i] = bullets.get(i).getNbBounces();
+		}
+		snapshot.boundaryEvents.copyFrom(boundaryEvents, false);
+		snapshot.nbRings = bulletRings.size();
+		int offset = 0;
+		for (int i = 0; i < bulletRings.size(); i++){
+			BulletRing ring = bulletRings.get(i);
+			snapshot.rings[i] = ring;
+			snapshot.ringHeads[i] = ring.getHead();
+			snapshot.ringTails[i] = ring.getTail();
+			ring.copyFireTimes(snapshot.fireTimes, offset);
+			offset += ring.getCapacity();
+		}
+		snapshot.nbFree = nbFree;
+		fragmentPool.copyFree(snapshot.freeFragments);
+	}
+
+	/**
+	 * Bring this world back to the state saved in the given snapshot.
+	 *
+	 * The elements of the snapshot are restored in place, with the state they had when
+	 * the snapshot was taken, even if they were terminated since. Elements that entered
+	 * this world after the snapshot was taken are removed from it; bullets and fragments
+	 * among them are terminated, since their ring or pool reuses them. Elements of the
+	 * snapshot that were since added to another world are removed from that world.
+	 *
+	 * @param	snapshot
+	 * 			The snapshot to restore this world from.
+	 * @post	The tick, time and elements of this world are those of the given snapshot.
+	 * 			| (new this).getTick() == snapshot.getTick() && (new this).getTime() == snapshot.getTime()
+	 * 			|	&& (new this).getElements().size() == snapshot.getNbElements()
+	 * @throws	IllegalArgumentException
+	 * 			The given snapshot was not taken of this world.
+	 * 			| snapshot.getWorld() != this
+	 */
+	public void restoreSnapshot(WorldSnapshot snapshot) throws IllegalArgumentException{
+		if (snapshot.getWorld() != this)
+			throw new IllegalArgumentException("The given snapshot was not taken of this world.");
+		if (detached.length < elements.size())
+			detached = new Element[Math.max(elements.size(), 2 * detached.length)];
+		int nbDetached = elements.size();
+		for (int i = 0; i < nbDetached; i++){
+			Element element = elements.get(i);
+			detached[i] = element;
+			element.setWorld(null);
+			element.setWorldIndex(-1);
+			element.setBoundaryEventIndex(-1);
+		}
+		elements.clear();
+		ships.clear();
+		asteroids.clear();
+		bullets.clear();
+
+		elements.ensureCapacity(snapshot.nbElements);
+		for (int i = 0; i < snapshot.nbElements; i++){
+			Element element = snapshot.elements[i];
+			if (element.getWorld() != null)
+				element.getWorld().removeElement(element);
+			element.restore(snapshot.positions[i], snapshot.velocities[i], snapshot.radii[i], snapshot.masses[i],
+					(snapshot.flags[i] & WorldSnapshot.ASLEEP) != 0, snapshot.lastDisturbances[i]);
+			element.setWorld(this);
+			element.setWorldIndex(i);
+			elements.add(element);
+		}
+		for (int i = 0; i < snapshot.nbShips; i++){
+			Ship ship = snapshot.ships[i];
+			ships.add(ship);
+			ship.restoreAngle(snapshot.angles[i]);
+			ship.setThrusterActive((snapshot.flags[ship.getWorldIndex()] & WorldSnapshot.THRUSTER_ACTIVE) != 0);
+		}
+		for (int i = 0; i < snapshot.nbAsteroids; i++){
+			Asteroid asteroid = snapshot.asteroids[i];
+			asteroids.add(asteroid);
+			if ((snapshot.flags[asteroid.getWorldIndex()] & WorldSnapshot.RANDOM_STATE) != 0)
+				((StateRandom) asteroid.getRandom()).setState(snapshot.randomStates[i]);
+		}
+		for (int i = 0; i < snapshot.nbBullets; i++){
+			bullets.add(snapshot.bullets[i]);
+			snapshot.bullets[i].restoreBounces(snapshot.bounces[i]);
+		}
+		boundaryEvents.copyFrom(snapshot.boundaryEvents, true);
+
+		for (int i = 0; i < nbDetached; i++){
+			Element element = detached[i];
+			detached[i] = null;
+			if (element.getWorld() == null){
+				element.setAsleep(false);
+				if (element instanceof Asteroid && ((Asteroid) element).isPooled())
+					element.terminate();
+			}
+		}
+		for (int i = 0; i < bulletRings.size(); i++){
+			BulletRing ring = bulletRings.get(i);
+			ring.setWorld(null);
+			ring.setWorldIndex(-1);
+			ring.terminateDetached();
+		}
+		bulletRings.clear();
+		int offset = 0;
+		for (int i = 0; i < snapshot.nbRings; i++){
+			BulletRing ring = snapshot.rings[i];
+			if (ring.getWorld() != null)
+				ring.getWorld().unregisterBulletRing(ring);
+			ring.restore(snapshot.ringHeads[i], snapshot.ringTails[i], snapshot.fireTimes, offset);
+			offset += ring.getCapacity();
+			ring.setWorld(this);
+			ring.setWorldIndex(i);
+			bulletRings.add(ring);
+		}
+		fragmentPool.restoreFree(snapshot.freeFragments, snapshot.nbFree);
+
+		tick = snapshot.tick;
+		time = snapshot.time;
+		nbSleeping = snapshot.nbSleeping;
+		nbSubsteps = snapshot.nbSubsteps;
+	}
+
+	/**
+	 * Variable registering the elements of this world while it is restored from a snapshot.
+	 * The array is reused from restore to restore.
+	 */
+	private Element[] detached = new Element[0];
+
+	/**
+	 * Return the number of elements of this world that are asleep.
+	 */
+	@Basic
+	public int getNbSleeping(){
+		return nbSleeping;
+	}
+
+	private int nbSleeping = 0;
+
+	/**
+	 * Wake up the given element of this world, if it is asleep.
+	 *
+	 * @post	The given element is not asleep.
+	 * 			| !(new element).isAsleep()
+	 */
+	void wake(Element element){
+		if (element.isAsleep()){
+			element.setAsleep(false);
+			nbSleeping--;
+		}
+	}
+
+	/**
+	 * Wake up the given element of this world and register that it is near a moving
+	 * element in the current tick.
+	 */
+	private void disturb(Element element){
+		wake(element);
+		element.setLastDisturbance(tick);
+	}
+
+	/**
+	 * Check whether the given element is at rest, that is, whether neither component of
+	 * its velocity exceeds the rest speed in absolute value.
+	 */
+	private static boolean isAtRest(Element element){
+		return Math.abs(element.getXVelocity()) <= restSpeed
+				&& Math.abs(element.getYVelocity()) <= restSpeed;
+	}
+
+	/**
+	 * Variable registering the speed below which an element is considered at rest,
+	 * so that the residue left by collisions does not keep elements awake.
+	 */
+	private static final double restSpeed = 1E-9;
+
+	/**
+	 * Put all elements of this world to sleep that are at rest and were not near a moving
+	 * element in the current tick. Their velocity is set to zero.
+	 */
+	private void putRestingElementsToSleep(){
+		for (int i = 0; i < elements.size(); i++){
+			Element element = elements.get(i);
+			if (!element.isAsleep() && element.getLastDisturbance() != tick && isAtRest(element)){
+				if (element.getXVelocity() != 0 || element.getYVelocity() != 0)
+					element.setVelocity(0, 0);
+				element.setAsleep(true);
+				nbSleeping++;
+			}
+		}
+	}
+
+	/**
+	 * Register the given bullet ring as a ring with bullets in this world, so that
+	 * its bullets expire with the time of this world.
+	 */
+	void registerBulletRing(BulletRing ring){
+		if (ring.getWorld() == this)
+			return;
+		if (ring.getWorld() != null)
+			ring.getWorld().unregisterBulletRing(ring);
+		ring.setWorld(this);
+		ring.setWorldIndex(bulletRings.size());
+		bulletRings.add(ring);
+	}
+
+	private void unregisterBulletRing(BulletRing ring){
+		int index = ring.getWorldIndex();
+		BulletRing last = bulletRings.remove(bulletRings.size() - 1);
+		if (last != ring){
+			bulletRings.set(index, last);
+			last.setWorldIndex(index);
+		}
+		ring.setWorld(null);
+		ring.setWorldIndex(-1);
+	}
+
+	/**
+	 * Terminate all bullets fired by ships that have outlived the maximum lifetime
+	 * of bullets, and forget the rings that no longer have bullets in flight.
+	 */
+	private void expireBullets(){
+		double cutoff = time - Bullet.getMaxLifetime();
+		for (int i = bulletRings.size() - 1; i >= 0; i--){
+			BulletRing ring = bulletRings.get(i);
+			ring.expire(cutoff);
+			if (ring.isEmpty())
+				unregisterBulletRing(ring);
+		}
+	}
+
+	/**
+	 * List registering the bullet rings with bullets in flight in this world.
+	 */
+	private final List<BulletRing> bulletRings = new ArrayList<BulletRing>();
+
+	/**
+	 * Return the bullet rings with bullets in this world.
+	 */
+	List<BulletRing> getBulletRings(){
+		return Collections.unmodifiableList(bulletRings);
+	}
+
+	/**
+	 * Determine the first collision among the predicted collisions of pairs of elements
+	 * and the first collision of an element with a boundary of this world in the
+	 * boundary event queue, considering only the kinds of collisions that are still to
+	 * be resolved. The elements involved are registered in nextFirst and nextSecond,
+	 * the latter being null for a collision with a boundary.
+	 *
+	 * @return	The time until that collision, or Double.POSITIVE_INFINITY if there is none.
+	 */
+	private double findNextEvent(boolean pairs, boolean boundaries){
+		double first = Double.POSITIVE_INFINITY;
+		nextFirst = null;
+		nextSecond = null;
+		if (pairs){
+			pairEvents.dropOutdated(this);
+			first = pairEvents.getFirstTime();
+			nextFirst = pairEvents.getFirst();
+			nextSecond = pairEvents.getSecond();
+		}
+		double boundaryTime = boundaries ? boundaryEvents.getFirstTime() : Double.POSITIVE_INFINITY;
+		if (boundaryTime < first){
+			first = boundaryTime;
+			nextFirst = boundaryEvents.getFirst();
+			nextSecond = null;
+			nextOnVerticalBoundary = boundaryEvents.isFirstVertical();
+		}
+		return Math.max(first - this.time, 0);
+	}
+
+	/**
+	 * Predict the collisions of the pairs of elements of this world within the given time,
+	 * starting from the current time of this world, to which all elements have been moved.
+	 * All collisions predicted before are discarded.
+	 *
+	 * @return	The number of candidate pairs found by the broad phase.
+	 */
+	private int schedulePairCollisions(double horizon){
+		TickStatistics statistics = TickStatistics.getInstance();
+		long start = statistics.begin();
+		pairEvents.clear();
+		changed.clear();
+		int nbElements = elements.size();
+		if (gridElements.length < nbElements){
+			gridElements = new Element[Math.max(nbElements, 2 * gridElements.length)];
+			gridVersions = new int[gridElements.length];
+		}
+		for (int i = 0; i < nbElements; i++){
+			Element element = elements.get(i);
+			element.setPositionTime(time);
+			gridElements[i] = element;
+			gridVersions[i] = element.getVelocityVersion();
+		}
+		if (nbGridElements > nbElements)
+			Arrays.fill(gridElements, nbElements, nbGridElements, null);
+		nbGridElements = nbElements;
+		int nbPairs = grid.findCandidatePairs(elements, horizon);
+		statistics.end(Phase.BROAD_PHASE, start);
+
+		start = statistics.begin();
+		for (int pair = 0; pair < nbPairs; pair++)
+			schedulePairCollision(gridElements[grid.getFirst(pair)], gridElements[grid.getSecond(pair)], horizon);
+		statistics.end(Phase.NARROW_PHASE, start);
+		return nbPairs;
+	}
+
+	/**
+	 * Predict the collisions within the given time of the given element, whose velocity
+	 * changed or which entered this world at the current time of this world, with the
+	 * other elements of this world. The elements involved are moved up to that time.
+	 *
+	 * @return	The number of candidate pairs examined.
+	 */
+	private int reschedulePairCollisions(Element element, double horizon){
+		if (element.getWorld() != this)
+			return 0;
+		TickStatistics statistics = TickStatistics.getInstance();
+		long start = statistics.begin();
+		double radius = element.getRadius();
+		double x = element.getX();
+		double y = element.getY();
+		double endX = x + element.getXVelocity() * horizon;
+		double endY = y + element.getYVelocity() * horizon;
+		int nbFound = grid.findOverlapping(Math.min(x, endX) - radius, Math.max(x, endX) + radius,
+				Math.min(y, endY) - radius, Math.max(y, endY) + radius);
+		statistics.end(Phase.BROAD_PHASE, start);
+
+		start = statistics.begin();
+		for (int k = 0; k < nbFound; k++){
+			int index = grid.getOverlapping(k);
+			Element other = gridElements[index];
+			// Elements whose velocity changed are no longer where the grid has them.
+			if (other != element && other.getWorld() == this && other.getVelocityVersion() == gridVersions[index]){
+				catchUp(other);
+				schedulePairCollision(element, other, horizon);
+			}
+		}
+		for (int k = 0; k < changed.size(); k++){
+			Element other = changed.get(k);
+			if (other != element && other.getWorld() == this){
+				catchUp(other);
+				schedulePairCollision(element, other, horizon);
+			}
+		}
+		changed.add(element);
+		statistics.end(Phase.NARROW_PHASE, start);
+		return nbFound + changed.size() - 1;
+	}
+
+	/**
+	 * Predict the collision of the given elements within the given time, if any, after
+	 * disturbing both elements if one of them moves.
+	 */
+	private void schedulePairCollision(Element element1, Element element2, double horizon){
+		if (!isAtRest(element1) || !isAtRest(element2)){
+			disturb(element1);
+			disturb(element2);
+		}
+		if (isSourceOf(element1, element2) || isSourceOf(element2, element1))
+			return;
+		double timeToCollision = element1.getTimeToCollision(element2);
+		if (timeToCollision <= horizon)
+			pairEvents.add(element1, element2, time + timeToCollision);
+	}
+
+	/**
+	 * Schedule the next collision of the given element with a boundary of this world,
+	 * computed from its current position, velocity and radius.
+	 *
+	 * @param	element
+	 * 			The element of this world whose boundary collision is to be scheduled.
+	 * @note	Elements invoke this method whenever their velocity changes or they move
+	 * 			by themselves, so that the schedule of this world stays valid while the
+	 * 			world only visits the elements that actually reach a boundary.
+	 * 			Toroidal worlds schedule no boundary collisions.
+	 */
+	void scheduleBoundaryCollision(Element element){
+		if (toroidal)
+			return;
+		double timeX = getTimeToBoundary(element.getX(),
+				element.getXVelocity(), element.getRadius(), getWidth());
+		double timeY = getTimeToBoundary(element.getY(),
+				element.getYVelocity(), element.getRadius(), getHeigth());
+		boundaryEvents.schedule(element, time + Math.min(timeX, timeY), timeX <= timeY);
+	}
+
+	/**
+	 * Return the time of the boundary collision scheduled for the given element of this world,
+	 * or Double.POSITIVE_INFINITY if none is scheduled.
+	 */
+	double getBoundaryCollisionTime(Element element){
+		return boundaryEvents.getTime(element);
+	}
+
+	/**
+	 * Check whether the boundary collision scheduled for the given element of this world is
+	 * with a vertical boundary.
+	 */
+	boolean isBoundaryCollisionVertical(Element element){
+		return boundaryEvents.isVertical(element);
+	}
+
+	/**
+	 * Schedule the boundary collision of the given element of this world at the given time,
+	 * when this world is restored from a file. The time the original world computed is
+	 * restored rather than computed anew, since recomputing it from the current position
+	 * may round differently and make the restored world diverge from the original.
+	 */
+	void restoreBoundaryCollision(Element element, double time, boolean onVerticalBoundary){
+		if (!toroidal)
+			boundaryEvents.schedule(element, time, onVerticalBoundary);
+	}
+
+	/**
+	 * Variable registering the next boundary collision of each element of this world,
+	 * at the time of this world at which it occurs.
+	 */
+	private final BoundaryEventQueue boundaryEvents = new BoundaryEventQueue();
+
+	/**
+	 * Return the time until a disc with the given coordinate, speed and radius along one axis
+	 * touches a boundary of the interval from zero to the given size.
+	 */
+	private static double getTimeToBoundary(double coordinate, double speed, double radius, double size){
+		if (speed > 0)
+			return (size - radius - coordinate) / speed;
+		if (speed < 0)
+			return (radius - coordinate) / speed;
+		return Double.POSITIVE_INFINITY;
+	}
+
+	private static boolean isSourceOf(Element ship, Element bullet){
+		return (bullet instanceof Bullet) && ((Bullet) bullet).getSource() == ship;
+	}
+
+	/**
+	 * Advance the time of this world by the given time period and move all elements
+	 * of this world up to the new time.
+	 */
+	private void advance(double deltaT){
+		TickStatistics statistics = TickStatistics.getInstance();
+		long start = statistics.begin();
+		time += deltaT;
+		for (int i = 0; i < elements.size(); i++)
+			catchUp(elements.get(i));
+		statistics.end(Phase.INTEGRATION, start);
+	}
+
+	/**
+	 * Move all elements of this bounded world whose disc crosses a boundary back within
+	 * the boundaries, once the boundary collisions of a time period have run out. They
+	 * bounce off the boundaries they crossed, and bullets that can no longer bounce are
+	 * terminated. Listeners are not notified.
+	 */
+	private void confineElements(){
+		if (toroidal)
+			return;
+		// Terminating an element moves the last element to its index, so iterate backwards.
+		for (int i = elements.size() - 1; i >= 0; i--){
+			Element element = elements.get(i);
+			double x = element.getX();
+			double y = element.getY();
+			double radius = element.getRadius();
+			if (!(x < radius || x > width - radius || y < radius || y > heigth - radius))
+				continue;
+			if (element instanceof Bullet){
+				if (!((Bullet) element).canBounce()){
+					element.terminate();
+					continue;
+				}
+				((Bullet) element).bounce();
+			}
+			element.confineTo(this);
+		}
+	}
+
+	/**
+	 * Move the given element of this world up to the current time of this world.
+	 */
+	private void catchUp(Element element){
+		double lag = time - element.getPositionTime();
+		if (lag > 0 && !element.isAsleep())
+			element.driftUnchecked(lag, toroidal);
+		element.setPositionTime(time);
+	}
+
+	/**
+	 * Resolve the collision of the given element with a boundary, after notifying the given listener
+	 * or recording the collision, at the given time within the current tick, in the given batch.
+	 */
+	private void resolveBoundaryCollision(Element element, boolean verticalBoundary, CollisionListener collisionListener,
+			CollisionBatch batch, double elapsed){
+		TickStatistics statistics = TickStatistics.getInstance();
+		CollisionEvent event = new CollisionEvent();
+		if (collisionListener != null || batch != null || event.isEnabled()){
+			double x = element.getX();
+			double y = element.getY();
+			if (verticalBoundary)
+				x = element.getXVelocity() > 0 ? getWidth() : 0;
+			else
+				y = element.getYVelocity() > 0 ? getHeigth() : 0;
+			if (event.isEnabled())
+				commitCollisionEvent(event, element, null, x, y);
+			if (batch != null)
+				batch.addBoundaryCollision(element, getTypeTag(element), x, y, elapsed);
+			if (collisionListener != null){
+				long start = statistics.begin();
+				collisionListener.boundaryCollision(element, x, y);
+				statistics.end(Phase.LISTENER_CALLBACKS, start);
+			}
+		}
+		long start = statistics.begin();
+		if (element instanceof Bullet && !((Bullet) element).canBounce()){
+			element.terminate();
+		} else{
+			if (element instanceof Bullet)
+				((Bullet) element).bounce();
+			if (verticalBoundary)
+				element.setVelocity(-element.getXVelocity(), element.getYVelocity());
+			else
+				element.setVelocity(element.getXVelocity(), -element.getYVelocity());
+		}
+		statistics.end(Phase.COLLISION_RESPONSE, start);
+	}
+
+	/**
+	 * Resolve the collision of the given elements, after notifying the given listener or recording
+	 * the collision, at the given time within the current tick, in the given batch.
+	 */
+	private void resolveObjectCollision(Element element1, Element element2, CollisionListener collisionListener,
+			CollisionBatch batch, double elapsed){
+		TickStatistics statistics = TickStatistics.getInstance();
+		CollisionEvent event = new CollisionEvent();
+		if (collisionListener != null || batch != null || event.isEnabled()){
+			double direction = Math.atan2(element1.getYOffsetTo(element2), element1.getXOffsetTo(element2));
+			double x = wrapX(element1.getX() + Math.cos(direction) * element1.getRadius());
+			double y = wrapY(element1.getY() + Math.sin(direction) * element1.getRadius());
+			if (event.isEnabled())
+				commitCollisionEvent(event, element1, element2, x, y);
+			if (batch != null)
+				batch.addObjectCollision(element1, getTypeTag(element1), element2, getTypeTag(element2), x, y, elapsed);
+			if (collisionListener != null){
+				long start = statistics.begin();
+				collisionListener.objectCollision(element1, element2, x, y);
+				statistics.end(Phase.LISTENER_CALLBACKS, start);
+			}
+		}
+		long start = statistics.begin();
+		if (element1 instanceof Bullet || element2 instanceof Bullet){
+			Element target = (element1 instanceof Bullet) ? element2 : element1;
+			Element bullet = (target == element1) ? element2 : element1;
+			if (target instanceof Asteroid && canSplit((Asteroid) target))
+				split((Asteroid) target, (Bullet) bullet);
+			element1.terminate();
+			element2.terminate();
+			if (element1 instanceof Asteroid)
+				fragmentPool.release((Asteroid) element1);
+			if (element2 instanceof Asteroid)
+				fragmentPool.release((Asteroid) element2);
+		} else if (element1 instanceof Ship && element2 instanceof Asteroid){
+			element1.terminate();
+		} else if (element1 instanceof Asteroid && element2 instanceof Ship){
+			element2.terminate();
+		} else{
+			bounce(element1, element2);
+		}
+		statistics.end(Phase.COLLISION_RESPONSE, start);
+	}
+
+	/**
+	 * Check whether the given asteroid splits in two fragments when it is hit by a bullet.
+	 *
+	 * @return	True if and only if the radius of the given asteroid is at least the
+	 * 			minimum split radius.
+	 * 			| result == asteroid.getRadius() >= getMinSplitRadius()
+	 */
+	public static boolean canSplit(Asteroid asteroid){
+		return asteroid.getRadius() >= minSplitRadius;
+	}
+
+	/**
+	 * Return the smallest radius of an asteroid that splits when it is hit by a bullet.
+	 */
+	@Immutable
+	public static double getMinSplitRadius(){
+		return minSplitRadius;
+	}
+
+	/**
+	 * Variable registering the smallest radius of an asteroid that splits when hit.
+	 */
+	private static final double minSplitRadius = 30;
+
+	/**
+	 * Variable registering the ratio of the radius of a fragment to that of its parent,
+	 * chosen so that two fragments have the mass of their parent.
+	 */
+	private static final double fragmentRadiusRatio = Math.pow(0.5, 1.0 / 3.0);
+
+	/**
+	 * Variable registering the speed at which two fragments leave their common centre
+	 * of mass, relative to the speed of that centre of mass.
+	 */
+	private static final double fragmentSpeedRatio = 0.5;
+
+	/**
+	 * Return the pool that recycles the fragments of this world.
+	 */
+	@Basic @Immutable
+	public FragmentPool getFragmentPool(){
+		return fragmentPool;
+	}
+
+	/**
+	 * Split the given asteroid, hit by the given bullet, in two fragments.
+	 *
+	 * The fragments each have half the mass of the asteroid. Their common centre of mass
+	 * takes over the momentum of the asteroid and the bullet, and they leave that centre
+	 * in opposite directions along a line chosen by the random generator of the asteroid,
+	 * so that momentum is conserved. The fragments are taken from the fragment pool and
+	 * queued; they enter this world when the pending fragments are inserted.
+	 */
+	private void split(Asteroid asteroid, Bullet bullet){
+		double mass = asteroid.getMass();
+		double momentumX = mass * asteroid.getXVelocity()
+				+ bullet.getMass() * bullet.getXVelocity();
+		double momentumY = mass * asteroid.getYVelocity()
+				+ bullet.getMass() * bullet.getYVelocity();
+		double centreVelocityX = momentumX / mass;
+		double centreVelocityY = momentumY / mass;
+		double kick = fragmentSpeedRatio * Math.hypot(centreVelocityX, centreVelocityY);
+		double angle = 2 * Math.PI * asteroid.getRandom().nextDouble();
+		double directionX = Math.cos(angle);
+		double directionY = Math.sin(angle);
+		double radius = asteroid.getRadius() * fragmentRadiusRatio;
+		double x = asteroid.getX();
+		double y = asteroid.getY();
+		for (int sign = -1; sign <= 1; sign += 2)
+			pendingFragments.add(fragmentPool.acquire(x + sign * radius * directionX, y + sign * radius * directionY,
+					radius, centreVelocityX + sign * kick * directionX, centreVelocityY + sign * kick * directionY,
+					asteroid.getRandom()));
+	}
+
+	/**
+	 * Insert all pending fragments in this world in a single pass, so that the next
+	 * broad phase sees them all at once. Fragments that do not fit within the
+	 * boundaries of this world are returned to the pool.
+	 *
+	 * @return	The number of fragments inserted.
+	 */
+	private int insertPendingFragments(){
+		int nbInserted = 0;
+		elements.ensureCapacity(elements.size() + pendingFragments.size());
+		for (Asteroid fragment : pendingFragments){
+			if (canHaveAsElement(fragment)){
+				if (toroidal)
+					fragment.wrapInto(this);
+				fragment.setWorld(this);
+				fragment.setWorldIndex(elements.size());
+				fragment.setPositionTime(time);
+				elements.add(fragment);
+				asteroids.add(fragment);
+				scheduleBoundaryCollision(fragment);
+				nbInserted++;
+			} else{
+				fragment.terminate();
+				fragmentPool.release(fragment);
+			}
+		}
+		pendingFragments.clear();
+		return nbInserted;
+	}
+
+	/**
+	 * Variable registering the pool recycling the fragments of this world.
+	 */
+	private final FragmentPool fragmentPool = new FragmentPool();
+
+	/**
+	 * List registering the fragments created while resolving a collision, that
+	 * have not yet been inserted in this world.
+	 */
+	private final List<Asteroid> pendingFragments = new ArrayList<Asteroid>();
+
+	/**
+	 * Return the tag identifying the type of the given element in a collision batch.
+	 */
+	private static byte getTypeTag(Element element){
+		if (element instanceof Ship)
+			return CollisionBatch.SHIP;
+		if (element instanceof Asteroid)
+			return CollisionBatch.ASTEROID;
+		return CollisionBatch.BULLET;
+	}
+
+	/**
+	 * Variable registering the batch in which the collisions of a tick are recorded
+	 * for a batch listener. The batch is reused from tick to tick.
+	 */
+	private final CollisionBatch collisionBatch = new CollisionBatch();
+
+	/**
+	 * Fill in and commit the given collision event. The second element is null
+	 * for a collision with a boundary.
+	 */
+	private static void commitCollisionEvent(CollisionEvent event, Element element1, Element element2, double x, double y){
+		event.firstType = element1.getClass().getSimpleName();
+		event.secondType = element2 == null ? "Boundary" : element2.getClass().getSimpleName();
+		event.x = x;
+		event.y = y;
+		event.commit();
+	}
+
+	/**
+	 * Let the two given touching elements bounce off each other elastically.
+	 */
+	private static void bounce(Element element1, Element element2){
+		double drx = element1.getXOffsetTo(element2);
+		double dry = element1.getYOffsetTo(element2);
+		double vx1 = element1.getXVelocity();
+		double vy1 = element1.getYVelocity();
+		double vx2 = element2.getXVelocity();
+		double vy2 = element2.getYVelocity();
+		double dvx = vx2 - vx1;
+		double dvy = vy2 - vy1;
+		double sigma = Math.sqrt(Vector2D.lengthSq(drx, dry));
+		double mass1 = element1.getMass();
+		double mass2 = element2.getMass();
+		double impulse = 2 * mass1 * mass2 * Vector2D.dot(dvx, dvy, drx, dry) / (sigma * (mass1 + mass2));
+		double jx = drx * (impulse / sigma);
+		double jy = dry * (impulse / sigma);
+		element1.setVelocity(vx1 + jx * (1 / mass1), vy1 + jy * (1 / mass1));
+		element2.setVelocity(vx2 - jx * (1 / mass2), vy2 - jy * (1 / mass2));
+	}
+
+	/**
+	 * Variable registering the broad phase used to find candidate collision pairs.
+	 */
+	private final UniformGrid grid;
+
+	/**
+	 * Variable registering the predicted collisions of pairs of elements in the current substep.
+	 */
+	private final PairEventQueue pairEvents = new PairEventQueue();
+
+	/**
+	 * Variables registering the elements the broad phase of the current substep was run on,
+	 * at their index in the grid, and the velocity versions they had at that time.
+	 */
+	private Element[] gridElements = new Element[0];
+
+	private int[] gridVersions = new int[0];
+
+	private int nbGridElements = 0;
+
+	/**
+	 * List registering the elements whose velocity changed or that entered this world
+	 * since the broad phase of the current substep.
+	 */
+	private final List<Element> changed = new ArrayList<Element>();
+
+	/**
+	 * Variable registering the number of changed elements, on top of one in eight elements,
+	 * after which the broad phase of the current substep is run again.
+	 */
+	private static final int maxChangedPerSubstep = 64;
+
+	/**
+	 * Variables registering the elements involved in the next collision,
+	 * the second one being null for a collision with a boundary.
+	 */
+	private Element nextFirst, nextSecond;
+
+	/**
+	 * Variable registering whether the next boundary collision is with a vertical boundary.
+	 */
+	private boolean nextOnVerticalBoundary;
+
+	/**
+	 * Variable registering the number of collisions between elements per element after which
+	 * the remainder of a time step is simulated without them, as a guard against elements that
+	 * are stuck. Collisions with boundaries have a budget of the same size, after which elements
+	 * that cross a boundary are moved back at the end of each substep; see confineElements().
+	 */
+	private static final int maxEventsPerElement = 16;
 }
@@ -0,0 +1,166 @@
+package asteroids.model;
+
+import java.util.Arrays;
+
+/**
+ * A priority queue of predicted collisions between pairs of elements of a world,
+ * ordered by the world time at which the collision occurs.
+ *
+ * The queue is a binary min-heap. Events are never updated in place: each event
+ * records how often the velocities of its elements had been set when it was
+ * predicted, and an event whose elements have since changed their velocity or
+ * left the world is outdated and dropped when it reaches the front. The times,
+ * elements and versions of the events are kept in parallel arrays.
+ *
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+class PairEventQueue {
+
+	/**
+	 * Return the number of events in this queue, including outdated ones.
+	 */
+	int size(){
+		return size;
+	}
+
+	/**
+	 * Return the first element of the earliest collision in this queue, or null if this queue is empty.
+	 */
+	Element getFirst(){
+		return size == 0 ? null : firsts[0];
+	}
+
+	/**
+	 * Return the second element of the earliest collision in this queue, or null if this queue is empty.
+	 */
+	Element getSecond(){
+		return size == 0 ? null : seconds[0];
+	}
+
+	/**
+	 * Return the time of the earliest collision in this queue,
+	 * or Double.POSITIVE_INFINITY if this queue is empty.
+	 */
+	double getFirstTime(){
+		return size == 0 ? Double.POSITIVE_INFINITY : times[0];
+	}
+
+	/**
+	 * Add the collision of the given elements at the given time to this queue.
+	 */
+	void add(Element first, Element second, double time){
+		if (size == times.length)
+			grow();
+		place(first, second, first.getVelocityVersion(), second.getVelocityVersion(), time, size);
+		siftUp(size++);
+	}
+
+	/**
+	 * Remove the earliest collision from this queue, if any.
+	 */
+	void removeFirst(){
+		if (size == 0)
+			return;
+		size--;
+		if (size != 0){
+			move(size, 0);
+			siftDown(0);
+		}
+		firsts[size] = null;
+		seconds[size] = null;
+	}
+
+	/**
+	 * Remove the earliest collisions from this queue as long as they are outdated, that is,
+	 * as long as one of their elements is no longer located in the given world or has
+	 * changed its velocity since the collision was added.
+	 */
+	void dropOutdated(GameWorld world){
+		while (size != 0 && (firsts[0].getWorld() != world || seconds[0].getWorld() != world
+				|| firsts[0].getVelocityVersion() != firstVersions[0]
+				|| seconds[0].getVelocityVersion() != secondVersions[0]))
+			removeFirst();
+	}
+
+	/**
+	 * Remove all collisions from this queue.
+	 */
+	void clear(){
+		Arrays.fill(firsts, 0, size, null);
+		Arrays.fill(seconds, 0, size, null);
+		size = 0;
+	}
+
+	private void siftUp(int index){
+		Element first = firsts[index];
+		Element second = seconds[index];
+		int firstVersion = firstVersions[index];
+		int secondVersion = secondVersions[index];
+		double time = times[index];
+		while (index > 0){
+			int parent = (index - 1) >> 1;
+			if (times[parent] <= time)
+				break;
+			move(parent, index);
+			index = parent;
+		}
+		place(first, second, firstVersion, secondVersion, time, index);
+	}
+
+	private void siftDown(int index){
+		Element first = firsts[index];
+		Element second = seconds[index];
+		int firstVersion = firstVersions[index];
+		int secondVersion = secondVersions[index];
+		double time = times[index];
+		while (true){
+			int child = 2 * index + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && times[child + 1] < times[child])
+				child++;
+			if (times[child] >= time)
+				break;
+			move(child, index);
+			index = child;
+		}
+		place(first, second, firstVersion, secondVersion, time, index);
+	}
+
+	private void move(int from, int to){
+		place(firsts[from], seconds[from], firstVersions[from], secondVersions[from], times[from], to);
+	}
+
+	private void place(Element first, Element second, int firstVersion, int secondVersion, double time, int index){
+		firsts[index] = first;
+		seconds[index] = second;
+		firstVersions[index] = firstVersion;
+		secondVersions[index] = secondVersion;
+		times[index] = time;
+	}
+
+	private void grow(){
+		int capacity = Math.max(16, 2 * times.length);
+		firsts = Arrays.copyOf(firsts, capacity);
+		seconds = Arrays.copyOf(seconds, capacity);
+		firstVersions = Arrays.copyOf(firstVersions, capacity);
+		secondVersions = Arrays.copyOf(secondVersions, capacity);
+		times = Arrays.copyOf(times, capacity);
+	}
+
+	private Element[] firsts = new Element[0], seconds = new Element[0];
+
+	/**
+	 * Variables registering the velocity versions of the elements of the collision
+	 * at the same position in the heap, at the time the collision was added.
+	 */
+	private int[] firstVersions = new int[0], secondVersions = new int[0];
+
+	/**
+	 * Variable registering the world time of the collision at the same position in the heap.
+	 */
+	private double[] times = new double[0];
+
+	private int size = 0;
+}
@@ -0,0 +1,86 @@
+package asteroids.model;
+
+import asteroids.CollisionListener;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of game worlds that publish an immutable version of their state
+ * after every change, for readers on other threads.
+ *
+ * The world itself is simulated as before, by a single thread, which evolves
+ * it and applies inputs through this class or directly and then publishes. Each
+ * version is made from the previous one and shares the chunks of elements that
+ * did not change, so resting and sleeping parts of the world cost no
+ * allocation per tick. Readers, such as a renderer, bots, recorders or network
+ * encoders, take the current version with a single volatile read and may keep
+ * it as long as they like, without locks and without copying.
+ *
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+public class PersistentWorld {
+
+	/**
+	 * Initialize this new persistent world with the given world, and publish its first version.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			The given world is not effective.
+	 * 			| world == null
+	 */
+	public PersistentWorld(GameWorld world) throws IllegalArgumentException{
+		if (world == null)
+			throw new IllegalArgumentException("A persistent world must have a world.");
+		this.world = world;
+		version = WorldVersion.of(world);
+	}
+
+	/**
+	 * Return the mutable world of this persistent world. Only the thread that publishes
+	 * may use it.
+	 */
+	@Basic @Immutable
+	public GameWorld getWorld(){
+		return world;
+	}
+
+	/**
+	 * Return the version of the world last published. Any thread may invoke this method.
+	 */
+	@Basic
+	public WorldVersion getVersion(){
+		return version;
+	}
+
+	/**
+	 * Evolve the world of this persistent world over the given time period, and publish
+	 * its new version.
+	 *
+	 * @effect	The world is evolved and its new version is published.
+	 * 			| getWorld().evolve(deltaT, collisionListener) && publish()
+	 */
+	public WorldVersion evolve(double deltaT, CollisionListener collisionListener) throws IllegalArgumentException{
+		world.evolve(deltaT, collisionListener);
+		return publish();
+	}
+
+	/**
+	 * Publish the current state of the world as a new version, for instance after
+	 * inputs were applied to it.
+	 *
+	 * @return	The new version, which shares its unchanged chunks with the previous one.
+	 * 			| result == WorldVersion.of(getWorld(), getVersion())
+	 */
+	public WorldVersion publish(){
+		WorldVersion next = WorldVersion.of(world, version);
+		version = next;
+		return next;
+	}
+
+	private final GameWorld world;
+
+	/**
+	 * Variable registering the version last published. Versions are immutable and their
+	 * fields final, so the volatile write publishes them safely to other threads.
+	 */
+	private volatile WorldVersion version;
+}
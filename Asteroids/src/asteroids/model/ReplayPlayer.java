@@ -0,0 +1,237 @@
+package asteroids.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class of players that re-simulate a session recorded by a
+ * {@link ReplayRecorder}, without a user interface and as fast as the world
+ * evolves.
+ *
+ * A player maps the log into memory and indexes its keyframes. Playing applies
+ * the recorded inputs and time periods to the world in order; seeking restores
+ * the latest keyframe at or before the requested tick and plays from there, or
+ * simply plays on if no keyframe lies between the current tick and the
+ * requested one. A log that ends in the middle of a record, because its
+ * recorder was not closed, is played up to its last complete tick.
+ *
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+public class ReplayPlayer {
+
+	/**
+	 * Initialize this new player with the log at the given path, positioned at its
+	 * first keyframe.
+	 *
+	 * @throws	IOException
+	 * 			The log could not be read, or it is not a replay log of a supported version.
+	 */
+	public ReplayPlayer(Path path) throws IOException{
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Replay log too large to map: " + path);
+			log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		if (log.remaining() < ReplayRecorder.HEADER_SIZE || log.getInt(0) != ReplayRecorder.MAGIC)
+			throw new IOException("Not a replay log: " + path);
+		if (log.getInt(4) != ReplayRecorder.VERSION)
+			throw new IOException("Unsupported replay log version " + log.getInt(4) + ": " + path);
+		nbPlayers = log.getInt(8);
+		players = new Ship[nbPlayers];
+		index();
+		if (nbKeyframes == 0)
+			throw new IOException("Replay log without keyframe: " + path);
+		restore(0);
+	}
+
+	/**
+	 * Record the tick and position of each keyframe, and the number of complete ticks.
+	 */
+	private void index(){
+		int position = ReplayRecorder.HEADER_SIZE;
+		long tick = 0;
+		int end = log.limit();
+		while (position < end){
+			byte type = log.get(position);
+			int size = getRecordSize(type, position, end);
+			if (size < 0 || position + size > end)
+				break;
+			if (type == ReplayRecorder.EVOLVE){
+				tick++;
+				nbTicks = tick;
+			} else if (type == ReplayRecorder.KEYFRAME){
+				if (nbKeyframes == keyframeTicks.length){
+					keyframeTicks = Arrays.copyOf(keyframeTicks, 2 * nbKeyframes);
+					keyframePositions = Arrays.copyOf(keyframePositions, 2 * nbKeyframes);
+				}
+				keyframeTicks[nbKeyframes] = log.getLong(position + 1);
+				keyframePositions[nbKeyframes] = position;
+				nbKeyframes++;
+			}
+			position += size;
+		}
+	}
+
+	/**
+	 * Return the size of the record of the given type at the given position, or -1 if
+	 * the type is unknown or the record does not fit before the given end.
+	 */
+	private int getRecordSize(byte type, int position, int end){
+		switch (type){
+		case ReplayRecorder.TURN:
+			return 10;
+		case ReplayRecorder.THRUSTER:
+			return 3;
+		case ReplayRecorder.FIRE:
+			return 2;
+		case ReplayRecorder.EVOLVE:
+			return 9;
+		case ReplayRecorder.KEYFRAME:
+			if (position + 17 > end)
+				return -1;
+			long size = 17 + log.getLong(position + 9) + 4L * nbPlayers;
+			return size > end - position ? -1 : (int) size;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * Return the number of complete ticks in the log of this player.
+	 */
+	public long getNbTicks(){
+		return nbTicks;
+	}
+
+	/**
+	 * Return the number of keyframes in the log of this player.
+	 */
+	public int getNbKeyframes(){
+		return nbKeyframes;
+	}
+
+	/**
+	 * Return the world of this player. Seeking to an earlier tick, or past a keyframe,
+	 * replaces the world by a new one.
+	 */
+	public GameWorld getWorld(){
+		return world;
+	}
+
+	/**
+	 * Return the number of ticks the world of this player has been played.
+	 */
+	public long getTick(){
+		return tick;
+	}
+
+	/**
+	 * Return the ship of the given player, or null if it was no longer saved at the
+	 * latest restored keyframe.
+	 */
+	public Ship getPlayer(int player){
+		return players[player];
+	}
+
+	/**
+	 * Play the next tick of the log.
+	 *
+	 * @return	False if and only if the log has no more complete ticks.
+	 */
+	public boolean step(){
+		if (tick >= nbTicks)
+			return false;
+		while (true){
+			byte type = log.get(position);
+			switch (type){
+			case ReplayRecorder.TURN:{
+				Ship ship = players[log.get(position + 1)];
+				if (ship != null)
+					facade.turn(ship, log.getDouble(position + 2));
+				break;
+			}
+			case ReplayRecorder.THRUSTER:{
+				Ship ship = players[log.get(position + 1)];
+				if (ship != null)
+					facade.setThrusterActive(ship, log.get(position + 2) != 0);
+				break;
+			}
+			case ReplayRecorder.FIRE:{
+				Ship ship = players[log.get(position + 1)];
+				if (ship != null)
+					facade.fireBullet(ship);
+				break;
+			}
+			case ReplayRecorder.EVOLVE:
+				world.evolve(log.getDouble(position + 1), null);
+				position += 9;
+				tick++;
+				return true;
+			}
+			position += getRecordSize(type, position, log.limit());
+		}
+	}
+
+	/**
+	 * Bring the world of this player to the given tick.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			The given tick is negative or beyond the last complete tick of the log.
+	 */
+	public void seek(long target) throws IllegalArgumentException, IOException{
+		if (target < 0 || target > nbTicks)
+			throw new IllegalArgumentException("Tick " + target + " is not in the log.");
+		int keyframe = nbKeyframes - 1;
+		while (keyframeTicks[keyframe] > target)
+			keyframe--;
+		if (target < tick || keyframeTicks[keyframe] > tick)
+			restore(keyframe);
+		while (tick < target)
+			step();
+	}
+
+	private void restore(int keyframe) throws IOException{
+		int start = keyframePositions[keyframe];
+		ByteBuffer state = log.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		state.position(start + 17);
+		List<Ship> ships = new ArrayList<Ship>();
+		world = WorldFile.load(state, ships);
+		int indices = start + 17 + (int) log.getLong(start + 9);
+		for (int i = 0; i < nbPlayers; i++){
+			int index = log.getInt(indices + 4 * i);
+			players[i] = index < 0 ? null : ships.get(index);
+		}
+		position = indices + 4 * nbPlayers;
+		tick = keyframeTicks[keyframe];
+	}
+
+	private final ByteBuffer log;
+
+	private final int nbPlayers;
+
+	private final Ship[] players;
+
+	private final Facade facade = new Facade();
+
+	private long nbTicks;
+
+	private int nbKeyframes;
+
+	private long[] keyframeTicks = new long[16];
+
+	private int[] keyframePositions = new int[16];
+
+	private GameWorld world;
+
+	private long tick;
+
+	private int position;
+}
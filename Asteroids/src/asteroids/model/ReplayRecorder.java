@@ -0,0 +1,225 @@
+package asteroids.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import asteroids.CollisionListener;
+
+/**
+ * A class of recorders that log the inputs to a game world, so that a session
+ * can be replayed exactly by a {@link ReplayPlayer}.
+ *
+ * A recorder applies each input to its world and appends it to a binary log
+ * of little-endian records. The log starts with an int magic number, an int
+ * version, the int number of players and the double interval between
+ * keyframes, followed by records that each start with a type byte:
+ *
+ * <pre>
+ * TURN      byte player, double angle
+ * THRUSTER  byte player, byte active
+ * FIRE      byte player
+ * EVOLVE    double time period
+ * KEYFRAME  long tick, long size, the world state as written by {@link WorldFile},
+ *           int index of the ship of each player among the saved ships, or -1
+ * </pre>
+ *
+ * A keyframe holds the full state of the world after the given number of
+ * ticks. The first keyframe is written when the recorder is created, and a
+ * new one whenever the world has evolved over the keyframe interval since the
+ * previous one, so a player can seek by restoring the nearest keyframe.
+ *
+ * Inputs and ticks are written to a reused direct buffer that is flushed to
+ * the file when it fills up, so recording them does not allocate; keyframes
+ * allocate while the world state is written.
+ *
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+public class ReplayRecorder implements Closeable {
+
+	public static final int MAGIC = 0x50525341;
+
+	public static final int VERSION = 1;
+
+	public static final int HEADER_SIZE = 20;
+
+	static final byte TURN = 1;
+
+	static final byte THRUSTER = 2;
+
+	static final byte FIRE = 3;
+
+	static final byte EVOLVE = 4;
+
+	static final byte KEYFRAME = 5;
+
+	/**
+	 * Initialize this new recorder for the given world and players, writing to the
+	 * file at the given path, with a keyframe every given number of seconds.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			There are more than 127 players, or the keyframe interval is not positive.
+	 * @throws	IOException
+	 * 			The log could not be written.
+	 */
+	public ReplayRecorder(GameWorld world, List<Ship> players, Path path, double keyframeInterval)
+			throws IllegalArgumentException, IOException{
+		if (players.size() > Byte.MAX_VALUE)
+			throw new IllegalArgumentException("Too many players to record.");
+		if (!(keyframeInterval > 0))
+			throw new IllegalArgumentException("The keyframe interval must be positive.");
+		this.world = world;
+		this.players = players.toArray(new Ship[players.size()]);
+		this.keyframeInterval = keyframeInterval;
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(this.players.length);
+		buffer.putDouble(keyframeInterval);
+		writeKeyframe();
+	}
+
+	/**
+	 * Return the world of this recorder.
+	 */
+	public GameWorld getWorld(){
+		return world;
+	}
+
+	/**
+	 * Return the number of ticks recorded.
+	 */
+	public long getNbTicks(){
+		return nbTicks;
+	}
+
+	/**
+	 * Return the number of keyframes recorded.
+	 */
+	public int getNbKeyframes(){
+		return nbKeyframes;
+	}
+
+	/**
+	 * Turn the ship of the given player over the given angle, as the facade does.
+	 */
+	public void turn(int player, double angle) throws IOException{
+		facade.turn(players[player], angle);
+		ensureRemaining(10);
+		buffer.put(TURN);
+		buffer.put((byte) player);
+		buffer.putDouble(angle);
+	}
+
+	/**
+	 * Activate or deactivate the thruster of the ship of the given player.
+	 */
+	public void setThrusterActive(int player, boolean active) throws IOException{
+		facade.setThrusterActive(players[player], active);
+		ensureRemaining(3);
+		buffer.put(THRUSTER);
+		buffer.put((byte) player);
+		buffer.put((byte) (active ? 1 : 0));
+	}
+
+	/**
+	 * Fire a bullet from the ship of the given player.
+	 */
+	public void fireBullet(int player) throws IOException{
+		facade.fireBullet(players[player]);
+		ensureRemaining(2);
+		buffer.put(FIRE);
+		buffer.put((byte) player);
+	}
+
+	/**
+	 * Evolve the world of this recorder over the given time period, and write a keyframe
+	 * if the keyframe interval has passed since the previous one.
+	 */
+	public void evolve(double dt, CollisionListener collisionListener) throws IOException{
+		ensureRemaining(9);
+		buffer.put(EVOLVE);
+		buffer.putDouble(dt);
+		world.evolve(dt, collisionListener);
+		nbTicks++;
+		if (world.getTime() - keyframeTime >= keyframeInterval)
+			writeKeyframe();
+	}
+
+	private void writeKeyframe() throws IOException{
+		ensureRemaining(17);
+		buffer.put(KEYFRAME);
+		buffer.putLong(nbTicks);
+		flush();
+		long sizePosition = channel.position();
+		buffer.putLong(0);
+		flush();
+		List<Ship> ships = WorldFile.save(world, channel);
+		long size = channel.position() - sizePosition - 8;
+		buffer.putLong(size).flip();
+		channel.write(buffer, sizePosition);
+		buffer.clear();
+		for (Ship player : players){
+			ensureRemaining(4);
+			buffer.putInt(indexOf(ships, player));
+		}
+		keyframeTime = world.getTime();
+		nbKeyframes++;
+	}
+
+	private static int indexOf(List<Ship> ships, Ship ship){
+		for (int i = 0; i < ships.size(); i++)
+			if (ships.get(i) == ship)
+				return i;
+		return -1;
+	}
+
+	private void ensureRemaining(int size) throws IOException{
+		if (buffer.remaining() < size)
+			flush();
+	}
+
+	/**
+	 * Write all recorded inputs and ticks to the file.
+	 */
+	public void flush() throws IOException{
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException{
+		try{
+			flush();
+		} finally{
+			channel.close();
+		}
+	}
+
+	private final GameWorld world;
+
+	private final Ship[] players;
+
+	private final Facade facade = new Facade();
+
+	private final double keyframeInterval;
+
+	private double keyframeTime;
+
+	private long nbTicks;
+
+	private int nbKeyframes;
+
+	private final FileChannel channel;
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+}
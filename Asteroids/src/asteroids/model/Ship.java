@@ -1,6 +1,5 @@
 package asteroids.model;
 
-import asteroids.*;
 import be.kuleuven.cs.som.annotate.*;
 import static asteroids.Util.*;
 /**
@@ -9,20 +8,21 @@ import static asteroids.Util.*;
  * @invar	The angle of each ship must be a valid angle for a ship.
  *			| isValidAngle(getAngle())
  * 
- * @version  2.5
+ * @version  3.0
  * @author   Frederik Van Eeghem (1st master Mathematical engineering), 
 			 Pieter Lietaert (1st master Mathematical engineering)
  */
 // Link to dropbox folder with files: https://www.dropbox.com/sh/tp0rjutudne3vji/hyFRz4TEUn
 
 // GENERAL REMARK:
-// The setters setPosition, setVelocity and setAngle have been made private because 
-// changing the position, velocity or angle of the ship directly in other places makes little sense.
+// The setters setPosition and setAngle have been made private because 
+// changing the position or angle of the ship directly in other places makes little sense.
 // The methods move, thrust and turn can be used to indirectly change these attributes.
+// The setter setVelocity is inherited from Element and only used by the ship itself and its world.
 
-public class Ship implements IShip{
+public class Ship extends Element{
 	/**
-	 * Initialize this new ship with given position, angle, radius, velocity and maximum speed.
+	 * Initialize this new ship with given position, angle, radius, velocity, maximum speed and mass.
 	 * 
 	 * @param 	position
 	 * 			The 2D vector containing the position coordinates for this new ship.
@@ -34,47 +34,27 @@ public class Ship implements IShip{
 	 * 			The 2D vector containing the velocity components for this new ship.
 	 * @param 	maxSpeed
 	 * 			The maximum allowed speed for this new ship.
-	 * @post	The radius of this new ship is equal to the given radius.
-	 * 			| (new this).getRadius() == radius
-	 * @post	If the maximum speed is a number that is positive and smaller than or equal to the speed of light,
-	 * 			the maximum speed of this new ship is equal to the given maximum speed.
-	 * 			|if ((!Double.isNaN(maxSpeed)) &&  (maxSpeed  >=0) && (maxSpeed <= 300000))
-	 * 			|	then (new this).getMaxSpeed() == maxSpeed
-	 * @post	If the maximum speed is NaN, a negative number or larger than the speed of light,
-	 * 			the maximum speed of this new ship is equal to the speed of light.
-	 * 			|if (Double.isNaN(maxSpeed) || (maxSpeed  < 0) || (maxSpeed > 300000))
-	 * 			|	then (new this).getMaxSpeed() == 300000;
-	 * @effect	The given position is set as the position of this new ship.
-	 *       	| this.setPostion(position)
+	 * @param	mass
+	 * 			The mass for this new ship.
+	 * @pre		The given angle must be a valid angle for a ship.
+	 * 			| isValidAngle(angle)
+	 * @effect	This new ship is initialized as an element with the given position, radius,
+	 * 			velocity, maximum speed and mass.
+	 * 			| super(position, radius, velocity, maxSpeed, mass)
 	 * @effect 	The given angle is set as the angle of this new ship.
 	 * 			| this.setAngle(angle)
-	 * @effect	The given velocity is set as the velocity of this new ship.
-	 * 			| this.setVelocity(velocity)
-	 * @throws	IllegalArgumentException
-	 * 			Check if the given radius is valid.
-	 * 			| ! this.isValidRadius(radius)
+	 * @post	The thruster of this new ship is inactive.
+	 * 			| ! (new this).isThrusterActive()
 	 */
 	@Raw
-	public Ship(Vector2D position, double angle, double radius, Vector2D velocity, double maxSpeed)
-			throws IllegalArgumentException, NullPointerException{
-		if (!isValidRadius(radius)){
-			throw new IllegalArgumentException("Given radius was invalid while constructing new ship.");
-		}
-		setPosition(position);
+	public Ship(Vector2D position, double angle, double radius, Vector2D velocity, double maxSpeed, double mass)
+			throws IllegalArgumentException{
+		super(position, radius, velocity, maxSpeed, mass);
 		setAngle(angle);
-		this.radius = radius;
-		
-		if ((!Double.isNaN(maxSpeed)) && (maxSpeed  >=0) && (maxSpeed <= 300000)){
-			this.maxSpeed = maxSpeed;
-		}
-		else{
-			this.maxSpeed = 300000;
-		}
-		setVelocity(velocity);			
 	}
-		
+
 	/**
-	 * Initialize this new ship with given position, angle, radius, velocity and maximum speed set as the speed of light.
+	 * Initialize this new ship with given position, angle, radius, velocity and maximum speed.
 	 * 
 	 * @param 	position
 	 * 			The 2D vector containing the position coordinates for this new ship.
@@ -86,6 +66,27 @@ public class Ship implements IShip{
 	 * 			The 2D vector containing the velocity components for this new ship.
 	 * @param 	maxSpeed
 	 * 			The maximum allowed speed for this new ship.
+	 * @effect	The new ship is initialized with the given position, angle, radius,
+	 * 			velocity and maximum speed, and the default mass.
+	 * 			| this(position, angle, radius, velocity, maxSpeed, getDefaultMass())
+	 */
+	@Raw
+	public Ship(Vector2D position, double angle, double radius, Vector2D velocity, double maxSpeed)
+			throws IllegalArgumentException{
+		this(position, angle, radius, velocity, maxSpeed, defaultMass);
+	}
+		
+	/**
+	 * Initialize this new ship with given position, angle, radius, velocity and maximum speed set as the speed of light.
+	 * 
+	 * @param 	position
+	 * 			The 2D vector containing the position coordinates for this new ship.
+	 * @param 	angle
+	 * 			The angle for this new ship.
+	 * @param 	radius
+	 * 			The radius for this new ship.
+	 * @param 	velocity
+	 * 			The 2D vector containing the velocity components for this new ship.
 	 * @effect	The new ship is initialized with position equal to the given position, 
 	 * 			angle equal to the given angle, radius equal to the given 
 	 * 			radius, velocity equal to given velocity and maximum speed 
@@ -94,7 +95,7 @@ public class Ship implements IShip{
 	 */
 	@Raw
 	public Ship(Vector2D position, double angle, double radius, Vector2D velocity)
-			throws IllegalArgumentException, NullPointerException{
+			throws IllegalArgumentException{
 		this(position, angle, radius, velocity, 300000);
 	}
 	
@@ -109,94 +110,25 @@ public class Ship implements IShip{
 	 */
 	@Raw
 	public Ship() 
-			throws IllegalArgumentException, NullPointerException{
+			throws IllegalArgumentException{
 		this(new Vector2D(0,0), 0, minRadius, new Vector2D(0,0));
 	}
-		
 	
 	/**
-	 * Return the position of this ship.
-	 * The position is a 2D vector that contains the coordinates of this ship.
+	 * Return the default mass of a ship.
+	 * The default mass is expressed in kg.
 	 */
-	@Basic @Raw
-	public Vector2D getPosition() {
-		return this.position;
-	}
-	
-	/**
-	 * Check whether the given position is a valid position for a ship.
-	 * 
-	 * @param	position
-	 * 			The position to check.
-	 * @return	True if and only if the given 2D position vector is effective and does not contain NaN.
-	 *			| result == (position != null && !position.containsNaN())
-	 * @note	This checker checks for effectiveness and NaN at the same time. This means
-	 * 			that this function is not useful when different exceptions are 
-	 * 			desired for the different cases (e.g. NullPointerException 
-	 * 			and IllegalArgumentException), it is however simpler towards the user.
-	 */
-	public boolean isValidPosition(Vector2D position) {
-		return (position != null && !position.containsNaN());
-	}
-	
-	/**
-	 * Set the position of this ship as a 2D vector containing the coordinates of this ship.
-	 * 
-	 * @param	position
-	 * 			The new position for this ship.
-	 * @post	The position of this ship is equal to the given position.
-	 * 			| (new this).getPosition == position
-	 * @throws	IllegalArgumentException
-	 * 			The given position is not a valid position for a ship.
-	 * 			| ! isValidPosition(position)
-	 */
-	private void setPosition(Vector2D position) throws IllegalArgumentException {
-		if (!isValidPosition(position))
-			throw new IllegalArgumentException("Invalid position.");
-		 this.position = position;
+	@Immutable
+	public static double getDefaultMass(){
+		return defaultMass;
 	}
 	
 	/**
-	 * Variable registering the position of this ship.
-	 * The coordinates are measured in km.
+	 * Variable registering the mass of ships created without an explicit mass.
 	 */
-	private Vector2D position;
+	private static final double defaultMass = 5E15;
 		
-	/**
-	 * Check whether the given time period is a valid time period.
-	 * 
-	 * @param 	deltaT
-	 * 			The time period to check.
-	 * @return	True if and only if the given time period is a number that is positive.
-	 * 			| result == (!Double.isNaN(deltaT)) && (deltaT >= 0)
-	 * @note	Checking for NaN is actually redundant since the boolean (deltaT >= 0) returns false in case 
-	 * 			deltaT is NaN. It is however excluded explicitly for clarity towards the user.
-	 */
-	public static boolean isValidTime(double deltaT){
-		return (!Double.isNaN(deltaT)) && (deltaT >= 0);
-	}
 	
-	/**
-	 * Calculate new position of this ship after a time period of deltaT based on current position and velocity.
-	 * 
-	 * @param 	deltaT
-	 * 			Time period over which this ship moves.
-	 * @effect	The resulting position of this ship is the sum of on the one hand the position of this ship,
-	 * 			and on the other hand the product of the given time with the velocity of this ship.
-	 * 			| (new this).getPosition == this.getPosition().add(this.getVelocity().multiply(deltaT))) 
-	 * @throws	IllegalArgumentException
-	 * 			The given time period is not a valid time period.
-	 * 			| !isValidTime(deltaT)
-	 */
-	// Note that we do not check explicitly for an infinite time. This would either lead to an infinite position or a NaN position,
-	// which are both cases that can be handled within setPosition (either without problems or by throwing an exception).
-	public void move(double deltaT) throws IllegalArgumentException {
-		if (!isValidTime(deltaT))
-			throw new IllegalArgumentException("Invalid time step while attempting to move the ship.");
-		this.setPosition(this.getPosition().add(this.getVelocity().multiply(deltaT)));
-	}
-		
-		
 	/**
 	 * Return the angle of this ship.
 	 */
@@ -224,19 +156,87 @@ public class Ship implements IShip{
 	 * 			| isValidAngle(angle)
 	 * @post	The angle of this ship is equal to the given angle.
 	 * 			| (new this).getAngle() == angle.
+	 * @post	The heading of this ship is the unit vector in the direction of the given angle.
+	 * 			| fuzzyEquals((new this).getHeadingX(), Math.cos(angle))
+	 * 			|	&& fuzzyEquals((new this).getHeadingY(), Math.sin(angle))
 	 */
 	@Raw
 	private void setAngle(double angle){
 		assert isValidAngle(angle);
 		this.angle = angle;
+		double steps = angle / headingQuantum;
+		long step = Math.round(steps);
+		if (Math.abs(steps - step) < 1E-9){
+			int index = 2 * (int) (step % (headingTable.length / 2));
+			this.headingX = headingTable[index];
+			this.headingY = headingTable[index + 1];
+		} else{
+			this.headingX = Math.cos(angle);
+			this.headingY = Math.sin(angle);
+		}
 	}
-	
+
 	/**
 	 * Variable registering the angle of the ship.
 	 * The angle is measured in Radians. The positive direction is taken to be counterclockwise. 
 	 * Zero angle coincides with the positive x-direction.
 	 */
 	private double angle;
+
+	/**
+	 * Return the x-component of the unit vector in the direction of the angle of this ship.
+	 *
+	 * The heading is computed when the angle changes, so thrusting, firing and drawing
+	 * the ship need no trigonometry.
+	 */
+	@Basic @Raw
+	public double getHeadingX(){
+		return this.headingX;
+	}
+
+	/**
+	 * Return the y-component of the unit vector in the direction of the angle of this ship.
+	 */
+	@Basic @Raw
+	public double getHeadingY(){
+		return this.headingY;
+	}
+
+	/**
+	 * Variables registering the heading of this ship, the cosine and sine of its angle.
+	 */
+	private double headingX, headingY;
+
+	/**
+	 * The angle between consecutive entries of the heading table. The turns of the
+	 * game view are multiples of it, so turning by key never needs trigonometry.
+	 */
+	private static final double headingQuantum = Math.PI / 40;
+
+	/**
+	 * Table with the cosine and sine of every multiple of the heading quantum in [0, 2 pi[,
+	 * in pairs.
+	 */
+	private static final double[] headingTable = new double[160];
+
+	static{
+		for (int i = 0; i < headingTable.length / 2; i++){
+			headingTable[2 * i] = Math.cos(i * headingQuantum);
+			headingTable[2 * i + 1] = Math.sin(i * headingQuantum);
+		}
+	}
+
+	/**
+	 * Set the angle of this ship, when its world is restored from a snapshot.
+	 *
+	 * @pre		The given angle must be a valid angle for a ship.
+	 * 			| isValidAngle(angle)
+	 * @post	The angle of this ship is equal to the given angle.
+	 * 			| (new this).getAngle() == angle
+	 */
+	void restoreAngle(double angle){
+		setAngle(angle);
+	}
 	
 	/** 
 	 * Turn this ship over the given angle.
@@ -257,72 +257,6 @@ public class Ship implements IShip{
 	}
 	
 	
-	/**
-	 * Return the velocity of this ship. 
-	 * The velocity is a 2D vector that contains the velocity in the x-direction and the y-direction.
-	 */
-	@Basic @Raw
-	public Vector2D getVelocity(){
-		return this.velocity;
-	}
-	
-	/**
-	 * Set the velocity of this ship as a 2D vector containing the velocity in the x-direction and the y-direction.
-	 * 
-	 * @param	velocity
-	 * 			The new velocity for this ship.
-	 * @post	If the given velocity is effective, does not contain any NaN entries and 
-	 * 			if the norm of the given velocity is smaller than or equal to the maximum allowed speed,
-	 * 			the velocity of this ship is equal to the given velocity.
-	 * 			| if ((velocity != null) && (!velocity.containsNaN()) && (fuzzyLessThanOrEqualTo(velocity.getNorm(),this.getMaxSpeed())))
-	 * 			|		then (new this).getVelocity().equals(velocity)
-	 * @post	If the given velocity is effective, does not contain any NaN entries and 
-	 * 			if the norm of the given velocity exceeds the maximum allowed speed, the velocity 
-	 * 			of this ship has the same direction as the given velocity and a norm equal 
-	 * 			to the maximum allowed speed.
-	 * 			| if ((velocity != null) &&  (!velocity.containsNaN()) && (!fuzzyLessThanOrEqualTo(velocity.getNorm(),this.getMaxSpeed())))
-	 * 			|	then (new this).getVelocity.getNorm() == this.getMaxSpeed()
-	 * 			|		 (new this).getVelocity.getDirection().equals(velocity.getDirection())
-	 * @post 	If the given velocity is non-effective or contains a NaN entry, 
-	 * 			the velocity of this ship is set to zero.
-	 * 			|if ((velocity == null) || (velocity.containsNaN())
-	 * 			|	then (new this).getVelocity == new Vector2D(0,0)
-	 */
-	private void setVelocity(Vector2D velocity){
-		if (velocity == null || velocity.containsNaN()){
-			this.velocity = new Vector2D(0,0);
-		} else {
-			// Use of fuzzyLessThanOrEqualTo to save on calculation time when
-			// the given velocity is only slightly higher than the maximum speed.
-			// The effect will be the same as when the speed is reset to the maximum speed.
-			if (fuzzyLessThanOrEqualTo(velocity.getNorm(),this.getMaxSpeed())){
-				this.velocity = velocity;
-			} else {
-				this.velocity = velocity.getDirection().multiply(this.getMaxSpeed());
-				}
-		}
-	}
-	
-	/**
-	 * Variable registering the velocity of this ship.
-	 * The velocity is a 2D vector, containing the velocity in x-direction and y-direction, expressed in km/s.
-	 */
-	private Vector2D velocity;
-	
-	/**
-	 * Return the maximum speed of this ship.
-	 */
-	@Basic @Immutable @Raw
-	public double getMaxSpeed(){
-		return this.maxSpeed;
-	}
-	
-	/**
-	 * Variable registering the maximum allowed total speed of this ship.
-	 * This variable is expressed in km/s.
-	 */
-	private final double maxSpeed;
-	
 	/**
 	 * Accelerate this ship according to the given acceleration.
 	 * 
@@ -334,156 +268,154 @@ public class Ship implements IShip{
 	 * @effect	If the given acceleration is positive, the given acceleration in the direction 
 	 * 			of angle is added to the velocity of this ship and set as the velocity of this ship.
 	 * 			| if(acceleration >= 0)
-	 * 			|	then let Vector2D deltaVelocity == new Vector2D(Math.cos(this.getAngle())*acceleration,
-	 * 			|													Math.sin(this.getAngle())*acceleration)
+	 * 			|	then let Vector2D deltaVelocity == new Vector2D(this.getHeadingX()*acceleration,
+	 * 			|													this.getHeadingY()*acceleration)
 	 * 			|		 in this.setVelocity(this.getVelocity().add(deltaVelocity));
 	 */
 	public void thrust(double acceleration){
 		if(acceleration >= 0){
-			Vector2D deltaVelocity = new Vector2D(Math.cos(this.getAngle())*acceleration,Math.sin(this.getAngle())*acceleration);
+			Vector2D deltaVelocity = new Vector2D(this.getHeadingX()*acceleration,this.getHeadingY()*acceleration);
 			this.setVelocity(this.getVelocity().add(deltaVelocity));
 		}
 	}
 	
-	
+	/**
+	 * Check whether the thruster of this ship is active.
+	 */
+	@Basic @Raw
+	public boolean isThrusterActive(){
+		return this.thrusterActive;
+	}
 	
 	/**
-	 * Calculate the distance between this ship and the given ship.
+	 * Activate or deactivate the thruster of this ship.
 	 * 
-	 * @param 	otherShip
-	 * 			The ship to which the distance is calculated.
-	 * @return	The distance between this ship and the given ship if the given ship is effective, 
-	 * 			zero if this ship and the given ship are the same.
-	 * 			| if(this != otherShip)
-	 * 			|		result == this.getPosition().subtract(otherShip.getPosition()).getNorm() - 
-	 * 			|            (this.getRadius()+otherShip.getRadius())
-	 * @return	Zero if this ship and the given ship are the same.
-	 * 			| if(this == otherShip)
-	 * 			|		result == 0
-	 * @throws	NullPointerException
-	 * 			The otherShip is non existent.
-	 * 			| otherShip == null
-	 */
-	public double getDistanceBetween(Ship otherShip) throws NullPointerException{
-		if(otherShip == null)
-			throw new NullPointerException("The other ship is non existent.");
-		if(this == otherShip)
-			return 0;
-		else 
-			return this.getPosition().subtract(otherShip.getPosition()).getNorm() - 
-					(this.getRadius()+otherShip.getRadius());
+	 * @param	active
+	 * 			Whether the thruster should be active.
+	 * @post	The thruster of this ship is active if and only if the given flag is true.
+	 * 			| (new this).isThrusterActive() == active
+	 */
+	public void setThrusterActive(boolean active){
+		this.thrusterActive = active;
 	}
 	
 	/**
-	 * Check whether this ship and the given ship overlap.
-	 * 
-	 * @param 	otherShip
-	 * 			The ship for which the overlap with this ship is checked.
-	 * @return	True if this ship and the given ship are the same or
-	 * 			if this ship and the given ship overlap.
-	 *			| result == ((this == otherShip) || (this.getDistanceBetween(otherShip) < 0))
-	 */
-	public boolean overlap(Ship otherShip) throws NullPointerException{
-		return ((this == otherShip) || (this.getDistanceBetween(otherShip) < 0));
+	 * Variable registering whether the thruster of this ship is active.
+	 */
+	private boolean thrusterActive = false;
+	
+	/**
+	 * Return the force exerted by the thruster of a ship.
+	 * The force is expressed in Newton.
+	 */
+	@Immutable
+	public static double getThrustForce(){
+		return thrustForce;
 	}
 	
 	/**
-	 * The time to collision between this ship and the given ship.
+	 * Variable registering the force exerted by an active thruster.
+	 */
+	private static final double thrustForce = 1.1E18;
+	
+	/**
+	 * Apply the thruster of this ship during the given time period.
 	 * 
-	 * @param 	otherShip
-	 * 			The ship for which the time to collision is calculated.
-	 * @return	Double.POSITIVE_INFINITY if this ship and the given ship are the same.
-	 * 			| if (this == otherShip)
-	 * 			|	result == Double.POSITIVE_INFINITY
-	 * @return	The time until collision according to current position and velocity
-	 * 			if this ship and the given ship (different from this ship), 
-	 * 			both moving in their current direction,	will ever collide, 
-	 * 			else Double.POSITIVE_INFINITY.
-	 * 			| if (this != otherShip)
-	 * 			|	let
-	 * 			| 		allOverlapTimes = {collisionTime in Double | (when (this.move(collisionTime)  
-	 * 			|								&& otherShip.move(collisionTime)) then this.overlap(otherShip))
-	 * 			|								&& (collisionTime != Double.POSITIVE_INFINITY)}
-	 * 			|	 in
-	 * 			|	 if (!isEmpty(allOverlapTimes))
-	 * 			|		fuzzyEquals(result, min(allOverlapTimes)) == true
-	 * 			|	 else
-	 * 			|		result == Double.POSITIVE_INFINITY
-	 * @throws	NullPointerException
-	 * 			The otherShip is non existent
-	 * 			| otherShip == null
+	 * @param	deltaT
+	 * 			The time period during which the thruster is applied.
+	 * @effect	If the thruster of this ship is active, this ship is accelerated
+	 * 			by its thrust force divided by its mass during the given time.
+	 * 			| if (isThrusterActive())
+	 * 			|	then thrust(getThrustForce() / getMass() * deltaT)
 	 */
-
-	public double getTimeToCollision(Ship otherShip)throws NullPointerException{
-		if (otherShip == null)
-			throw new NullPointerException("The other ship is non existent.");
-		if (this != otherShip) {
-			Vector2D dr = this.getPosition().subtract(otherShip.getPosition());
-			Vector2D dv = this.getVelocity().subtract(otherShip.getVelocity());
-			double drdr = dr.getDotProduct(dr);
-			double dvdv = dv.getDotProduct(dv);
-			double dvdr = dr.getDotProduct(dv);
-			double d = dvdr * dvdr - dvdv * (drdr - 
-					Math.pow((this.getRadius() + otherShip.getRadius()), 2));
-			if (dvdr >= 0 || d <= 0)
-				return Double.POSITIVE_INFINITY;
-			else
-				return -1 * (dvdr + Math.sqrt(d)) / dvdv;
-		} 
-		else {
-			return Double.POSITIVE_INFINITY;
-		}
+	public void applyThruster(double deltaT){
+		if (isThrusterActive())
+			thrust(getThrustForce() / getMass() * deltaT);
 	}
 	
 	/**
-	 * The collision point of this ship and the other ship.
+	 * Fire a bullet from this ship.
 	 * 
-	 * @param 	otherShip
-	 * 			The ship on which the collision point of this ship is calculated.
-	 * @return	If this ship and the other ship will collide, the collision position is returned
-	 * 			as the middle of the connecting line on the time of collision.
-	 *  		| let collisionTime = this.getTimeToCollision(otherShip)
-	 *  		| in
-	 *  		|	if(collisionTime != Double.POSITIVE_INFINITY)
-	 *  		|		when(otherShip.move(collisionTime) && this.move(collisionTime))
-	 *  		|		then
-	 *  		|			(otherShip.getPosition().subtract(result)).getNorm() <= otherShip.getRadius()
-	 *  		|			(this.getPosition().subtract(result)).getNorm() <= this.getRadius()
-	 * @return	If this ship and the other ship never collide, null is returned.
-	 * 			| if(this.getTimeToCollision(otherShip) == Double.POSITIVE_INFINITY)
-	 * 			|	then result == null
-	 * @throws	NullPointerException
-	 * 			The otherShip is non existent
-	 * 			| otherShip == null
-	 */
-	public Vector2D getCollisionPosition(Ship otherShip) throws NullPointerException{
-		double timeToCollision = this.getTimeToCollision(otherShip);
-		if(timeToCollision != Double.POSITIVE_INFINITY){
-			Ship thisClone = new Ship(this.getPosition(), this.getAngle(), this.getRadius(), this.getVelocity(), this.getMaxSpeed());
-			Ship otherShipClone = new Ship(otherShip.getPosition(), otherShip.getAngle(), otherShip.getRadius(), otherShip.getVelocity(), otherShip.getMaxSpeed());
+	 * The bullet is taken from the ring of bullets of this ship. If all bullets of
+	 * the ring are in flight, the oldest one is terminated and fired again.
+	 * 
+	 * @return	A bullet with this ship as its source, placed just outside this ship
+	 * 			in the direction of its angle and moving in that direction at the initial bullet speed.
+	 * 			| result.getSource() == this
+	 * @effect	If this ship is located in a world, the bullet is added to that world
+	 * 			if it can be located there; otherwise it is terminated.
+	 * 			| if (getWorld() != null && getWorld().canHaveAsElement(result))
+	 * 			|	then getWorld().addBullet(result)
+	 * @note	The bullets of a ship are reused: a reference to a fired bullet is only
+	 * 			meaningful while that bullet is not terminated.
+	 */
+	public Bullet fireBullet(){
+		double directionX = getHeadingX();
+		double directionY = getHeadingY();
+		double distance = getRadius() + Bullet.getDefaultRadius();
+		GameWorld world = getWorld();
+		Bullet bullet = bulletRing.fire(getX() + distance * directionX, getY() + distance * directionY,
+				Bullet.getInitialSpeed() * directionX, Bullet.getInitialSpeed() * directionY,
+				(world == null) ? 0 : world.getTime());
+		if (world != null && world.canHaveAsElement(bullet)){
+			world.addBullet(bullet);
+			world.registerBulletRing(bulletRing);
+		} else{
+			bullet.terminate();
+		}
+		return bullet;
+	}
 
-			thisClone.move(timeToCollision);
-			otherShipClone.move(timeToCollision);
-			Vector2D newPositionThis = thisClone.getPosition();
-			Vector2D newPositionOtherShip = otherShipClone.getPosition();
-			
-			Vector2D collisionPosition = newPositionThis.add(newPositionOtherShip.subtract(newPositionThis).getDirection().multiply(this.getRadius()));
-			return collisionPosition;
+	/**
+	 * Return the bullet ring of this ship.
+	 */
+	BulletRing getBulletRing(){
+		return bulletRing;
+	}
 
+	/**
+	 * Return a bullet of this ship with the given position, velocity and number of bounces,
+	 * fired at the given time, when the bullets of this ship are restored from a file.
+	 * Bullets must be restored in the order in which they were fired. The given world
+	 * need not be the world of this ship, since the bullets of a ship outlive its
+	 * presence in a world.
+	 *
+	 * @effect	The bullet is added to the given world if it can be located there;
+	 * 			otherwise it is terminated.
+	 * 			| if (world.canHaveAsElement(result))
+	 * 			|	then world.addBullet(result)
+	 */
+	Bullet restoreBullet(GameWorld world, Vector2D position, Vector2D velocity, double fireTime, int nbBounces){
+		Bullet bullet = bulletRing.fire(position.getXComponent(), position.getYComponent(),
+				velocity.getXComponent(), velocity.getYComponent(), fireTime);
+		for (int i = 0; i < nbBounces && bullet.canBounce(); i++)
+			bullet.bounce();
+		if (world.canHaveAsElement(bullet)){
+			world.addBullet(bullet);
+			world.registerBulletRing(bulletRing);
 		} else{
-			return null;
+			bullet.terminate();
 		}
+		return bullet;
 	}
-	
-	
-	
+
 	/**
-	 * Return the radius of this ship.
+	 * Return the number of bullets this ship can have in flight at once.
 	 */
-	@Basic @Immutable @Raw
-	public double getRadius(){
-		return this.radius;
+	@Immutable
+	public int getBulletCapacity(){
+		return bulletRing.getCapacity();
 	}
+
+	/**
+	 * Variable registering the maximum number of bullets a ship can have in flight at once.
+	 */
+	private static final int maxBulletsInFlight = 32;
+
+	/**
+	 * Variable registering the ring of bullets fired by this ship.
+	 */
+	private final BulletRing bulletRing = new BulletRing(this, maxBulletsInFlight);
 	
 	/**
 	 * Check whether the given radius is a valid radius for a ship.
@@ -491,9 +423,10 @@ public class Ship implements IShip{
 	 * @param	radius
 	 * 			Radius to check.
 	 * @return	True if and only if the given radius is a number 
-	 * 			larger than the minimum radius and smaller than or equal to the maximum double value.
+	 * 			larger than or equal to the minimum radius and smaller than or equal to the maximum double value.
 	 * 			| result == (!Double.isNaN(radius)) && ((radius >= this.getMinRadius()) && (radius <= Double.MAX_VALUE))
 	 */
+	@Override
 	public boolean isValidRadius(double radius){
 		return (!Double.isNaN(radius)) && (fuzzyLessThanOrEqualTo(this.getMinRadius(),radius) 
 				&& (radius <= Double.MAX_VALUE));
@@ -502,17 +435,11 @@ public class Ship implements IShip{
 	/**
 	 * Return the minimum radius of this ship.
 	 */
-	@Basic @Immutable @Raw
+	@Override @Basic @Immutable @Raw
 	public double getMinRadius(){
 		return minRadius;
 	}
 	
-	/**
-	 * Variable registering radius of this ship.
-	 * The radius is expressed in km.
-	 */
-	private final double radius;
-	
 	/**
 	 * Variable registering the minimum allowed radius of this ship.
 	 * The minimum radius is expressed in km.
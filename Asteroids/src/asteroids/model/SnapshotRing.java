@@ -0,0 +1,127 @@
+package asteroids.model;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of rings holding snapshots of a game world at its most recent ticks,
+ * so the world can be rolled back to any of those ticks and simulated anew,
+ * as rollback netcode, lookahead and replay seeking do.
+ *
+ * The snapshot of a tick is kept in the slot of the ring given by the tick
+ * modulo the capacity of the ring, so saving the state of a new tick replaces
+ * the oldest snapshot. The snapshots are allocated when the ring is created and
+ * reused from then on.
+ *
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+public class SnapshotRing {
+
+	/**
+	 * Initialize this new ring for the given world with the given number of snapshots.
+	 *
+	 * @param	world
+	 * 			The world to take snapshots of.
+	 * @param	capacity
+	 * 			The number of ticks to keep snapshots of.
+	 * @throws	IllegalArgumentException
+	 * 			The given world is not effective or the given capacity is not positive.
+	 * 			| world == null || capacity <= 0
+	 */
+	public SnapshotRing(GameWorld world, int capacity) throws IllegalArgumentException{
+		if (world == null)
+			throw new IllegalArgumentException("A snapshot ring must have a world.");
+		if (capacity <= 0)
+			throw new IllegalArgumentException("The capacity of a snapshot ring must be positive.");
+		this.world = world;
+		snapshots = new WorldSnapshot[capacity];
+		for (int i = 0; i < capacity; i++)
+			snapshots[i] = new WorldSnapshot();
+	}
+
+	/**
+	 * Return the world of this ring.
+	 */
+	@Basic @Immutable
+	public GameWorld getWorld(){
+		return world;
+	}
+
+	/**
+	 * Return the number of ticks this ring keeps snapshots of.
+	 */
+	@Immutable
+	public int getCapacity(){
+		return snapshots.length;
+	}
+
+	/**
+	 * Return the tick of the newest snapshot in this ring, or -1 if it holds none.
+	 */
+	@Basic
+	public long getNewestTick(){
+		return newest;
+	}
+
+	/**
+	 * Check whether this ring holds a snapshot of its world at the given tick.
+	 */
+	public boolean contains(long tick){
+		return newest >= 0 && tick <= newest && tick > newest - snapshots.length && tick >= 0
+				&& getSnapshot(tick).getTick() == tick && getSnapshot(tick).getWorld() == world;
+	}
+
+	/**
+	 * Save the state of the world of this ring at its current tick. Snapshots of later
+	 * ticks, left over from before the world was rolled back, are discarded.
+	 *
+	 * @effect	The state of the world is saved in the snapshot of its current tick.
+	 * 			| getWorld().saveSnapshot(getSnapshot(getWorld().getTick()))
+	 * @post	The newest tick of this ring is the current tick of its world.
+	 * 			| (new this).getNewestTick() == getWorld().getTick()
+	 */
+	public void save(){
+		long tick = world.getTick();
+		discardAfter(tick);
+		world.saveSnapshot(getSnapshot(tick));
+		newest = tick;
+	}
+
+	/**
+	 * Bring the world of this ring back to the given tick. Snapshots of later ticks
+	 * are discarded, since the world may evolve differently from then on.
+	 *
+	 * @effect	The world is restored from the snapshot of the given tick.
+	 * 			| getWorld().restoreSnapshot(getSnapshot(tick))
+	 * @post	The newest tick of this ring is the given tick.
+	 * 			| (new this).getNewestTick() == tick
+	 * @throws	IllegalArgumentException
+	 * 			This ring holds no snapshot of the given tick.
+	 * 			| !contains(tick)
+	 */
+	public void restore(long tick) throws IllegalArgumentException{
+		if (!contains(tick))
+			throw new IllegalArgumentException("No snapshot of tick " + tick + " in this ring.");
+		world.restoreSnapshot(getSnapshot(tick));
+		discardAfter(tick);
+	}
+
+	/**
+	 * Discard the snapshots of the ticks after the given tick.
+	 */
+	private void discardAfter(long tick){
+		for (long later = Math.max(tick + 1, newest - snapshots.length + 1); later <= newest; later++)
+			getSnapshot(later).tick = -1;
+		newest = Math.min(newest, tick);
+	}
+
+	private WorldSnapshot getSnapshot(long tick){
+		return snapshots[(int) (tick % snapshots.length)];
+	}
+
+	private final GameWorld world;
+
+	private final WorldSnapshot[] snapshots;
+
+	private long newest = -1;
+}
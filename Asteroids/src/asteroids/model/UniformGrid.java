@@ -0,0 +1,489 @@
+package asteroids.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A broad phase for collision detection that hashes elements into a hierarchy
+ * of uniform grids.
+ *
+ * Each element is entered in every cell covered by its bounding box, swept over
+ * a given time horizon. Two elements are reported as a candidate pair if their
+ * swept boxes overlap; only candidate pairs can collide within the horizon.
+ * The cells of the finest level have the mean extent of the boxes, and each next
+ * level has cells four times as large. An element is owned by the finest level on
+ * which its box covers at most a few cells, and is also entered on every coarser
+ * level that owns elements. A pair is found on the level of its larger element,
+ * by the first cell both boxes share, so that every pair is reported once and a
+ * large element is only compared with the elements near it. Two elements that
+ * are both asleep are never reported as a pair.
+ *
+ * A periodic grid serves toroidal worlds. Its cells tile the period exactly,
+ * and cell coordinates are wrapped before hashing, so the cells of a box that
+ * crosses a seam act as ghost cells on the opposite side. Boxes are compared
+ * between their nearest images.
+ *
+ * After a query for candidate pairs, the grid can be asked for the elements
+ * whose boxes overlap a given box, for instance the box of an element whose
+ * velocity changed.
+ *
+ * All buffers are reused between queries.
+ *
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+public class UniformGrid {
+
+	/**
+	 * Initialize this new grid for elements in an unbounded plane.
+	 */
+	public UniformGrid(){
+		this(0, 0);
+	}
+
+	/**
+	 * Initialize this new grid for elements in a plane that wraps around with the given
+	 * periods along the x-axis and the y-axis. A period of zero means no wrapping.
+	 */
+	public UniformGrid(double periodX, double periodY){
+		this.periodX = periodX;
+		this.periodY = periodY;
+	}
+
+	/**
+	 * Variables registering the periods of the plane along the x-axis and the y-axis,
+	 * zero for an axis that does not wrap.
+	 */
+	private final double periodX, periodY;
+
+	/**
+	 * Find the candidate pairs among the given elements for the given time horizon.
+	 *
+	 * @param	elements
+	 * 			The elements to pair.
+	 * @param	horizon
+	 * 			The time over which the bounding boxes of the elements are swept.
+	 * @return	The number of candidate pairs found. The indices in the given list of
+	 * 			the elements of each pair are returned by getFirst and getSecond.
+	 */
+	public int findCandidatePairs(List<? extends Element> elements, double horizon){
+		int nbElements = elements.size();
+		this.nbElements = nbElements;
+		nbPairs = 0;
+		nbComparisons = 0;
+		ensureElementCapacity(nbElements);
+		double extentSum = 0;
+		int nbFinite = 0;
+		for (int i = 0; i < nbElements; i++){
+			Element element = elements.get(i);
+			double radius = element.getRadius();
+			asleep[i] = element.isAsleep();
+			double x = element.getX();
+			double y = element.getY();
+			double endX = x + element.getXVelocity() * horizon;
+			double endY = y + element.getYVelocity() * horizon;
+			minX[i] = Math.min(x, endX) - radius;
+			maxX[i] = Math.max(x, endX) + radius;
+			minY[i] = Math.min(y, endY) - radius;
+			maxY[i] = Math.max(y, endY) + radius;
+			double extent = Math.max(maxX[i] - minX[i], maxY[i] - minY[i]);
+			if (extent < Double.POSITIVE_INFINITY){
+				extentSum += extent;
+				nbFinite++;
+			}
+		}
+		if (nbElements < 2)
+			return 0;
+		cellSize = Math.max(nbFinite == 0 ? 0 : extentSum / nbFinite, Double.MIN_NORMAL);
+		for (int level = 0; level < maxLevels; level++){
+			double size = cellSize * Math.pow(levelRatio, level);
+			nbCellsX[level] = getNbCells(periodX, size);
+			nbCellsY[level] = getNbCells(periodY, size);
+			cellWidth[level] = (nbCellsX[level] == 0) ? size : periodX / nbCellsX[level];
+			cellHeight[level] = (nbCellsY[level] == 0) ? size : periodY / nbCellsY[level];
+			nbOwners[level] = 0;
+		}
+
+		nbLarge = 0;
+		for (int i = 0; i < nbElements; i++){
+			int level = 0;
+			while (level < maxLevels && getNbCoveredCells(i, level) > maxCellsPerElement)
+				level++;
+			if (level == maxLevels){
+				levels[i] = -1;
+				large[nbLarge++] = i;
+			} else {
+				levels[i] = level;
+				nbOwners[level]++;
+			}
+		}
+
+		long nbInsertions = 0;
+		for (int i = 0; i < nbElements; i++)
+			if (levels[i] >= 0)
+				for (int level = levels[i]; level < maxLevels; level++)
+					if (nbOwners[level] > 0)
+						nbInsertions += getNbCoveredCells(i, level);
+		int nbBuckets = Integer.highestOneBit((int) Math.max(8, 2 * nbInsertions - 1)) << 1;
+		ensureBucketCapacity(nbBuckets, (int) nbInsertions);
+		mask = nbBuckets - 1;
+		for (int b = 0; b <= nbBuckets; b++)
+			bucketStart[b] = 0;
+		for (int pass = 0; pass < 2; pass++){
+			if (pass == 1){
+				int offset = 0;
+				for (int b = 0; b < nbBuckets; b++){
+					int count = bucketStart[b];
+					bucketStart[b] = offset;
+					bucketEnd[b] = offset;
+					offset += count;
+				}
+				bucketStart[nbBuckets] = offset;
+			}
+			for (int i = 0; i < nbElements; i++){
+				if (levels[i] < 0)
+					continue;
+				for (int level = levels[i]; level < maxLevels; level++){
+					if (nbOwners[level] == 0)
+						continue;
+					int firstX = getFirstCell(minX[i], maxX[i], cellWidth[level], nbCellsX[level]);
+					int lastX = getLastCell(minX[i], maxX[i], cellWidth[level], nbCellsX[level]);
+					int firstY = getFirstCell(minY[i], maxY[i], cellHeight[level], nbCellsY[level]);
+					int lastY = getLastCell(minY[i], maxY[i], cellHeight[level], nbCellsY[level]);
+					for (int cx = firstX; cx <= lastX; cx++)
+						for (int cy = firstY; cy <= lastY; cy++){
+							int b = hash(cx, cy, level) & mask;
+							if (pass == 0)
+								bucketStart[b]++;
+							// Skip repeated entries of one element on one level in the same bucket.
+							else if (bucketEnd[b] == bucketStart[b] || entries[bucketEnd[b] - 1] != i
+									|| entryLevels[bucketEnd[b] - 1] != level){
+								entries[bucketEnd[b]] = i;
+								entryLevels[bucketEnd[b]++] = level;
+							}
+						}
+				}
+			}
+		}
+
+		for (int b = 0; b < nbBuckets; b++){
+			for (int p = bucketStart[b]; p < bucketEnd[b]; p++){
+				int i = entries[p];
+				int level = entryLevels[p];
+				if (levels[i] != level)
+					continue;
+				for (int q = bucketStart[b]; q < bucketEnd[b]; q++){
+					int j = entries[q];
+					if (entryLevels[q] != level || j == i || (levels[j] == level && q < p) || (asleep[i] && asleep[j]))
+						continue;
+					nbComparisons++;
+					if (!boxesOverlap(i, j))
+						continue;
+					int firstX = getFirstSharedCell(i, j, level, true);
+					int firstY = getFirstSharedCell(i, j, level, false);
+					if ((hash(firstX, firstY, level) & mask) == b)
+						addPair(i, j);
+				}
+			}
+		}
+		for (int l = 0; l < nbLarge; l++){
+			int i = large[l];
+			for (int j = 0; j < nbElements; j++){
+				if (j == i || (levels[j] < 0 && j < i) || (asleep[i] && asleep[j]))
+					continue;
+				nbComparisons++;
+				if (boxesOverlap(i, j))
+					addPair(i, j);
+			}
+		}
+		return nbPairs;
+	}
+
+	/**
+	 * Find the elements of the last query for candidate pairs whose swept boxes overlap
+	 * the given box.
+	 *
+	 * @return	The number of elements found. The indices of these elements in the list of
+	 * 			elements of the last query are returned by getOverlapping.
+	 */
+	public int findOverlapping(double minX, double maxX, double minY, double maxY){
+		nbOverlapping = 0;
+		if (stamps.length < nbElements)
+			stamps = new int[this.minX.length];
+		if (++stamp == 0){
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+		int level = 0;
+		if (nbElements >= 2){
+			while (level < maxLevels && getNbCoveredCells(minX, maxX, minY, maxY, level) > maxCellsPerElement)
+				level++;
+			// The first level that owns elements from there on also holds all elements of finer levels.
+			while (level < maxLevels && nbOwners[level] == 0)
+				level++;
+		}
+		if (nbElements < 2 || level == maxLevels){
+			for (int i = 0; i < nbElements; i++)
+				addOverlapping(i, minX, maxX, minY, maxY);
+			return nbOverlapping;
+		}
+		for (int l = level; l < maxLevels; l++){
+			if (nbOwners[l] == 0)
+				continue;
+			int firstX = getFirstCell(minX, maxX, cellWidth[l], nbCellsX[l]);
+			int lastX = getLastCell(minX, maxX, cellWidth[l], nbCellsX[l]);
+			int firstY = getFirstCell(minY, maxY, cellHeight[l], nbCellsY[l]);
+			int lastY = getLastCell(minY, maxY, cellHeight[l], nbCellsY[l]);
+			for (int cx = firstX; cx <= lastX; cx++)
+				for (int cy = firstY; cy <= lastY; cy++){
+					int b = hash(cx, cy, l) & mask;
+					for (int p = bucketStart[b]; p < bucketEnd[b]; p++)
+						if (entryLevels[p] == l && (l == level || levels[entries[p]] == l))
+							addOverlapping(entries[p], minX, maxX, minY, maxY);
+				}
+		}
+		for (int k = 0; k < nbLarge; k++)
+			addOverlapping(large[k], minX, maxX, minY, maxY);
+		return nbOverlapping;
+	}
+
+	/**
+	 * Return the index of the given element found by the last query for overlapping boxes.
+	 */
+	public int getOverlapping(int k){
+		return overlapping[k];
+	}
+
+	private void addOverlapping(int i, double minX, double maxX, double minY, double maxY){
+		if (stamps[i] == stamp)
+			return;
+		stamps[i] = stamp;
+		if (!intervalsOverlap(minX, maxX, this.minX[i], this.maxX[i], periodX)
+				|| !intervalsOverlap(minY, maxY, this.minY[i], this.maxY[i], periodY))
+			return;
+		if (nbOverlapping == overlapping.length)
+			overlapping = Arrays.copyOf(overlapping, Math.max(16, 2 * overlapping.length));
+		overlapping[nbOverlapping++] = i;
+	}
+
+	/**
+	 * Return the index of the first element of the given candidate pair.
+	 */
+	public int getFirst(int pair){
+		return pairs[2 * pair];
+	}
+
+	/**
+	 * Return the index of the second element of the given candidate pair.
+	 */
+	public int getSecond(int pair){
+		return pairs[2 * pair + 1];
+	}
+
+	/**
+	 * Return the number of candidate pairs found by the last query.
+	 */
+	public int getNbPairs(){
+		return nbPairs;
+	}
+
+	/**
+	 * Return the cell size of the finest level used by the last query.
+	 * The cell size is the mean extent of the swept bounding boxes.
+	 */
+	public double getCellSize(){
+		return cellSize;
+	}
+
+	/**
+	 * Return the number of pairs of elements whose boxes were compared by the last query.
+	 */
+	public long getNbComparisons(){
+		return nbComparisons;
+	}
+
+	/**
+	 * Return the number of cells the box of the given element covers on the given level.
+	 */
+	private long getNbCoveredCells(int i, int level){
+		return getNbCoveredCells(minX[i], maxX[i], minY[i], maxY[i], level);
+	}
+
+	/**
+	 * Return the number of cells the given box covers on the given level.
+	 */
+	private long getNbCoveredCells(double minX, double maxX, double minY, double maxY, int level){
+		long nbColumns = (long) getLastCell(minX, maxX, cellWidth[level], nbCellsX[level])
+				- getFirstCell(minX, maxX, cellWidth[level], nbCellsX[level]) + 1;
+		long nbRows = (long) getLastCell(minY, maxY, cellHeight[level], nbCellsY[level])
+				- getFirstCell(minY, maxY, cellHeight[level], nbCellsY[level]) + 1;
+		return (nbColumns > maxCellsPerElement || nbRows > maxCellsPerElement) ? Long.MAX_VALUE : nbColumns * nbRows;
+	}
+
+	/**
+	 * Return the first cell covered by the given interval on an axis with the given cell
+	 * length and number of cells per period, zero for an axis that does not wrap.
+	 * An interval that spans a whole period covers each cell of the period once.
+	 */
+	private static int getFirstCell(double min, double max, double cellLength, int nbCells){
+		int first = (int) Math.floor(min / cellLength);
+		if (nbCells != 0 && (long) Math.floor(max / cellLength) - first >= nbCells)
+			return 0;
+		return first;
+	}
+
+	/**
+	 * Return the last cell covered by the given interval on an axis with the given cell
+	 * length and number of cells per period, zero for an axis that does not wrap.
+	 */
+	private static int getLastCell(double min, double max, double cellLength, int nbCells){
+		int last = (int) Math.floor(max / cellLength);
+		if (nbCells != 0 && (long) last - (int) Math.floor(min / cellLength) >= nbCells)
+			return nbCells - 1;
+		return last;
+	}
+
+	private boolean boxesOverlap(int i, int j){
+		return intervalsOverlap(minX[i], maxX[i], minX[j], maxX[j], periodX)
+				&& intervalsOverlap(minY[i], maxY[i], minY[j], maxY[j], periodY);
+	}
+
+	/**
+	 * Check whether the given intervals overlap on an axis with the given period,
+	 * zero for an axis that does not wrap.
+	 */
+	private static boolean intervalsOverlap(double min1, double max1, double min2, double max2, double period){
+		if (period == 0)
+			return min1 <= max2 && min2 <= max1;
+		double halfLengths = (max1 - min1 + max2 - min2) / 2;
+		if (2 * halfLengths >= period)
+			return true;
+		double offset = (min2 + max2 - min1 - max1) / 2;
+		offset -= period * Math.rint(offset / period);
+		return Math.abs(offset) <= halfLengths;
+	}
+
+	/**
+	 * Return the number of cells of the given size that tile the given period,
+	 * or zero if the period is zero.
+	 */
+	private static int getNbCells(double period, double size){
+		if (period == 0)
+			return 0;
+		return (int) Math.max(1, Math.min(period / size, maxCellsPerPeriod));
+	}
+
+	/**
+	 * Return the first cell on the given level shared by the boxes of the given elements,
+	 * along the x-axis or the y-axis.
+	 */
+	private int getFirstSharedCell(int i, int j, int level, boolean alongX){
+		double[] mins = alongX ? minX : minY;
+		double[] maxs = alongX ? maxX : maxY;
+		double cellLength = alongX ? cellWidth[level] : cellHeight[level];
+		int nbCells = alongX ? nbCellsX[level] : nbCellsY[level];
+		return getFirstSharedCell(getFirstCell(mins[i], maxs[i], cellLength, nbCells),
+				getLastCell(mins[i], maxs[i], cellLength, nbCells), getFirstCell(mins[j], maxs[j], cellLength, nbCells),
+				getLastCell(mins[j], maxs[j], cellLength, nbCells), nbCells);
+	}
+
+	/**
+	 * Return the first cell shared by the given ranges of cells on an axis with the given
+	 * number of cells per period, zero for an axis that does not wrap. On a periodic axis,
+	 * the second range is shifted by a period where needed to meet the first.
+	 */
+	private static int getFirstSharedCell(int min1, int max1, int min2, int max2, int nbCells){
+		if (nbCells != 0 && (min2 > max1 || max2 < min1)){
+			int shift = (min2 > max1) ? -nbCells : nbCells;
+			return Math.max(min1, min2 + shift);
+		}
+		return Math.max(min1, min2);
+	}
+
+	private int hash(int cx, int cy, int level){
+		if (nbCellsX[level] != 0)
+			cx = Math.floorMod(cx, nbCellsX[level]);
+		if (nbCellsY[level] != 0)
+			cy = Math.floorMod(cy, nbCellsY[level]);
+		return (int) ((cx * 73856093L) ^ (cy * 19349663L) ^ (level * 83492791L));
+	}
+
+	private void addPair(int i, int j){
+		if (2 * nbPairs + 2 > pairs.length){
+			int[] newPairs = new int[2 * pairs.length];
+			System.arraycopy(pairs, 0, newPairs, 0, pairs.length);
+			pairs = newPairs;
+		}
+		pairs[2 * nbPairs] = i;
+		pairs[2 * nbPairs + 1] = j;
+		nbPairs++;
+	}
+
+	private void ensureElementCapacity(int nbElements){
+		if (minX.length >= nbElements)
+			return;
+		int capacity = Math.max(nbElements, 2 * minX.length);
+		minX = new double[capacity];
+		minY = new double[capacity];
+		maxX = new double[capacity];
+		maxY = new double[capacity];
+		levels = new int[capacity];
+		large = new int[capacity];
+		asleep = new boolean[capacity];
+	}
+
+	private void ensureBucketCapacity(int nbBuckets, int nbInsertions){
+		if (bucketStart.length < nbBuckets + 1){
+			bucketStart = new int[nbBuckets + 1];
+			bucketEnd = new int[nbBuckets];
+		}
+		if (entries.length < nbInsertions){
+			entries = new int[Math.max(nbInsertions, 2 * entries.length)];
+			entryLevels = new int[entries.length];
+		}
+	}
+
+	/**
+	 * Variable registering the maximum number of cells an element may cover
+	 * on a level before it moves to the next, coarser level.
+	 */
+	private static final int maxCellsPerElement = 16;
+
+	/**
+	 * Variable registering the number of levels. An element that covers too many
+	 * cells even on the coarsest level is compared with all other elements instead.
+	 */
+	private static final int maxLevels = 16;
+
+	/**
+	 * Variable registering the ratio of the cell sizes of two consecutive levels.
+	 */
+	private static final double levelRatio = 4;
+
+	/**
+	 * Variable registering the maximum number of cells along a period, so that cell
+	 * coordinates of boxes crossing a seam stay within the range of integers.
+	 */
+	private static final int maxCellsPerPeriod = 1 << 30;
+
+	private double cellSize;
+	private final double[] cellWidth = new double[maxLevels], cellHeight = new double[maxLevels];
+	private final int[] nbCellsX = new int[maxLevels], nbCellsY = new int[maxLevels];
+	private final int[] nbOwners = new int[maxLevels];
+	private double[] minX = new double[0], minY = new double[0], maxX = new double[0], maxY = new double[0];
+	private int[] levels = new int[0];
+	private int[] large = new int[0];
+	private boolean[] asleep = new boolean[0];
+	private int nbLarge;
+	private int[] bucketStart = new int[0], bucketEnd = new int[0];
+	private int[] entries = new int[0], entryLevels = new int[0];
+	private int mask;
+	private int nbElements;
+	private int[] pairs = new int[64];
+	private int nbPairs;
+	private int[] overlapping = new int[16];
+	private int nbOverlapping;
+	private int[] stamps = new int[0];
+	private int stamp;
+	private long nbComparisons;
+}
@@ -1,12 +1,17 @@
 package asteroids.model;
 import be.kuleuven.cs.som.annotate.*;
-import static asteroids.Util.*;
+import asteroids.Util;
 
 /**
  * A value class of geometric vectors of length 2.
  * 
+ * Two vectors are equal if their components are equal as doubles, as for
+ * Double.equals, so vectors can be used as keys in hash structures; vectors
+ * that only differ by rounding are compared with fuzzyEquals instead. Hot loops
+ * that must not allocate can use the static kernels, which take the components
+ * as doubles.
  * 
- * @version  3.0
+ * @version  4.0
  * @author   Frederik Van Eeghem, Pieter Lietaert
  */
 
@@ -40,8 +45,7 @@ public class Vector2D {
 	 * 			| result == Math.sqrt(x*x + y*y);
 	 */
 	public double getNorm(){
-		return Math.sqrt(Math.pow(getXComponent(), 2) 
-					+ Math.pow(getYComponent(), 2));
+		return Math.sqrt(lengthSq(getXComponent(), getYComponent()));
 	}
 	
 	/**
@@ -93,8 +97,7 @@ public class Vector2D {
 	 *			|	+ this.getYComponent()*otherVector.getYComponent())
 	 */
 	public double getDotProduct(Vector2D otherVector){
-		return (this.getXComponent()*otherVector.getXComponent()
-					+ this.getYComponent()*otherVector.getYComponent());
+		return dot(this.getXComponent(), this.getYComponent(), otherVector.getXComponent(), otherVector.getYComponent());
 	}
 	
 	
@@ -118,6 +121,10 @@ public class Vector2D {
 	 * Return the vector with norm one and the same direction as this vector.
 	 * 
 	 * @return	The vector with norm one and the same direction as this vector.
+	 * 			| result.getXComponent() == this.getXComponent() / this.getNorm()
+	 * 			| result.getYComponent() == this.getYComponent() / this.getNorm()
+	 * @return	If this vector has no finite, positive norm, the vector of norm one at the
+	 * 			angle of this vector.
 	 * 			| let 
 	 * 			|	currentDirection = Math.atan2(this.getYComponent(), this.getXComponent())
 	 * 			| in
@@ -125,13 +132,72 @@ public class Vector2D {
 	 * 			| result.getYComponent() == Math.sin(currentDirection)
 	 */
 	public Vector2D getDirection(){
-		double currentDirection = Math.atan2(this.getYComponent(),
-				this.getXComponent());
-		return new Vector2D(Math.cos(currentDirection),Math.sin(currentDirection));
+		double x = getXComponent();
+		double y = getYComponent();
+		double lengthSq = lengthSq(x, y);
+		if (lengthSq > 0 && lengthSq < Double.POSITIVE_INFINITY){
+			double inverse = 1 / Math.sqrt(lengthSq);
+			return new Vector2D(x * inverse, y * inverse);
+		}
+		double currentDirection = Math.atan2(y, x);
+		return new Vector2D(Math.cos(currentDirection), Math.sin(currentDirection));
 	}
 
 	/**
-	 * Check whether this vector and the given two dimensional vector are equal.
+	 * Return the dot product of the vectors with the given components.
+	 */
+	public static double dot(double x1, double y1, double x2, double y2){
+		return x1 * x2 + y1 * y2;
+	}
+
+	/**
+	 * Return the square of the norm of the vector with the given components.
+	 */
+	public static double lengthSq(double x, double y){
+		return x * x + y * y;
+	}
+
+	/**
+	 * Store the components of the vector with norm one and the same direction as the
+	 * vector with the given components in the given array, at the given offset and the
+	 * next position.
+	 *
+	 * @return	The norm of the given vector. If the norm is zero, the given vector has no
+	 * 			direction and the stored components are zero.
+	 * 			| result == Math.sqrt(lengthSq(x, y))
+	 */
+	public static double normalize(double x, double y, double[] out, int offset){
+		double norm = Math.sqrt(lengthSq(x, y));
+		double inverse = (norm > 0) ? 1 / norm : 0;
+		out[offset] = x * inverse;
+		out[offset + 1] = y * inverse;
+		return norm;
+	}
+
+	/**
+	 * Check whether this vector is equal to the given object.
+	 * 
+	 * @param 	other
+	 * 			The object to check equality with.
+	 * @return	True if and only if the given object is a two dimensional vector with the
+	 * 			same components as this vector, compared as by Double.equals.
+	 * 			| result == (other instanceof Vector2D
+	 * 			|  && Double.compare(this.getXComponent(), ((Vector2D) other).getXComponent()) == 0
+	 * 			|  && Double.compare(this.getYComponent(), ((Vector2D) other).getYComponent()) == 0)
+	 */
+	@Override
+	public boolean equals(Object other){
+		if (this == other)
+			return true;
+		if (!(other instanceof Vector2D))
+			return false;
+		Vector2D otherVector = (Vector2D) other;
+		return Util.bitEquals(getXComponent(), otherVector.getXComponent())
+				&& Util.bitEquals(getYComponent(), otherVector.getYComponent());
+	}
+
+	/**
+	 * Check whether this vector and the given two dimensional vector are approximately equal.
 	 * 
 	 * @param 	otherVector
 	 * 			The other two dimensional vector to check equality with.
@@ -142,10 +208,10 @@ public class Vector2D {
 	 *			|  && fuzzyEquals(this.getXComponent(),otherVector.getXComponent())
 	 *			|  && fuzzyEquals(this.getYComponent(),otherVector.getYComponent()))
 	 */
-	public boolean equals(Vector2D otherVector){
+	public boolean fuzzyEquals(Vector2D otherVector){
 		return (otherVector != null
-			&& fuzzyEquals(this.getXComponent(),otherVector.getXComponent())
-			&& fuzzyEquals(this.getYComponent(),otherVector.getYComponent()));
+			&& Util.fuzzyEquals(this.getXComponent(),otherVector.getXComponent())
+			&& Util.fuzzyEquals(this.getYComponent(),otherVector.getYComponent()));
 	}
 	
 	/**
@@ -161,12 +227,14 @@ public class Vector2D {
 	
 	
 	/**
-	 * Return the hash code for this money amount.
+	 * Return the hash code for this two dimensional vector.
+	 * 
+	 * @return	The sum of the hash codes of the components of this vector.
+	 * 			| result == Double.hashCode(getXComponent()) + Double.hashCode(getYComponent())
 	 */
 	@Override
 	public int hashCode(){
-		return (Double.valueOf(getXComponent()).hashCode()
-					+ Double.valueOf(getYComponent()).hashCode());
+		return Double.hashCode(getXComponent()) + Double.hashCode(getYComponent());
 	}
 	
 	/**
@@ -0,0 +1,400 @@
+package asteroids.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import asteroids.StateRandom;
+
+/**
+ * A class of binary files holding the state of a game world.
+ *
+ * A world file starts with a header of 64 bytes, followed by one column per
+ * attribute: first all columns of doubles, then all columns of ints, then all
+ * columns of bytes, so every value is aligned to its size. All values are
+ * little-endian.
+ *
+ * <pre>
+ * header     int magic, int version, double width, double heigth, double time,
+ *            int ships, int asteroids, int bullets, int flags (1 = toroidal)
+ * ships      x, y, x velocity, y velocity, radius, mass, maximum speed, angle,
+ *            boundary collision time
+ * asteroids  x, y, x velocity, y velocity, radius, mass, maximum speed,
+ *            boundary collision time, random state (a long)
+ * bullets    x, y, x velocity, y velocity, radius, mass, maximum speed, fire time,
+ *            boundary collision time
+ * ints       source of each bullet, as an index in the ships
+ * bytes      flags of each ship (1 = in the world, 2 = thruster active, 4 = vertical boundary),
+ *            flags of each asteroid (1 = random state stored, 4 = vertical boundary),
+ *            number of bounces of each bullet,
+ *            flags of each bullet (4 = vertical boundary)
+ * </pre>
+ *
+ * Files of version 1, which lack the boundary collisions, the random states and
+ * the flags of asteroids and bullets, are still read.
+ *
+ * The ships table holds the ships of the world followed by the ships that are
+ * no longer in the world but still have bullets in it. The bullets of each ship
+ * are stored in the order in which they were fired, with the time at which they
+ * were fired, so they expire when they would have; bullets that were added to
+ * the world directly have NaN as fire time and do not expire.
+ *
+ * A restored world evolves exactly as the original would: the time at which
+ * each element collides with a boundary is restored as the original world
+ * scheduled it rather than computed anew, and so is the state of the random
+ * generator of each asteroid, if it is a {@link StateRandom}; other asteroids
+ * get a new random generator. The radius, mass and maximum speed of asteroids
+ * and bullets follow from their class, so they are stored for readers of the
+ * format but not read back.
+ *
+ * A file is written through a file channel, column by column, and read by
+ * mapping it into memory and reading the columns in place, without decoding it
+ * into objects first.
+ *
+ * @version	2.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+public class WorldFile {
+
+	public static final int MAGIC = 0x57545341;
+
+	public static final int VERSION = 2;
+
+	public static final int HEADER_SIZE = 64;
+
+	private static final int IN_WORLD = 1;
+
+	private static final int THRUSTER_ACTIVE = 2;
+
+	private static final int RANDOM_STATE = 1;
+
+	private static final int VERTICAL_BOUNDARY = 4;
+
+	private WorldFile(){
+	}
+
+	/**
+	 * The positions of the columns of a world state of a given version with given
+	 * numbers of ships, asteroids and bullets, relative to the start of the state.
+	 */
+	private static class Layout {
+
+		Layout(int version, int nbShips, int nbAsteroids, int nbBullets){
+			int columns = version == 1 ? 8 : 9;
+			ships = HEADER_SIZE;
+			asteroids = ships + 8L * columns * nbShips;
+			bullets = asteroids + 8L * (version == 1 ? 7 : 9) * nbAsteroids;
+			sources = bullets + 8L * columns * nbBullets;
+			shipFlags = sources + 4L * nbBullets;
+			asteroidFlags = shipFlags + nbShips;
+			bounces = version == 1 ? asteroidFlags : asteroidFlags + nbAsteroids;
+			bulletFlags = bounces + nbBullets;
+			size = version == 1 ? bulletFlags : bulletFlags + nbBullets;
+		}
+
+		final long ships, asteroids, bullets, sources, shipFlags, asteroidFlags, bounces, bulletFlags, size;
+	}
+
+	/**
+	 * Return the size in bytes of a world file with the given number of ships,
+	 * asteroids and bullets.
+	 */
+	public static long getSize(int nbShips, int nbAsteroids, int nbBullets){
+		return new Layout(VERSION, nbShips, nbAsteroids, nbBullets).size;
+	}
+
+	/**
+	 * Write the state of the given world to the file at the given path,
+	 * replacing the file if it exists.
+	 *
+	 * @throws	IOException
+	 * 			The file could not be written.
+	 */
+	public static void save(GameWorld world, Path path) throws IOException{
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)){
+			save(world, channel);
+		}
+	}
+
+	/**
+	 * Write the state of the given world to the given channel, at its current position.
+	 *
+	 * @return	The ships in the order in which they were written, which is the order
+	 * 			in which {@link #load(ByteBuffer, List)} restores them.
+	 * @throws	IOException
+	 * 			The state could not be written.
+	 */
+	public static List<Ship> save(GameWorld world, WritableByteChannel channel) throws IOException{
+		List<Ship> ships = new ArrayList<Ship>(world.getShips());
+		Asteroid[] asteroids = world.getAsteroids().toArray(new Asteroid[world.getAsteroids().size()]);
+		IdentityHashMap<Ship, Integer> shipIndices = new IdentityHashMap<Ship, Integer>();
+		for (Ship ship : ships)
+			shipIndices.put(ship, shipIndices.size());
+		List<Bullet> bullets = new ArrayList<Bullet>(world.getBullets().size());
+		double[] fireTimes = new double[world.getBullets().size()];
+		for (BulletRing ring : world.getBulletRings())
+			for (long number = ring.getHead(); number < ring.getTail(); number++){
+				Bullet bullet = ring.getBullet(number);
+				if (bullet.getWorld() != world)
+					continue;
+				fireTimes[bullets.size()] = ring.getFireTime(number);
+				bullets.add(bullet);
+			}
+		for (Bullet bullet : world.getBullets())
+			if (!bullet.getSource().getBulletRing().contains(bullet)){
+				fireTimes[bullets.size()] = Double.NaN;
+				bullets.add(bullet);
+			}
+		for (Bullet bullet : bullets)
+			if (!shipIndices.containsKey(bullet.getSource())){
+				shipIndices.put(bullet.getSource(), shipIndices.size());
+				ships.add(bullet.getSource());
+			}
+
+		ColumnWriter out = new ColumnWriter(channel);
+		out.putInt(MAGIC);
+		out.putInt(VERSION);
+		out.putDouble(world.getWidth());
+		out.putDouble(world.getHeigth());
+		out.putDouble(world.getTime());
+		out.putInt(ships.size());
+		out.putInt(asteroids.length);
+		out.putInt(bullets.size());
+		out.putInt(world.isToroidal() ? 1 : 0);
+		for (int i = 48; i < HEADER_SIZE; i += 4)
+			out.putInt(0);
+
+		putElementColumns(out, ships);
+		for (Ship ship : ships)
+			out.putDouble(ship.getAngle());
+		putBoundaryCollisionTimes(out, world, ships);
+		putElementColumns(out, Arrays.asList(asteroids));
+		putBoundaryCollisionTimes(out, world, Arrays.asList(asteroids));
+		for (Asteroid asteroid : asteroids)
+			out.putLong(asteroid.getRandom() instanceof StateRandom ? ((StateRandom) asteroid.getRandom()).getState() : 0);
+		putElementColumns(out, bullets);
+		for (int i = 0; i < bullets.size(); i++)
+			out.putDouble(fireTimes[i]);
+		putBoundaryCollisionTimes(out, world, bullets);
+
+		for (Bullet bullet : bullets)
+			out.putInt(shipIndices.get(bullet.getSource()));
+		for (Ship ship : ships)
+			out.putByte((ship.getWorld() == world ? IN_WORLD : 0) | (ship.isThrusterActive() ? THRUSTER_ACTIVE : 0)
+					| getBoundaryFlag(world, ship));
+		for (Asteroid asteroid : asteroids)
+			out.putByte((asteroid.getRandom() instanceof StateRandom ? RANDOM_STATE : 0) | getBoundaryFlag(world, asteroid));
+		for (Bullet bullet : bullets)
+			out.putByte(bullet.getNbBounces());
+		for (Bullet bullet : bullets)
+			out.putByte(getBoundaryFlag(world, bullet));
+		out.flush();
+		return ships;
+	}
+
+	private static void putElementColumns(ColumnWriter out, List<? extends Element> elements) throws IOException{
+		for (Element element : elements)
+			out.putDouble(element.getX());
+		for (Element element : elements)
+			out.putDouble(element.getY());
+		for (Element element : elements)
+			out.putDouble(element.getXVelocity());
+		for (Element element : elements)
+			out.putDouble(element.getYVelocity());
+		for (Element element : elements)
+			out.putDouble(element.getRadius());
+		for (Element element : elements)
+			out.putDouble(element.getMass());
+		for (Element element : elements)
+			out.putDouble(element.getMaxSpeed());
+	}
+
+	private static void putBoundaryCollisionTimes(ColumnWriter out, GameWorld world, List<? extends Element> elements)
+			throws IOException{
+		for (Element element : elements)
+			out.putDouble(element.getWorld() == world ? world.getBoundaryCollisionTime(element) : Double.POSITIVE_INFINITY);
+	}
+
+	private static int getBoundaryFlag(GameWorld world, Element element){
+		return element.getWorld() == world && world.isBoundaryCollisionVertical(element) ? VERTICAL_BOUNDARY : 0;
+	}
+
+	/**
+	 * Return a new world with the state stored in the file at the given path.
+	 *
+	 * @throws	IOException
+	 * 			The file could not be read, or it is not a world file of a supported version.
+	 * @throws	IllegalArgumentException
+	 * 			The file holds a state that is not valid for a world.
+	 */
+	public static GameWorld load(Path path) throws IOException, IllegalArgumentException{
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("World file too large to map: " + path);
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			GameWorld world = load(map, null);
+			if (map.hasRemaining())
+				throw new IOException("Trailing bytes after world state: " + path);
+			return world;
+		}
+	}
+
+	/**
+	 * Return a new world with the state stored in the given buffer, from its current
+	 * position on, and advance the position of the buffer past that state.
+	 *
+	 * @param	ships
+	 * 			If effective, a list to which the restored ships are added in the order
+	 * 			in which they were saved.
+	 * @throws	IOException
+	 * 			The buffer does not hold the state of a world in a supported version.
+	 * @throws	IllegalArgumentException
+	 * 			The buffer holds a state that is not valid for a world.
+	 */
+	public static GameWorld load(ByteBuffer buffer, List<Ship> ships) throws IOException, IllegalArgumentException{
+		ByteBuffer in = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (in.remaining() < HEADER_SIZE || in.getInt(0) != MAGIC)
+			throw new IOException("Not a world state");
+		int version = in.getInt(4);
+		if (version < 1 || version > VERSION)
+			throw new IOException("Unsupported world state version " + version);
+		int nbShips = in.getInt(32);
+		int nbAsteroids = in.getInt(36);
+		int nbBullets = in.getInt(40);
+		if (nbShips < 0 || nbAsteroids < 0 || nbBullets < 0)
+			throw new IOException("Truncated world state");
+		Layout layout = new Layout(version, nbShips, nbAsteroids, nbBullets);
+		if (layout.size > in.remaining())
+			throw new IOException("Truncated world state");
+		GameWorld world = new GameWorld(in.getDouble(8), in.getDouble(16), (in.getInt(44) & 1) != 0);
+		world.restoreTime(in.getDouble(24));
+
+		int shipTable = (int) layout.ships;
+		int asteroidTable = (int) layout.asteroids;
+		int bulletTable = (int) layout.bullets;
+		Ship[] restoredShips = new Ship[nbShips];
+		for (int i = 0; i < nbShips; i++){
+			Ship ship = new Ship(getVector(in, shipTable, nbShips, i, 0), in.getDouble(column(shipTable, nbShips, 7) + 8 * i),
+					in.getDouble(column(shipTable, nbShips, 4) + 8 * i), getVector(in, shipTable, nbShips, i, 2),
+					in.getDouble(column(shipTable, nbShips, 6) + 8 * i), in.getDouble(column(shipTable, nbShips, 5) + 8 * i));
+			int flags = in.get((int) layout.shipFlags + i);
+			ship.setThrusterActive((flags & THRUSTER_ACTIVE) != 0);
+			if ((flags & IN_WORLD) != 0){
+				world.addShip(ship);
+				if (version > 1)
+					world.restoreBoundaryCollision(ship, in.getDouble(column(shipTable, nbShips, 8) + 8 * i),
+							(flags & VERTICAL_BOUNDARY) != 0);
+			}
+			restoredShips[i] = ship;
+		}
+		for (int i = 0; i < nbAsteroids; i++){
+			int flags = version == 1 ? 0 : in.get((int) layout.asteroidFlags + i);
+			StateRandom random;
+			if ((flags & RANDOM_STATE) != 0){
+				random = new StateRandom(0);
+				random.setState(in.getLong(column(asteroidTable, nbAsteroids, 8) + 8 * i));
+			} else{
+				random = new StateRandom();
+			}
+			Asteroid asteroid = new Asteroid(getVector(in, asteroidTable, nbAsteroids, i, 0),
+					in.getDouble(column(asteroidTable, nbAsteroids, 4) + 8 * i), getVector(in, asteroidTable, nbAsteroids, i, 2),
+					random);
+			world.addAsteroid(asteroid);
+			if (version > 1)
+				world.restoreBoundaryCollision(asteroid, in.getDouble(column(asteroidTable, nbAsteroids, 7) + 8 * i),
+						(flags & VERTICAL_BOUNDARY) != 0);
+		}
+		for (int i = 0; i < nbBullets; i++){
+			int source = in.getInt((int) layout.sources + 4 * i);
+			if (source < 0 || source >= nbShips)
+				throw new IOException("Invalid bullet source in world state");
+			double fireTime = in.getDouble(column(bulletTable, nbBullets, 7) + 8 * i);
+			Vector2D position = getVector(in, bulletTable, nbBullets, i, 0);
+			Vector2D velocity = getVector(in, bulletTable, nbBullets, i, 2);
+			int nbBounces = in.get((int) layout.bounces + i);
+			Ship ship = restoredShips[source];
+			Bullet bullet;
+			if (Double.isNaN(fireTime)){
+				bullet = new Bullet(position, velocity, ship);
+				for (int bounce = 0; bounce < nbBounces && bullet.canBounce(); bounce++)
+					bullet.bounce();
+				world.addBullet(bullet);
+			} else{
+				bullet = ship.restoreBullet(world, position, velocity, fireTime, nbBounces);
+			}
+			if (version > 1 && bullet.getWorld() == world)
+				world.restoreBoundaryCollision(bullet, in.getDouble(column(bulletTable, nbBullets, 8) + 8 * i),
+						(in.get((int) layout.bulletFlags + i) & VERTICAL_BOUNDARY) != 0);
+		}
+		if (ships != null)
+			ships.addAll(Arrays.asList(restoredShips));
+		buffer.position(buffer.position() + (int) layout.size);
+		return world;
+	}
+
+	private static int column(int table, int nbRows, int column){
+		return table + 8 * column * nbRows;
+	}
+
+	private static Vector2D getVector(ByteBuffer in, int table, int nbRows, int row, int column){
+		return new Vector2D(in.getDouble(column(table, nbRows, column) + 8 * row),
+				in.getDouble(column(table, nbRows, column + 1) + 8 * row));
+	}
+
+	/**
+	 * A buffer of little-endian values that is written to a file channel whenever it is full.
+	 */
+	private static class ColumnWriter {
+
+		ColumnWriter(WritableByteChannel channel){
+			this.channel = channel;
+		}
+
+		void putDouble(double value) throws IOException{
+			ensureRemaining(8);
+			buffer.putDouble(value);
+		}
+
+		void putLong(long value) throws IOException{
+			ensureRemaining(8);
+			buffer.putLong(value);
+		}
+
+		void putInt(int value) throws IOException{
+			ensureRemaining(4);
+			buffer.putInt(value);
+		}
+
+		void putByte(int value) throws IOException{
+			ensureRemaining(1);
+			buffer.put((byte) value);
+		}
+
+		private void ensureRemaining(int size) throws IOException{
+			if (buffer.remaining() < size)
+				flush();
+		}
+
+		void flush() throws IOException{
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+
+		private final WritableByteChannel channel;
+
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
@@ -0,0 +1,192 @@
+package asteroids.model;
+
+import java.util.Arrays;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of snapshots holding the full state of a game world at one tick,
+ * from which the world can be brought back to that tick.
+ *
+ * A snapshot refers to the elements of its world rather than copying them, and
+ * holds their state in arrays parallel to the elements of the world: their
+ * kinematics, the angle and thruster of ships, the random state of asteroids and
+ * the bounces of bullets, next to the boundary collisions the world scheduled,
+ * the bullet rings with bullets in flight and the free fragments of the world.
+ * Positions and velocities are immutable vectors, so the snapshot shares them
+ * with the elements instead of copying their components. Taking a snapshot
+ * again reuses the arrays, so once they have grown to the size of the world it
+ * does not allocate.
+ *
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+public class WorldSnapshot {
+
+	/**
+	 * Return the world this snapshot was taken of, or null if it was never taken.
+	 */
+	@Basic
+	public GameWorld getWorld(){
+		return world;
+	}
+
+	/**
+	 * Return the number of ticks the world of this snapshot had been evolved when it was taken.
+	 */
+	@Basic
+	public long getTick(){
+		return tick;
+	}
+
+	/**
+	 * Return the time of the world of this snapshot when it was taken.
+	 */
+	@Basic
+	public double getTime(){
+		return time;
+	}
+
+	/**
+	 * Return the number of elements of the world of this snapshot when it was taken.
+	 */
+	@Basic
+	public int getNbElements(){
+		return nbElements;
+	}
+
+	/**
+	 * Make the arrays of this snapshot large enough for the given numbers of elements,
+	 * ships, asteroids, bullets, bullet rings, fire times and free fragments.
+	 */
+	void ensureCapacity(int nbElements, int nbShips, int nbAsteroids, int nbBullets, int nbRings, int nbFireTimes,
+			int nbFree){
+		if (elements.length < nbElements){
+			int capacity = Math.max(nbElements, 2 * elements.length);
+			elements = Arrays.copyOf(elements, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			velocities = Arrays.copyOf(velocities, capacity);
+			radii = Arrays.copyOf(radii, capacity);
+			masses = Arrays.copyOf(masses, capacity);
+			lastDisturbances = Arrays.copyOf(lastDisturbances, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+		}
+		if (ships.length < nbShips){
+			int capacity = Math.max(nbShips, 2 * ships.length);
+			ships = Arrays.copyOf(ships, capacity);
+			angles = Arrays.copyOf(angles, capacity);
+		}
+		if (asteroids.length < nbAsteroids){
+			int capacity = Math.max(nbAsteroids, 2 * asteroids.length);
+			asteroids = Arrays.copyOf(asteroids, capacity);
+			randomStates = Arrays.copyOf(randomStates, capacity);
+		}
+		if (bullets.length < nbBullets){
+			int capacity = Math.max(nbBullets, 2 * bullets.length);
+			bullets = Arrays.copyOf(bullets, capacity);
+			bounces = Arrays.copyOf(bounces, capacity);
+		}
+		if (rings.length < nbRings){
+			int capacity = Math.max(nbRings, 2 * rings.length);
+			rings = Arrays.copyOf(rings, capacity);
+			ringHeads = Arrays.copyOf(ringHeads, capacity);
+			ringTails = Arrays.copyOf(ringTails, capacity);
+		}
+		if (fireTimes.length < nbFireTimes)
+			fireTimes = Arrays.copyOf(fireTimes, Math.max(nbFireTimes, 2 * fireTimes.length));
+		if (freeFragments.length < nbFree)
+			freeFragments = Arrays.copyOf(freeFragments, Math.max(nbFree, 2 * freeFragments.length));
+	}
+
+	/**
+	 * Forget the elements, rings and fragments this snapshot refers to beyond the given
+	 * numbers, so that they can be garbage collected.
+	 */
+	void clearTail(int nbElements, int nbShips, int nbAsteroids, int nbBullets, int nbRings, int nbFree){
+		Arrays.fill(elements, nbElements, Math.max(nbElements, this.nbElements), null);
+		Arrays.fill(positions, nbElements, Math.max(nbElements, this.nbElements), null);
+		Arrays.fill(velocities, nbElements, Math.max(nbElements, this.nbElements), null);
+		Arrays.fill(ships, nbShips, Math.max(nbShips, this.nbShips), null);
+		Arrays.fill(asteroids, nbAsteroids, Math.max(nbAsteroids, this.nbAsteroids), null);
+		Arrays.fill(bullets, nbBullets, Math.max(nbBullets, this.nbBullets), null);
+		Arrays.fill(rings, nbRings, Math.max(nbRings, this.nbRings), null);
+		Arrays.fill(freeFragments, nbFree, Math.max(nbFree, this.nbFree), null);
+	}
+
+	static final byte ASLEEP = 1;
+
+	static final byte THRUSTER_ACTIVE = 2;
+
+	static final byte RANDOM_STATE = 4;
+
+	GameWorld world;
+
+	long tick;
+
+	double time;
+
+	int nbSleeping;
+
+	int nbSubsteps;
+
+	/**
+	 * Variables registering the elements of the world in the order of their world
+	 * index, and their state at the same index.
+	 */
+	int nbElements;
+
+	Element[] elements = new Element[0];
+
+	Vector2D[] positions = new Vector2D[0];
+
+	Vector2D[] velocities = new Vector2D[0];
+
+	double[] radii = new double[0];
+
+	double[] masses = new double[0];
+
+	long[] lastDisturbances = new long[0];
+
+	byte[] flags = new byte[0];
+
+	/**
+	 * Variables registering the ships, asteroids and bullets of the world in the order
+	 * in which the world holds them, and the state particular to each kind.
+	 */
+	int nbShips, nbAsteroids, nbBullets;
+
+	Ship[] ships = new Ship[0];
+
+	double[] angles = new double[0];
+
+	Asteroid[] asteroids = new Asteroid[0];
+
+	long[] randomStates = new long[0];
+
+	Bullet[] bullets = new Bullet[0];
+
+	int[] bounces = new int[0];
+
+	/**
+	 * Variable registering a copy of the boundary collisions scheduled by the world.
+	 */
+	final BoundaryEventQueue boundaryEvents = new BoundaryEventQueue();
+
+	/**
+	 * Variables registering the bullet rings with bullets in flight in the world, their
+	 * heads and tails, and the fire times of their slots one ring after the other.
+	 */
+	int nbRings;
+
+	BulletRing[] rings = new BulletRing[0];
+
+	long[] ringHeads = new long[0];
+
+	long[] ringTails = new long[0];
+
+	double[] fireTimes = new double[0];
+
+	int nbFree;
+
+	Asteroid[] freeFragments = new Asteroid[0];
+}
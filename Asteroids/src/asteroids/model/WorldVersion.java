@@ -0,0 +1,264 @@
+package asteroids.model;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of immutable versions of the state of a game world at one tick.
+ *
+ * A version lists the elements of its world in the order of their world index,
+ * with their position, velocity, radius and angle; the angle is zero for
+ * elements other than ships. The entries are stored in chunks of a fixed number
+ * of consecutive elements. A new version of a world shares every chunk whose
+ * entries did not change with the previous version, so publishing a version per
+ * tick only allocates for the parts of the world that moved, and any number of
+ * threads can hold and read versions without locks and without copying them.
+ *
+ * Each entry records the type and the identifier of its element, so that a
+ * reader can recognize an entry across versions, for instance to attach a
+ * sprite to it. A version holds no references to the elements themselves,
+ * which keep changing on the thread that evolves the world and may even be
+ * reinitialized as other bullets or fragments.
+ *
+ * @version	1.0
+ * @author 	Frederik Van Eeghem, Pieter Lietaert
+ */
+public final class WorldVersion {
+
+	/**
+	 * The number of elements in a chunk.
+	 */
+	public static final int CHUNK_SIZE = 64;
+
+	/**
+	 * The types of the entries of a version.
+	 */
+	public static final int SHIP = 0, ASTEROID = 1, BULLET = 2;
+
+	private static final int STRIDE = 6;
+
+	/**
+	 * Return the first version of the given world, sharing no chunks.
+	 */
+	public static WorldVersion of(GameWorld world){
+		return of(world, null);
+	}
+
+	/**
+	 * Return the version of the given world at its current tick, sharing the chunks
+	 * that did not change with the given previous version, if effective.
+	 */
+	public static WorldVersion of(GameWorld world, WorldVersion previous){
+		int nbElements = world.getElements().size();
+		int nbChunks = (nbElements + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		Chunk[] chunks = new Chunk[nbChunks];
+		int nbShared = 0;
+		for (int c = 0; c < nbChunks; c++){
+			int start = c * CHUNK_SIZE;
+			int size = Math.min(CHUNK_SIZE, nbElements - start);
+			if (previous != null && c < previous.chunks.length && previous.chunks[c].matches(world, start, size)){
+				chunks[c] = previous.chunks[c];
+				nbShared++;
+			} else{
+				chunks[c] = new Chunk(world, start, size);
+			}
+		}
+		return new WorldVersion(world.getTick(), world.getTime(), world.getWidth(), world.getHeigth(), nbElements, chunks,
+				nbShared);
+	}
+
+	private WorldVersion(long tick, double time, double width, double heigth, int nbElements, Chunk[] chunks, int nbShared){
+		this.tick = tick;
+		this.time = time;
+		this.width = width;
+		this.heigth = heigth;
+		this.nbElements = nbElements;
+		this.chunks = chunks;
+		this.nbShared = nbShared;
+	}
+
+	/**
+	 * Return the number of times the world had been evolved at this version.
+	 */
+	@Basic @Immutable
+	public long getTick(){
+		return tick;
+	}
+
+	/**
+	 * Return the time of the world at this version.
+	 */
+	@Basic @Immutable
+	public double getTime(){
+		return time;
+	}
+
+	@Basic @Immutable
+	public double getWidth(){
+		return width;
+	}
+
+	@Basic @Immutable
+	public double getHeigth(){
+		return heigth;
+	}
+
+	/**
+	 * Return the number of elements of the world at this version.
+	 */
+	@Basic @Immutable
+	public int getNbElements(){
+		return nbElements;
+	}
+
+	/**
+	 * Return the number of chunks of this version.
+	 */
+	@Immutable
+	public int getNbChunks(){
+		return chunks.length;
+	}
+
+	/**
+	 * Return the number of chunks this version shares with the version it was made from.
+	 */
+	@Basic @Immutable
+	public int getNbSharedChunks(){
+		return nbShared;
+	}
+
+	/**
+	 * Check whether this version and the given version share the chunk with the given index.
+	 */
+	public boolean sharesChunk(WorldVersion other, int chunk){
+		return chunk < chunks.length && chunk < other.chunks.length && chunks[chunk] == other.chunks[chunk];
+	}
+
+	/**
+	 * Return the type of the element with the given index in this version,
+	 * which is SHIP, ASTEROID or BULLET.
+	 *
+	 * @throws	IndexOutOfBoundsException
+	 * 			The given index is negative or not smaller than the number of elements.
+	 */
+	public int getType(int index) throws IndexOutOfBoundsException{
+		checkIndex(index);
+		return chunks[index / CHUNK_SIZE].types[index % CHUNK_SIZE];
+	}
+
+	/**
+	 * Return the identifier of the element with the given index in this version.
+	 *
+	 * @throws	IndexOutOfBoundsException
+	 * 			The given index is negative or not smaller than the number of elements.
+	 * @see		Element#getIdentifier()
+	 */
+	public long getIdentifier(int index) throws IndexOutOfBoundsException{
+		checkIndex(index);
+		return chunks[index / CHUNK_SIZE].identifiers[index % CHUNK_SIZE];
+	}
+
+	public double getX(int index) throws IndexOutOfBoundsException{
+		return getValue(index, 0);
+	}
+
+	public double getY(int index) throws IndexOutOfBoundsException{
+		return getValue(index, 1);
+	}
+
+	public double getXVelocity(int index) throws IndexOutOfBoundsException{
+		return getValue(index, 2);
+	}
+
+	public double getYVelocity(int index) throws IndexOutOfBoundsException{
+		return getValue(index, 3);
+	}
+
+	public double getRadius(int index) throws IndexOutOfBoundsException{
+		return getValue(index, 4);
+	}
+
+	public double getAngle(int index) throws IndexOutOfBoundsException{
+		return getValue(index, 5);
+	}
+
+	private double getValue(int index, int field){
+		checkIndex(index);
+		return chunks[index / CHUNK_SIZE].values[STRIDE * (index % CHUNK_SIZE) + field];
+	}
+
+	private void checkIndex(int index) throws IndexOutOfBoundsException{
+		if (index < 0 || index >= nbElements)
+			throw new IndexOutOfBoundsException("Index " + index + " of " + nbElements + " elements.");
+	}
+
+	private final long tick;
+
+	private final double time;
+
+	private final double width, heigth;
+
+	private final int nbElements;
+
+	private final Chunk[] chunks;
+
+	private final int nbShared;
+
+	/**
+	 * The entries of a run of consecutive elements of a world, which are never
+	 * changed once the chunk is created.
+	 */
+	private static final class Chunk {
+
+		Chunk(GameWorld world, int start, int size){
+			types = new byte[size];
+			identifiers = new long[size];
+			values = new double[STRIDE * size];
+			for (int i = 0; i < size; i++){
+				Element element = world.getElements().get(start + i);
+				types[i] = (byte) getType(element);
+				identifiers[i] = element.getIdentifier();
+				values[STRIDE * i] = element.getX();
+				values[STRIDE * i + 1] = element.getY();
+				values[STRIDE * i + 2] = element.getXVelocity();
+				values[STRIDE * i + 3] = element.getYVelocity();
+				values[STRIDE * i + 4] = element.getRadius();
+				values[STRIDE * i + 5] = getAngle(element);
+			}
+		}
+
+		/**
+		 * Check whether this chunk holds the current state of the given number of elements
+		 * of the given world from the given index on.
+		 */
+		boolean matches(GameWorld world, int start, int size){
+			if (identifiers.length != size)
+				return false;
+			for (int i = 0; i < size; i++){
+				Element element = world.getElements().get(start + i);
+				if (identifiers[i] != element.getIdentifier() || values[STRIDE * i] != element.getX()
+						|| values[STRIDE * i + 1] != element.getY()
+						|| values[STRIDE * i + 2] != element.getXVelocity()
+						|| values[STRIDE * i + 3] != element.getYVelocity()
+						|| values[STRIDE * i + 4] != element.getRadius() || values[STRIDE * i + 5] != getAngle(element))
+					return false;
+			}
+			return true;
+		}
+
+		private static int getType(Element element){
+			if (element instanceof Ship)
+				return SHIP;
+			return (element instanceof Asteroid) ? ASTEROID : BULLET;
+		}
+
+		private static double getAngle(Element element){
+			return (element instanceof Ship) ? ((Ship) element).getAngle() : 0;
+		}
+
+		final byte[] types;
+
+		final long[] identifiers;
+
+		final double[] values;
+	}
+}
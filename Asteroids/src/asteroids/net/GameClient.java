@@ -0,0 +1,260 @@
+package asteroids.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * A player connected to a {@link GameServer}.
+ *
+ * A client sends its buttons to the server with {@link #sendInput}, together
+ * with the tick of the latest snapshot it received, and decodes the snapshots
+ * the server sends back against the snapshots it received before. The parts
+ * of a snapshot split over several datagrams are put together as they arrive.
+ * Snapshots that arrive out of order, miss a part or refer to a baseline the
+ * client no longer has are dropped; the next one will do.
+ */
+public class GameClient implements Closeable {
+
+  private final DatagramChannel channel;
+  private final Selector selector;
+  private final ByteBuffer in = ByteBuffer.allocateDirect(Protocol.MAX_DATAGRAM);
+  private final ByteBuffer out = ByteBuffer.allocateDirect(Protocol.INPUT_SIZE);
+  private final Snapshot[] history = new Snapshot[Protocol.HISTORY];
+  private Snapshot latest;
+
+  /**
+   * The snapshot whose parts are arriving, or null if none. It holds the
+   * entities of the parts that arrived, the next of which has to start at
+   * <code>pendingEnd</code>.
+   */
+  private Snapshot pending;
+  private int pendingTick;
+  private int pendingEnd;
+  private Snapshot pendingBaseline;
+  private int droppedTick = -1;
+
+  private int shipId = -1;
+  private double worldWidth;
+  private double worldHeight;
+
+  private int sequence;
+  private int buttons;
+  private int fireCount;
+
+  private long bytesReceived;
+  private long snapshotsReceived;
+  private long snapshotsDropped;
+
+  /**
+   * Create a client for the server at <code>server</code>.
+   */
+  public GameClient(InetSocketAddress server) throws IOException {
+    channel = DatagramChannel.open();
+    channel.connect(server);
+    channel.configureBlocking(false);
+    selector = Selector.open();
+    channel.register(selector, SelectionKey.OP_READ);
+  }
+
+  /**
+   * Ask the server for a ship. Send this again if no welcome arrives; the
+   * server answers a repeated request with the same ship.
+   */
+  public void join() throws IOException {
+    send(Protocol.JOIN);
+  }
+
+  /**
+   * Tell the server this player leaves, which removes its ship.
+   */
+  public void leave() throws IOException {
+    send(Protocol.LEAVE);
+  }
+
+  public boolean hasJoined() {
+    return shipId >= 0;
+  }
+
+  /**
+   * Return the id of this player's ship in the snapshots, or -1 before the
+   * server welcomed this client.
+   */
+  public int getShipId() {
+    return shipId;
+  }
+
+  public double getWorldWidth() {
+    return worldWidth;
+  }
+
+  public double getWorldHeight() {
+    return worldHeight;
+  }
+
+  /**
+   * Set the buttons held down, as a combination of {@link Protocol#THRUST},
+   * {@link Protocol#LEFT} and {@link Protocol#RIGHT}.
+   */
+  public void setButtons(int buttons) {
+    this.buttons = buttons;
+  }
+
+  public int getButtons() {
+    return buttons;
+  }
+
+  /**
+   * Press the fire button once. The press reaches the server with the next
+   * input.
+   */
+  public void fire() {
+    fireCount = (fireCount + 1) & 0xFF;
+  }
+
+  /**
+   * Send the buttons of this player and acknowledge the latest snapshot.
+   */
+  public void sendInput() throws IOException {
+    out.clear();
+    out.put(Protocol.INPUT);
+    out.putInt(sequence++);
+    out.putInt(latest == null ? -1 : latest.getTick());
+    out.put((byte) buttons);
+    out.put((byte) fireCount);
+    out.flip();
+    channel.write(out);
+  }
+
+  /**
+   * Return the latest snapshot this client received, or null if none. The
+   * snapshot is reused later and must not be retained.
+   */
+  public Snapshot getSnapshot() {
+    return latest;
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived;
+  }
+
+  public long getSnapshotsReceived() {
+    return snapshotsReceived;
+  }
+
+  public long getSnapshotsDropped() {
+    return snapshotsDropped;
+  }
+
+  /**
+   * Handle all datagrams that arrived, without waiting. Return the number of
+   * datagrams handled.
+   */
+  public int poll() throws IOException {
+    int count = 0;
+    while (true) {
+      in.clear();
+      if (channel.read(in) <= 0)
+        return count;
+      in.flip();
+      bytesReceived += in.remaining();
+      handle();
+      count++;
+    }
+  }
+
+  /**
+   * Wait at most <code>timeoutMillis</code> milliseconds for datagrams to
+   * arrive and handle them. Return the number of datagrams handled.
+   */
+  public int await(long timeoutMillis) throws IOException {
+    selector.select(timeoutMillis);
+    selector.selectedKeys().clear();
+    return poll();
+  }
+
+  private void handle() {
+    if (!in.hasRemaining())
+      return;
+    byte type = in.get();
+    if (type == Protocol.WELCOME) {
+      shipId = in.getInt();
+      worldWidth = in.getDouble();
+      worldHeight = in.getDouble();
+    } else if (type == Protocol.SNAPSHOT) {
+      int tick = SnapshotCodec.getTick(in);
+      int baselineTick = SnapshotCodec.getBaselineTick(in);
+      int from = SnapshotCodec.getPartStart(in);
+      if (from == 0) {
+        if (pending != null)
+          drop(pending.getTick());
+        if (latest != null && tick <= latest.getTick()) {
+          drop(tick);
+          return;
+        }
+        Snapshot baseline = null;
+        if (baselineTick >= 0) {
+          baseline = history[baselineTick % Protocol.HISTORY];
+          if (baseline == null || baseline.getTick() != baselineTick) {
+            drop(tick);
+            return;
+          }
+        }
+        Snapshot snapshot = history[tick % Protocol.HISTORY];
+        if (snapshot == null)
+          snapshot = history[tick % Protocol.HISTORY] = new Snapshot();
+        snapshot.clear();
+        pending = snapshot;
+        pendingTick = tick;
+        pendingBaseline = baseline;
+      } else if (pending == null || tick != pendingTick || from != pendingEnd) {
+        drop(tick);
+        return;
+      }
+      if (baselineTick != (pendingBaseline == null ? -1 : pendingBaseline.getTick())) {
+        drop(tick);
+        return;
+      }
+      pendingEnd = SnapshotCodec.decodePart(in, pendingBaseline, pending);
+      if (pendingEnd == SnapshotCodec.UNBOUNDED) {
+        pending.setTick(tick);
+        latest = pending;
+        pending = null;
+        pendingBaseline = null;
+        snapshotsReceived++;
+      }
+    }
+  }
+
+  /**
+   * Give up on the snapshot with the given tick, and count it as dropped
+   * unless its earlier parts already were.
+   */
+  private void drop(int tick) {
+    if (pending != null && pendingTick == tick) {
+      pending = null;
+      pendingBaseline = null;
+    }
+    if (tick != droppedTick) {
+      droppedTick = tick;
+      snapshotsDropped++;
+    }
+  }
+
+  private void send(byte type) throws IOException {
+    out.clear();
+    out.put(type);
+    out.flip();
+    channel.write(out);
+  }
+
+  @Override
+  public void close() throws IOException {
+    selector.close();
+    channel.close();
+  }
+}
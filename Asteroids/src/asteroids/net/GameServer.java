@@ -0,0 +1,437 @@
+package asteroids.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import asteroids.FrameTimeHistogram;
+import asteroids.IFacade;
+import asteroids.ModelException;
+import asteroids.ScenarioGenerator;
+
+/**
+ * Runs a world for players that connect over UDP.
+ *
+ * <pre>
+ * java asteroids.net.GameServer [clients [asteroids [ticks]]]
+ * </pre>
+ *
+ * The server owns the world and advances it through {@link IFacade#evolve}
+ * only. A player joins by sending a {@link Protocol#JOIN}, after which the
+ * server adds a ship for it and steers that ship with the inputs it sends.
+ * After each tick the server captures a quantized {@link Snapshot} of the world
+ * and sends it to every player, encoded as a delta against the latest snapshot
+ * that player acknowledged, so entities that did not move cost nothing and
+ * entities that did cost a few bytes. When a player has not acknowledged a
+ * snapshot recent enough to still be in the history, it gets a full one.
+ *
+ * All of this happens on the thread that invokes {@link #tick}; the channel is
+ * non-blocking, so a tick never waits for the network.
+ */
+public class GameServer<World, Ship, Asteroid, Bullet> implements Closeable {
+
+  /**
+   * The angle a held turn button turns a ship by each tick, as in the game.
+   */
+  public static final double TURN = Math.PI / 20;
+
+  public static final double SHIP_RADIUS = 40;
+
+  public static final double SHIP_MASS = 5E15;
+
+  /**
+   * A player connected to a server.
+   */
+  public class Connection {
+    private final SocketAddress address;
+    private final Ship ship;
+    private final int shipId;
+    private int lastSequence;
+    private boolean hasInput;
+    private int buttons;
+    private int fireCount;
+    private int firedCount;
+    private int ackTick = -1;
+    private long bytesSent;
+    private long snapshotsSent;
+    private long fullSnapshotsSent;
+
+    private Connection(SocketAddress address, Ship ship, int shipId) {
+      this.address = address;
+      this.ship = ship;
+      this.shipId = shipId;
+    }
+
+    public SocketAddress getAddress() {
+      return address;
+    }
+
+    public Ship getShip() {
+      return ship;
+    }
+
+    public int getShipId() {
+      return shipId;
+    }
+
+    /**
+     * Return the latest tick this player acknowledged, or -1 if none.
+     */
+    public int getAckTick() {
+      return ackTick;
+    }
+
+    public long getBytesSent() {
+      return bytesSent;
+    }
+
+    public long getSnapshotsSent() {
+      return snapshotsSent;
+    }
+
+    /**
+     * Return the number of snapshots sent to this player without a baseline.
+     */
+    public long getFullSnapshotsSent() {
+      return fullSnapshotsSent;
+    }
+
+    /**
+     * Return the mean number of bytes sent to this player per snapshot.
+     */
+    public double getBytesPerSnapshot() {
+      return snapshotsSent == 0 ? 0 : bytesSent / (double) snapshotsSent;
+    }
+  }
+
+  private final IFacade<World, Ship, Asteroid, Bullet> facade;
+  private final World world;
+  private final DatagramChannel channel;
+  private final Map<SocketAddress, Connection> connections = new LinkedHashMap<SocketAddress, Connection>();
+  private final Random random;
+
+  private IdentityHashMap<Object, Integer> ids = new IdentityHashMap<Object, Integer>();
+  private IdentityHashMap<Object, Integer> liveIds = new IdentityHashMap<Object, Integer>();
+  private int nextId;
+
+  private int tick;
+  private final Snapshot[] history = new Snapshot[Protocol.HISTORY];
+  private final ByteBuffer in = ByteBuffer.allocateDirect(Protocol.MAX_DATAGRAM);
+  private final ByteBuffer out = ByteBuffer.allocateDirect(Protocol.MAX_DATAGRAM);
+
+  private final FrameTimeHistogram serializationTimes = new FrameTimeHistogram();
+  private long bytesSent;
+
+  /**
+   * Create a server for <code>world</code> listening on <code>address</code>.
+   * Use port 0 to listen on any free port.
+   */
+  public GameServer(IFacade<World, Ship, Asteroid, Bullet> facade, World world, InetSocketAddress address, long seed)
+      throws IOException {
+    this.facade = facade;
+    this.world = world;
+    this.random = new Random(seed);
+    channel = DatagramChannel.open();
+    channel.bind(address);
+    channel.configureBlocking(false);
+  }
+
+  public InetSocketAddress getAddress() throws IOException {
+    return (InetSocketAddress) channel.getLocalAddress();
+  }
+
+  public World getWorld() {
+    return world;
+  }
+
+  /**
+   * Return the number of ticks this server has run.
+   */
+  public int getTick() {
+    return tick;
+  }
+
+  public Collection<Connection> getConnections() {
+    return Collections.unmodifiableCollection(connections.values());
+  }
+
+  /**
+   * Return the snapshot captured at the end of the latest tick, or null before
+   * the first tick.
+   */
+  public Snapshot getSnapshot() {
+    return tick == 0 ? null : history[tick % Protocol.HISTORY];
+  }
+
+  /**
+   * Return the times it took to capture and encode the snapshots of each tick.
+   */
+  public FrameTimeHistogram getSerializationTimes() {
+    return serializationTimes;
+  }
+
+  public long getBytesSent() {
+    return bytesSent;
+  }
+
+  /**
+   * Handle the datagrams that arrived since the previous tick, advance the
+   * world by <code>dt</code> seconds and send a snapshot to every player.
+   */
+  public void tick(double dt) throws IOException {
+    receive();
+    for (Connection connection : connections.values())
+      steer(connection);
+    facade.evolve(world, dt, null);
+    tick++;
+    long start = System.nanoTime();
+    Snapshot snapshot = capture();
+    for (Connection connection : connections.values())
+      send(connection, snapshot);
+    serializationTimes.record(System.nanoTime() - start);
+  }
+
+  private void receive() throws IOException {
+    while (true) {
+      in.clear();
+      SocketAddress sender = channel.receive(in);
+      if (sender == null)
+        return;
+      in.flip();
+      if (!in.hasRemaining())
+        continue;
+      byte type = in.get();
+      Connection connection = connections.get(sender);
+      if (type == Protocol.JOIN) {
+        if (connection == null)
+          connection = join(sender);
+        if (connection != null)
+          welcome(connection);
+      } else if (connection != null && type == Protocol.INPUT && in.remaining() >= Protocol.INPUT_SIZE - 1) {
+        int sequence = in.getInt();
+        int ack = in.getInt();
+        if (connection.hasInput && sequence - connection.lastSequence <= 0)
+          // A late or duplicated input.
+          continue;
+        if (!connection.hasInput)
+          connection.firedCount = in.get(in.position() + 1) & 0xFF;
+        connection.hasInput = true;
+        connection.lastSequence = sequence;
+        if (ack > connection.ackTick && ack <= tick)
+          connection.ackTick = ack;
+        connection.buttons = in.get();
+        connection.fireCount = in.get() & 0xFF;
+      } else if (connection != null && type == Protocol.LEAVE) {
+        if (facade.getShipWorld(connection.ship) == world)
+          facade.removeShip(world, connection.ship);
+        connections.remove(sender);
+      }
+    }
+  }
+
+  /**
+   * Add a ship for the player at <code>address</code> at a free spot, or return
+   * null if no free spot was found.
+   */
+  private Connection join(SocketAddress address) {
+    double width = facade.getWorldWidth(world);
+    double height = facade.getWorldHeight(world);
+    for (int attempt = 0; attempt < 100; attempt++) {
+      double x = SHIP_RADIUS + random.nextDouble() * Math.max(0, width - 2 * SHIP_RADIUS);
+      double y = SHIP_RADIUS + random.nextDouble() * Math.max(0, height - 2 * SHIP_RADIUS);
+      if (!isFree(x, y, SHIP_RADIUS))
+        continue;
+      Ship ship = facade.createShip(x, y, 0, 0, SHIP_RADIUS, 2 * Math.PI * random.nextDouble(), SHIP_MASS);
+      try {
+        facade.addShip(world, ship);
+      } catch (ModelException exc) {
+        // The world is too small to hold a ship.
+        return null;
+      }
+      int id = nextId++;
+      ids.put(ship, id);
+      Connection connection = new Connection(address, ship, id);
+      connections.put(address, connection);
+      return connection;
+    }
+    return null;
+  }
+
+  /**
+   * Check whether a circle with the given centre and radius, inside the world,
+   * overlaps none of the entities in the world. Distances are measured to the
+   * nearest image in case the world wraps around; in a bounded world the far
+   * image of an entity inside it is never closer than touching.
+   */
+  private boolean isFree(double x, double y, double radius) {
+    for (Ship ship : facade.getShips(world))
+      if (overlaps(x, y, radius, facade.getShipX(ship), facade.getShipY(ship), facade.getShipRadius(ship)))
+        return false;
+    for (Asteroid asteroid : facade.getAsteroids(world))
+      if (overlaps(x, y, radius, facade.getAsteroidX(asteroid), facade.getAsteroidY(asteroid),
+          facade.getAsteroidRadius(asteroid)))
+        return false;
+    for (Bullet bullet : facade.getBullets(world))
+      if (overlaps(x, y, radius, facade.getBulletX(bullet), facade.getBulletY(bullet), facade.getBulletRadius(bullet)))
+        return false;
+    return true;
+  }
+
+  private boolean overlaps(double x1, double y1, double radius1, double x2, double y2, double radius2) {
+    double dx = Math.abs(x1 - x2);
+    dx = Math.min(dx, facade.getWorldWidth(world) - dx);
+    double dy = Math.abs(y1 - y2);
+    dy = Math.min(dy, facade.getWorldHeight(world) - dy);
+    double distance = radius1 + radius2;
+    return dx * dx + dy * dy < distance * distance;
+  }
+
+  private void welcome(Connection connection) throws IOException {
+    out.clear();
+    out.put(Protocol.WELCOME);
+    out.putInt(connection.shipId);
+    out.putDouble(facade.getWorldWidth(world));
+    out.putDouble(facade.getWorldHeight(world));
+    out.flip();
+    channel.send(out, connection.address);
+  }
+
+  private void steer(Connection connection) {
+    Ship ship = connection.ship;
+    if (facade.getShipWorld(ship) != world)
+      return;
+    int buttons = connection.buttons;
+    facade.setThrusterActive(ship, (buttons & Protocol.THRUST) != 0);
+    if ((buttons & Protocol.LEFT) != 0 && (buttons & Protocol.RIGHT) == 0)
+      facade.turn(ship, TURN);
+    else if ((buttons & Protocol.RIGHT) != 0 && (buttons & Protocol.LEFT) == 0)
+      facade.turn(ship, -TURN);
+    if (connection.firedCount != connection.fireCount) {
+      // One bullet per tick, as in the game; further presses wait for later ticks.
+      connection.firedCount = (connection.firedCount + 1) & 0xFF;
+      facade.fireBullet(ship);
+    }
+  }
+
+  private Snapshot capture() {
+    Snapshot snapshot = history[tick % Protocol.HISTORY];
+    if (snapshot == null)
+      snapshot = history[tick % Protocol.HISTORY] = new Snapshot();
+    snapshot.clear();
+    liveIds.clear();
+    for (Ship ship : facade.getShips(world))
+      snapshot.add(getId(ship), Snapshot.SHIP, facade.getShipX(ship), facade.getShipY(ship),
+          facade.getShipXVelocity(ship), facade.getShipYVelocity(ship), facade.getShipRadius(ship),
+          facade.getShipDirection(ship));
+    for (Asteroid asteroid : facade.getAsteroids(world))
+      snapshot.add(getId(asteroid), Snapshot.ASTEROID, facade.getAsteroidX(asteroid), facade.getAsteroidY(asteroid),
+          facade.getAsteroidXVelocity(asteroid), facade.getAsteroidYVelocity(asteroid),
+          facade.getAsteroidRadius(asteroid), 0);
+    for (Bullet bullet : facade.getBullets(world))
+      snapshot.add(getId(bullet), Snapshot.BULLET, facade.getBulletX(bullet), facade.getBulletY(bullet),
+          facade.getBulletXVelocity(bullet), facade.getBulletYVelocity(bullet), facade.getBulletRadius(bullet), 0);
+    snapshot.sort();
+    snapshot.setTick(tick);
+    // Forget the ids of entities that left the world, keeping those of ships
+    // whose players are still connected.
+    for (Connection connection : connections.values())
+      liveIds.put(connection.ship, connection.shipId);
+    IdentityHashMap<Object, Integer> swap = ids;
+    ids = liveIds;
+    liveIds = swap;
+    return snapshot;
+  }
+
+  private int getId(Object entity) {
+    Integer id = ids.get(entity);
+    if (id == null)
+      id = nextId++;
+    liveIds.put(entity, id);
+    return id;
+  }
+
+  private void send(Connection connection, Snapshot snapshot) throws IOException {
+    Snapshot baseline = null;
+    if (connection.ackTick > 0 && tick - connection.ackTick < Protocol.HISTORY)
+      baseline = history[connection.ackTick % Protocol.HISTORY];
+    int size = 0;
+    int from = 0;
+    do {
+      int to = SnapshotCodec.getPartEnd(snapshot, baseline, from, Protocol.MAX_DATAGRAM - 1);
+      out.clear();
+      out.put(Protocol.SNAPSHOT);
+      SnapshotCodec.encode(snapshot, baseline, from, to, out);
+      out.flip();
+      size += out.remaining();
+      channel.send(out, connection.address);
+      from = to;
+    } while (from != SnapshotCodec.UNBOUNDED);
+    connection.bytesSent += size;
+    connection.snapshotsSent++;
+    if (baseline == null)
+      connection.fullSnapshotsSent++;
+    bytesSent += size;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  public static void main(String[] args) throws IOException {
+    int nbClients = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int nbAsteroids = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    int nbTicks = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+    // <begin>
+    IFacade<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> facade = new asteroids.model.Facade();
+    // <end>
+    ScenarioGenerator<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> scenario = new ScenarioGenerator<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>(facade, 0);
+    scenario.setRadii(5, 40, 1.5);
+    asteroids.model.GameWorld world = scenario.createWorld(2 * nbAsteroids);
+    scenario.populate(world, nbAsteroids);
+    GameServer<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet> server = new GameServer<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>(
+        facade, world, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    List<GameClient> clients = new ArrayList<GameClient>();
+    for (int i = 0; i < nbClients; i++) {
+      GameClient client = new GameClient(server.getAddress());
+      client.join();
+      clients.add(client);
+    }
+    Random random = new Random(0);
+    for (int tick = 0; tick < nbTicks; tick++) {
+      for (GameClient client : clients) {
+        // Bots hold random buttons for a while and fire now and then.
+        if (random.nextInt(10) == 0)
+          client.setButtons(random.nextInt(8));
+        if (random.nextInt(15) == 0)
+          client.fire();
+        client.sendInput();
+      }
+      server.tick(1 / 30.);
+      for (GameClient client : clients)
+        client.poll();
+    }
+    FrameTimeHistogram times = server.getSerializationTimes();
+    System.out.printf("%d ticks, %d entities: serialization p50 %.3f ms, p99 %.3f ms%n", server.getTick(),
+        server.getSnapshot().getSize(), times.getPercentile(50) / 1e6, times.getPercentile(99) / 1e6);
+    for (GameServer<asteroids.model.GameWorld, asteroids.model.Ship, asteroids.model.Asteroid, asteroids.model.Bullet>.Connection connection : server.getConnections())
+      System.out.printf("client %s: %.0f bytes/snapshot, %.1f kB/s at 30 Hz, %d full snapshots%n",
+          connection.getAddress(), connection.getBytesPerSnapshot(), connection.getBytesPerSnapshot() * 30 / 1000,
+          connection.getFullSnapshotsSent());
+    for (GameClient client : clients)
+      client.close();
+    server.close();
+  }
+}
@@ -0,0 +1,47 @@
+package asteroids.net;
+
+/**
+ * The datagrams exchanged between a {@link GameServer} and its
+ * {@link GameClient}s. Each datagram starts with one of the message types
+ * below.
+ *
+ * <pre>
+ * JOIN      client to server
+ * INPUT     client to server: int sequence, int acknowledged tick, byte buttons, byte fire count
+ * LEAVE     client to server
+ * WELCOME   server to client: int ship id, double world width, double world height
+ * SNAPSHOT  server to client: a part of a snapshot encoded by {@link SnapshotCodec}
+ * </pre>
+ *
+ * The fire count of an input counts the times the player pressed the fire
+ * button, modulo 256, so that a press is not lost or repeated when inputs are
+ * lost or duplicated. A snapshot that does not fit in one datagram is sent
+ * as several parts, in order of entity id.
+ */
+public final class Protocol {
+
+  public static final byte JOIN = 1;
+  public static final byte INPUT = 2;
+  public static final byte LEAVE = 3;
+  public static final byte WELCOME = 4;
+  public static final byte SNAPSHOT = 5;
+
+  public static final int THRUST = 1;
+  public static final int LEFT = 2;
+  public static final int RIGHT = 4;
+
+  public static final int INPUT_SIZE = 11;
+
+  /**
+   * The largest payload of a UDP datagram.
+   */
+  public static final int MAX_DATAGRAM = 65507;
+
+  /**
+   * The number of past snapshots kept on either side to serve as baselines.
+   */
+  public static final int HISTORY = 64;
+
+  private Protocol() {
+  }
+}
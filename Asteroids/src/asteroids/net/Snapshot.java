@@ -0,0 +1,205 @@
+package asteroids.net;
+
+import java.util.Arrays;
+
+/**
+ * The quantized state of all entities of a world at one tick, stored as
+ * parallel arrays sorted by entity id.
+ *
+ * Positions, velocities and radii are stored in units of 1/{@link #SCALE} km
+ * and km/s; directions in units of 1/65536 of a full turn. A snapshot is meant
+ * to be refilled tick after tick, so it only allocates while its arrays grow.
+ */
+public class Snapshot {
+
+  public static final byte SHIP = 1;
+  public static final byte ASTEROID = 2;
+  public static final byte BULLET = 3;
+
+  public static final int SCALE = 16;
+
+  private int tick = -1;
+  private int size;
+  private int[] ids = new int[16];
+  private byte[] types = new byte[16];
+  private int[] x = new int[16];
+  private int[] y = new int[16];
+  private int[] xVelocity = new int[16];
+  private int[] yVelocity = new int[16];
+  private int[] radius = new int[16];
+  private int[] direction = new int[16];
+  private long[] order = new long[16];
+  private int[] scratch = new int[16];
+  private byte[] typeScratch = new byte[16];
+
+  public int getTick() {
+    return tick;
+  }
+
+  public void setTick(int tick) {
+    this.tick = tick;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public int getId(int i) {
+    return ids[i];
+  }
+
+  public byte getType(int i) {
+    return types[i];
+  }
+
+  public int getX(int i) {
+    return x[i];
+  }
+
+  public int getY(int i) {
+    return y[i];
+  }
+
+  public int getXVelocity(int i) {
+    return xVelocity[i];
+  }
+
+  public int getYVelocity(int i) {
+    return yVelocity[i];
+  }
+
+  public int getRadius(int i) {
+    return radius[i];
+  }
+
+  public int getDirection(int i) {
+    return direction[i];
+  }
+
+  /**
+   * Return the position of the entity with the given id, or a negative value
+   * if there is no such entity.
+   */
+  public int indexOf(int id) {
+    return Arrays.binarySearch(ids, 0, size, id);
+  }
+
+  public void clear() {
+    tick = -1;
+    size = 0;
+  }
+
+  /**
+   * Add the given quantized entity state. Entities may be added in any order
+   * if {@link #sort} is called afterwards; otherwise they must be added in
+   * increasing order of id.
+   */
+  public void add(int id, byte type, int x, int y, int xVelocity, int yVelocity, int radius, int direction) {
+    if (size == ids.length)
+      grow();
+    ids[size] = id;
+    types[size] = type;
+    this.x[size] = x;
+    this.y[size] = y;
+    this.xVelocity[size] = xVelocity;
+    this.yVelocity[size] = yVelocity;
+    this.radius[size] = radius;
+    this.direction[size] = direction;
+    size++;
+  }
+
+  /**
+   * Add the given entity state, quantizing it.
+   */
+  public void add(int id, byte type, double x, double y, double xVelocity, double yVelocity, double radius, double direction) {
+    add(id, type, quantize(x), quantize(y), quantize(xVelocity), quantize(yVelocity), quantize(radius), quantizeDirection(direction));
+  }
+
+  /**
+   * Sort the entities of this snapshot by id.
+   */
+  public void sort() {
+    for (int i = 0; i < size; i++)
+      order[i] = ((long) ids[i] << 32) | i;
+    Arrays.sort(order, 0, size);
+    permute(ids);
+    permute(x);
+    permute(y);
+    permute(xVelocity);
+    permute(yVelocity);
+    permute(radius);
+    permute(direction);
+    for (int i = 0; i < size; i++)
+      typeScratch[i] = types[(int) order[i]];
+    System.arraycopy(typeScratch, 0, types, 0, size);
+  }
+
+  private void permute(int[] values) {
+    // The low halves of the sort keys are the original positions.
+    for (int i = 0; i < size; i++)
+      scratch[i] = values[(int) order[i]];
+    System.arraycopy(scratch, 0, values, 0, size);
+  }
+
+  /**
+   * Make this snapshot a copy of the given snapshot.
+   */
+  public void copyFrom(Snapshot other) {
+    clear();
+    for (int i = 0; i < other.size; i++)
+      add(other.ids[i], other.types[i], other.x[i], other.y[i], other.xVelocity[i], other.yVelocity[i], other.radius[i],
+          other.direction[i]);
+    tick = other.tick;
+  }
+
+  /**
+   * Check whether this snapshot holds the same entities in the same states as
+   * the given snapshot, regardless of tick.
+   */
+  public boolean hasSameStates(Snapshot other) {
+    if (size != other.size)
+      return false;
+    for (int i = 0; i < size; i++)
+      if (ids[i] != other.ids[i] || types[i] != other.types[i] || x[i] != other.x[i] || y[i] != other.y[i]
+          || xVelocity[i] != other.xVelocity[i] || yVelocity[i] != other.yVelocity[i] || radius[i] != other.radius[i]
+          || direction[i] != other.direction[i])
+        return false;
+    return true;
+  }
+
+  private void grow() {
+    int capacity = 2 * ids.length;
+    ids = Arrays.copyOf(ids, capacity);
+    types = Arrays.copyOf(types, capacity);
+    x = Arrays.copyOf(x, capacity);
+    y = Arrays.copyOf(y, capacity);
+    xVelocity = Arrays.copyOf(xVelocity, capacity);
+    yVelocity = Arrays.copyOf(yVelocity, capacity);
+    radius = Arrays.copyOf(radius, capacity);
+    direction = Arrays.copyOf(direction, capacity);
+    order = new long[capacity];
+    scratch = new int[capacity];
+    typeScratch = new byte[capacity];
+  }
+
+  public static int quantize(double value) {
+    double scaled = Math.rint(value * SCALE);
+    if (scaled >= Integer.MAX_VALUE)
+      return Integer.MAX_VALUE;
+    if (scaled <= Integer.MIN_VALUE)
+      return Integer.MIN_VALUE;
+    return (int) scaled;
+  }
+
+  public static double dequantize(int value) {
+    return value / (double) SCALE;
+  }
+
+  public static int quantizeDirection(double angle) {
+    return (int) Math.rint(angle / (2 * Math.PI) * 65536) & 0xFFFF;
+  }
+
+  public static double dequantizeDirection(int value) {
+    return value / 65536. * 2 * Math.PI;
+  }
+}
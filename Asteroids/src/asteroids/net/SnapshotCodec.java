@@ -0,0 +1,405 @@
+package asteroids.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes snapshots as deltas against an earlier snapshot the receiver already
+ * has.
+ *
+ * A snapshot too large for one datagram is split in parts, each covering a
+ * range of entity ids, that are encoded and decoded one after the other. An
+ * encoded part starts with the tick of its snapshot, the tick of its baseline
+ * (-1 for none), the first id of its range and the id its range ends before (0
+ * for the last part, whose range is unbounded), followed by a count and that
+ * many records in increasing order of entity id. Each record holds the id as
+ * the difference with the previous record's id, a mask and a payload:
+ * <ul>
+ * <li>a removed entity has no payload;</li>
+ * <li>a new entity has its type and all of its fields;</li>
+ * <li>a changed entity has the differences with its baseline for the fields
+ * set in the mask.</li>
+ * </ul>
+ * Entities that did not change are left out. All numbers except the ticks are
+ * zigzag variable-length integers, so small changes take a single byte.
+ */
+public class SnapshotCodec {
+
+  public static final int X = 1;
+  public static final int Y = 2;
+  public static final int X_VELOCITY = 4;
+  public static final int Y_VELOCITY = 8;
+  public static final int RADIUS = 16;
+  public static final int DIRECTION = 32;
+  public static final int NEW = 64;
+  public static final int REMOVED = 128;
+
+  /**
+   * The end of the range of the last part of a snapshot.
+   */
+  public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+  /**
+   * The largest number of bytes the header of a part takes.
+   */
+  public static final int MAX_HEADER_SIZE = 8 + 3 * 5;
+
+  private SnapshotCodec() {
+  }
+
+  /**
+   * Write <code>current</code> to <code>out</code> as a single part, as a
+   * delta against <code>baseline</code>, or in full if <code>baseline</code> is
+   * null. Return the number of bytes written.
+   */
+  public static int encode(Snapshot current, Snapshot baseline, ByteBuffer out) {
+    return encode(current, baseline, 0, UNBOUNDED, out);
+  }
+
+  /**
+   * Return the id before which the part of <code>current</code> starting at
+   * id <code>from</code> has to end to take at most <code>maxSize</code> bytes
+   * when encoded against <code>baseline</code>, or {@link #UNBOUNDED} if all
+   * remaining entities fit. A part holds at least one record.
+   */
+  public static int getPartEnd(Snapshot current, Snapshot baseline, int from, int maxSize) {
+    int baselineSize = baseline == null ? 0 : baseline.getSize();
+    int size = MAX_HEADER_SIZE;
+    int previousId = from - 1;
+    int i = lowerBound(current, from), j = lowerBound(baseline, from);
+    while (i < current.getSize() || j < baselineSize) {
+      int id = i < current.getSize() ? current.getId(i) : Integer.MAX_VALUE;
+      int baseId = j < baselineSize ? baseline.getId(j) : Integer.MAX_VALUE;
+      int recordId;
+      int recordSize;
+      if (baseId < id) {
+        recordId = baseId;
+        recordSize = 1;
+        j++;
+      } else if (id < baseId) {
+        recordId = id;
+        recordSize = 1 + getEntitySize(current, i);
+        i++;
+      } else {
+        int mask = getChangedFields(current, i, baseline, j);
+        recordId = id;
+        recordSize = 1 + ((mask & NEW) != 0 ? getEntitySize(current, i) : getChangesSize(current, i, baseline, j, mask));
+        i++;
+        j++;
+        if (mask == 0)
+          continue;
+      }
+      recordSize += getVarintSize(recordId - previousId);
+      if (size + recordSize > maxSize && previousId >= from)
+        return recordId;
+      size += recordSize;
+      previousId = recordId;
+    }
+    return UNBOUNDED;
+  }
+
+  /**
+   * Write the part of <code>current</code> with the entities whose ids lie
+   * from <code>from</code> up to before <code>to</code> to <code>out</code>, as
+   * a delta against <code>baseline</code>, or in full if <code>baseline</code>
+   * is null. Return the number of bytes written.
+   */
+  public static int encode(Snapshot current, Snapshot baseline, int from, int to, ByteBuffer out) {
+    int start = out.position();
+    out.putInt(current.getTick());
+    out.putInt(baseline == null ? -1 : baseline.getTick());
+    putVarint(out, from);
+    putVarint(out, to == UNBOUNDED ? 0 : to);
+    int first = lowerBound(current, from), baseFirst = lowerBound(baseline, from);
+    int last = lowerBound(current, to), baseLast = lowerBound(baseline, to);
+    putVarint(out, countRecords(current, first, last, baseline, baseFirst, baseLast));
+    int previousId = from - 1;
+    int i = first, j = baseFirst;
+    while (i < last || j < baseLast) {
+      int id = i < last ? current.getId(i) : Integer.MAX_VALUE;
+      int baseId = j < baseLast ? baseline.getId(j) : Integer.MAX_VALUE;
+      if (baseId < id) {
+        previousId = putHeader(out, baseId, previousId, REMOVED);
+        j++;
+      } else if (id < baseId) {
+        previousId = putHeader(out, id, previousId, NEW);
+        putEntity(out, current, i);
+        i++;
+      } else {
+        int mask = getChangedFields(current, i, baseline, j);
+        if ((mask & NEW) != 0) {
+          previousId = putHeader(out, id, previousId, NEW);
+          putEntity(out, current, i);
+        } else if (mask != 0) {
+          previousId = putHeader(out, id, previousId, mask);
+          if ((mask & X) != 0)
+            putZigzag(out, current.getX(i) - baseline.getX(j));
+          if ((mask & Y) != 0)
+            putZigzag(out, current.getY(i) - baseline.getY(j));
+          if ((mask & X_VELOCITY) != 0)
+            putZigzag(out, current.getXVelocity(i) - baseline.getXVelocity(j));
+          if ((mask & Y_VELOCITY) != 0)
+            putZigzag(out, current.getYVelocity(i) - baseline.getYVelocity(j));
+          if ((mask & RADIUS) != 0)
+            putZigzag(out, current.getRadius(i) - baseline.getRadius(j));
+          if ((mask & DIRECTION) != 0)
+            putZigzag(out, (short) (current.getDirection(i) - baseline.getDirection(j)));
+        }
+        i++;
+        j++;
+      }
+    }
+    return out.position() - start;
+  }
+
+  /**
+   * Return the tick of the snapshot the encoded part at the position of
+   * <code>in</code> belongs to.
+   */
+  public static int getTick(ByteBuffer in) {
+    return in.getInt(in.position());
+  }
+
+  /**
+   * Return the tick of the baseline the encoded part at the position of
+   * <code>in</code> refers to, or -1 if it is part of a full snapshot.
+   */
+  public static int getBaselineTick(ByteBuffer in) {
+    return in.getInt(in.position() + 4);
+  }
+
+  /**
+   * Return the first id of the range of the encoded part at the position of
+   * <code>in</code>. The first part of a snapshot starts at 0.
+   */
+  public static int getPartStart(ByteBuffer in) {
+    int value = 0;
+    for (int index = in.position() + 8, shift = 0; shift < 35; index++, shift += 7) {
+      byte b = in.get(index);
+      value |= (b & 0x7F) << shift;
+      if (b >= 0)
+        return value;
+    }
+    throw new IllegalArgumentException("malformed variable-length integer");
+  }
+
+  /**
+   * Read an encoded snapshot that consists of a single part from
+   * <code>in</code> into <code>result</code>, applying it to
+   * <code>baseline</code>.
+   *
+   * @throws IllegalArgumentException
+   *           The snapshot refers to a different baseline than the given one,
+   *           or it has more parts.
+   */
+  public static void decode(ByteBuffer in, Snapshot baseline, Snapshot result) {
+    int tick = getTick(in);
+    result.clear();
+    if (decodePart(in, baseline, result) != UNBOUNDED)
+      throw new IllegalArgumentException("snapshot " + tick + " has more parts");
+    result.setTick(tick);
+  }
+
+  /**
+   * Read an encoded part from <code>in</code>, applying it to
+   * <code>baseline</code>, and add the entities in its range to
+   * <code>result</code>, which must hold the entities of the parts before it.
+   * Return the id the range of the part ends before, or {@link #UNBOUNDED} if
+   * it is the last part.
+   *
+   * @throws IllegalArgumentException
+   *           The part refers to a different baseline than the given one.
+   */
+  public static int decodePart(ByteBuffer in, Snapshot baseline, Snapshot result) {
+    int tick = in.getInt();
+    int baselineTick = in.getInt();
+    if (baselineTick != (baseline == null ? -1 : baseline.getTick()))
+      throw new IllegalArgumentException("snapshot " + tick + " needs baseline " + baselineTick);
+    int from = getVarint(in);
+    int to = getVarint(in);
+    if (to == 0)
+      to = UNBOUNDED;
+    int j = lowerBound(baseline, from);
+    int baseLast = lowerBound(baseline, to);
+    int nbRecords = getVarint(in);
+    int id = from - 1;
+    for (int record = 0; record < nbRecords; record++) {
+      id += getVarint(in);
+      int mask = in.get() & 0xFF;
+      for (; j < baseLast && baseline.getId(j) < id; j++)
+        copy(baseline, j, result);
+      if ((mask & NEW) != 0) {
+        byte type = in.get();
+        result.add(id, type, getZigzag(in), getZigzag(in), getZigzag(in), getZigzag(in), getZigzag(in), getZigzag(in));
+        if (j < baseLast && baseline.getId(j) == id)
+          j++;
+        continue;
+      }
+      if (j == baseLast || baseline.getId(j) != id)
+        throw new IllegalArgumentException("entity " + id + " is not in baseline " + baselineTick);
+      if ((mask & REMOVED) == 0) {
+        int x = baseline.getX(j);
+        if ((mask & X) != 0)
+          x += getZigzag(in);
+        int y = baseline.getY(j);
+        if ((mask & Y) != 0)
+          y += getZigzag(in);
+        int xVelocity = baseline.getXVelocity(j);
+        if ((mask & X_VELOCITY) != 0)
+          xVelocity += getZigzag(in);
+        int yVelocity = baseline.getYVelocity(j);
+        if ((mask & Y_VELOCITY) != 0)
+          yVelocity += getZigzag(in);
+        int radius = baseline.getRadius(j);
+        if ((mask & RADIUS) != 0)
+          radius += getZigzag(in);
+        int direction = baseline.getDirection(j);
+        if ((mask & DIRECTION) != 0)
+          direction = (direction + getZigzag(in)) & 0xFFFF;
+        result.add(id, baseline.getType(j), x, y, xVelocity, yVelocity, radius, direction);
+      }
+      j++;
+    }
+    for (; j < baseLast; j++)
+      copy(baseline, j, result);
+    return to;
+  }
+
+  /**
+   * Return the position of the first entity of the given snapshot whose id is
+   * at least the given id, or 0 if the snapshot is null.
+   */
+  private static int lowerBound(Snapshot snapshot, int id) {
+    if (snapshot == null)
+      return 0;
+    int index = snapshot.indexOf(id);
+    return index < 0 ? -index - 1 : index;
+  }
+
+  private static int countRecords(Snapshot current, int first, int last, Snapshot baseline, int baseFirst,
+      int baseLast) {
+    int count = 0;
+    int i = first, j = baseFirst;
+    while (i < last || j < baseLast) {
+      int id = i < last ? current.getId(i) : Integer.MAX_VALUE;
+      int baseId = j < baseLast ? baseline.getId(j) : Integer.MAX_VALUE;
+      if (baseId < id) {
+        count++;
+        j++;
+      } else if (id < baseId) {
+        count++;
+        i++;
+      } else {
+        if (getChangedFields(current, i, baseline, j) != 0)
+          count++;
+        i++;
+        j++;
+      }
+    }
+    return count;
+  }
+
+  private static int getEntitySize(Snapshot current, int i) {
+    return 1 + getZigzagSize(current.getX(i)) + getZigzagSize(current.getY(i))
+        + getZigzagSize(current.getXVelocity(i)) + getZigzagSize(current.getYVelocity(i))
+        + getZigzagSize(current.getRadius(i)) + getZigzagSize(current.getDirection(i));
+  }
+
+  private static int getChangesSize(Snapshot current, int i, Snapshot baseline, int j, int mask) {
+    int size = 0;
+    if ((mask & X) != 0)
+      size += getZigzagSize(current.getX(i) - baseline.getX(j));
+    if ((mask & Y) != 0)
+      size += getZigzagSize(current.getY(i) - baseline.getY(j));
+    if ((mask & X_VELOCITY) != 0)
+      size += getZigzagSize(current.getXVelocity(i) - baseline.getXVelocity(j));
+    if ((mask & Y_VELOCITY) != 0)
+      size += getZigzagSize(current.getYVelocity(i) - baseline.getYVelocity(j));
+    if ((mask & RADIUS) != 0)
+      size += getZigzagSize(current.getRadius(i) - baseline.getRadius(j));
+    if ((mask & DIRECTION) != 0)
+      size += getZigzagSize((short) (current.getDirection(i) - baseline.getDirection(j)));
+    return size;
+  }
+
+  private static int getChangedFields(Snapshot current, int i, Snapshot baseline, int j) {
+    if (current.getType(i) != baseline.getType(j))
+      // Ids are never reused, but a type change could only be sent as a new entity.
+      return NEW;
+    int mask = 0;
+    if (current.getX(i) != baseline.getX(j))
+      mask |= X;
+    if (current.getY(i) != baseline.getY(j))
+      mask |= Y;
+    if (current.getXVelocity(i) != baseline.getXVelocity(j))
+      mask |= X_VELOCITY;
+    if (current.getYVelocity(i) != baseline.getYVelocity(j))
+      mask |= Y_VELOCITY;
+    if (current.getRadius(i) != baseline.getRadius(j))
+      mask |= RADIUS;
+    if (current.getDirection(i) != baseline.getDirection(j))
+      mask |= DIRECTION;
+    return mask;
+  }
+
+  private static void putEntity(ByteBuffer out, Snapshot current, int i) {
+    out.put(current.getType(i));
+    putZigzag(out, current.getX(i));
+    putZigzag(out, current.getY(i));
+    putZigzag(out, current.getXVelocity(i));
+    putZigzag(out, current.getYVelocity(i));
+    putZigzag(out, current.getRadius(i));
+    putZigzag(out, current.getDirection(i));
+  }
+
+  private static void copy(Snapshot from, int j, Snapshot to) {
+    to.add(from.getId(j), from.getType(j), from.getX(j), from.getY(j), from.getXVelocity(j), from.getYVelocity(j),
+        from.getRadius(j), from.getDirection(j));
+  }
+
+  private static int putHeader(ByteBuffer out, int id, int previousId, int mask) {
+    putVarint(out, id - previousId);
+    out.put((byte) mask);
+    return id;
+  }
+
+  public static void putVarint(ByteBuffer out, int value) {
+    while ((value & ~0x7F) != 0) {
+      out.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.put((byte) value);
+  }
+
+  public static int getVarint(ByteBuffer in) {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      byte b = in.get();
+      value |= (b & 0x7F) << shift;
+      if (b >= 0)
+        return value;
+    }
+    throw new IllegalArgumentException("malformed variable-length integer");
+  }
+
+  private static int getVarintSize(int value) {
+    int size = 1;
+    while ((value & ~0x7F) != 0) {
+      size++;
+      value >>>= 7;
+    }
+    return size;
+  }
+
+  private static int getZigzagSize(int value) {
+    return getVarintSize((value << 1) ^ (value >> 31));
+  }
+
+  public static void putZigzag(ByteBuffer out, int value) {
+    putVarint(out, (value << 1) ^ (value >> 31));
+  }
+
+  public static int getZigzag(ByteBuffer in) {
+    int value = getVarint(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
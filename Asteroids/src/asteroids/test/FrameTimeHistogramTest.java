@@ -0,0 +1,78 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import asteroids.FrameTimeHistogram;
+
+public class FrameTimeHistogramTest {
+
+	private FrameTimeHistogram histogram;
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable histogram references a new empty histogram.
+	 */
+	@Before
+	public void setUpMutableFixture() {
+		histogram = new FrameTimeHistogram();
+	}
+
+	@Test
+	public final void getPercentile_Empty() {
+		assertEquals(0, histogram.getPercentile(50));
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getTotalCount());
+	}
+
+	@Test
+	public final void getPercentile_SmallValuesExact() {
+		for (int i = 1; i <= 10; i++)
+			histogram.record(i);
+		assertEquals(5, histogram.getPercentile(50));
+		assertEquals(10, histogram.getPercentile(100));
+		assertEquals(1, histogram.getPercentile(0));
+	}
+
+	@Test
+	public final void getPercentile_RelativeError() {
+		for (long value = 1000; value < 100000000L; value = value * 11 / 10) {
+			FrameTimeHistogram single = new FrameTimeHistogram();
+			single.record(value);
+			single.record(2 * value);
+			long p50 = single.getPercentile(50);
+			assertTrue(p50 >= value);
+			assertTrue(p50 <= value + value / FrameTimeHistogram.SUB_BUCKETS);
+		}
+	}
+
+	@Test
+	public final void getPercentile_Hitches() {
+		for (int i = 0; i < 990; i++)
+			histogram.record(33000000L);
+		for (int i = 0; i < 10; i++)
+			histogram.record(200000000L);
+		assertEquals(33000000L, histogram.getPercentile(50), 33000000L / FrameTimeHistogram.SUB_BUCKETS);
+		assertEquals(33000000L, histogram.getPercentile(99), 33000000L / FrameTimeHistogram.SUB_BUCKETS);
+		assertEquals(200000000L, histogram.getPercentile(99.9), 200000000L / FrameTimeHistogram.SUB_BUCKETS);
+		assertEquals(200000000L, histogram.getMax());
+		assertEquals(1000, histogram.getTotalCount());
+	}
+
+	@Test
+	public final void record_ExtremeValues() {
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(0, histogram.getPercentile(50));
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+	}
+
+	@Test
+	public final void reset_NormalCase() {
+		histogram.record(1000);
+		histogram.reset();
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(99));
+	}
+}
@@ -0,0 +1,255 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import asteroids.model.*;
+import asteroids.net.*;
+
+public class GameServerTest {
+
+	private Facade facade;
+
+	private GameWorld world;
+
+	private GameServer<GameWorld, Ship, Asteroid, Bullet> server;
+
+	private GameClient client;
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable world references a new world of 2000 by 2000 with a
+	 * 			moving and a resting asteroid, served by the server referenced by
+	 * 			server on a free port of the loopback interface.
+	 * @post	The variable client references a client of that server that has
+	 * 			joined the game.
+	 */
+	@Before
+	public void setUpMutableFixture() throws Exception {
+		facade = new Facade();
+		world = facade.createWorld(2000, 2000);
+		facade.addAsteroid(world, new Asteroid(new Vector2D(100, 100), 20, new Vector2D(30, 0)));
+		facade.addAsteroid(world, new Asteroid(new Vector2D(100, 1900), 20, new Vector2D(0, 0)));
+		server = new GameServer<GameWorld, Ship, Asteroid, Bullet>(facade, world,
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		client = new GameClient(server.getAddress());
+		client.join();
+		for (int i = 0; i < 100 && !client.hasJoined(); i++){
+			server.tick(1 / 30.);
+			client.await(100);
+		}
+		assertTrue(client.hasJoined());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		server.close();
+	}
+
+	private void tick() throws Exception {
+		client.sendInput();
+		server.tick(1 / 30.);
+		for (int i = 0; i < 100 && (client.getSnapshot() == null || client.getSnapshot().getTick() != server.getTick()); i++)
+			client.await(100);
+		assertEquals(server.getTick(), client.getSnapshot().getTick());
+	}
+
+	private Snapshot createSnapshot(int tick, int nbEntities, int skip, int move) {
+		Snapshot snapshot = new Snapshot();
+		for (int id = 0; id < nbEntities; id++)
+			if (id != skip)
+				snapshot.add(id, Snapshot.ASTEROID, 100 + 10 * id + (id % 2 == 0 ? move : 0), 200, 5, -5, 10, 0);
+		snapshot.setTick(tick);
+		return snapshot;
+	}
+
+	@Test
+	public final void encode_FullRoundTrip() {
+		Snapshot snapshot = createSnapshot(7, 50, -1, 0);
+		ByteBuffer buffer = ByteBuffer.allocate(Protocol.MAX_DATAGRAM);
+		SnapshotCodec.encode(snapshot, null, buffer);
+		buffer.flip();
+		assertEquals(-1, SnapshotCodec.getBaselineTick(buffer));
+		Snapshot decoded = new Snapshot();
+		SnapshotCodec.decode(buffer, null, decoded);
+		assertEquals(7, decoded.getTick());
+		assertTrue(decoded.hasSameStates(snapshot));
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public final void encode_DeltaRoundTrip() {
+		Snapshot baseline = createSnapshot(7, 50, 3, 0);
+		Snapshot current = createSnapshot(8, 60, 4, 1);
+		ByteBuffer buffer = ByteBuffer.allocate(Protocol.MAX_DATAGRAM);
+		int full = SnapshotCodec.encode(current, null, buffer);
+		buffer.clear();
+		int delta = SnapshotCodec.encode(current, baseline, buffer);
+		buffer.flip();
+		assertEquals(7, SnapshotCodec.getBaselineTick(buffer));
+		Snapshot decoded = new Snapshot();
+		SnapshotCodec.decode(buffer, baseline, decoded);
+		assertEquals(8, decoded.getTick());
+		assertTrue(decoded.hasSameStates(current));
+		assertTrue(delta < full / 2);
+	}
+
+	@Test
+	public final void encode_UnchangedIsEmpty() {
+		Snapshot baseline = createSnapshot(7, 50, -1, 0);
+		Snapshot current = createSnapshot(8, 50, -1, 0);
+		ByteBuffer buffer = ByteBuffer.allocate(Protocol.MAX_DATAGRAM);
+		assertEquals(11, SnapshotCodec.encode(current, baseline, buffer));
+	}
+
+	@Test
+	public final void encode_PartsRoundTrip() {
+		Snapshot baseline = createSnapshot(7, 500, 3, 0);
+		Snapshot current = createSnapshot(8, 600, 4, 1);
+		ByteBuffer buffer = ByteBuffer.allocate(Protocol.MAX_DATAGRAM);
+		Snapshot decoded = new Snapshot();
+		int nbParts = 0;
+		int from = 0;
+		do {
+			int to = SnapshotCodec.getPartEnd(current, baseline, from, 200);
+			buffer.clear();
+			assertTrue(SnapshotCodec.encode(current, baseline, from, to, buffer) <= 200);
+			buffer.flip();
+			assertEquals(from, SnapshotCodec.getPartStart(buffer));
+			assertEquals(to, SnapshotCodec.decodePart(buffer, baseline, decoded));
+			assertFalse(buffer.hasRemaining());
+			nbParts++;
+			from = to;
+		} while (from != SnapshotCodec.UNBOUNDED);
+		decoded.setTick(8);
+		assertTrue(nbParts > 10);
+		assertTrue(decoded.hasSameStates(current));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void decode_WrongBaseline() {
+		ByteBuffer buffer = ByteBuffer.allocate(Protocol.MAX_DATAGRAM);
+		SnapshotCodec.encode(createSnapshot(8, 10, -1, 0), createSnapshot(7, 10, -1, 0), buffer);
+		buffer.flip();
+		SnapshotCodec.decode(buffer, createSnapshot(6, 10, -1, 0), new Snapshot());
+	}
+
+	@Test
+	public final void tick_ClientMirrorsWorld() throws Exception {
+		for (int i = 0; i < 10; i++)
+			tick();
+		assertTrue(client.getSnapshot().hasSameStates(server.getSnapshot()));
+		assertEquals(3, client.getSnapshot().getSize());
+		assertEquals(2000, client.getWorldWidth(), 0);
+		int index = client.getSnapshot().indexOf(client.getShipId());
+		assertTrue(index >= 0);
+		assertEquals(Snapshot.SHIP, client.getSnapshot().getType(index));
+	}
+
+	@Test
+	public final void tick_DeltasAfterAcknowledgement() throws Exception {
+		for (int i = 0; i < 30; i++)
+			tick();
+		GameServer<GameWorld, Ship, Asteroid, Bullet>.Connection connection = server.getConnections().iterator().next();
+		assertEquals(server.getTick() - 1, connection.getAckTick());
+		assertTrue(connection.getFullSnapshotsSent() <= 2);
+		assertEquals(0, client.getSnapshotsDropped());
+		long bytes = connection.getBytesSent();
+		tick();
+		// Only the x coordinate of the moving asteroid changed: a byte each for its
+		// id, its mask and the change, after the message type and the header.
+		assertEquals(1 + 11 + 3, connection.getBytesSent() - bytes);
+	}
+
+	@Test
+	public final void tick_LargeWorldInParts() throws Exception {
+		GameWorld large = facade.createWorld(4000, 3000);
+		for (int i = 0; i < 6000; i++)
+			facade.addAsteroid(large, new Asteroid(new Vector2D(20 + 40 * (i % 99), 20 + 40 * (i / 99)), 10,
+					new Vector2D(i % 7 - 3, i % 5 - 2)));
+		GameServer<GameWorld, Ship, Asteroid, Bullet> largeServer = new GameServer<GameWorld, Ship, Asteroid, Bullet>(
+				facade, large, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		GameClient largeClient = new GameClient(largeServer.getAddress());
+		try {
+			largeClient.join();
+			for (int i = 0; i < 100 && !largeClient.hasJoined(); i++){
+				largeServer.tick(1 / 30.);
+				largeClient.await(100);
+			}
+			assertTrue(largeClient.hasJoined());
+			for (int i = 0; i < 10; i++){
+				largeClient.sendInput();
+				largeServer.tick(1 / 30.);
+				for (int j = 0; j < 100 && (largeClient.getSnapshot() == null
+						|| largeClient.getSnapshot().getTick() != largeServer.getTick()); j++)
+					largeClient.await(100);
+				assertEquals(largeServer.getTick(), largeClient.getSnapshot().getTick());
+				assertTrue(largeClient.getSnapshot().hasSameStates(largeServer.getSnapshot()));
+			}
+			assertTrue(SnapshotCodec.getPartEnd(largeServer.getSnapshot(), null, 0, Protocol.MAX_DATAGRAM - 1)
+					!= SnapshotCodec.UNBOUNDED);
+			assertEquals(6001, largeClient.getSnapshot().getSize());
+		} finally {
+			largeClient.close();
+			largeServer.close();
+		}
+	}
+
+	@Test
+	public final void tick_InputsSteerShip() throws Exception {
+		tick();
+		Ship ship = server.getConnections().iterator().next().getShip();
+		client.setButtons(Protocol.THRUST);
+		client.fire();
+		for (int i = 0; i < 5; i++)
+			tick();
+		assertTrue(ship.getVelocity().getNorm() > 0);
+		assertEquals(1, facade.getBullets(world).size());
+		Snapshot snapshot = client.getSnapshot();
+		int bullets = 0;
+		for (int i = 0; i < snapshot.getSize(); i++)
+			if (snapshot.getType(i) == Snapshot.BULLET)
+				bullets++;
+		assertEquals(1, bullets);
+		int index = snapshot.indexOf(client.getShipId());
+		assertEquals(Snapshot.quantize(facade.getShipXVelocity(ship)), snapshot.getXVelocity(index));
+	}
+
+	@Test
+	public final void join_ShipOnFreeSpot() throws Exception {
+		GameWorld crowded = facade.createWorld(2000, 2000);
+		Asteroid asteroid = new Asteroid(new Vector2D(1000, 1000), 900, new Vector2D(0, 0));
+		facade.addAsteroid(crowded, asteroid);
+		GameServer<GameWorld, Ship, Asteroid, Bullet> crowdedServer = new GameServer<GameWorld, Ship, Asteroid, Bullet>(
+				facade, crowded, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		GameClient crowdedClient = new GameClient(crowdedServer.getAddress());
+		try {
+			crowdedClient.join();
+			for (int i = 0; i < 100 && !crowdedClient.hasJoined(); i++){
+				crowdedServer.tick(0);
+				crowdedClient.await(100);
+			}
+			assertTrue(crowdedClient.hasJoined());
+			Ship ship = crowdedServer.getConnections().iterator().next().getShip();
+			assertFalse(ship.overlap(asteroid));
+		} finally {
+			crowdedClient.close();
+			crowdedServer.close();
+		}
+	}
+
+	@Test
+	public final void leave_RemovesShip() throws Exception {
+		tick();
+		client.leave();
+		for (int i = 0; i < 100 && !server.getConnections().isEmpty(); i++){
+			Thread.sleep(1);
+			server.tick(1 / 30.);
+		}
+		assertTrue(server.getConnections().isEmpty());
+		assertTrue(facade.getShips(world).isEmpty());
+	}
+}
@@ -0,0 +1,735 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import static asteroids.Util.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.*;
+import asteroids.CollisionBatch;
+import asteroids.CollisionBatchListener;
+import asteroids.CollisionListener;
+import asteroids.model.*;
+
+public class GameWorldTest {
+
+	private GameWorld world;
+
+	private int nbBoundaryCollisions, nbObjectCollisions;
+
+	private CollisionListener countingListener = new CollisionListener() {
+		public void boundaryCollision(Object entity, double x, double y) {
+			nbBoundaryCollisions++;
+		}
+
+		public void objectCollision(Object entity1, Object entity2, double x, double y) {
+			nbObjectCollisions++;
+		}
+	};
+
+	/**
+	 * Set up a mutable test fixture
+	 *
+	 * @post	The variable world references a new empty world of 1000 by 500.
+	 */
+	@Before
+	public void setUpMutableFixture() {
+		world = new GameWorld(1000, 500);
+		nbBoundaryCollisions = 0;
+		nbObjectCollisions = 0;
+	}
+
+	@Test
+	public final void constructor_NormalCase() {
+		assertEquals(1000, world.getWidth(), EPSILON);
+		assertEquals(500, world.getHeigth(), EPSILON);
+		assertTrue(world.getElements().isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void constructor_NegativeWidth() {
+		new GameWorld(-1, 500);
+	}
+
+	@Test
+	public final void addShip_NormalCase() {
+		Ship ship = new Ship(new Vector2D(100, 100), 0, 20, new Vector2D(0, 0));
+		world.addShip(ship);
+		assertTrue(world.hasAsShip(ship));
+		assertSame(world, ship.getWorld());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void addShip_OutsideWorld() {
+		world.addShip(new Ship(new Vector2D(5, 100), 0, 20, new Vector2D(0, 0)));
+	}
+
+	@Test
+	public final void removeShip_NormalCase() {
+		Ship ship1 = new Ship(new Vector2D(100, 100), 0, 20, new Vector2D(0, 0));
+		Ship ship2 = new Ship(new Vector2D(300, 100), 0, 20, new Vector2D(0, 0));
+		world.addShip(ship1);
+		world.addShip(ship2);
+		world.removeShip(ship1);
+		assertFalse(world.hasAsShip(ship1));
+		assertNull(ship1.getWorld());
+		assertEquals(Arrays.asList((Element) ship2), world.getElements());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void evolve_NegativeTime() {
+		world.evolve(-1, null);
+	}
+
+	@Test
+	public final void evolve_NoCollisions() {
+		Ship ship = new Ship(new Vector2D(100, 100), 0, 20, new Vector2D(10, 5));
+		world.addShip(ship);
+		world.evolve(2, countingListener);
+		assertEquals(120, ship.getPosition().getXComponent(), EPSILON);
+		assertEquals(110, ship.getPosition().getYComponent(), EPSILON);
+		assertEquals(0, nbBoundaryCollisions);
+	}
+
+	@Test
+	public final void evolve_BoundaryBounce() {
+		Asteroid asteroid = new Asteroid(new Vector2D(950, 100), 20, new Vector2D(20, 0));
+		world.addAsteroid(asteroid);
+		world.evolve(2, countingListener);
+		assertEquals(1, nbBoundaryCollisions);
+		assertEquals(-20, asteroid.getVelocity().getXComponent(), EPSILON);
+		assertEquals(970, asteroid.getPosition().getXComponent(), EPSILON);
+	}
+
+	@Test
+	public final void evolve_ManyBouncesInOneStep() {
+		GameWorld small = new GameWorld(100, 100);
+		Asteroid asteroid = new Asteroid(new Vector2D(50, 50), 10, new Vector2D(1000, 0));
+		small.addAsteroid(asteroid);
+		small.evolve(0.9, countingListener);
+		assertEquals(11, nbBoundaryCollisions);
+		assertEquals(30, asteroid.getPosition().getXComponent(), 1E-6);
+		assertEquals(-1000, asteroid.getVelocity().getXComponent(), EPSILON);
+	}
+
+	@Test
+	public final void evolve_BounceAfterMove() {
+		Asteroid asteroid = new Asteroid(new Vector2D(100, 100), 20, new Vector2D(20, 0));
+		world.addAsteroid(asteroid);
+		world.evolve(1, countingListener);
+		asteroid.move(42.5);
+		world.evolve(2, countingListener);
+		assertEquals(1, nbBoundaryCollisions);
+		assertEquals(950, asteroid.getPosition().getXComponent(), EPSILON);
+	}
+
+	@Test
+	public final void evolve_StaysWithinBoundaries() {
+		Random random = new Random(7);
+		for (int i = 0; i < 200; i++)
+			world.addAsteroid(new Asteroid(new Vector2D(10 + 980 * random.nextDouble(), 10 + 480 * random.nextDouble()),
+					5, new Vector2D(400 * random.nextDouble() - 200, 400 * random.nextDouble() - 200), random));
+		for (int tick = 0; tick < 60; tick++)
+			world.evolve(1 / 30., null);
+		for (Asteroid asteroid : world.getAsteroids()){
+			assertTrue(asteroid.getPosition().getXComponent() >= 5 - 1E-6);
+			assertTrue(asteroid.getPosition().getXComponent() <= 995 + 1E-6);
+			assertTrue(asteroid.getPosition().getYComponent() >= 5 - 1E-6);
+			assertTrue(asteroid.getPosition().getYComponent() <= 495 + 1E-6);
+		}
+	}
+
+	@Test
+	public final void evolve_BatchListener() {
+		final CollisionBatch copy = new CollisionBatch();
+		final int[] nbBatches = new int[1];
+		CollisionBatchListener batchListener = new CollisionBatchListener() {
+			public void boundaryCollision(Object entity, double x, double y) {
+				fail();
+			}
+
+			public void objectCollision(Object entity1, Object entity2, double x, double y) {
+				fail();
+			}
+
+			public void collisions(CollisionBatch batch) {
+				nbBatches[0]++;
+				for (int i = 0; i < batch.getSize(); i++)
+					copy.addObjectCollision(batch.getFirst(i), batch.getFirstType(i), batch.getSecond(i),
+							batch.getSecondType(i), batch.getX(i), batch.getY(i), batch.getTime(i));
+			}
+		};
+		Asteroid asteroid = new Asteroid(new Vector2D(950, 100), 20, new Vector2D(20, 0));
+		world.addAsteroid(asteroid);
+		Ship source = new Ship(new Vector2D(100, 400), 0, 10, new Vector2D(0, 0));
+		world.addAsteroid(new Asteroid(new Vector2D(500, 250), 20, new Vector2D(0, 0)));
+		world.addBullet(new Bullet(new Vector2D(400, 250), new Vector2D(100, 0), source));
+		world.evolve(2, batchListener);
+		assertEquals(1, nbBatches[0]);
+		assertEquals(2, copy.getSize());
+		assertTrue(copy.involvesOnce(0, CollisionBatch.BULLET));
+		assertTrue(copy.involvesOnce(0, CollisionBatch.ASTEROID));
+		assertEquals(0.77, copy.getTime(0), EPSILON);
+		assertEquals(480, copy.getX(0), EPSILON);
+		assertTrue(copy.isBoundaryCollision(1));
+		assertSame(asteroid, copy.getFirst(1));
+		assertEquals(CollisionBatch.ASTEROID, copy.getFirstType(1));
+		assertEquals(1.5, copy.getTime(1), EPSILON);
+		assertEquals(1000, copy.getX(1), EPSILON);
+		world.evolve(1, batchListener);
+		assertEquals(2, nbBatches[0]);
+		assertEquals(2, copy.getSize());
+	}
+
+	@Test
+	public final void evolve_BulletDiesAtSecondBoundary() {
+		Ship source = new Ship(new Vector2D(500, 250), 0, 10, new Vector2D(0, 0));
+		Bullet bullet = new Bullet(new Vector2D(20, 250), new Vector2D(-250, 0), source);
+		world.addBullet(bullet);
+		world.evolve(1, null);
+		assertEquals(1, bullet.getNbBounces());
+		world.evolve(4, null);
+		assertTrue(bullet.isTerminated());
+		assertTrue(world.getBullets().isEmpty());
+	}
+
+	@Test
+	public final void evolve_ElasticBounceConservesMomentum() {
+		Asteroid asteroid1 = new Asteroid(new Vector2D(100, 250), 20, new Vector2D(30, 0));
+		Asteroid asteroid2 = new Asteroid(new Vector2D(300, 250), 40, new Vector2D(-10, 0));
+		world.addAsteroid(asteroid1);
+		world.addAsteroid(asteroid2);
+		double momentumBefore = asteroid1.getMass() * 30 + asteroid2.getMass() * -10;
+		world.evolve(5, countingListener);
+		assertEquals(1, nbObjectCollisions);
+		double momentumAfter = asteroid1.getMass() * asteroid1.getVelocity().getXComponent()
+				+ asteroid2.getMass() * asteroid2.getVelocity().getXComponent();
+		assertEquals(1, momentumAfter / momentumBefore, EPSILON);
+		assertTrue(asteroid1.getVelocity().getXComponent() < 0);
+	}
+
+	@Test
+	public final void evolve_ShipHitByAsteroid() {
+		Ship ship = new Ship(new Vector2D(100, 250), 0, 20, new Vector2D(0, 0));
+		Asteroid asteroid = new Asteroid(new Vector2D(300, 250), 40, new Vector2D(-100, 0));
+		world.addShip(ship);
+		world.addAsteroid(asteroid);
+		world.evolve(2, countingListener);
+		assertTrue(ship.isTerminated());
+		assertFalse(asteroid.isTerminated());
+		assertEquals(1, nbObjectCollisions);
+	}
+
+	@Test
+	public final void evolve_BulletHitsAsteroidNotSource() {
+		Ship ship = new Ship(new Vector2D(100, 250), 0, 20, new Vector2D(0, 0));
+		Asteroid asteroid = new Asteroid(new Vector2D(600, 250), 40, new Vector2D(0, 0));
+		world.addShip(ship);
+		world.addAsteroid(asteroid);
+		Bullet bullet = ship.fireBullet();
+		assertSame(world, bullet.getWorld());
+		world.evolve(3, countingListener);
+		assertTrue(bullet.isTerminated());
+		assertTrue(asteroid.isTerminated());
+		assertFalse(ship.isTerminated());
+	}
+
+	@Test
+	public final void evolve_BulletSplitsAsteroid() {
+		Ship ship = new Ship(new Vector2D(100, 250), 0, 20, new Vector2D(0, 0));
+		Asteroid asteroid = new Asteroid(new Vector2D(500, 250), 40, new Vector2D(10, 5), new Random(1));
+		Bullet bullet = new Bullet(new Vector2D(300, 250), new Vector2D(250, 0), ship);
+		world.addAsteroid(asteroid);
+		world.addBullet(bullet);
+		double momentumX = asteroid.getMass() * 10 + bullet.getMass() * 250;
+		double momentumY = asteroid.getMass() * 5;
+		world.evolve(1, null);
+		assertTrue(asteroid.isTerminated());
+		assertEquals(2, world.getAsteroids().size());
+		double mass = 0, fragmentMomentumX = 0, fragmentMomentumY = 0;
+		for (Asteroid fragment : world.getAsteroids()){
+			assertTrue(fragment.isPooled());
+			assertTrue(fragment.getRadius() < 40);
+			mass += fragment.getMass();
+			fragmentMomentumX += fragment.getMass() * fragment.getVelocity().getXComponent();
+			fragmentMomentumY += fragment.getMass() * fragment.getVelocity().getYComponent();
+		}
+		assertEquals(1, mass / asteroid.getMass(), EPSILON);
+		assertEquals(1, fragmentMomentumX / momentumX, EPSILON);
+		assertEquals(1, fragmentMomentumY / momentumY, EPSILON);
+	}
+
+	@Test
+	public final void evolve_SmallAsteroidDoesNotSplit() {
+		Ship ship = new Ship(new Vector2D(100, 250), 0, 20, new Vector2D(0, 0));
+		world.addAsteroid(new Asteroid(new Vector2D(500, 250), 20, new Vector2D(0, 0)));
+		world.addBullet(new Bullet(new Vector2D(300, 250), new Vector2D(250, 0), ship));
+		world.evolve(1, null);
+		assertTrue(world.getAsteroids().isEmpty());
+	}
+
+	@Test
+	public final void evolve_FragmentsRecycled() {
+		Ship ship = new Ship(new Vector2D(100, 250), 0, 20, new Vector2D(0, 0));
+		world.addAsteroid(new Asteroid(new Vector2D(500, 250), 80, new Vector2D(0, 0), new Random(7)));
+		for (int round = 0; round < 20 && !world.getAsteroids().isEmpty(); round++){
+			for (Asteroid asteroid : new ArrayList<Asteroid>(world.getAsteroids())){
+				Vector2D position = asteroid.getPosition();
+				Vector2D start = new Vector2D(position.getXComponent(), position.getYComponent() - asteroid.getRadius() - 5);
+				if (world.canHaveAsElement(new Bullet(start, new Vector2D(0, 250), ship)))
+					world.addBullet(new Bullet(start, new Vector2D(0, 250), ship));
+			}
+			world.evolve(0.1, null);
+		}
+		FragmentPool pool = world.getFragmentPool();
+		assertTrue(pool.getNbCreated() > 0);
+		assertTrue(pool.getNbRecycled() > 0);
+		for (Asteroid asteroid : world.getAsteroids())
+			assertFalse(asteroid.isTerminated());
+	}
+
+	@Test
+	public final void evolve_WarmPoolSplitsWithoutAllocation() throws IOException, InterruptedException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-XX:TieredStopAtLevel=1", "-XX:+UseG1GC", "-XX:-UseTLAB", "-cp",
+				System.getProperty("java.class.path"), SplitWorkload.class.getName());
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		String output = reader.readLine();
+		assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+		assertEquals(0, process.exitValue());
+		assertEquals("0 0", output);
+	}
+
+	/**
+	 * Prints the number of allocations made by the fragment pool of a world while a chain
+	 * of splits consumes its reserved fragments, followed by the number of fragments it
+	 * created beyond them. Without thread-local allocation buffers, every allocation is
+	 * recorded; the client compiler does not eliminate allocations, and unlike the
+	 * interpreter it keeps the recording itself fast.
+	 */
+	public static class SplitWorkload {
+
+		public static void main(String[] args) throws IOException {
+			GameWorld world = new GameWorld(1000, 500);
+			Ship ship = new Ship(new Vector2D(100, 250), 0, 20, new Vector2D(0, 0));
+			world.addAsteroid(new Asteroid(new Vector2D(500, 250), 80, new Vector2D(0, 0), new Random(7)));
+			FragmentPool pool = world.getFragmentPool();
+			pool.reserve(64);
+			long nbReserved = pool.getNbCreated();
+			Path file = Files.createTempFile("splits", ".jfr");
+			Recording recording = new Recording();
+			recording.enable("jdk.ObjectAllocationOutsideTLAB").withStackTrace();
+			recording.start();
+			for (int round = 0; round < 20 && !world.getAsteroids().isEmpty(); round++){
+				for (Asteroid asteroid : new ArrayList<Asteroid>(world.getAsteroids())){
+					Vector2D start = new Vector2D(asteroid.getX(), asteroid.getY() - asteroid.getRadius() - 5);
+					if (world.canHaveAsElement(new Bullet(start, new Vector2D(0, 250), ship)))
+						world.addBullet(new Bullet(start, new Vector2D(0, 250), ship));
+				}
+				world.evolve(0.1, null);
+			}
+			recording.stop();
+			recording.dump(file);
+			recording.close();
+			int nbPoolAllocations = 0;
+			for (RecordedEvent event : RecordingFile.readAllEvents(file))
+				if (event.getStackTrace() != null)
+					for (RecordedFrame frame : event.getStackTrace().getFrames())
+						if (frame.getMethod().getType().getName().equals(FragmentPool.class.getName())){
+							nbPoolAllocations++;
+							break;
+						}
+			Files.delete(file);
+			System.out.println(pool.getNbRecycled() > 0 ? nbPoolAllocations + " " + (pool.getNbCreated() - nbReserved)
+					: "no splits");
+		}
+	}
+
+	@Test
+	public final void fireBullet_ReclaimsOldestWhenFull() {
+		Ship ship = new Ship(new Vector2D(500, 250), 0, 20, new Vector2D(0, 0));
+		world.addShip(ship);
+		Bullet first = ship.fireBullet();
+		for (int i = 1; i < ship.getBulletCapacity(); i++)
+			ship.fireBullet();
+		assertEquals(ship.getBulletCapacity(), world.getBullets().size());
+		Bullet next = ship.fireBullet();
+		assertSame(first, next);
+		assertFalse(next.isTerminated());
+		assertEquals(ship.getBulletCapacity(), world.getBullets().size());
+	}
+
+	@Test
+	public final void evolve_BulletsExpire() {
+		GameWorld large = new GameWorld(10000, 10000);
+		Ship ship = new Ship(new Vector2D(5000, 5000), 0, 20, new Vector2D(0, 0));
+		large.addShip(ship);
+		large.evolve(1, null);
+		Bullet bullet = ship.fireBullet();
+		large.evolve(Bullet.getMaxLifetime() / 2, null);
+		assertFalse(bullet.isTerminated());
+		large.evolve(Bullet.getMaxLifetime() / 2, null);
+		assertTrue(bullet.isTerminated());
+		assertTrue(large.getBullets().isEmpty());
+		assertEquals(1 + Bullet.getMaxLifetime(), large.getTime(), EPSILON);
+	}
+
+	@Test
+	public final void getBullets_SameView() {
+		Set<Bullet> bullets = world.getBullets();
+		Ship ship = new Ship(new Vector2D(500, 250), 0, 20, new Vector2D(0, 0));
+		world.addShip(ship);
+		Bullet bullet = ship.fireBullet();
+		assertSame(bullets, world.getBullets());
+		assertTrue(bullets.contains(bullet));
+		world.removeBullet(bullet);
+		assertFalse(bullets.contains(bullet));
+	}
+
+	@Test
+	public final void fireBullet_NoAllocation() throws IOException, InterruptedException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-Xint", "-cp", System.getProperty("java.class.path"),
+				FireWorkload.class.getName());
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		String output = reader.readLine();
+		assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+		assertEquals(0, process.exitValue());
+		assertEquals("0", output);
+	}
+
+	/**
+	 * Prints the number of bytes a ship in a world allocates on the main thread
+	 * while firing bullets, once its ring of bullets has been used.
+	 */
+	public static class FireWorkload {
+
+		public static void main(String[] args) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+					.getThreadMXBean();
+			long threadId = Thread.currentThread().getId();
+			GameWorld world = new GameWorld(1000, 500);
+			Ship ship = new Ship(new Vector2D(500, 250), 0, 20, new Vector2D(0, 0));
+			world.addShip(ship);
+			int count = fire(ship, 1000);
+			threads.getThreadAllocatedBytes(threadId);
+			long before = threads.getThreadAllocatedBytes(threadId);
+			count += fire(ship, 10000);
+			long after = threads.getThreadAllocatedBytes(threadId);
+			System.out.println(count >= 0 ? after - before : -1);
+		}
+
+		private static int fire(Ship ship, int nbShots) {
+			int count = 0;
+			for (int i = 0; i < nbShots; i++)
+				if (!ship.fireBullet().isTerminated())
+					count++;
+			return count;
+		}
+	}
+
+	@Test
+	public final void evolve_ThrusterAccelerates() {
+		Ship ship = new Ship(new Vector2D(100, 250), 0, 20, new Vector2D(0, 0), 300000, 1.1E18);
+		world.addShip(ship);
+		ship.setThrusterActive(true);
+		world.evolve(0.5, null);
+		assertEquals(0.5, ship.getVelocity().getXComponent(), EPSILON);
+	}
+
+	@Test
+	public final void findCandidatePairs_MatchesBruteForce() {
+		Random random = new Random(42);
+		List<Element> elements = new ArrayList<Element>();
+		for (int i = 0; i < 300; i++)
+			elements.add(new Asteroid(new Vector2D(random.nextDouble() * 1000, random.nextDouble() * 1000),
+					1 + random.nextDouble() * 30, new Vector2D(random.nextGaussian() * 50, random.nextGaussian() * 50)));
+		UniformGrid grid = new UniformGrid();
+		int nbPairs = grid.findCandidatePairs(elements, 0.5);
+		Set<Long> found = new HashSet<Long>();
+		for (int pair = 0; pair < nbPairs; pair++) {
+			int i = Math.min(grid.getFirst(pair), grid.getSecond(pair));
+			int j = Math.max(grid.getFirst(pair), grid.getSecond(pair));
+			found.add((long) i * elements.size() + j);
+		}
+		for (int i = 0; i < elements.size(); i++)
+			for (int j = i + 1; j < elements.size(); j++)
+				if (elements.get(i).getTimeToCollision(elements.get(j)) <= 0.5)
+					assertTrue(found.contains((long) i * elements.size() + j));
+	}
+
+	@Test
+	public final void findCandidatePairs_ToroidalMatchesBruteForce() {
+		Random random = new Random(42);
+		GameWorld torus = new GameWorld(1000, 1000, true);
+		for (int i = 0; i < 300; i++)
+			torus.addAsteroid(new Asteroid(new Vector2D(random.nextDouble() * 1000, random.nextDouble() * 1000),
+					1 + random.nextDouble() * 30, new Vector2D(random.nextGaussian() * 50, random.nextGaussian() * 50)));
+		List<Element> elements = torus.getElements();
+		UniformGrid grid = new UniformGrid(1000, 1000);
+		int nbPairs = grid.findCandidatePairs(elements, 0.5);
+		Set<Long> found = new HashSet<Long>();
+		for (int pair = 0; pair < nbPairs; pair++) {
+			int i = Math.min(grid.getFirst(pair), grid.getSecond(pair));
+			int j = Math.max(grid.getFirst(pair), grid.getSecond(pair));
+			found.add((long) i * elements.size() + j);
+		}
+		int nbAcrossSeams = 0;
+		for (int i = 0; i < elements.size(); i++)
+			for (int j = i + 1; j < elements.size(); j++)
+				if (elements.get(i).getTimeToCollision(elements.get(j)) <= 0.5){
+					assertTrue(found.contains((long) i * elements.size() + j));
+					double dx = elements.get(j).getPosition().getXComponent() - elements.get(i).getPosition().getXComponent();
+					double dy = elements.get(j).getPosition().getYComponent() - elements.get(i).getPosition().getYComponent();
+					if (Math.abs(dx) > 500 || Math.abs(dy) > 500)
+						nbAcrossSeams++;
+				}
+		assertTrue(nbAcrossSeams > 0);
+	}
+
+	@Test
+	public final void findCandidatePairs_LargeElementsOnceEach() {
+		Random random = new Random(7);
+		List<Element> elements = createSpreadOfRadii(random, 2000);
+		UniformGrid grid = new UniformGrid();
+		int nbPairs = grid.findCandidatePairs(elements, 0.5);
+		Set<Long> found = new HashSet<Long>();
+		for (int pair = 0; pair < nbPairs; pair++) {
+			int i = Math.min(grid.getFirst(pair), grid.getSecond(pair));
+			int j = Math.max(grid.getFirst(pair), grid.getSecond(pair));
+			assertTrue(found.add((long) i * elements.size() + j));
+		}
+		for (int i = 0; i < elements.size(); i++)
+			for (int j = i + 1; j < elements.size(); j++)
+				if (elements.get(i).getTimeToCollision(elements.get(j)) <= 0.5)
+					assertTrue(found.contains((long) i * elements.size() + j));
+	}
+
+	@Test
+	public final void findCandidatePairs_ComparisonsScale() {
+		UniformGrid grid = new UniformGrid();
+		grid.findCandidatePairs(createSpreadOfRadii(new Random(1), 2000), 0.5);
+		double small = (double) grid.getNbComparisons() / 2000;
+		grid.findCandidatePairs(createSpreadOfRadii(new Random(1), 8000), 0.5);
+		double large = (double) grid.getNbComparisons() / 8000;
+		// At the same density, the comparisons per element do not grow with the number of elements.
+		assertTrue(large < 1.5 * small);
+	}
+
+	/**
+	 * Return the given number of asteroids spread over a square whose area grows with
+	 * that number, most of them small and one in a hundred a hundred times as large.
+	 */
+	private static List<Element> createSpreadOfRadii(Random random, int nbAsteroids) {
+		double side = Math.sqrt(nbAsteroids) * 100;
+		List<Element> elements = new ArrayList<Element>();
+		for (int i = 0; i < nbAsteroids; i++){
+			double radius = (i % 100 == 0) ? 200 + random.nextDouble() * 200 : 2 + random.nextDouble() * 4;
+			elements.add(new Asteroid(new Vector2D(random.nextDouble() * side, random.nextDouble() * side),
+					radius, new Vector2D(random.nextGaussian() * 50, random.nextGaussian() * 50)));
+		}
+		return elements;
+	}
+
+	@Test
+	public final void addAsteroid_ToroidalWrapsPosition() {
+		GameWorld torus = new GameWorld(1000, 500, true);
+		Asteroid asteroid = new Asteroid(new Vector2D(-10, 600), 20, new Vector2D(0, 0));
+		torus.addAsteroid(asteroid);
+		assertEquals(990, asteroid.getPosition().getXComponent(), EPSILON);
+		assertEquals(100, asteroid.getPosition().getYComponent(), EPSILON);
+	}
+
+	@Test
+	public final void evolve_ToroidalWraps() {
+		GameWorld torus = new GameWorld(1000, 500, true);
+		Asteroid asteroid = new Asteroid(new Vector2D(990, 490), 5, new Vector2D(20, 20));
+		torus.addAsteroid(asteroid);
+		torus.evolve(1, countingListener);
+		assertEquals(0, nbBoundaryCollisions);
+		assertEquals(10, asteroid.getPosition().getXComponent(), EPSILON);
+		assertEquals(10, asteroid.getPosition().getYComponent(), EPSILON);
+		assertEquals(20, asteroid.getVelocity().getXComponent(), EPSILON);
+	}
+
+	@Test
+	public final void evolve_ToroidalCollisionAcrossSeam() {
+		GameWorld torus = new GameWorld(1000, 500, true);
+		Asteroid left = new Asteroid(new Vector2D(10, 250), 5, new Vector2D(-10, 0));
+		Asteroid right = new Asteroid(new Vector2D(990, 250), 5, new Vector2D(10, 0));
+		torus.addAsteroid(left);
+		torus.addAsteroid(right);
+		assertEquals(10, left.getDistanceBetween(right), EPSILON);
+		assertEquals(0.5, left.getTimeToCollision(right), EPSILON);
+		torus.evolve(1, countingListener);
+		assertEquals(1, nbObjectCollisions);
+		assertEquals(10, left.getVelocity().getXComponent(), EPSILON);
+		assertEquals(-10, right.getVelocity().getXComponent(), EPSILON);
+		assertEquals(10, left.getPosition().getXComponent(), EPSILON);
+		assertEquals(990, right.getPosition().getXComponent(), EPSILON);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void constructor_EmptyToroidal() {
+		new GameWorld(0, 500, true);
+	}
+
+	@Test
+	public final void evolve_RestingElementsFallAsleep() {
+		Asteroid asteroid1 = new Asteroid(new Vector2D(100, 100), 20, new Vector2D(0, 0));
+		Asteroid asteroid2 = new Asteroid(new Vector2D(150, 100), 20, new Vector2D(0, 0));
+		Asteroid drifting = new Asteroid(new Vector2D(800, 400), 20, new Vector2D(1E-3, 0));
+		world.addAsteroid(asteroid1);
+		world.addAsteroid(asteroid2);
+		world.addAsteroid(drifting);
+		assertFalse(asteroid1.isAsleep());
+		world.evolve(0.1, null);
+		assertTrue(asteroid1.isAsleep());
+		assertTrue(asteroid2.isAsleep());
+		assertFalse(drifting.isAsleep());
+		assertEquals(2, world.getNbSleeping());
+		world.removeAsteroid(asteroid2);
+		assertFalse(asteroid2.isAsleep());
+		assertEquals(1, world.getNbSleeping());
+	}
+
+	@Test
+	public final void evolve_CollisionWakesSleeper() {
+		Asteroid sleeper = new Asteroid(new Vector2D(500, 250), 20, new Vector2D(0, 0));
+		world.addAsteroid(sleeper);
+		world.evolve(0.1, null);
+		assertTrue(sleeper.isAsleep());
+		Asteroid mover = new Asteroid(new Vector2D(400, 250), 20, new Vector2D(100, 0));
+		world.addAsteroid(mover);
+		world.evolve(1, countingListener);
+		assertEquals(1, nbObjectCollisions);
+		assertFalse(sleeper.isAsleep());
+		assertFalse(mover.isAsleep());
+		assertEquals(100, sleeper.getVelocity().getXComponent(), EPSILON);
+		assertEquals(540, sleeper.getPosition().getXComponent(), EPSILON);
+		world.evolve(1, countingListener);
+		assertTrue(mover.isAsleep());
+		assertEquals(1, world.getNbSleeping());
+	}
+
+	@Test
+	public final void evolve_ThrustWakesSleeper() {
+		Ship ship = new Ship(new Vector2D(500, 250), 0, 20, new Vector2D(0, 0));
+		world.addShip(ship);
+		world.evolve(0.1, null);
+		assertTrue(ship.isAsleep());
+		ship.setThrusterActive(true);
+		world.evolve(0.1, null);
+		assertFalse(ship.isAsleep());
+		assertTrue(ship.getVelocity().getXComponent() > 0);
+		world.evolve(0.1, null);
+		assertTrue(ship.getPosition().getXComponent() > 500);
+	}
+
+	@Test
+	public final void evolve_SubstepsFollowSpeedAndRadius() {
+		Asteroid target = new Asteroid(new Vector2D(600, 250), 10, new Vector2D(0, 0));
+		world.addAsteroid(target);
+		world.evolve(1, countingListener);
+		assertEquals(1, world.getNbSubsteps());
+		world.addAsteroid(new Asteroid(new Vector2D(100, 250), 10, new Vector2D(1000, 0)));
+		world.evolve(1, countingListener);
+		assertEquals(50, world.getNbSubsteps());
+		assertEquals(1, nbObjectCollisions);
+		assertEquals(1, nbBoundaryCollisions);
+		assertEquals(860, target.getPosition().getXComponent(), 1E-6);
+		assertEquals(2, world.getTime(), 0);
+	}
+
+	@Test
+	public final void evolve_SubstepsBounded() {
+		world.addAsteroid(new Asteroid(new Vector2D(500, 250), 10, new Vector2D(300000, 0)));
+		world.evolve(1, null);
+		assertEquals(64, world.getNbSubsteps());
+	}
+
+	@Test
+	public final void evolve_ManyCollisionsNoOverlap() {
+		GameWorld crowded = new GameWorld(1000, 1000);
+		Random random = new Random(11);
+		for (int i = 0; i < 20; i++)
+			for (int j = 0; j < 20; j++)
+				crowded.addAsteroid(new Asteroid(new Vector2D(50 * i + 25, 50 * j + 25), 10 + random.nextDouble() * 10,
+						new Vector2D(random.nextGaussian() * 300, random.nextGaussian() * 300)));
+		final int[] nbCollisions = new int[1];
+		for (int tick = 0; tick < 20; tick++)
+			crowded.evolve(0.05, new CollisionBatchListener() {
+				public void boundaryCollision(Object entity, double x, double y) {
+				}
+
+				public void objectCollision(Object entity1, Object entity2, double x, double y) {
+				}
+
+				public void collisions(CollisionBatch batch) {
+					nbCollisions[0] += batch.getSize();
+				}
+			});
+		assertTrue(nbCollisions[0] > 400);
+		crowded.verifyInvariants();
+		List<Element> elements = crowded.getElements();
+		for (int i = 0; i < elements.size(); i++){
+			Element element = elements.get(i);
+			for (int j = i + 1; j < elements.size(); j++){
+				Element other = elements.get(j);
+				double distance = element.getPosition().subtract(other.getPosition()).getNorm();
+				assertTrue(distance > 0.99 * (element.getRadius() + other.getRadius()));
+			}
+		}
+	}
+
+	@Test
+	public final void evolve_VerifyingToroidal() {
+		GameWorld torus = new GameWorld(1000, 500, true);
+		torus.setVerifying(true);
+		Random random = new Random(5);
+		for (int i = 0; i < 50; i++)
+			torus.addAsteroid(new Asteroid(new Vector2D(20 * i + 10, random.nextDouble() * 480 + 10), 5,
+					new Vector2D(random.nextGaussian() * 200, random.nextGaussian() * 200)));
+		for (int tick = 0; tick < 100; tick++)
+			torus.evolve(0.05, null);
+		assertTrue(torus.isVerifying());
+		torus.verifyInvariants();
+	}
+
+	@Test
+	public final void evolve_BudgetExhaustedStaysInside() {
+		world.setVerifying(true);
+		Asteroid asteroid = new Asteroid(new Vector2D(500, 250), 10, new Vector2D(290000, 1000));
+		world.addAsteroid(asteroid);
+		world.evolve(Double.MAX_VALUE, null);
+		double x = asteroid.getPosition().getXComponent();
+		double y = asteroid.getPosition().getYComponent();
+		assertTrue(10 <= x && x <= world.getWidth() - 10);
+		assertTrue(10 <= y && y <= world.getHeigth() - 10);
+		assertEquals(Math.hypot(290000, 1000), asteroid.getVelocity().getNorm(), EPSILON);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public final void verifyInvariants_CentreOutside() {
+		Asteroid asteroid = new Asteroid(new Vector2D(500, 250), 10, new Vector2D(1000, 0));
+		world.addAsteroid(asteroid);
+		asteroid.move(10);
+		world.verifyInvariants();
+	}
+
+	@Test
+	public final void evolve_NotVerifying() {
+		world.setVerifying(false);
+		world.addAsteroid(new Asteroid(new Vector2D(500, 250), 10, new Vector2D(300000, 0)));
+		world.evolve(Double.MAX_VALUE, null);
+		assertFalse(world.isVerifying());
+	}
+}
@@ -0,0 +1,166 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.util.concurrent.*;
+import asteroids.MatchHost;
+import asteroids.model.*;
+
+public class MatchHostTest {
+
+	private Facade facade;
+
+	private List<Runnable> workers;
+
+	private MatchHost<GameWorld, Ship, Asteroid, Bullet> host;
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable host references a new host with two workers and room for
+	 * 			two matches, whose workers are collected in workers instead of being
+	 * 			started, so that matches can be submitted before any of them runs.
+	 */
+	@Before
+	public void setUpMutableFixture() {
+		facade = new Facade();
+		workers = new ArrayList<Runnable>();
+		host = new MatchHost<GameWorld, Ship, Asteroid, Bullet>(facade, new Executor() {
+			public void execute(Runnable command) {
+				workers.add(command);
+			}
+		}, 2, 2);
+	}
+
+	private void startWorkers() {
+		for (Runnable worker : workers){
+			Thread thread = new Thread(worker);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	private GameWorld createWorld(long seed) {
+		GameWorld world = facade.createWorld(1000, 1000);
+		Random random = new Random(seed);
+		for (int i = 0; i < 20; i++)
+			facade.addAsteroid(world, new Asteroid(new Vector2D(100 + 40 * i, 100 + 800 * random.nextDouble()), 10,
+					new Vector2D(100 * random.nextDouble() - 50, 100 * random.nextDouble() - 50)));
+		return world;
+	}
+
+	@Test
+	public final void submit_RunsAllMatches() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		MatchHost<GameWorld, Ship, Asteroid, Bullet> pooled = new MatchHost<GameWorld, Ship, Asteroid, Bullet>(facade, executor, 3, 4);
+		List<MatchHost<GameWorld, Ship, Asteroid, Bullet>.Match> matches = new ArrayList<MatchHost<GameWorld, Ship, Asteroid, Bullet>.Match>();
+		for (int i = 0; i < 20; i++)
+			matches.add(pooled.submit(createWorld(i), 30, null));
+		pooled.shutdown();
+		assertTrue(pooled.awaitTermination(30, TimeUnit.SECONDS));
+		executor.shutdown();
+		for (MatchHost<GameWorld, Ship, Asteroid, Bullet>.Match match : matches){
+			assertTrue(match.isDone());
+			assertNull(match.getFailure());
+			assertEquals(30, match.getTicks());
+			assertEquals(1, match.getWorld().getTime(), 1E-9);
+		}
+		assertEquals(20, pooled.getCompletedMatches());
+		assertEquals(600, pooled.getTotalTicks());
+		assertEquals(600, pooled.getCompletedTickTimes().getTotalCount());
+		assertEquals(0, pooled.getNbActiveMatches());
+	}
+
+	@Test
+	public final void submit_RoundRobin() throws Exception {
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		workers.clear();
+		MatchHost<GameWorld, Ship, Asteroid, Bullet> single = new MatchHost<GameWorld, Ship, Asteroid, Bullet>(facade, new Executor() {
+			public void execute(Runnable command) {
+				workers.add(command);
+			}
+		}, 1, 2);
+		single.setTicksPerSlice(1);
+		for (final String name : new String[] { "a", "b" })
+			single.submit(createWorld(0), 3, new MatchHost.TickHook<GameWorld>() {
+				public boolean beforeTick(GameWorld world, long tick) {
+					order.add(name + tick);
+					return true;
+				}
+			});
+		startWorkers();
+		single.shutdown();
+		assertTrue(single.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("a0", "b0", "a1", "b1", "a2", "b2"), order);
+	}
+
+	@Test
+	public final void trySubmit_BackPressure() throws Exception {
+		assertNotNull(host.trySubmit(createWorld(0), 10, null, null, 0, TimeUnit.MILLISECONDS));
+		assertNotNull(host.trySubmit(createWorld(1), 10, null, null, 0, TimeUnit.MILLISECONDS));
+		assertNull(host.trySubmit(createWorld(2), 10, null, null, 10, TimeUnit.MILLISECONDS));
+		startWorkers();
+		assertNotNull(host.trySubmit(createWorld(2), 10, null, null, 10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public final void submit_HookEndsMatch() throws Exception {
+		MatchHost<GameWorld, Ship, Asteroid, Bullet>.Match match = host.submit(createWorld(0), 100, new MatchHost.TickHook<GameWorld>() {
+			public boolean beforeTick(GameWorld world, long tick) {
+				return tick < 5;
+			}
+		});
+		startWorkers();
+		assertTrue(match.await(10, TimeUnit.SECONDS));
+		assertEquals(5, match.getTicks());
+	}
+
+	@Test
+	public final void submit_DeadlineMisses() throws Exception {
+		host.setTickDeadline(-1);
+		MatchHost<GameWorld, Ship, Asteroid, Bullet>.Match match = host.submit(createWorld(0), 12, null);
+		startWorkers();
+		assertTrue(match.await(10, TimeUnit.SECONDS));
+		assertEquals(12, match.getDeadlineMisses());
+		assertEquals(12, host.getTotalDeadlineMisses());
+	}
+
+	@Test
+	public final void submit_FailureEndsMatch() throws Exception {
+		MatchHost<GameWorld, Ship, Asteroid, Bullet>.Match match = host.submit(createWorld(0), 100, new MatchHost.TickHook<GameWorld>() {
+			public boolean beforeTick(GameWorld world, long tick) {
+				throw new IllegalStateException("bot crashed");
+			}
+		});
+		MatchHost<GameWorld, Ship, Asteroid, Bullet>.Match other = host.submit(createWorld(1), 10, null);
+		startWorkers();
+		assertTrue(match.await(10, TimeUnit.SECONDS));
+		assertTrue(match.getFailure() instanceof IllegalStateException);
+		assertTrue(other.await(10, TimeUnit.SECONDS));
+		assertEquals(10, other.getTicks());
+	}
+
+	@Test
+	public final void submit_ErrorEndsMatch() throws Exception {
+		MatchHost<GameWorld, Ship, Asteroid, Bullet>.Match match = host.submit(createWorld(0), 100, new MatchHost.TickHook<GameWorld>() {
+			public boolean beforeTick(GameWorld world, long tick) {
+				throw new AssertionError("bot crashed");
+			}
+		});
+		MatchHost<GameWorld, Ship, Asteroid, Bullet>.Match other = host.submit(createWorld(1), 10, null);
+		startWorkers();
+		assertTrue(match.await(10, TimeUnit.SECONDS));
+		assertTrue(match.getFailure() instanceof AssertionError);
+		assertTrue(other.await(10, TimeUnit.SECONDS));
+		host.shutdown();
+		assertTrue(host.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(2, host.getCompletedMatches());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public final void submit_AfterShutdown() throws Exception {
+		host.shutdown();
+		host.submit(createWorld(0), 10, null);
+	}
+}
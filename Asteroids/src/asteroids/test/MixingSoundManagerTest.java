@@ -0,0 +1,153 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import asteroids.MixingSoundManager;
+
+public class MixingSoundManagerTest {
+
+	private MixingSoundManager mixer;
+
+	private MixingSoundManager.ByteArraySink sink;
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable mixer references a new mixer with two voices and buffers
+	 * 			of four frames, writing into the byte array sink referenced by sink.
+	 * 			It knows the sound "short", two frames of (1000,-1000), and the sound
+	 * 			"long", ten frames of (2000,2000).
+	 */
+	@Before
+	public void setUpMutableFixture() {
+		Map<String, short[]> sounds = new LinkedHashMap<String, short[]>();
+		sounds.put("short", new short[] {1000, -1000, 1000, -1000});
+		short[] longSound = new short[20];
+		Arrays.fill(longSound, (short) 2000);
+		sounds.put("long", longSound);
+		sink = new MixingSoundManager.ByteArraySink();
+		mixer = new MixingSoundManager(sounds, sink, 2, 4);
+	}
+
+	private short[] mixOneBuffer() {
+		sink.reset();
+		mixer.mixBuffer();
+		byte[] bytes = sink.toByteArray();
+		short[] samples = new short[bytes.length / 2];
+		for (int i = 0; i < samples.length; i++)
+			samples[i] = (short) ((bytes[2 * i] & 0xFF) | (bytes[2 * i + 1] << 8));
+		return samples;
+	}
+
+	@Test
+	public final void mixBuffer_Silence() {
+		assertArrayEquals(new short[8], mixOneBuffer());
+		assertEquals(0, mixer.getActiveVoiceCount());
+	}
+
+	@Test
+	public final void mixBuffer_SingleVoiceEndsWithinBuffer() {
+		mixer.play("short");
+		assertArrayEquals(new short[] {1000, -1000, 1000, -1000, 0, 0, 0, 0}, mixOneBuffer());
+		assertArrayEquals(new short[8], mixOneBuffer());
+		assertEquals(0, mixer.getActiveVoiceCount());
+	}
+
+	@Test
+	public final void mixBuffer_TwoVoicesAreSummed() {
+		mixer.play("short");
+		mixer.play("long");
+		assertArrayEquals(new short[] {3000, 1000, 3000, 1000, 2000, 2000, 2000, 2000}, mixOneBuffer());
+		assertEquals(2, mixer.getActiveVoiceCount());
+	}
+
+	@Test
+	public final void mixBuffer_Gain() {
+		mixer.setGain("long", 0.5f);
+		mixer.play("long");
+		assertArrayEquals(new short[] {1000, 1000, 1000, 1000, 1000, 1000, 1000, 1000}, mixOneBuffer());
+	}
+
+	@Test
+	public final void mixBuffer_Clipping() {
+		MixingSoundManager.ByteArraySink loudSink = new MixingSoundManager.ByteArraySink();
+		Map<String, short[]> sounds = new HashMap<String, short[]>();
+		sounds.put("loud", new short[] {10000, 10000, 10000, 10000});
+		MixingSoundManager loud = new MixingSoundManager(sounds, loudSink, 1, 2);
+		loud.setGain("loud", 20);
+		loud.play("loud");
+		loud.mixBuffer();
+		byte[] bytes = loudSink.toByteArray();
+		for (int i = 0; i < bytes.length; i += 2)
+			assertEquals(Short.MAX_VALUE, (short) ((bytes[i] & 0xFF) | (bytes[i + 1] << 8)));
+	}
+
+	@Test
+	public final void mixBuffer_GainClamped() {
+		mixer.setGain("long", 20);
+		mixer.play("long");
+		short[] samples = mixOneBuffer();
+		for (short sample : samples)
+			assertEquals(2000 * MixingSoundManager.MAX_GAIN, sample, 0);
+	}
+
+	@Test
+	public final void mixBuffer_InfiniteGainClipsFullScale() {
+		MixingSoundManager.ByteArraySink loudSink = new MixingSoundManager.ByteArraySink();
+		Map<String, short[]> sounds = new HashMap<String, short[]>();
+		sounds.put("loud", new short[] {Short.MAX_VALUE, Short.MIN_VALUE});
+		MixingSoundManager loud = new MixingSoundManager(sounds, loudSink, 1, 1);
+		loud.setGain("loud", Float.POSITIVE_INFINITY);
+		loud.play("loud");
+		loud.mixBuffer();
+		byte[] bytes = loudSink.toByteArray();
+		assertEquals(Short.MAX_VALUE, (short) ((bytes[0] & 0xFF) | (bytes[1] << 8)));
+		assertEquals(Short.MIN_VALUE, (short) ((bytes[2] & 0xFF) | (bytes[3] << 8)));
+	}
+
+	@Test
+	public final void constructor_QueueSettings() {
+		MixingSoundManager configured = new MixingSoundManager(new HashMap<String, short[]>(), sink, 1, 1, 8, 0);
+		assertEquals(8, configured.getRequests().getCapacity());
+		assertEquals(0, configured.getRequests().getCoalesceWindowNanos());
+	}
+
+	@Test
+	public final void mixBuffer_LoopWraps() {
+		mixer.loop("short");
+		assertArrayEquals(new short[] {1000, -1000, 1000, -1000, 1000, -1000, 1000, -1000}, mixOneBuffer());
+		assertArrayEquals(new short[] {1000, -1000, 1000, -1000, 1000, -1000, 1000, -1000}, mixOneBuffer());
+		mixer.stop("short");
+		assertArrayEquals(new short[8], mixOneBuffer());
+	}
+
+	@Test
+	public final void mixBuffer_OldestVoiceStolen() throws Exception {
+		MixingSoundManager.ByteArraySink oneVoiceSink = new MixingSoundManager.ByteArraySink();
+		Map<String, short[]> sounds = new HashMap<String, short[]>();
+		sounds.put("a", new short[] {100, 100, 100, 100});
+		sounds.put("b", new short[] {7, 7, 7, 7});
+		MixingSoundManager oneVoice = new MixingSoundManager(sounds, oneVoiceSink, 1, 2);
+		oneVoice.play("a");
+		oneVoice.play("b");
+		oneVoice.mixBuffer();
+		byte[] bytes = oneVoiceSink.toByteArray();
+		assertEquals(7, bytes[0]);
+		assertEquals(1, oneVoice.getActiveVoiceCount());
+	}
+
+	@Test
+	public final void mixBuffer_Statistics() {
+		mixOneBuffer();
+		mixOneBuffer();
+		assertEquals(2, mixer.getBuffersMixed());
+		assertTrue(mixer.getMaxMixNanos() >= mixer.getLastMixNanos());
+		assertTrue(mixer.getAverageMixNanos() >= 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void setGain_UnknownSound() {
+		mixer.setGain("unknown", 1);
+	}
+}
@@ -0,0 +1,125 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.concurrent.atomic.AtomicReference;
+import asteroids.model.*;
+
+public class PersistentWorldTest {
+
+	private GameWorld world;
+
+	private PersistentWorld persistent;
+
+	private Asteroid mover;
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable world references a new world of 10000 by 10000 with 200 resting
+	 * 			asteroids followed by the moving asteroid referenced by mover.
+	 * @post	The variable persistent references a new persistent world of that world.
+	 */
+	@Before
+	public void setUpMutableFixture() {
+		world = new GameWorld(10000, 10000);
+		for (int i = 0; i < 200; i++)
+			world.addAsteroid(new Asteroid(new Vector2D(100 + 200 * (i % 40), 100 + 200 * (i / 40)), 20, new Vector2D(0, 0)));
+		mover = new Asteroid(new Vector2D(5000, 5000), 20, new Vector2D(10, 0));
+		world.addAsteroid(mover);
+		persistent = new PersistentWorld(world);
+	}
+
+	@Test
+	public final void evolve_PublishesState() {
+		WorldVersion version = persistent.evolve(1, null);
+		assertSame(version, persistent.getVersion());
+		assertEquals(1, version.getTick());
+		assertEquals(201, version.getNbElements());
+		int index = world.getElements().indexOf(mover);
+		assertEquals(WorldVersion.ASTEROID, version.getType(index));
+		assertEquals(mover.getIdentifier(), version.getIdentifier(index));
+		assertEquals(5010, version.getX(index), 1E-9);
+		assertEquals(10, version.getXVelocity(index), 0);
+		assertEquals(20, version.getRadius(index), 0);
+	}
+
+	@Test
+	public final void evolve_OldVersionsUnchanged() {
+		WorldVersion first = persistent.getVersion();
+		int index = world.getElements().indexOf(mover);
+		persistent.evolve(1, null);
+		persistent.evolve(1, null);
+		assertEquals(0, first.getTick());
+		assertEquals(5000, first.getX(index), 0);
+	}
+
+	@Test
+	public final void evolve_SharesUnchangedChunks() {
+		WorldVersion first = persistent.evolve(1, null);
+		WorldVersion second = persistent.evolve(1, null);
+		assertEquals(4, second.getNbChunks());
+		assertEquals(3, second.getNbSharedChunks());
+		assertTrue(second.sharesChunk(first, 0));
+		assertFalse(second.sharesChunk(first, 200 / WorldVersion.CHUNK_SIZE));
+	}
+
+	@Test
+	public final void publish_ReusedBulletNewIdentifier() {
+		Ship ship = new Ship(new Vector2D(1000, 1000), 0, 30, new Vector2D(0, 0));
+		world.addShip(ship);
+		Bullet bullet = ship.fireBullet();
+		long identifier = bullet.getIdentifier();
+		WorldVersion first = persistent.publish();
+		int index = world.getElements().indexOf(bullet);
+		assertEquals(WorldVersion.BULLET, first.getType(index));
+		assertEquals(identifier, first.getIdentifier(index));
+		Bullet reused = null;
+		for (int i = 0; i < 100 && reused != bullet; i++)
+			reused = ship.fireBullet();
+		assertSame(bullet, reused);
+		WorldVersion second = persistent.publish();
+		int reusedIndex = world.getElements().indexOf(bullet);
+		assertEquals(bullet.getIdentifier(), second.getIdentifier(reusedIndex));
+		assertFalse(identifier == bullet.getIdentifier());
+		assertEquals(identifier, first.getIdentifier(index));
+	}
+
+	@Test
+	public final void publish_RemovedElement() {
+		world.removeAsteroid(mover);
+		WorldVersion version = persistent.publish();
+		assertEquals(200, version.getNbElements());
+		assertEquals(4, version.getNbChunks());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public final void getX_BeyondElements() {
+		persistent.getVersion().getX(201);
+	}
+
+	@Test
+	public final void getVersion_ConcurrentReader() throws InterruptedException {
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		final int index = world.getElements().indexOf(mover);
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				long lastTick = -1;
+				while (lastTick < 100){
+					WorldVersion version = persistent.getVersion();
+					if (version.getTick() < lastTick)
+						failure.set("Version went back from tick " + lastTick + " to " + version.getTick());
+					if (Math.abs(version.getX(index) - (5000 + version.getTime() * 10)) > 1E-6)
+						failure.set("Position of tick " + version.getTick() + " does not match its time");
+					lastTick = version.getTick();
+				}
+			}
+		});
+		reader.start();
+		for (int tick = 0; tick < 100; tick++)
+			persistent.evolve(0.1, null);
+		reader.join(10000);
+		assertFalse(reader.isAlive());
+		assertNull(failure.get());
+	}
+}
@@ -0,0 +1,110 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.io.StringWriter;
+import asteroids.PhaseTracer;
+import asteroids.TickStatistics.Phase;
+
+public class PhaseTracerTest {
+
+	private PhaseTracer tracer;
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable tracer references a new tracer with room for 8 spans.
+	 */
+	@Before
+	public void setUpMutableFixture() {
+		tracer = new PhaseTracer(8);
+	}
+
+	private static int count(String text, String part) {
+		int count = 0;
+		for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1))
+			count++;
+		return count;
+	}
+
+	private String dump(long windowNanos) throws Exception {
+		StringWriter out = new StringWriter();
+		tracer.writeChromeTrace(out, windowNanos);
+		return out.toString();
+	}
+
+	@Test
+	public final void constructor_RoundsUpCapacity() {
+		assertEquals(8, tracer.getCapacity());
+		assertEquals(16, new PhaseTracer(9).getCapacity());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void constructor_ZeroCapacity() {
+		new PhaseTracer(0);
+	}
+
+	@Test
+	public final void writeChromeTrace_Empty() throws Exception {
+		String json = dump(Long.MAX_VALUE);
+		assertTrue(json.startsWith("{"));
+		assertTrue(json.contains("\"traceEvents\":["));
+		assertEquals(0, count(json, "\"ph\":\"X\""));
+	}
+
+	@Test
+	public final void writeChromeTrace_CompleteEvents() throws Exception {
+		long now = System.nanoTime();
+		tracer.record(Phase.EVOLVE, now - 5000000, now - 2000000);
+		tracer.record(Phase.RENDER, now - 1500000, now - 1000000);
+		String json = dump(Long.MAX_VALUE);
+		assertEquals(2, count(json, "\"ph\":\"X\""));
+		assertTrue(json.contains("\"name\":\"EVOLVE\",\"cat\":\"asteroids\",\"ph\":\"X\",\"pid\":1,\"tid\":"
+				+ Thread.currentThread().getId() + ",\"ts\":0.000,\"dur\":3000.000}"));
+		assertTrue(json.contains("\"ts\":3500.000,\"dur\":500.000}"));
+		assertTrue(json.contains("\"name\":\"thread_name\""));
+	}
+
+	@Test
+	public final void writeChromeTrace_KeepsLastSpans() throws Exception {
+		long now = System.nanoTime();
+		for (int i = 0; i < 20; i++)
+			tracer.record(i < 12 ? Phase.INPUT : Phase.EXPLOSIONS, now - 1000, now);
+		assertEquals(20, tracer.getNbRecorded());
+		String json = dump(Long.MAX_VALUE);
+		assertEquals(8, count(json, "\"ph\":\"X\""));
+		assertEquals(0, count(json, "INPUT"));
+	}
+
+	@Test
+	public final void writeChromeTrace_Window() throws Exception {
+		long now = System.nanoTime();
+		tracer.record(Phase.INPUT, now - 60000000000L, now - 59000000000L);
+		tracer.record(Phase.RENDER, now - 1000, now);
+		String json = dump(1000000000L);
+		assertEquals(1, count(json, "\"ph\":\"X\""));
+		assertTrue(json.contains("RENDER"));
+	}
+
+	@Test
+	public final void record_ConcurrentWriters() throws Exception {
+		final PhaseTracer shared = new PhaseTracer(1 << 12);
+		Thread[] writers = new Thread[4];
+		for (int t = 0; t < writers.length; t++) {
+			writers[t] = new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < 1000; i++) {
+						long start = System.nanoTime();
+						shared.record(Phase.SOUND_DISPATCH, start, start + 10);
+					}
+				}
+			});
+			writers[t].start();
+		}
+		for (Thread writer : writers)
+			writer.join();
+		StringWriter out = new StringWriter();
+		assertEquals(4000, shared.writeChromeTrace(out, Long.MAX_VALUE));
+		assertEquals(4000, count(out.toString(), "\"dur\":0.010}"));
+	}
+}
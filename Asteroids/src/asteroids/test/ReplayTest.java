@@ -0,0 +1,140 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import asteroids.StateRandom;
+import asteroids.model.*;
+
+public class ReplayTest {
+
+	private Path file;
+
+	private GameWorld world;
+
+	private Ship ship;
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable file references a new temporary file.
+	 * @post	The variable world references a new world of 1000 by 1000 with ten moving
+	 * 			asteroids and the ship referenced by ship.
+	 */
+	@Before
+	public void setUpMutableFixture() throws IOException {
+		file = Files.createTempFile("replay", ".bin");
+		world = new GameWorld(1000, 1000);
+		Random random = new Random(3);
+		for (int i = 0; i < 10; i++)
+			world.addAsteroid(new Asteroid(new Vector2D(100 + 80 * i, 100 + 700 * random.nextDouble()), 30,
+					new Vector2D(100 * random.nextDouble() - 50, 100 * random.nextDouble() - 50), new StateRandom(i)));
+		ship = new Ship(new Vector2D(500, 950), 0, 20, new Vector2D(0, 0), 300000, 5E15);
+		world.addShip(ship);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	/**
+	 * Return the coordinates of all elements of the given world, sorted.
+	 */
+	private double[] getState(GameWorld world) {
+		List<Element> elements = world.getElements();
+		double[] state = new double[2 * elements.size()];
+		for (int i = 0; i < elements.size(); i++){
+			state[2 * i] = elements.get(i).getPosition().getXComponent();
+			state[2 * i + 1] = elements.get(i).getPosition().getYComponent();
+		}
+		Arrays.sort(state);
+		return state;
+	}
+
+	/**
+	 * Record 300 ticks of a session in which the ship turns, thrusts and fires,
+	 * and return the states of the world after each tick.
+	 */
+	private List<double[]> record() throws IOException {
+		List<double[]> states = new ArrayList<double[]>();
+		states.add(getState(world));
+		try (ReplayRecorder recorder = new ReplayRecorder(world, Arrays.asList(ship), file, 1)){
+			for (int tick = 0; tick < 300; tick++){
+				if (tick % 40 == 0)
+					recorder.setThrusterActive(0, tick % 80 == 0);
+				if (tick % 7 == 0)
+					recorder.turn(0, Math.PI / 20);
+				if (tick % 10 == 0)
+					recorder.fireBullet(0);
+				recorder.evolve(1 / 30., null);
+				states.add(getState(world));
+			}
+			assertEquals(300, recorder.getNbTicks());
+			assertTrue(recorder.getNbKeyframes() >= 10);
+		}
+		return states;
+	}
+
+	@Test
+	public final void step_ReproducesSession() throws IOException {
+		List<double[]> states = record();
+		ReplayPlayer player = new ReplayPlayer(file);
+		assertEquals(300, player.getNbTicks());
+		assertArrayEquals(states.get(0), getState(player.getWorld()), 0);
+		while (player.step())
+			assertArrayEquals(states.get((int) player.getTick()), getState(player.getWorld()), 0);
+		assertEquals(300, player.getTick());
+	}
+
+	@Test
+	public final void seek_RestoresKeyframes() throws IOException {
+		List<double[]> states = record();
+		ReplayPlayer player = new ReplayPlayer(file);
+		for (long tick : new long[] { 250, 100, 101, 299, 0, 300, 45 }){
+			player.seek(tick);
+			assertEquals(tick, player.getTick());
+			assertArrayEquals(states.get((int) tick), getState(player.getWorld()), 0);
+		}
+		assertNotNull(player.getPlayer(0));
+	}
+
+	@Test
+	public final void step_TruncatedLog() throws IOException {
+		record();
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+		ReplayPlayer player = new ReplayPlayer(file);
+		assertEquals(299, player.getNbTicks());
+		player.seek(299);
+		assertFalse(player.step());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void seek_BeyondLog() throws IOException {
+		record();
+		new ReplayPlayer(file).seek(301);
+	}
+
+	@Test
+	public final void turn_DoesNotAllocate() throws IOException {
+		java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		try (ReplayRecorder recorder = new ReplayRecorder(world, Arrays.asList(ship), file, 1)){
+			long best = Long.MAX_VALUE;
+			for (int round = 0; round < 10; round++){
+				long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+				for (int i = 0; i < 10000; i++){
+					recorder.turn(0, Math.PI / 20);
+					recorder.setThrusterActive(0, i % 2 == 0);
+				}
+				long after = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+				best = Math.min(best, after - before);
+			}
+			assertEquals(0, best);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import asteroids.ScenarioGenerator;
+import asteroids.model.*;
+
+public class ScenarioGeneratorTest {
+
+	private Facade facade;
+
+	private ScenarioGenerator<GameWorld, Ship, Asteroid, Bullet> generator;
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable generator references a new generator with seed 42,
+	 * 			building worlds through the facade referenced by facade.
+	 */
+	@Before
+	public void setUpMutableFixture() {
+		facade = new Facade();
+		generator = new ScenarioGenerator<GameWorld, Ship, Asteroid, Bullet>(facade, 42);
+	}
+
+	private static List<Element> sorted(GameWorld world) {
+		List<Element> elements = new ArrayList<Element>(world.getElements());
+		Collections.sort(elements, new Comparator<Element>() {
+			public int compare(Element e1, Element e2) {
+				int result = Double.compare(e1.getPosition().getXComponent(), e2.getPosition().getXComponent());
+				return result != 0 ? result : Double.compare(e1.getPosition().getYComponent(), e2.getPosition().getYComponent());
+			}
+		});
+		return elements;
+	}
+
+	private static void assertNoOverlap(GameWorld world) {
+		List<Element> elements = sorted(world);
+		for (int i = 0; i < elements.size(); i++)
+			for (int j = i + 1; j < elements.size(); j++){
+				Element e1 = elements.get(i), e2 = elements.get(j);
+				double dx = e2.getPosition().getXComponent() - e1.getPosition().getXComponent();
+				if (dx > 200)
+					break;
+				double dy = e2.getPosition().getYComponent() - e1.getPosition().getYComponent();
+				assertTrue(Math.hypot(dx, dy) >= e1.getRadius() + e2.getRadius());
+			}
+	}
+
+	@Test
+	public final void populate_Count() {
+		generator.setShips(3, 15, 1E15);
+		GameWorld world = generator.createWorld(1000);
+		List<Ship> ships = generator.populate(world, 1000);
+		assertEquals(3, ships.size());
+		assertEquals(3, world.getShips().size());
+		assertEquals(1000, world.getAsteroids().size());
+		for (Ship ship : ships)
+			assertEquals(15, ship.getRadius(), 0);
+	}
+
+	@Test
+	public final void populate_Deterministic() {
+		generator.setClusters(4, 0.05);
+		GameWorld world1 = generator.createWorld(10000);
+		generator.populate(world1, 10000);
+		ScenarioGenerator<GameWorld, Ship, Asteroid, Bullet> other = new ScenarioGenerator<GameWorld, Ship, Asteroid, Bullet>(facade, 42);
+		other.setClusters(4, 0.05);
+		GameWorld world2 = other.createWorld(10000);
+		other.populate(world2, 10000);
+		List<Element> elements1 = world1.getElements(), elements2 = world2.getElements();
+		assertEquals(elements1.size(), elements2.size());
+		for (int i = 0; i < elements1.size(); i++){
+			assertEquals(elements1.get(i).getPosition().getXComponent(), elements2.get(i).getPosition().getXComponent(), 0);
+			assertEquals(elements1.get(i).getPosition().getYComponent(), elements2.get(i).getPosition().getYComponent(), 0);
+			assertEquals(elements1.get(i).getVelocity().getXComponent(), elements2.get(i).getVelocity().getXComponent(), 0);
+			assertEquals(elements1.get(i).getVelocity().getYComponent(), elements2.get(i).getVelocity().getYComponent(), 0);
+			assertEquals(elements1.get(i).getRadius(), elements2.get(i).getRadius(), 0);
+		}
+	}
+
+	@Test
+	public final void populate_OtherSeed() {
+		GameWorld world1 = generator.createWorld(100);
+		generator.populate(world1, 100);
+		ScenarioGenerator<GameWorld, Ship, Asteroid, Bullet> other = new ScenarioGenerator<GameWorld, Ship, Asteroid, Bullet>(facade, 43);
+		GameWorld world2 = other.createWorld(100);
+		other.populate(world2, 100);
+		assertFalse(world1.getElements().get(0).getPosition().getXComponent() == world2.getElements().get(0).getPosition().getXComponent());
+	}
+
+	@Test
+	public final void populate_NoOverlap() {
+		generator.setDensity(0.9);
+		generator.setClusters(2, 0.02);
+		generator.setRadii(2, 30, 1.5);
+		GameWorld world = generator.createWorld(3000);
+		generator.populate(world, 3000);
+		assertNoOverlap(world);
+	}
+
+	@Test
+	public final void populate_AvoidsExistingShips() {
+		GameWorld world = new GameWorld(1000, 1000);
+		Ship player = new Ship(new Vector2D(500, 500), 0, 40, new Vector2D(0, 0));
+		world.addShip(player);
+		generator.setClusters(1, 0.01);
+		generator.populate(world, 50);
+		assertNoOverlap(world);
+	}
+
+	@Test
+	public final void populate_RadiiAndSpeeds() {
+		generator.setRadii(5, 40, 2);
+		generator.setSpeed(100, 150);
+		GameWorld world = generator.createWorld(2000);
+		generator.populate(world, 2000);
+		int small = 0;
+		for (Asteroid asteroid : world.getAsteroids()){
+			assertTrue(asteroid.getRadius() >= 5 && asteroid.getRadius() <= 40);
+			assertTrue(asteroid.getVelocity().getNorm() <= 150 + 1E-9);
+			if (asteroid.getRadius() < 10)
+				small++;
+		}
+		// With exponent 2, three quarters of the radii lie below twice the minimum.
+		assertTrue(small > 1400 && small < 1600);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void populate_TooDense() {
+		generator.populate(new GameWorld(500, 500), 100);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void setDensity_Zero() {
+		generator.setDensity(0);
+	}
+}
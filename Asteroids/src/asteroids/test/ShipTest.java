@@ -238,7 +238,31 @@ public class ShipTest {
 		ship100.turn(Math.PI/4);
 		assertEquals(Math.PI/4,ship100.getAngle(),EPSILON);
 	}
-	
+
+	@Test
+	public final void getHeading_Constructor(){
+		assertEquals(Math.cos(Math.PI/4),ship100PiD4.getHeadingX(),EPSILON);
+		assertEquals(Math.sin(Math.PI/4),ship100PiD4.getHeadingY(),EPSILON);
+	}
+
+	@Test
+	public final void getHeading_TurnOffTable(){
+		ship100.turn(1);
+		assertEquals(Math.cos(1),ship100.getHeadingX(),0);
+		assertEquals(Math.sin(1),ship100.getHeadingY(),0);
+	}
+
+	@Test
+	public final void getHeading_QuantizedTurns(){
+		Facade facade = new Facade();
+		for (int i = 0; i < 30; i++)
+			facade.turn(ship100, -Math.PI/20);
+		assertEquals(Math.cos(ship100.getAngle()),facade.getShipDirectionX(ship100),EPSILON);
+		assertEquals(Math.sin(ship100.getAngle()),facade.getShipDirectionY(ship100),EPSILON);
+		assertEquals(0,facade.getShipDirectionX(ship100),EPSILON);
+		assertEquals(1,facade.getShipDirectionY(ship100),EPSILON);
+	}
+
 	@Test
 	public final void thrust_NormalCase(){
 		ship100PiD4.thrust(100);
@@ -0,0 +1,175 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import asteroids.StateRandom;
+import asteroids.model.*;
+
+public class SnapshotRingTest {
+
+	private GameWorld world;
+
+	private Ship ship;
+
+	private SnapshotRing ring;
+
+	private Facade facade = new Facade();
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable world references a new world of 1000 by 1000 with ten moving
+	 * 			asteroids and the ship referenced by ship.
+	 * @post	The variable ring references a new ring of 32 snapshots of that world.
+	 */
+	@Before
+	public void setUpMutableFixture() {
+		world = new GameWorld(1000, 1000);
+		Random random = new Random(3);
+		for (int i = 0; i < 10; i++)
+			world.addAsteroid(new Asteroid(new Vector2D(100 + 80 * i, 100 + 700 * random.nextDouble()), 40,
+					new Vector2D(100 * random.nextDouble() - 50, 100 * random.nextDouble() - 50), new StateRandom(i)));
+		ship = new Ship(new Vector2D(500, 950), 3 * Math.PI / 2, 20, new Vector2D(0, 0), 300000, 5E15);
+		world.addShip(ship);
+		ring = new SnapshotRing(world, 32);
+	}
+
+	/**
+	 * Return the kinematics of all elements of the given world, sorted.
+	 */
+	private double[] getState(GameWorld world) {
+		List<Element> elements = world.getElements();
+		double[] state = new double[4 * elements.size()];
+		for (int i = 0; i < elements.size(); i++){
+			state[4 * i] = elements.get(i).getPosition().getXComponent();
+			state[4 * i + 1] = elements.get(i).getPosition().getYComponent();
+			state[4 * i + 2] = elements.get(i).getVelocity().getXComponent();
+			state[4 * i + 3] = elements.get(i).getVelocity().getYComponent();
+		}
+		Arrays.sort(state);
+		return state;
+	}
+
+	/**
+	 * Apply the inputs of the current tick to the ship and evolve the world over one tick.
+	 */
+	private void step() {
+		long tick = world.getTick();
+		if (tick % 10 == 0 && ship.getWorld() == world)
+			ship.fireBullet();
+		if (tick % 7 == 0)
+			facade.turn(ship, tick % 14 == 0 ? 0.2 : -0.2);
+		ship.setThrusterActive(tick % 40 < 20);
+		world.evolve(1 / 30., null);
+	}
+
+	@Test
+	public final void restore_ReproducesEvolution() {
+		List<double[]> states = new ArrayList<double[]>();
+		for (int tick = 0; tick < 100; tick++){
+			ring.save();
+			states.add(getState(world));
+			step();
+		}
+		states.add(getState(world));
+		assertTrue(world.getFragmentPool().getNbCreated() > 0);
+		for (long tick : new long[] { 80, 69, 99, 75 }){
+			ring.restore(tick);
+			assertEquals(tick, world.getTick());
+			assertArrayEquals(states.get((int) tick), getState(world), 0);
+			while (world.getTick() < 100){
+				step();
+				ring.save();
+				assertArrayEquals(states.get((int) world.getTick()), getState(world), 0);
+			}
+		}
+	}
+
+	@Test
+	public final void restore_RevivesTerminatedElements() {
+		ring.save();
+		Asteroid asteroid = world.getAsteroids().iterator().next();
+		Vector2D position = asteroid.getPosition();
+		asteroid.terminate();
+		world.removeShip(ship);
+		ring.restore(0);
+		assertFalse(asteroid.isTerminated());
+		assertSame(world, asteroid.getWorld());
+		assertSame(position, asteroid.getPosition());
+		assertSame(world, ship.getWorld());
+		assertEquals(11, world.getElements().size());
+	}
+
+	@Test
+	public final void restore_RemovesLaterElements() {
+		ring.save();
+		Bullet bullet = ship.fireBullet();
+		Ship other = new Ship(new Vector2D(100, 950), 0, 20, new Vector2D(0, 0));
+		world.addShip(other);
+		world.evolve(0.1, null);
+		ring.restore(0);
+		assertTrue(bullet.isTerminated());
+		assertNull(bullet.getWorld());
+		assertTrue(world.getBullets().isEmpty());
+		assertNull(other.getWorld());
+		assertFalse(other.isTerminated());
+		assertEquals(0, world.getTime(), 0);
+	}
+
+	@Test
+	public final void restore_DiscardsLaterTicks() {
+		for (int tick = 0; tick < 5; tick++){
+			ring.save();
+			step();
+		}
+		ring.restore(2);
+		assertEquals(2, ring.getNewestTick());
+		assertFalse(ring.contains(3));
+		step();
+		step();
+		ring.save();
+		assertTrue(ring.contains(4));
+		assertFalse(ring.contains(3));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void restore_Overwritten() {
+		for (int tick = 0; tick < 40; tick++){
+			ring.save();
+			step();
+		}
+		assertTrue(ring.contains(39));
+		ring.restore(7);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void restoreSnapshot_OtherWorld() {
+		WorldSnapshot snapshot = new WorldSnapshot();
+		new GameWorld(100, 100).saveSnapshot(snapshot);
+		world.restoreSnapshot(snapshot);
+	}
+
+	@Test
+	public final void save_DoesNotAllocate() {
+		java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		ship.fireBullet();
+		for (int i = 0; i < 64; i++){
+			ring.save();
+			ring.restore(world.getTick());
+		}
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < 10; round++){
+			long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			for (int i = 0; i < 1000; i++){
+				ring.save();
+				ring.restore(world.getTick());
+			}
+			long after = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			best = Math.min(best, after - before);
+		}
+		assertEquals(0, best);
+	}
+}
@@ -0,0 +1,178 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import asteroids.SoundRequestQueue;
+
+public class SoundRequestQueueTest {
+
+	private static final long LONG_WINDOW = TimeUnit.SECONDS.toNanos(60);
+
+	private List<String> handled;
+
+	private SoundRequestQueue.Handler recorder = new SoundRequestQueue.Handler() {
+		public void handle(int kind, String sound) {
+			handled.add(kind + " " + sound);
+		}
+	};
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable handled references a new empty list, to which the handler
+	 * 			referenced by recorder adds every request it is handed.
+	 */
+	@Before
+	public void setUpMutableFixture() {
+		handled = new ArrayList<String>();
+	}
+
+	private void drain(SoundRequestQueue queue) {
+		while (queue.poll(recorder))
+			;
+	}
+
+	@Test
+	public final void offer_FullRingDrops() {
+		SoundRequestQueue queue = new SoundRequestQueue(Arrays.asList("a", "b"), 4, 0);
+		int nbAccepted = 0;
+		for (int i = 0; i < 6; i++)
+			if (queue.offer(SoundRequestQueue.PLAY, "a"))
+				nbAccepted++;
+		assertEquals(4, nbAccepted);
+		assertEquals(4, queue.getEnqueuedCount());
+		assertEquals(2, queue.getDroppedCount());
+		drain(queue);
+		assertEquals(4, handled.size());
+		assertTrue(queue.offer(SoundRequestQueue.PLAY, "b"));
+	}
+
+	@Test
+	public final void offer_SkipsTombstonesOfSeveralLaps() {
+		SoundRequestQueue queue = new SoundRequestQueue(Arrays.asList("a", "b"), 4, 0);
+		for (int i = 0; i < 4; i++)
+			assertTrue(queue.offer(SoundRequestQueue.PLAY, "a"));
+		for (int i = 0; i < 6; i++)
+			assertFalse(queue.offer(SoundRequestQueue.STOP, "a"));
+		assertEquals(6, queue.getDroppedCount());
+		drain(queue);
+		for (int i = 0; i < 4; i++)
+			assertTrue(queue.offer(SoundRequestQueue.LOOP, "b"));
+		assertFalse(queue.offer(SoundRequestQueue.STOP, "b"));
+		drain(queue);
+		assertEquals(8, handled.size());
+		for (int i = 0; i < 4; i++)
+			assertEquals(SoundRequestQueue.PLAY + " a", handled.get(i));
+		for (int i = 4; i < 8; i++)
+			assertEquals(SoundRequestQueue.LOOP + " b", handled.get(i));
+		assertEquals(8, queue.getDispatchedCount());
+		assertEquals(7, queue.getDroppedCount());
+	}
+
+	@Test
+	public final void offer_DroppedRequestDoesNotCoalesce() {
+		SoundRequestQueue queue = new SoundRequestQueue(Arrays.asList("a", "b", "c"), 2, LONG_WINDOW);
+		assertTrue(queue.offer(SoundRequestQueue.PLAY, "a"));
+		assertTrue(queue.offer(SoundRequestQueue.PLAY, "b"));
+		assertFalse(queue.offer(SoundRequestQueue.PLAY, "c"));
+		assertEquals(1, queue.getDroppedCount());
+		drain(queue);
+		assertTrue(queue.offer(SoundRequestQueue.PLAY, "c"));
+		assertEquals(0, queue.getCoalescedCount());
+	}
+
+	@Test
+	public final void offer_CoalescesDuplicates() {
+		SoundRequestQueue queue = new SoundRequestQueue(Arrays.asList("a", "b"), 16, LONG_WINDOW);
+		assertTrue(queue.offer(SoundRequestQueue.PLAY, "a"));
+		assertFalse(queue.offer(SoundRequestQueue.PLAY, "a"));
+		assertTrue(queue.offer(SoundRequestQueue.PLAY, "b"));
+		assertFalse(queue.offer(SoundRequestQueue.PLAY, "a"));
+		assertEquals(2, queue.getCoalescedCount());
+		drain(queue);
+		assertEquals(Arrays.asList(SoundRequestQueue.PLAY + " a", SoundRequestQueue.PLAY + " b"), handled);
+	}
+
+	@Test
+	public final void offer_StopBetweenLoops() {
+		SoundRequestQueue queue = new SoundRequestQueue(Arrays.asList("a"), 16, LONG_WINDOW);
+		assertTrue(queue.offer(SoundRequestQueue.LOOP, "a"));
+		assertTrue(queue.offer(SoundRequestQueue.STOP, "a"));
+		assertTrue(queue.offer(SoundRequestQueue.LOOP, "a"));
+		assertFalse(queue.offer(SoundRequestQueue.LOOP, "a"));
+		drain(queue);
+		assertEquals(Arrays.asList(SoundRequestQueue.LOOP + " a", SoundRequestQueue.STOP + " a",
+				SoundRequestQueue.LOOP + " a"), handled);
+	}
+
+	@Test
+	public final void offer_UnknownSoundNotCoalesced() {
+		SoundRequestQueue queue = new SoundRequestQueue(Arrays.asList("a"), 16, LONG_WINDOW);
+		assertTrue(queue.offer(SoundRequestQueue.PLAY, "x"));
+		assertTrue(queue.offer(SoundRequestQueue.PLAY, "x"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void offer_UnknownKind() {
+		new SoundRequestQueue(Arrays.asList("a")).offer(7, "a");
+	}
+
+	@Test
+	public final void take_ConcurrentProducers() throws InterruptedException {
+		final int nbProducers = 4;
+		final int nbRequests = 20000;
+		final SoundRequestQueue queue = new SoundRequestQueue(Collections.<String>emptyList(), 64, 0);
+		final int[] accepted = new int[nbProducers];
+		Thread[] producers = new Thread[nbProducers];
+		for (int p = 0; p < nbProducers; p++){
+			final int producer = p;
+			producers[p] = new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < nbRequests; i++)
+						if (queue.offer(SoundRequestQueue.PLAY, producer + ":" + i))
+							accepted[producer]++;
+				}
+			});
+		}
+		final int[] received = new int[nbProducers];
+		final int[] lastSequence = new int[nbProducers];
+		Arrays.fill(lastSequence, -1);
+		final List<String> failures = new ArrayList<String>();
+		SoundRequestQueue.Handler checker = new SoundRequestQueue.Handler() {
+			public void handle(int kind, String sound) {
+				int separator = sound.indexOf(':');
+				int producer = Integer.parseInt(sound.substring(0, separator));
+				int sequence = Integer.parseInt(sound.substring(separator + 1));
+				if (sequence <= lastSequence[producer])
+					failures.add("Request " + sound + " out of order");
+				lastSequence[producer] = sequence;
+				received[producer]++;
+			}
+		};
+		for (Thread producer : producers)
+			producer.start();
+		boolean producing = true;
+		while (producing){
+			producing = false;
+			for (Thread producer : producers)
+				producing |= producer.isAlive();
+			while (queue.poll(checker))
+				;
+		}
+		for (Thread producer : producers)
+			producer.join();
+		while (queue.poll(checker))
+			;
+		assertEquals(Collections.<String>emptyList(), failures);
+		long total = 0;
+		for (int p = 0; p < nbProducers; p++){
+			assertEquals(accepted[p], received[p]);
+			total += accepted[p];
+		}
+		assertEquals(total, queue.getEnqueuedCount());
+		assertEquals(total, queue.getDispatchedCount());
+		assertEquals(nbProducers * nbRequests, total + queue.getDroppedCount());
+	}
+}
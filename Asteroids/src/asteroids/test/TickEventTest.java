@@ -0,0 +1,53 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.*;
+import asteroids.model.*;
+
+public class TickEventTest {
+
+	private Path file;
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable file references a new temporary file for a recording.
+	 */
+	@Before
+	public void setUpMutableFixture() throws IOException {
+		file = Files.createTempFile("ticks", ".jfr");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public final void evolve_RecordedTickReadable() throws IOException {
+		GameWorld world = new GameWorld(1000, 500);
+		world.addAsteroid(new Asteroid(new Vector2D(500, 250), 10, new Vector2D(10, 0)));
+		Recording recording = new Recording();
+		recording.enable("asteroids.Tick");
+		recording.start();
+		world.evolve(0.25, null);
+		recording.stop();
+		recording.dump(file);
+		recording.close();
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		RecordedEvent tick = null;
+		for (RecordedEvent event : events)
+			if (event.getEventType().getName().equals("asteroids.Tick"))
+				tick = event;
+		assertNotNull(tick);
+		assertEquals(Duration.ofMillis(250), tick.getDuration("dt"));
+		assertEquals(1, tick.getInt("entities"));
+		assertEquals(1, tick.getInt("substeps"));
+	}
+}
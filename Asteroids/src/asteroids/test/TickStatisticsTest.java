@@ -0,0 +1,105 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.lang.management.ManagementFactory;
+import javax.management.*;
+import javax.management.openmbean.*;
+import asteroids.TickStatistics;
+import asteroids.TickStatistics.Counter;
+import asteroids.TickStatistics.Phase;
+
+public class TickStatisticsTest {
+
+	private TickStatistics statistics;
+
+	private MBeanServer server;
+
+	private ObjectName name;
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable statistics references new enabled statistics, registered
+	 * 			with the platform MBean server referenced by server under the name
+	 * 			referenced by name.
+	 */
+	@Before
+	public void setUpMutableFixture() throws Exception {
+		server = ManagementFactory.getPlatformMBeanServer();
+		name = new ObjectName(TickStatistics.OBJECT_NAME);
+		if (server.isRegistered(name))
+			server.unregisterMBean(name);
+		statistics = new TickStatistics(true);
+		statistics.register();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (server.isRegistered(name))
+			server.unregisterMBean(name);
+	}
+
+	@Test
+	public final void begin_Disabled() {
+		statistics.setEnabled(false);
+		assertFalse(statistics.isEnabled());
+		assertEquals(0, statistics.begin());
+		statistics.end(Phase.EVOLVE, statistics.begin());
+		statistics.add(Counter.TICKS, 5);
+		assertEquals(0, statistics.getMaxNanos(Phase.EVOLVE));
+		assertEquals(0, statistics.getTotal(Counter.TICKS));
+	}
+
+	@Test
+	public final void begin_Enabled() {
+		assertTrue(statistics.isEnabled());
+		assertTrue(statistics.begin() != 0);
+	}
+
+	@Test
+	public final void end_AccumulatesPhase() throws InterruptedException {
+		long start = statistics.begin();
+		Thread.sleep(2);
+		statistics.end(Phase.NARROW_PHASE, start);
+		long first = statistics.getLastNanos(Phase.NARROW_PHASE);
+		assertTrue(first >= 2000000);
+		statistics.end(Phase.NARROW_PHASE, statistics.begin());
+		long second = statistics.getLastNanos(Phase.NARROW_PHASE);
+		assertTrue(second < first);
+		assertEquals(first, statistics.getMaxNanos(Phase.NARROW_PHASE));
+		assertEquals((first + second) / 2., statistics.getMeanNanos(Phase.NARROW_PHASE), 1);
+		assertEquals(0, statistics.getMeanNanos(Phase.RENDER), 0);
+	}
+
+	@Test
+	public final void add_Counters() {
+		statistics.add(Counter.COLLISIONS, 3);
+		statistics.add(Counter.COLLISIONS, 4);
+		assertEquals(7, statistics.getTotal(Counter.COLLISIONS));
+		assertEquals(4, statistics.getLast(Counter.COLLISIONS));
+		statistics.reset();
+		assertEquals(0, statistics.getTotal(Counter.COLLISIONS));
+		assertEquals(0, statistics.getLast(Counter.COLLISIONS));
+	}
+
+	@Test
+	public final void register_ReadableThroughServer() throws Exception {
+		statistics.add(Counter.TICKS, 2);
+		statistics.add(Counter.TICKS, 1);
+		statistics.end(Phase.EVOLVE, statistics.begin());
+		assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+		TabularData totals = (TabularData) server.getAttribute(name, "CounterTotals");
+		assertEquals(3L, totals.get(new Object[] { "TICKS" }).get("value"));
+		TabularData last = (TabularData) server.getAttribute(name, "LastCounters");
+		assertEquals(1L, last.get(new Object[] { "TICKS" }).get("value"));
+		TabularData means = (TabularData) server.getAttribute(name, "MeanPhaseMicros");
+		assertEquals(Phase.values().length, means.size());
+		assertNotNull(means.get(new Object[] { "EVOLVE" }));
+		server.setAttribute(name, new Attribute("Enabled", false));
+		assertFalse(statistics.isEnabled());
+		assertEquals(0, statistics.begin());
+		server.invoke(name, "reset", null, null);
+		assertEquals(0, statistics.getTotal(Counter.TICKS));
+	}
+}
@@ -0,0 +1,139 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import asteroids.Util;
+
+public class UtilTest {
+
+	@Test
+	public final void fuzzyEquals_TrueCase() {
+		assertTrue(Util.fuzzyEquals(1, 1 + Util.EPSILON / 2));
+	}
+
+	@Test
+	public final void fuzzyEquals_FalseCase() {
+		assertFalse(Util.fuzzyEquals(1, 1 + 2 * Util.EPSILON));
+	}
+
+	@Test
+	public final void fuzzyEquals_Infinities() {
+		assertTrue(Util.fuzzyEquals(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY));
+		assertFalse(Util.fuzzyEquals(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY));
+	}
+
+	@Test
+	public final void fuzzyEquals_NaN() {
+		assertFalse(Util.fuzzyEquals(Double.NaN, Double.NaN));
+	}
+
+	@Test
+	public final void fuzzyEquals_GivenEpsilon() {
+		assertTrue(Util.fuzzyEquals(1, 1.5, 0.5));
+		assertFalse(Util.fuzzyEquals(1, 1.5, 0.25));
+	}
+
+	@Test
+	public final void fuzzyLessThanOrEqualTo_Cases() {
+		assertTrue(Util.fuzzyLessThanOrEqualTo(1, 2));
+		assertTrue(Util.fuzzyLessThanOrEqualTo(1 + Util.EPSILON / 2, 1));
+		assertFalse(Util.fuzzyLessThanOrEqualTo(2, 1));
+	}
+
+	@Test
+	public final void bitEquals_Cases() {
+		assertTrue(Util.bitEquals(Double.NaN, Double.NaN));
+		assertFalse(Util.bitEquals(0.0, -0.0));
+		assertTrue(Util.bitEquals(1.5, 1.5));
+	}
+
+	@Test
+	public final void ulpDistance_Cases() {
+		assertEquals(0, Util.ulpDistance(1, 1));
+		assertEquals(1, Util.ulpDistance(1, Math.nextUp(1.0)));
+		assertEquals(0, Util.ulpDistance(0.0, -0.0));
+		assertEquals(2, Util.ulpDistance(Double.MIN_VALUE, -Double.MIN_VALUE));
+		assertEquals(Long.MAX_VALUE, Util.ulpDistance(1, Double.NaN));
+		assertEquals(Long.MAX_VALUE, Util.ulpDistance(Double.MAX_VALUE, -Double.MAX_VALUE));
+	}
+
+	@Test
+	public final void ulpEquals_Cases() {
+		assertTrue(Util.ulpEquals(1E9, Math.nextUp(Math.nextUp(1E9)), 2));
+		assertFalse(Util.ulpEquals(1E-9, 2E-9, 2));
+	}
+
+	@Test
+	public final void fuzzyNormLessThanOrEqualTo_MatchesNorm() {
+		Random random = new Random(3);
+		for (int i = 0; i < 100000; i++){
+			double x = random.nextGaussian() * 10;
+			double y = random.nextGaussian() * 10;
+			double bound = random.nextDouble() * 20;
+			double norm = Math.sqrt(x * x + y * y);
+			// Squaring rounds differently only within a few ulps of the bound.
+			if (Math.abs(norm - bound - Util.EPSILON) > 1E-9)
+				assertEquals(Util.fuzzyLessThanOrEqualTo(norm, bound), Util.fuzzyNormLessThanOrEqualTo(x, y, bound));
+		}
+		assertFalse(Util.fuzzyNormLessThanOrEqualTo(Double.NaN, 0, 1));
+		assertFalse(Util.fuzzyNormLessThanOrEqualTo(0, 0, -1));
+	}
+
+	/**
+	 * Run the comparisons in a new virtual machine that only interprets, so that no
+	 * allocation can be hidden by escape analysis, and check that they allocate nothing.
+	 */
+	@Test
+	public final void comparisons_NoAllocation() throws IOException, InterruptedException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-Xint", "-cp", System.getProperty("java.class.path"),
+				Workload.class.getName());
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		String output = reader.readLine();
+		assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+		assertEquals(0, process.exitValue());
+		assertEquals("0", output);
+	}
+
+	/**
+	 * Prints the number of bytes the comparisons allocate on the main thread.
+	 */
+	public static class Workload {
+
+		public static void main(String[] args) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+					.getThreadMXBean();
+			long threadId = Thread.currentThread().getId();
+			run(100);
+			threads.getThreadAllocatedBytes(threadId);
+			long before = threads.getThreadAllocatedBytes(threadId);
+			int count = run(100000);
+			long after = threads.getThreadAllocatedBytes(threadId);
+			System.out.println(count >= 0 ? after - before : -1);
+		}
+
+		private static int run(int nbIterations) {
+			int count = 0;
+			for (int i = 0; i < nbIterations; i++){
+				double x = i * 0.5;
+				if (Util.fuzzyEquals(x, x + 1))
+					count++;
+				if (Util.fuzzyLessThanOrEqualTo(x, 100))
+					count++;
+				if (Util.bitEquals(x, -x))
+					count++;
+				if (Util.ulpEquals(x, x + 1, 4))
+					count++;
+				if (Util.fuzzyNormLessThanOrEqualTo(x, x, 1000))
+					count++;
+			}
+			return count;
+		}
+	}
+}
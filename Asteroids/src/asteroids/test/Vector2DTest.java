@@ -3,6 +3,7 @@ package asteroids.test;
 import static org.junit.Assert.*;
 import org.junit.*;
 import static asteroids.Util.*;
+import java.util.*;
 import asteroids.model.*;
 
 
@@ -84,6 +85,49 @@ public class Vector2DTest {
 						.getYComponent(), directionResult.getYComponent(),EPSILON);
 	}
 
+	@Test
+	public final void getDirection_ZeroVector() {
+		Vector2D directionResult = new Vector2D(0, 0).getDirection();
+		assertEquals(1, directionResult.getXComponent(), 0);
+		assertEquals(0, directionResult.getYComponent(), 0);
+	}
+
+	@Test
+	public final void getDirection_UnitNorm() {
+		Random random = new Random(1);
+		for (int i = 0; i < 1000; i++){
+			Vector2D vector = new Vector2D(1E6 * (random.nextDouble() - 0.5), 1E-6 * (random.nextDouble() - 0.5));
+			assertEquals(1, vector.getDirection().getNorm(), 1E-15);
+		}
+	}
+
+	@Test
+	public final void dot_SingleCase() {
+		assertEquals(800, Vector2D.dot(50, 100, 10, 3), 0);
+	}
+
+	@Test
+	public final void lengthSq_SingleCase() {
+		assertEquals(109, Vector2D.lengthSq(10, 3), 0);
+	}
+
+	@Test
+	public final void normalize_SingleCase() {
+		double[] out = new double[3];
+		assertEquals(5, Vector2D.normalize(3, -4, out, 1), 0);
+		assertEquals(0, out[0], 0);
+		assertEquals(0.6, out[1], EPSILON);
+		assertEquals(-0.8, out[2], EPSILON);
+	}
+
+	@Test
+	public final void normalize_ZeroVector() {
+		double[] out = { 1, 1 };
+		assertEquals(0, Vector2D.normalize(0, 0, out, 0), 0);
+		assertEquals(0, out[0], 0);
+		assertEquals(0, out[1], 0);
+	}
+
 	@Test
 	public final void toString_SingleCase() {
 		String stringResult = Vector2DX50Y100.toString();
@@ -99,12 +143,47 @@ public class Vector2DTest {
 	}
 	
 	@Test
-	public final void equals_TrueCasePerturbed() {
+	public final void fuzzyEquals_TrueCasePerturbed() {
 		Vector2D Vector2DX50Y100_2 = new Vector2D(50 + 1e-15, 100 + 1e-13);
-		boolean trueResult = Vector2DX50Y100.equals(Vector2DX50Y100_2);
+		boolean trueResult = Vector2DX50Y100.fuzzyEquals(Vector2DX50Y100_2);
 		assertTrue(trueResult);
 	}
 
+	@Test
+	public final void fuzzyEquals_FalseCase() {
+		assertFalse(Vector2DX50Y100.fuzzyEquals(Vector2DX10Y3));
+		assertFalse(Vector2DX50Y100.fuzzyEquals(null));
+	}
+
+	@Test
+	public final void equals_FalseCasePerturbed() {
+		Vector2D Vector2DX50Y100_2 = new Vector2D(50, 100 + 1e-13);
+		assertFalse(Vector2DX50Y100.equals(Vector2DX50Y100_2));
+	}
+
+	@Test
+	public final void equals_OtherObject() {
+		Object other = "(50.0,100.0)";
+		assertFalse(Vector2DX50Y100.equals(other));
+		assertFalse(Vector2DX50Y100.equals((Object) null));
+	}
+
+	@Test
+	public final void equals_SignedZero() {
+		assertFalse(new Vector2D(0, 1).equals(new Vector2D(-0.0, 1)));
+		assertTrue(new Vector2D(Double.NaN, 1).equals(new Vector2D(Double.NaN, 1)));
+	}
+
+	@Test
+	public final void equals_HashSet() {
+		Set<Vector2D> vectors = new HashSet<Vector2D>();
+		vectors.add(new Vector2D(50, 100));
+		vectors.add(new Vector2D(50, 100));
+		assertEquals(1, vectors.size());
+		assertTrue(vectors.contains(Vector2DX50Y100));
+		assertFalse(vectors.contains(Vector2DX10Y3));
+	}
+
 	@Test
 	public final void equals_TrueCaseSame() {
 		boolean trueResult = Vector2DX50Y100.equals(Vector2DX50Y100);
@@ -122,4 +201,9 @@ public class Vector2DTest {
 		 int obtainedHash = Vector2DX50Y100.hashCode();
 		 assertEquals(-2136866816,obtainedHash);	
 	 }
+
+	 @Test
+	 public final void hashCode_EqualVectors(){
+		 assertEquals(new Vector2D(-3.5, 1E300).hashCode(), new Vector2D(-3.5, 1E300).hashCode());
+	 }
 }
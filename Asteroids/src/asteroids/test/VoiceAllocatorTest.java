@@ -0,0 +1,88 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import asteroids.VoiceAllocator;
+
+public class VoiceAllocatorTest {
+
+	private static final long LENGTH = 1000;
+
+	private VoiceAllocator voices;
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable voices references a new allocator of three idle voices
+	 * 			for a sound that lasts LENGTH nanoseconds.
+	 */
+	@Before
+	public void setUpMutableFixture() {
+		voices = new VoiceAllocator(3, LENGTH);
+	}
+
+	private int play(long now, boolean loop) {
+		int voice = voices.select(now);
+		voices.start(voice, now, loop);
+		return voice;
+	}
+
+	@Test
+	public final void select_IdleVoicesFirst() {
+		assertEquals(0, play(0, false));
+		assertEquals(1, play(10, false));
+		assertEquals(2, voices.select(20));
+		assertFalse(voices.isBusy(2));
+	}
+
+	@Test
+	public final void select_EndedVoiceIsIdle() {
+		play(0, false);
+		play(10, false);
+		play(20, false);
+		assertEquals(0, voices.select(LENGTH));
+		assertFalse(voices.isBusy(0));
+		assertTrue(voices.isBusy(1));
+	}
+
+	@Test
+	public final void select_StealsOldest() {
+		play(30, false);
+		play(10, false);
+		play(20, false);
+		int stolen = voices.select(40);
+		assertEquals(1, stolen);
+		assertTrue(voices.isBusy(stolen));
+	}
+
+	@Test
+	public final void select_LoopingVoicesStolenLast() {
+		play(0, true);
+		play(10, false);
+		play(20, false);
+		assertEquals(1, play(30, false));
+		assertEquals(2, play(40, false));
+		assertTrue(voices.isLooping(0));
+		// A looping voice never ends by itself.
+		assertEquals(1, voices.select(10 * LENGTH));
+		assertTrue(voices.isLooping(0));
+	}
+
+	@Test
+	public final void select_AllLoopingStealsOldest() {
+		play(20, true);
+		play(0, true);
+		play(10, true);
+		assertEquals(1, voices.select(10 * LENGTH));
+		assertTrue(voices.isBusy(1));
+	}
+
+	@Test
+	public final void release_VoiceIdle() {
+		play(0, true);
+		voices.release(0);
+		assertFalse(voices.isBusy(0));
+		assertFalse(voices.isLooping(0));
+		assertEquals(0, voices.select(1));
+	}
+}
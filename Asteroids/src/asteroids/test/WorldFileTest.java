@@ -0,0 +1,128 @@
+package asteroids.test;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.io.IOException;
+import java.nio.file.*;
+import asteroids.model.*;
+
+public class WorldFileTest {
+
+	private Path file;
+
+	private GameWorld world;
+
+	private Ship ship;
+
+	/**
+	 * Set up a mutable test fixture.
+	 *
+	 * @post	The variable file references a new temporary file.
+	 * @post	The variable world references a new world of 1000 by 1000 with an asteroid
+	 * 			and the ship referenced by ship, which has its thruster active and has fired
+	 * 			a bullet, evolved over one second.
+	 */
+	@Before
+	public void setUpMutableFixture() throws IOException {
+		file = Files.createTempFile("world", ".bin");
+		world = new GameWorld(1000, 1000);
+		world.addAsteroid(new Asteroid(new Vector2D(800, 800), 30, new Vector2D(-10, 5)));
+		ship = new Ship(new Vector2D(200, 500), Math.PI / 2, 20, new Vector2D(5, 0), 300000, 5E15);
+		world.addShip(ship);
+		ship.fireBullet();
+		ship.setThrusterActive(true);
+		world.evolve(1, null);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	private void assertSameKinematics(Element expected, Element actual) {
+		assertEquals(expected.getPosition().getXComponent(), actual.getPosition().getXComponent(), 0);
+		assertEquals(expected.getPosition().getYComponent(), actual.getPosition().getYComponent(), 0);
+		assertEquals(expected.getVelocity().getXComponent(), actual.getVelocity().getXComponent(), 0);
+		assertEquals(expected.getVelocity().getYComponent(), actual.getVelocity().getYComponent(), 0);
+		assertEquals(expected.getRadius(), actual.getRadius(), 0);
+		assertEquals(expected.getMass(), actual.getMass(), 0);
+	}
+
+	@Test
+	public final void load_RestoresWorld() throws IOException {
+		WorldFile.save(world, file);
+		assertEquals(WorldFile.getSize(1, 1, 1), Files.size(file));
+		GameWorld loaded = WorldFile.load(file);
+		assertEquals(1000, loaded.getWidth(), 0);
+		assertEquals(1, loaded.getTime(), 0);
+		assertFalse(loaded.isToroidal());
+		assertEquals(1, loaded.getShips().size());
+		assertEquals(1, loaded.getAsteroids().size());
+		assertEquals(1, loaded.getBullets().size());
+		Ship loadedShip = loaded.getShips().iterator().next();
+		assertSameKinematics(ship, loadedShip);
+		assertEquals(ship.getAngle(), loadedShip.getAngle(), 0);
+		assertEquals(ship.getMaxSpeed(), loadedShip.getMaxSpeed(), 0);
+		assertTrue(loadedShip.isThrusterActive());
+		assertSameKinematics(world.getAsteroids().iterator().next(), loaded.getAsteroids().iterator().next());
+		Bullet loadedBullet = loaded.getBullets().iterator().next();
+		assertSameKinematics(world.getBullets().iterator().next(), loadedBullet);
+		assertSame(loadedShip, loadedBullet.getSource());
+	}
+
+	@Test
+	public final void load_EvolvesAsOriginal() throws IOException {
+		WorldFile.save(world, file);
+		GameWorld loaded = WorldFile.load(file);
+		world.evolve(0.5, null);
+		loaded.evolve(0.5, null);
+		assertSameKinematics(world.getShips().iterator().next(), loaded.getShips().iterator().next());
+		assertSameKinematics(world.getAsteroids().iterator().next(), loaded.getAsteroids().iterator().next());
+	}
+
+	@Test
+	public final void load_BulletsExpire() throws IOException {
+		WorldFile.save(world, file);
+		GameWorld loaded = WorldFile.load(file);
+		loaded.evolve(1.9, null);
+		assertEquals(1, loaded.getBullets().size());
+		loaded.evolve(0.2, null);
+		assertTrue(loaded.getBullets().isEmpty());
+	}
+
+	@Test
+	public final void load_BulletsOfRemovedShip() throws IOException {
+		world.removeShip(ship);
+		WorldFile.save(world, file);
+		GameWorld loaded = WorldFile.load(file);
+		assertTrue(loaded.getShips().isEmpty());
+		assertEquals(1, loaded.getBullets().size());
+		assertNull(loaded.getBullets().iterator().next().getSource().getWorld());
+		loaded.evolve(2.1, null);
+		assertTrue(loaded.getBullets().isEmpty());
+	}
+
+	@Test
+	public final void load_Toroidal() throws IOException {
+		GameWorld torus = new GameWorld(500, 400, true);
+		torus.addAsteroid(new Asteroid(new Vector2D(490, 200), 30, new Vector2D(10, 0)));
+		WorldFile.save(torus, file);
+		GameWorld loaded = WorldFile.load(file);
+		assertTrue(loaded.isToroidal());
+		assertSameKinematics(torus.getAsteroids().iterator().next(), loaded.getAsteroids().iterator().next());
+	}
+
+	@Test(expected = IOException.class)
+	public final void load_NotAWorldFile() throws IOException {
+		Files.write(file, new byte[100]);
+		WorldFile.load(file);
+	}
+
+	@Test(expected = IOException.class)
+	public final void load_Truncated() throws IOException {
+		WorldFile.save(world, file);
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 1));
+		WorldFile.load(file);
+	}
+}